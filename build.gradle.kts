@@ -9,12 +9,34 @@ repositories {
     mavenCentral()
 }
 
+// Микробенчмарки JMH лежат в src/jmh/java, в обычную сборку не входят.
+// Запуск: ./gradlew jmh [-PjmhArgs="LibraryEngineBenchmark.search -p size=100000"]
+// Там же замеры и генераторы нагрузки со своим main(): ./gradlew jmhClasses, команда запуска - в начале файла
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+// -prof gc добавляет к результатам скорость выделения памяти (gc.alloc.rate.norm - байт на операцию)
+tasks.register<JavaExec>("jmh") {
+    description = "Runs JMH benchmarks from the jmh source set"
+    group = "benchmark"
+    dependsOn(tasks.named("jmhClasses"))
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    val extra = (project.findProperty("jmhArgs") as String?)?.split(" ")?.filter { it.isNotBlank() } ?: emptyList()
+    args = listOf("-prof", "gc") + extra
+}
@@ -0,0 +1,56 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Пропускная способность журнала аудита (операций в секунду) в каждом режиме надёжности.
+// Время считается до закрытия журнала, то есть до момента, когда всё записано на диск.
+// Запуск: java -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.AuditJournalBenchmark [ops] [threads]
+final class AuditJournalBenchmark {
+    private AuditJournalBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int ops = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        Path directory = Files.createTempDirectory("audit-bench");
+        System.out.printf(Locale.ROOT, "%-8s %10s %8s %14s %14s%n", "mode", "ops", "threads", "ops/sec", "caller ns/op");
+        for (AuditJournal.Durability mode : AuditJournal.Durability.values()) {
+            // в режиме PER_OP каждая операция ждёт fsync, поэтому прогон короче
+            int modeOps = mode == AuditJournal.Durability.PER_OP ? Math.min(ops, 2_000) : ops;
+            run(directory.resolve(mode + ".journal"), mode, modeOps, threads);
+        }
+    }
+
+    private static void run(Path file, AuditJournal.Durability mode, int ops, int threads) throws IOException, InterruptedException {
+        AuditJournal journal = new AuditJournal(file, mode);
+        Thread[] workers = new Thread[threads];
+        long[] callerNanos = new long[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                long begin = System.nanoTime();
+                for (int i = worker; i < ops; i += threads) {
+                    journal.append(AuditJournal.Op.BORROW, i, worker);
+                }
+                callerNanos[worker] = System.nanoTime() - begin;
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        journal.close();
+        long elapsed = System.nanoTime() - start;
+        long callerTotal = 0;
+        for (long nanos : callerNanos) {
+            callerTotal += nanos;
+        }
+        System.out.printf(Locale.ROOT, "%-8s %10d %8d %14.0f %14.0f%n", mode, ops, threads,
+                ops / (elapsed / 1e9), (double) callerTotal / ops);
+        Files.deleteIfExists(file);
+    }
+}
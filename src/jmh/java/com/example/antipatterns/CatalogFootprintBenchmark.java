@@ -0,0 +1,97 @@
+package com.example.antipatterns;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+// Сравнение занимаемой памяти: HashMap на книгу против колоночного BookStore.
+// Запуск: java -Xmx16g -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.CatalogFootprintBenchmark 1000000 10000000
+final class CatalogFootprintBenchmark {
+    private static final String[] GENRES = {"Роман", "Фантастика", "Детектив", "Поэзия", "Наука", "История", "Детская", "Фэнтези"};
+    private static final int AUTHOR_POOL = 20_000;
+
+    private CatalogFootprintBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[] {1_000_000, 10_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        String[] authors = new String[AUTHOR_POOL];
+        for (int i = 0; i < AUTHOR_POOL; i++) {
+            authors[i] = "Автор " + i;
+        }
+        System.out.printf(Locale.ROOT, "%12s %28s %28s %10s%n", "books", "map-per-row", "columnar", "ratio");
+        for (int n : sizes) {
+            long mapBytes = measureMapLayout(n, authors);
+            long columnBytes = measureColumnarLayout(n, authors);
+            System.out.printf(Locale.ROOT, "%12d %28s %28s %10s%n", n, format(mapBytes, n), format(columnBytes, n),
+                    mapBytes > 0 && columnBytes > 0 ? String.format(Locale.ROOT, "%.1fx", (double) mapBytes / columnBytes) : "-");
+        }
+    }
+
+    private static long measureMapLayout(int n, String[] authors) {
+        long before = usedHeap();
+        try {
+            ArrayList<HashMap<String, Object>> books = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                HashMap<String, Object> book = new HashMap<>();
+                book.put("id", i + 1);
+                book.put("title", "Книга " + i);
+                book.put("author", authors[i % authors.length]);
+                book.put("year", 1800 + i % 225);
+                book.put("isbn", "978-" + i);
+                book.put("genre", GENRES[i % GENRES.length]);
+                book.put("available", true);
+                book.put("borrowedBy", null);
+                book.put("borrowDate", null);
+                book.put("rating", 4.2);
+                book.put("cacheId", "SESSION");
+                books.add(book);
+            }
+            long used = usedHeap() - before;
+            keep(books.size());
+            return used;
+        } catch (OutOfMemoryError e) {
+            return -1;
+        }
+    }
+
+    private static long measureColumnarLayout(int n, String[] authors) {
+        long before = usedHeap();
+        try {
+            BookStore store = new BookStore();
+            for (int i = 0; i < n; i++) {
+                store.add(i + 1, "Книга " + i, authors[i % authors.length], 1800 + i % 225,
+                        "978-" + i, GENRES[i % GENRES.length], 4.2);
+            }
+            long used = usedHeap() - before;
+            keep(store.size());
+            return used;
+        } catch (OutOfMemoryError e) {
+            return -1;
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static volatile int sink;
+
+    private static void keep(int value) {
+        sink = value;
+    }
+
+    private static String format(long bytes, int n) {
+        if (bytes < 0) {
+            return "OOM";
+        }
+        return String.format(Locale.ROOT, "%.1f MB (%d B/book)", bytes / 1048576.0, bytes / n);
+    }
+}
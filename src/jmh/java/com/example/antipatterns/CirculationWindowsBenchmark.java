@@ -0,0 +1,116 @@
+package com.example.antipatterns;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Скользящие окна (CirculationWindows): сначала сверка с прямым подсчётом - случайные события за трое
+// симулированных суток, после каждого шага count и fineAmount всех окон сравниваются с перебором сохранённых
+// событий, попадающих в те же корзины; расхождение - код выхода 1.
+// Затем стоимость record при разном числе потоков рядом с LongAdder.increment (так обновляется LibraryStatistics).
+// Запуск: java -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.CirculationWindowsBenchmark [мс на замер] [потоков...]
+final class CirculationWindowsBenchmark {
+    private static final int CHECK_EVENTS = 200_000;
+    private static final int CHECK_EVERY = 997;
+
+    private CirculationWindowsBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int millis = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int[] threads = args.length > 1 ? new int[args.length - 1] : new int[] {1, 2, 4, 8};
+        for (int i = 1; i < args.length; i++) {
+            threads[i - 1] = Integer.parseInt(args[i]);
+        }
+        if (!check()) {
+            System.exit(1);
+        }
+        System.out.printf(Locale.ROOT, "%8s %16s %16s%n", "потоков", "record, нс/оп", "LongAdder, нс/оп");
+        for (int count : threads) {
+            CirculationWindows windows = new CirculationWindows();
+            // время события в движке уже известно (дата выдачи), поэтому часы здесь не читаются
+            long time = System.currentTimeMillis();
+            double record = measure(count, millis, () -> windows.record(CirculationWindows.Kind.CHECKOUT, time));
+            LongAdder adder = new LongAdder();
+            double increment = measure(count, millis, adder::increment);
+            System.out.printf(Locale.ROOT, "%8d %16.1f %16.1f%n", count, record, increment);
+        }
+    }
+
+    private static boolean check() {
+        CirculationWindows windows = new CirculationWindows();
+        long[] times = new long[CHECK_EVENTS];
+        int[] kinds = new int[CHECK_EVENTS];
+        long[] kopecks = new long[CHECK_EVENTS];
+        SplittableRandom random = new SplittableRandom(11);
+        long now = 1_700_000_000_000L;
+        long span = 3 * LibraryEngine.DAY_MILLIS;
+        CirculationWindows.Kind[] values = CirculationWindows.Kind.values();
+        for (int i = 0; i < CHECK_EVENTS; i++) {
+            // шаг от миллисекунды до пары минут: и частые события в одной секунде, и пустые корзины
+            now += random.nextInt(4) == 0 ? random.nextLong(2 * span / CHECK_EVENTS * 4) : random.nextInt(50);
+            times[i] = now;
+            kinds[i] = random.nextInt(values.length);
+            if (values[kinds[i]] == CirculationWindows.Kind.FINE) {
+                kopecks[i] = 1 + random.nextInt(100_000);
+                windows.fine(kopecks[i] / 100.0, now);
+            } else {
+                windows.record(values[kinds[i]], now);
+            }
+            if (i % CHECK_EVERY != 0 && i != CHECK_EVENTS - 1) {
+                continue;
+            }
+            for (CirculationWindows.Window window : CirculationWindows.Window.values()) {
+                long first = (Math.floorDiv(now, window.bucketMillis()) - window.buckets() + 1) * window.bucketMillis();
+                long[] expected = new long[values.length];
+                long fines = 0;
+                for (int j = i; j >= 0 && times[j] >= first; j--) {
+                    expected[kinds[j]]++;
+                    fines += kopecks[j];
+                }
+                for (CirculationWindows.Kind kind : values) {
+                    long actual = windows.count(kind, window, now);
+                    if (actual != expected[kind.ordinal()]) {
+                        System.out.printf("событие %d, окно %s, %s: %d, перебором %d%n", i, window, kind, actual, expected[kind.ordinal()]);
+                        return false;
+                    }
+                }
+                if (Math.round(windows.fineAmount(window, now) * 100) != fines) {
+                    System.out.printf("событие %d, окно %s: штрафы %.2f, перебором %.2f%n", i, window,
+                            windows.fineAmount(window, now), fines / 100.0);
+                    return false;
+                }
+            }
+        }
+        System.out.printf(Locale.ROOT, "сверка: %d событий за %.1f суток совпали с перебором%n", CHECK_EVENTS,
+                (double) (now - times[0]) / LibraryEngine.DAY_MILLIS);
+        return true;
+    }
+
+    // Среднее время одного вызова в нс, каждый из threads потоков крутит operation millis мс
+    private static double measure(int threads, int millis, Runnable operation) throws InterruptedException {
+        long[] calls = new long[threads];
+        Thread[] workers = new Thread[threads];
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            workers[t] = new Thread(() -> {
+                long done = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 1000; i++) {
+                        operation.run();
+                    }
+                    done += 1000;
+                }
+                calls[index] = done;
+            });
+            workers[t].start();
+        }
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += calls[t];
+        }
+        return (double) millis * 1_000_000L * threads / total;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.antipatterns;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Скорость массового импорта: генерирует CSV каталога (с 1% повторов ISBN и 0.1% битых строк)
+// и загружает его в пустую библиотеку при разном числе потоков разбора.
+// Запуск: java -Xmx8g -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.CsvImportBenchmark [rows] [threads...]
+final class CsvImportBenchmark {
+    private static final String[] GENRES = {"Роман", "Фантастика", "Детектив", "Поэзия", "Наука", "История"};
+
+    private CsvImportBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 3_000_000;
+        int[] threads = new int[Math.max(1, args.length - 1)];
+        threads[0] = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            threads[i - 1] = Integer.parseInt(args[i]);
+        }
+        Path directory = Files.createTempDirectory("import-bench");
+        Path csv = directory.resolve("books.csv");
+        generate(csv, rows);
+        System.out.printf("CSV: %d строк, %d МБ%n", rows, Files.size(csv) >> 20);
+        for (int parallelism : threads) {
+            Path data = directory.resolve("data-" + parallelism);
+            System.setProperty("library.data.dir", data.toString());
+            System.setProperty("library.history.dir", data.resolve("history").toString());
+            System.setProperty("library.audit.file", data.resolve("audit.journal").toString());
+            LibraryGodObject library = new LibraryGodObject();
+            CsvBulkImporter.Report report = new CsvBulkImporter(library, parallelism)
+                    .importFile(CsvBulkImporter.Kind.BOOKS, csv, directory.resolve("rejected-" + parallelism + ".csv"));
+            System.out.println("потоков " + parallelism + ": " + report);
+            library.shutdown();
+        }
+    }
+
+    private static void generate(Path csv, int rows) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            out.write("title,author,year,isbn,genre");
+            out.newLine();
+            for (int i = 0; i < rows; i++) {
+                if (i % 1000 == 999) {
+                    out.write("Битая строка без полей");
+                } else {
+                    // каждая сотая строка повторяет ISBN предыдущей
+                    int isbn = i % 100 == 99 ? i - 1 : i;
+                    out.write("\"Книга, том " + i + "\",Автор " + (i % 20_000) + "," + (1900 + i % 125)
+                            + ",978-" + isbn + "," + GENRES[i % GENRES.length]);
+                }
+                out.newLine();
+            }
+        }
+    }
+}
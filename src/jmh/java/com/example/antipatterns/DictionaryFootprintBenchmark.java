@@ -0,0 +1,137 @@
+package com.example.antipatterns;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Автор и жанр: строка у каждой книги (прежние колонки BookStore authors/genres/cacheIds) против кодов словаря.
+// Набор приближен к настоящему каталогу: AUTHORS различных авторов с распределением Ципфа (у немногих авторов
+// много книг), GENRES жанров, и каждая строка - отдельный объект, как после разбора импорта или журнала.
+// Печатает занятую кучу обоих вариантов, затем время отбора книг по автору и по жанру:
+// String.equals по строкам книг против сравнения int-кодов.
+// Запуск: java -Xmx4g -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.DictionaryFootprintBenchmark [книг]
+final class DictionaryFootprintBenchmark {
+    private static final int AUTHORS = 40_000;
+    private static final int GENRES = 300;
+    private static final int FILTER_ROUNDS = 20;
+    private static final String[] FIRST_NAMES = {"Александр", "Анна", "Лев", "Фёдор", "Марина", "Иван", "Ольга",
+            "Михаил", "Татьяна", "Сергей", "Людмила", "Борис"};
+    private static final String[] GENRE_STEMS = {"Роман", "Фантастика", "Детектив", "Поэзия", "Научно-популярная литература",
+            "История", "Детская литература", "Фэнтези", "Биография", "Публицистика"};
+
+    private DictionaryFootprintBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int[] authorOf = zipf(n, AUTHORS, 1);
+        int[] genreOf = zipf(n, GENRES, 2);
+        String session = "SESSION-" + System.nanoTime();
+
+        long before = usedHeap();
+        String[] authors = new String[n];
+        String[] genres = new String[n];
+        String[] cacheIds = new String[n];
+        for (int i = 0; i < n; i++) {
+            authors[i] = authorName(authorOf[i]);
+            genres[i] = genreName(genreOf[i]);
+            cacheIds[i] = session;
+        }
+        long perBook = usedHeap() - before;
+
+        before = usedHeap();
+        StringDictionary authorDictionary = new StringDictionary();
+        StringDictionary genreDictionary = new StringDictionary();
+        int[] authorCodes = new int[n];
+        int[] genreCodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            authorCodes[i] = authorDictionary.encode(authorName(authorOf[i]));
+            genreCodes[i] = genreDictionary.encode(genreName(genreOf[i]));
+        }
+        long encoded = usedHeap() - before;
+
+        System.out.printf(Locale.ROOT, "книг %d, авторов %d, жанров %d%n", n, authorDictionary.size(), genreDictionary.size());
+        System.out.printf(Locale.ROOT, "строка у каждой книги: %8.1f MB (%d B/книга)%n", perBook / 1048576.0, perBook / n);
+        System.out.printf(Locale.ROOT, "коды и словари:        %8.1f MB (%d B/книга), в %.1f раза меньше%n",
+                encoded / 1048576.0, encoded / n, (double) perBook / encoded);
+
+        // автор из середины распределения и самый частый жанр, строки запроса - новые объекты, как из ввода
+        String author = authorName(AUTHORS / 100);
+        String genre = genreName(0);
+        System.out.printf(Locale.ROOT, "%-24s %8s %14s %14s%n", "отбор", "найдено", "equals, мс", "int, мс");
+        filter("автор = " + author, authors, author, authorCodes, authorDictionary.codeOf(author));
+        filter("жанр = " + genre, genres, genre, genreCodes, genreDictionary.codeOf(genre));
+        keep(cacheIds.length);
+    }
+
+    private static void filter(String label, String[] values, String query, int[] codes, int code) {
+        long stringNanos = Long.MAX_VALUE;
+        long codeNanos = Long.MAX_VALUE;
+        int byString = 0;
+        int byCode = 0;
+        for (int round = 0; round < FILTER_ROUNDS; round++) {
+            long start = System.nanoTime();
+            byString = 0;
+            for (String value : values) {
+                if (query.equals(value)) {
+                    byString++;
+                }
+            }
+            stringNanos = Math.min(stringNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            byCode = 0;
+            for (int value : codes) {
+                if (value == code) {
+                    byCode++;
+                }
+            }
+            codeNanos = Math.min(codeNanos, System.nanoTime() - start);
+        }
+        if (byString != byCode) {
+            System.out.printf("расхождение: %s - %d по строкам, %d по кодам%n", label, byString, byCode);
+            System.exit(1);
+        }
+        System.out.printf(Locale.ROOT, "%-24s %8d %14.2f %14.2f%n", label.length() > 24 ? label.substring(0, 24) : label,
+                byCode, stringNanos / 1e6, codeNanos / 1e6);
+    }
+
+    // Номер значения для каждой книги: значение ранга r встречается с частотой ~ 1/(r+1)
+    private static int[] zipf(int n, int distinct, long seed) {
+        double[] cumulative = new double[distinct];
+        double sum = 0;
+        for (int rank = 0; rank < distinct; rank++) {
+            sum += 1.0 / (rank + 1);
+            cumulative[rank] = sum;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            values[i] = Math.min(rank >= 0 ? rank : -rank - 1, distinct - 1);
+        }
+        return values;
+    }
+
+    // Новая строка при каждом вызове, как при разборе входных данных
+    private static String authorName(int author) {
+        return FIRST_NAMES[author % FIRST_NAMES.length] + " Фамилиевич Писателев-" + author;
+    }
+
+    private static String genreName(int genre) {
+        return GENRE_STEMS[genre % GENRE_STEMS.length] + (genre < GENRE_STEMS.length ? "" : " / " + genre);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static volatile int sink;
+
+    private static void keep(int value) {
+        sink = value;
+    }
+}
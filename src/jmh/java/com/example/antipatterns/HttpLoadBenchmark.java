@@ -0,0 +1,170 @@
+package com.example.antipatterns;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Нагрузочный клиент для LibraryHttpServer. Держит N одновременных соединений в замкнутом цикле:
+// каждое соединение отправляет следующий запрос сразу после ответа на предыдущий.
+// Смесь: 60% поиск, 15% выдача, 15% возврат, 5% статистика, 5% отчёт.
+// Печатает запросов/с и задержки p50/p99 по каждому типу запроса (первые WARMUP_SECONDS не учитываются).
+// Без адреса поднимает сервер в этом же процессе на свободном порту с заполненным каталогом и без сохранения на диск.
+// Запуск: java -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.HttpLoadBenchmark [соединений] [секунд] [http://хост:порт]
+final class HttpLoadBenchmark {
+    private static final String PASSWORD = "aboba";
+    private static final int BOOKS = 100_000;
+    private static final int USERS = 10_000;
+    private static final int WARMUP_SECONDS = 2;
+    private static final String[] NAMES = {"search", "borrow", "return", "stats", "report"};
+
+    private final HttpClient client;
+    private final String base;
+    private final int connections;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length];
+    private final LatencyHistogram overall = new LatencyHistogram();
+    // ответы по классу кода: 2xx, 4xx, 5xx, ошибки соединения
+    private final AtomicLongArray outcomes = new AtomicLongArray(4);
+    private final AtomicLong completed = new AtomicLong();
+    private volatile boolean measuring;
+    private volatile boolean running = true;
+
+    private HttpLoadBenchmark(String base, int connections) {
+        this.base = base;
+        this.connections = connections;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        LibraryGodObject library = null;
+        LibraryHttpServer server = null;
+        String base;
+        if (args.length > 2) {
+            base = args[2];
+        } else {
+            Path directory = Files.createTempDirectory("http-bench");
+            System.setProperty("library.persistence.disabled", "true");
+            System.setProperty("library.history.dir", directory.resolve("history").toString());
+            System.setProperty("library.audit.file", directory.resolve("audit.journal").toString());
+            System.setProperty("library.http.port", System.getProperty("library.http.port", "0"));
+            library = new LibraryGodObject();
+            seed(library.engine());
+            server = library.startHttpServer(0);
+            base = "http://127.0.0.1:" + server.port();
+            System.out.println("сервер в процессе: " + base + (server.virtualThreads() ? ", виртуальные потоки" : ", пул потоков")
+                    + ", книг " + BOOKS + ", пользователей " + USERS);
+        }
+        try {
+            new HttpLoadBenchmark(base, connections).run(seconds);
+        } finally {
+            if (server != null) {
+                server.close();
+                library.shutdown();
+            }
+        }
+    }
+
+    private static void seed(LibraryEngine engine) {
+        engine.beginBulkLoad();
+        for (int i = 1; i <= BOOKS; i++) {
+            engine.addImportedBook(i, "Книга " + i, "Автор " + (i % 20_000), 1900 + i % 125, "978-" + i, "Роман");
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= USERS; i++) {
+            engine.addImportedUser(i, "Имя" + i, "Фамилия" + i, 1980, "+7" + i, "u" + i + "@mail", now);
+        }
+        // индексы после массовой загрузки строятся при первом поиске; строим заранее, чтобы не мерить это
+        engine.searchBooks("Книга 1", (books, slot) -> { });
+    }
+
+    private void run(int seconds) throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(connections);
+        for (int i = 0; i < connections; i++) {
+            sendNext(finished);
+        }
+        Thread.sleep(WARMUP_SECONDS * 1000L);
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running = false;
+        finished.await();
+
+        System.out.printf(Locale.ROOT, "соединений %d, %d с: %d запросов, %.0f запросов/с%n",
+                connections, seconds, completed.get(), completed.get() / elapsed);
+        System.out.printf(Locale.ROOT, "ответы: 2xx %d, 4xx %d, 5xx %d, ошибок соединения %d%n",
+                outcomes.get(0), outcomes.get(1), outcomes.get(2), outcomes.get(3));
+        System.out.printf(Locale.ROOT, "%-8s %s%n", "все", overall.summary());
+        for (int i = 0; i < NAMES.length; i++) {
+            System.out.printf(Locale.ROOT, "%-8s %s%n", NAMES[i], histograms[i].summary());
+        }
+    }
+
+    private void sendNext(CountDownLatch finished) {
+        if (!running) {
+            finished.countDown();
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(100);
+        int kind = roll < 60 ? 0 : roll < 75 ? 1 : roll < 90 ? 2 : roll < 95 ? 3 : 4;
+        HttpRequest request = request(kind, random);
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long latency = System.nanoTime() - start;
+            if (measuring) {
+                histograms[kind].record(latency);
+                overall.record(latency);
+                completed.incrementAndGet();
+                outcomes.incrementAndGet(error != null ? 3 : response.statusCode() < 300 ? 0 : response.statusCode() < 500 ? 1 : 2);
+            }
+            sendNext(finished);
+        });
+    }
+
+    private HttpRequest request(int kind, ThreadLocalRandom random) {
+        int bookId = 1 + random.nextInt(BOOKS);
+        switch (kind) {
+            case 0:
+                return get("/books?limit=20&q=" + URLEncoder.encode("Автор " + random.nextInt(20_000), StandardCharsets.UTF_8));
+            case 1:
+                return post("/borrow?book=" + bookId + "&user=" + (1 + random.nextInt(USERS)));
+            case 2:
+                return post("/return?book=" + bookId);
+            case 3:
+                return get("/stats");
+            default:
+                return get("/report");
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+    }
+
+    private HttpRequest post(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .header("Authorization", "Bearer " + PASSWORD)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+}
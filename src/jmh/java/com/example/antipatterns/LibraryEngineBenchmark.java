@@ -0,0 +1,120 @@
+package com.example.antipatterns;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Горячие пути LibraryEngine без консоли: вместо печати результаты уходят в Blackhole.
+//   search*        - поиск как в findBook (n-граммный индекс + сортировка по названию)
+//   borrowReturn   - выдача и возврат одной книги (журнал предзаписи не открыт, меряется только память)
+//   listByTitle    - обход всех книг в порядке названия, как в printAllBooks
+//   findUser       - поиск пользователя по id
+//   statistics*    - чтение счётчиков и полный пересчёт статистики (самопроверка)
+// size - число книг; пользователей в десять раз меньше, как в типичной библиотеке.
+// Запуск: ./gradlew jmh -PjmhArgs="LibraryEngineBenchmark -p size=1000,100000"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class LibraryEngineBenchmark {
+    private static final int AUTHORS = 5_000;
+    // случайные id заготовлены заранее, чтобы не мерить генератор
+    private static final int IDS = 1 << 14;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private LibraryEngine engine;
+    private LibraryEngine.BookVisitor sink;
+    private int[] bookIds;
+    private int[] userIds;
+    private String[] selectiveQueries;
+    private int cursor;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        engine = new LibraryEngine("JMH", 0.5, message -> { });
+        int users = Math.max(size / 10, 10);
+        engine.beginBulkLoad();
+        int firstBook = engine.reserveBookIds(size);
+        for (int i = 0; i < size; i++) {
+            engine.addImportedBook(firstBook + i, "Книга " + i, "Автор " + (i % AUTHORS), 1900 + i % 125, "978-" + i,
+                    i % 3 == 0 ? "Роман" : "Наука");
+        }
+        int firstUser = engine.reserveUserIds(users);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < users; i++) {
+            engine.addImportedUser(firstUser + i, "Имя" + i, "Фамилия" + i, 1980, "+7" + i, "u" + i + "@mail", now);
+        }
+        sink = (books, slot) -> blackhole.consume(books.id(slot));
+        // индексы после массовой загрузки строятся при первом поиске
+        engine.searchBooks("Книга", sink);
+
+        SplittableRandom random = new SplittableRandom(42);
+        bookIds = new int[IDS];
+        userIds = new int[IDS];
+        selectiveQueries = new String[IDS];
+        for (int i = 0; i < IDS; i++) {
+            bookIds[i] = firstBook + random.nextInt(size);
+            userIds[i] = firstUser + random.nextInt(users);
+            selectiveQueries[i] = "Автор " + random.nextInt(AUTHORS);
+        }
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (IDS - 1);
+    }
+
+    @Benchmark
+    public int searchSelective() {
+        return engine.searchBooks(selectiveQueries[next()], sink);
+    }
+
+    // Запрос, под который подходит каждая третья книга
+    @Benchmark
+    public int searchBroad() {
+        return engine.searchBooks("Роман", sink);
+    }
+
+    @Benchmark
+    public LibraryEngine.Receipt borrowReturn() {
+        int i = next();
+        engine.borrow(bookIds[i], userIds[i]);
+        return engine.returnBook(bookIds[i]);
+    }
+
+    @Benchmark
+    public void listByTitle() {
+        engine.forEachBookByTitle(sink);
+    }
+
+    @Benchmark
+    public Object findUser() {
+        return engine.findUser(userIds[next()]);
+    }
+
+    @Benchmark
+    public int statisticsCounters() {
+        LibraryStatistics stats = engine.statistics();
+        return stats.totalBooks() + stats.availableBooks() + stats.activeLoans() + stats.totalUsers();
+    }
+
+    @Benchmark
+    public void statisticsRecount() {
+        engine.verifyStatistics();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.antipatterns;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+// Задержка вывода каталога в порядке названий: обход OrderedIdIndex против сортировки при каждом выводе.
+// Вывод строк идёт в StringBuilder, чтобы измерять движок, а не консоль.
+// Запуск: java -Xmx4g -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.ListingBenchmark 100000 1000000
+final class ListingBenchmark {
+    private static final int ROUNDS = 5;
+
+    private ListingBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[] {100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf(Locale.ROOT, "%10s %18s %18s%n", "books", "index walk, ms", "sort per call, ms");
+        for (int n : sizes) {
+            BookStore store = new BookStore();
+            OrderedIdIndex<String> titleIndex = new OrderedIdIndex<>();
+            Random random = new Random(n);
+            for (int i = 1; i <= n; i++) {
+                String title = "Книга " + Integer.toHexString(random.nextInt());
+                int slot = store.add(i, title, "Автор " + (i % 1000), 1900 + i % 120, "isbn-" + i, "Роман", 4.2);
+                titleIndex.add(store.title(slot), i);
+            }
+            long walk = Long.MAX_VALUE;
+            long sort = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                walk = Math.min(walk, timeIndexWalk(store, titleIndex));
+                sort = Math.min(sort, timeSortPerCall(store));
+            }
+            System.out.printf(Locale.ROOT, "%10d %18.1f %18.1f%n", n, walk / 1e6, sort / 1e6);
+        }
+    }
+
+    private static long timeIndexWalk(BookStore store, OrderedIdIndex<String> titleIndex) {
+        StringBuilder out = new StringBuilder();
+        long start = System.nanoTime();
+        titleIndex.forEach(id -> render(store, store.indexOf(id), out));
+        long elapsed = System.nanoTime() - start;
+        consume(out);
+        return elapsed;
+    }
+
+    private static long timeSortPerCall(BookStore store) {
+        StringBuilder out = new StringBuilder();
+        long start = System.nanoTime();
+        Integer[] order = new Integer[store.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> store.title(a).compareTo(store.title(b)));
+        for (int slot : order) {
+            render(store, slot, out);
+        }
+        long elapsed = System.nanoTime() - start;
+        consume(out);
+        return elapsed;
+    }
+
+    private static void render(BookStore store, int slot, StringBuilder out) {
+        if (out.length() > 1 << 20) {
+            out.setLength(0);
+        }
+        out.append('[').append(store.id(slot)).append("] ").append(store.title(slot))
+                .append(" - ").append(store.author(slot)).append(" (").append(store.year(slot)).append(")\n");
+    }
+
+    private static volatile int sink;
+
+    private static void consume(StringBuilder out) {
+        sink = out.length();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.antipatterns;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+
+// Вывод всего каталога и всех пользователей в файл: прежний путь (formatBook/formatUser и println
+// в PrintStream с автосбросом, как System.out в main) против ListingWriter (exportBooks/exportUsers).
+// Файлы обоих путей сверяются побайтно, расхождение - код выхода 1. В конце - время одной страницы
+// из середины каталога.
+// Запуск: java -Xmx4g -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.ListingExportBenchmark [книг] [пользователей]
+final class ListingExportBenchmark {
+    private static final String[] GENRES = {"Роман", "Фантастика", "Детектив", "Поэзия", "Наука", "История"};
+    private static final int PAGE = 50;
+
+    private ListingExportBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int userCount = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        Path directory = Files.createTempDirectory("listing-bench");
+        System.setProperty("library.data.dir", directory.resolve("data").toString());
+        System.setProperty("library.history.dir", directory.resolve("history").toString());
+        System.setProperty("library.audit.file", directory.resolve("audit.journal").toString());
+        LibraryGodObject library = new LibraryGodObject();
+        LibraryEngine engine = library.engine();
+        engine.beginBulkLoad();
+        int firstBook = engine.reserveBookIds(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            engine.addImportedBook(firstBook + i, "Книга «" + Integer.toHexString(i * 0x9E3779B9) + "»", "Автор " + (i % 20_000),
+                    1900 + i % 125, "978-" + i, GENRES[i % GENRES.length]);
+        }
+        int firstUser = engine.reserveUserIds(userCount);
+        for (int i = 0; i < userCount; i++) {
+            engine.addImportedUser(firstUser + i, "Имя" + i, "Фамилия" + i, 1980, "+7" + i, "u" + i + "@mail", 0);
+        }
+        // первый обход строит индекс названий, в замер не входит
+        engine.forEachBookByTitle(0, 1, (books, slot) -> { });
+
+        boolean same = true;
+        try {
+            System.out.printf(Locale.ROOT, "%-14s %10s %16s %16s %10s%n", "список", "МБ", "println, с", "ListingWriter, с", "ускорение");
+            Path legacyBooks = directory.resolve("books-println.txt");
+            Path streamedBooks = directory.resolve("books-writer.txt");
+            long legacy = timeLegacy(legacyBooks, out -> engine.forEachBookByTitle((books, slot) -> out.println(library.formatBook(books, slot))));
+            long streamed = time(() -> library.exportBooks(streamedBooks));
+            same &= report("книги", legacyBooks, streamedBooks, legacy, streamed);
+
+            Path legacyUsers = directory.resolve("users-println.txt");
+            Path streamedUsers = directory.resolve("users-writer.txt");
+            legacy = timeLegacy(legacyUsers, out -> engine.forEachUser(user -> out.println(library.formatUser(user))));
+            streamed = time(() -> library.exportUsers(streamedUsers));
+            same &= report("пользователи", legacyUsers, streamedUsers, legacy, streamed);
+
+            OutputStream discard = OutputStream.nullOutputStream();
+            long page = time(() -> {
+                try (ListingWriter out = new ListingWriter(discard, ListingWriter.DEFAULT_BUFFER_BYTES, false)) {
+                    library.listBooks(out, bookCount / 2, PAGE);
+                }
+                return PAGE;
+            });
+            System.out.printf(Locale.ROOT, "страница %d книг с позиции %d: %.2f мс%n", PAGE, bookCount / 2, page / 1e6);
+        } finally {
+            library.shutdown();
+            // выгрузки и данные библиотеки - сотни мегабайт, временный каталог удаляется целиком
+            try (var files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+        if (!same) {
+            System.exit(1);
+        }
+    }
+
+    private interface Listing {
+        void write(PrintStream out);
+    }
+
+    private interface Export {
+        int run() throws IOException;
+    }
+
+    private static long timeLegacy(Path file, Listing listing) throws IOException {
+        long start = System.nanoTime();
+        // как System.out, обёрнутый в main: PrintStream с автосбросом поверх буферизованного потока
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file.toFile())), true, "UTF-8")) {
+            listing.write(out);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long time(Export export) throws IOException {
+        long start = System.nanoTime();
+        export.run();
+        return System.nanoTime() - start;
+    }
+
+    private static boolean report(String label, Path legacy, Path streamed, long legacyNanos, long streamedNanos) throws IOException {
+        System.out.printf(Locale.ROOT, "%-14s %10.1f %16.2f %16.2f %9.1fx%n", label, Files.size(streamed) / 1048576.0,
+                legacyNanos / 1e9, streamedNanos / 1e9, (double) legacyNanos / streamedNanos);
+        if (Files.mismatch(legacy, streamed) != -1) {
+            System.out.println("файлы не совпадают: " + legacy + " и " + streamed);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.antipatterns;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Цена замеров OperationMetrics: одна и та же смесь операций (поиск, выдача + возврат, поиск пользователя)
+// прогоняется на одном движке парами раундов с включёнными и выключенными метриками. Накладные расходы -
+// медиана отношений внутри пар: соседние раунды одинаково задевает дрейф JIT, сборщика мусора и соседей по машине.
+// Код выхода 1, если замеры дороже MAX_OVERHEAD_PERCENT.
+// Запуск: java -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.MetricsOverheadBenchmark [раундов] [операций в раунде]
+final class MetricsOverheadBenchmark {
+    private static final int BOOKS = 100_000;
+    private static final int USERS = 10_000;
+    private static final int AUTHORS = 5_000;
+    private static final double MAX_OVERHEAD_PERCENT = 1.0;
+    private static final int WARMUP_ROUNDS = 50;
+    // годы найденных книг и размеры найденных пользователей за все раунды; печатается в конце,
+    // поэтому JIT не может выбросить работу посетителей как неиспользуемую
+    private static long checksum;
+
+    private MetricsOverheadBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        // короткие раунды: чем ближе по времени раунды пары, тем меньше между ними шума
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 501;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        LibraryEngine engine = new LibraryEngine("METRICS", 0.5, System.out::println);
+        engine.beginBulkLoad();
+        int firstBook = engine.reserveBookIds(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            engine.addImportedBook(firstBook + i, "Книга " + i, "Автор " + (i % AUTHORS), 1900 + i % 125, "978-" + i, "Роман");
+        }
+        int firstUser = engine.reserveUserIds(USERS);
+        for (int i = 0; i < USERS; i++) {
+            engine.addImportedUser(firstUser + i, "Имя" + i, "Фамилия" + i, 1980, "+7" + i, "u" + i + "@mail", 0);
+        }
+        OperationMetrics metrics = engine.metrics();
+
+        // прогрев обоих режимов
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            metrics.setEnabled(true);
+            round(engine, operations, firstBook, firstUser, i);
+            metrics.setEnabled(false);
+            round(engine, operations, firstBook, firstUser, i);
+        }
+        long[] on = new long[rounds];
+        long[] off = new long[rounds];
+        double[] ratios = new double[rounds];
+        for (int i = 0; i < rounds; i++) {
+            // порядок внутри пары тоже чередуем
+            boolean onFirst = i % 2 == 0;
+            metrics.setEnabled(onFirst);
+            long first = round(engine, operations, firstBook, firstUser, i);
+            metrics.setEnabled(!onFirst);
+            long second = round(engine, operations, firstBook, firstUser, i);
+            on[i] = onFirst ? first : second;
+            off[i] = onFirst ? second : first;
+            ratios[i] = (double) on[i] / off[i];
+        }
+        metrics.setEnabled(true);
+        Arrays.sort(on);
+        Arrays.sort(off);
+        Arrays.sort(ratios);
+        double onMedian = on[rounds / 2];
+        double offMedian = off[rounds / 2];
+        double overhead = (ratios[rounds / 2] - 1) * 100;
+        System.out.printf(Locale.ROOT, "%d раундов по %d операций: без метрик %.1f нс/оп, с метриками %.1f нс/оп, накладные %.2f%%%n",
+                rounds, operations, offMedian / operations, onMedian / operations, overhead);
+        System.out.println("контрольная сумма: " + checksum);
+        System.out.print(metrics.dump());
+        if (overhead > MAX_OVERHEAD_PERCENT) {
+            System.out.printf(Locale.ROOT, "накладные расходы выше %.1f%%%n", MAX_OVERHEAD_PERCENT);
+            System.exit(1);
+        }
+    }
+
+    // Одна и та же последовательность операций для обоих режимов (генератор с тем же seed)
+    private static long round(LibraryEngine engine, int operations, int firstBook, int firstUser, int seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] sink = new int[1];
+        LibraryEngine.BookVisitor visitor = (books, slot) -> sink[0] += books.year(slot);
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            int roll = random.nextInt(10);
+            if (roll < 2) {
+                engine.searchBooks("Автор " + random.nextInt(AUTHORS), visitor);
+            } else if (roll < 7) {
+                int bookId = firstBook + random.nextInt(BOOKS);
+                engine.borrow(bookId, firstUser + random.nextInt(USERS));
+                engine.returnBook(bookId);
+            } else {
+                sink[0] += engine.findUser(firstUser + random.nextInt(USERS)).size();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        checksum += sink[0];
+        return elapsed;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.antipatterns;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Время восстановления после перезапуска: загрузка снимка и проигрывание хвоста журнала.
+// Запуск: java -Xmx8g -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.RecoveryBenchmark [books] [users] [tail]
+final class RecoveryBenchmark {
+    private static final String[] GENRES = {"Роман", "Фантастика", "Детектив", "Поэзия", "Наука", "История"};
+
+    private RecoveryBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int tail = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+        Path directory = Files.createTempDirectory("recovery-bench");
+        System.setProperty("library.data.dir", directory.toString());
+        System.setProperty("library.history.dir", directory.resolve("history").toString());
+        System.setProperty("library.audit.file", directory.resolve("audit.journal").toString());
+        // снимок только на выходе, чтобы хвост журнала остался для проигрывания
+        System.setProperty("library.snapshot.every", String.valueOf(Integer.MAX_VALUE));
+
+        long start = System.nanoTime();
+        LibraryGodObject library = new LibraryGodObject();
+        LibraryEngine engine = library.engine();
+        engine.beginBulkLoad();
+        for (int i = 0; i < books; i++) {
+            engine.addImportedBook(i + 1, "Книга " + i, "Автор " + (i % 20_000), 1900 + i % 125, "978-" + i, GENRES[i % GENRES.length]);
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < users; i++) {
+            engine.addImportedUser(i + 1, "Имя" + i, "Фамилия" + i, 1950 + i % 60, "+7" + i, "u" + i + "@mail", now);
+        }
+        for (int i = 0; i < users; i++) {
+            engine.borrow(i * (books / users) + 1, i + 1);
+        }
+        library.shutdown();
+        System.out.printf(Locale.ROOT, "подготовка: %d книг, %d пользователей, %d выдач за %.1f с%n",
+                books, users, users, (System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        library = new LibraryGodObject();
+        engine = library.engine();
+        System.out.printf(Locale.ROOT, "восстановление из снимка: %.2f с%n", (System.nanoTime() - start) / 1e9);
+
+        for (int i = 0; i < tail; i++) {
+            switch (i % 3) {
+                case 0: engine.returnBook(i / 3 * (books / users) + 1); break;
+                case 1: engine.addBook("Новая " + i, "Автор", 2024, "isbn-" + i, "Роман"); break;
+                default: engine.updateUser(i % users + 1, "+7000" + i, null); break;
+            }
+        }
+        // без shutdown(): имитируем падение, изменения остаются только в журнале
+        start = System.nanoTime();
+        new LibraryGodObject();
+        System.out.printf(Locale.ROOT, "восстановление из снимка + %d записей журнала: %.2f с%n",
+                tail, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.antipatterns;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Полный отчёт (LibraryReport) на длинной истории выдач: время прохода при разном числе потоков.
+// История набирается через borrow/returnBook движка с ускоренными часами: REPORT_OPEN_LOANS книг всегда на руках,
+// на каждом шаге возвращается случайная из них и выдаётся следующая, поэтому сроки разные и часть выдач просрочена.
+// Данные пишутся в каталог; если он передан и уже есть, история не набирается заново, а загружается из снимка.
+// Проверки: выдач в отчёте столько же, сколько удачных borrow, и JSON разрезов одинаковый при любом числе потоков
+// (первая строка со временем не сравнивается); расхождение - код выхода 1.
+// Запуск: java -Xmx4g -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.ReportBenchmark [выдач] [каталог] [потоков...]
+final class ReportBenchmark {
+    private static final int BOOKS = 200_000;
+    private static final int USERS = 100_000;
+    private static final int REPORT_OPEN_LOANS = 20_000;
+    private static final int ROUNDS = 3;
+    private static final int NONE = -1;
+    private static final String[] GENRES = {"Роман", "Фантастика", "Детектив", "Поэзия", "Наука", "История"};
+
+    private ReportBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long loans = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000;
+        boolean temporary = args.length < 2;
+        Path directory = temporary ? Files.createTempDirectory("report-bench") : Paths.get(args[1]);
+        int[] threads;
+        if (args.length > 2) {
+            threads = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                threads[i - 2] = Integer.parseInt(args[i]);
+            }
+        } else {
+            int cores = Runtime.getRuntime().availableProcessors();
+            threads = cores >= 8 ? new int[] {1, 2, 4, 8, cores} : cores >= 2 ? new int[] {1, 2, cores} : new int[] {1, 2};
+        }
+        long[] now = {System.currentTimeMillis()};
+        LibraryEngine engine = new LibraryEngine("REPORT", 0.5, System.out::println, () -> now[0]);
+        boolean ok = true;
+        try {
+            boolean existing = Files.exists(directory.resolve(LibraryEngine.LOAN_ARCHIVE_FILE));
+            engine.open(directory, false, Integer.MAX_VALUE);
+            long expected;
+            if (existing) {
+                System.out.println("история загружена из " + directory);
+                expected = -1;
+            } else {
+                long start = System.nanoTime();
+                expected = generate(engine, loans, now);
+                engine.snapshot();
+                System.out.printf(Locale.ROOT, "история: %d выдач за %.1f с%n", expected, (System.nanoTime() - start) / 1e9);
+            }
+            System.out.printf(Locale.ROOT, "%8s %12s %12s %14s %10s%n", "потоков", "выдач", "мс", "выдач/с", "ускорение");
+            double single = 0;
+            byte[] reference = null;
+            Path json = Files.createTempFile("report-bench", ".json");
+            try {
+                for (int count : threads) {
+                    long best = Long.MAX_VALUE;
+                    LibraryReport report = null;
+                    for (int round = 0; round < ROUNDS; round++) {
+                        report = engine.report(count);
+                        best = Math.min(best, report.elapsedNanos());
+                    }
+                    if (single == 0) {
+                        single = best;
+                    }
+                    System.out.printf(Locale.ROOT, "%8d %12d %12.1f %14.0f %9.2fx%n", count, report.loans(), best / 1e6,
+                            report.loans() / (best / 1e9), single / best);
+                    if (expected >= 0 && report.loans() != expected) {
+                        System.out.println("выдач в отчёте " + report.loans() + ", а удачных borrow " + expected);
+                        ok = false;
+                    }
+                    report.writeJson(json);
+                    byte[] breakdowns = withoutFirstLine(Files.readAllBytes(json));
+                    if (reference == null) {
+                        reference = breakdowns;
+                    } else if (!Arrays.equals(reference, breakdowns)) {
+                        System.out.println("разрезы при " + count + " потоках отличаются от однопоточных");
+                        ok = false;
+                    }
+                }
+            } finally {
+                Files.delete(json);
+            }
+        } finally {
+            engine.close();
+            if (temporary) {
+                try (var files = Files.walk(directory)) {
+                    for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    // Возвращает число удачных выдач
+    private static long generate(LibraryEngine engine, long loans, long[] now) {
+        engine.beginBulkLoad();
+        int firstBook = engine.reserveBookIds(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            engine.addImportedBook(firstBook + i, "Книга " + i, "Автор " + (i % 5_000), 1850 + i % 175, "978-" + i,
+                    GENRES[i % GENRES.length]);
+        }
+        int firstUser = engine.reserveUserIds(USERS);
+        for (int i = 0; i < USERS; i++) {
+            engine.addImportedUser(firstUser + i, "Имя" + i, "Фамилия" + i, 1980, "+7" + i, "u" + i + "@mail", 0);
+        }
+        engine.snapshot();
+        // в среднем книга на руках REPORT_OPEN_LOANS шагов, это около шести дней
+        long step = 6 * LibraryEngine.DAY_MILLIS / REPORT_OPEN_LOANS;
+        SplittableRandom random = new SplittableRandom(7);
+        int[] open = new int[REPORT_OPEN_LOANS];
+        Arrays.fill(open, NONE);
+        int opened = 0;
+        int nextBook = 0;
+        long borrowed = 0;
+        while (borrowed < loans) {
+            now[0] += step;
+            int book = firstBook + nextBook;
+            nextBook = (nextBook + 1) % BOOKS;
+            int slot = opened < open.length ? opened++ : random.nextInt(open.length);
+            if (open[slot] != NONE) {
+                engine.returnBook(open[slot]);
+                open[slot] = NONE;
+            }
+            try {
+                engine.borrow(book, firstUser + random.nextInt(USERS));
+            } catch (IllegalArgumentException e) {
+                // книга ещё на руках или читатель упёрся в лимит: место остаётся пустым
+                continue;
+            }
+            open[slot] = book;
+            borrowed++;
+        }
+        return borrowed;
+    }
+
+    private static byte[] withoutFirstLine(byte[] json) {
+        int start = 0;
+        while (start < json.length && json[start] != '\n') {
+            start++;
+        }
+        return Arrays.copyOfRange(json, start, json.length);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.antipatterns;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Кэш результатов поиска книг: одни и те же популярные запросы (закон Ципфа по POPULAR_QUERIES запросам)
+// на движке с кэшем и без: сначала только поиски, затем вперемешку с правками книг и выдачами,
+// которые сбрасывают записи кэша. Запросы избирательные (автор или название - 1..20 книг), чтобы время
+// поиска не тонуло в обходе результатов. Печатает среднее время поиска в обоих режимах и статистику кэша. В конце результаты всех запросов
+// на обоих движках сверяются: расхождение (устаревшая запись кэша) - код выхода 1.
+// Запуск: java -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.SearchCacheBenchmark [поисков] [книг]
+final class SearchCacheBenchmark {
+    private static final int AUTHORS = 5_000;
+    private static final int POPULAR_QUERIES = 500;
+    // одна правка книги на столько поисков
+    private static final int SEARCHES_PER_WRITE = 100;
+    // сумма годов найденных книг по всем замерам; печатается в конце, поэтому JIT не может выбросить
+    // работу посетителей как неиспользуемую
+    private static long checksum;
+
+    private SearchCacheBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int searches = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int books = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        LibraryEngine cached = newEngine(books, LibraryEngine.DEFAULT_SEARCH_CACHE_ENTRIES);
+        LibraryEngine uncached = newEngine(books, 0);
+        String[] queries = new String[POPULAR_QUERIES];
+        for (int i = 0; i < queries.length; i++) {
+            // четырёхзначный номер автора и пятизначный номер книги не входят в другие номера
+            queries[i] = i % 2 == 0 ? "автор " + (1000 + i * 7 % (AUTHORS - 1000)) : "Книга " + (10_000 + i * 131 % (books - 10_000));
+        }
+        double[] zipf = new double[queries.length];
+        double sum = 0;
+        for (int rank = 0; rank < zipf.length; rank++) {
+            sum += 1.0 / (rank + 1);
+            zipf[rank] = sum;
+        }
+
+        // прогрев обоих путей
+        run(cached, queries, zipf, searches / 10, books, 1, true);
+        run(uncached, queries, zipf, searches / 10, books, 1, true);
+        cached.metrics().reset();
+        System.out.printf(Locale.ROOT, "%d поисков по %d книгам%n", searches, books);
+        long withCache = run(cached, queries, zipf, searches, books, 2, false);
+        long withoutCache = run(uncached, queries, zipf, searches, books, 2, false);
+        System.out.printf(Locale.ROOT, "только поиски:              без кэша %8.0f нс/поиск, с кэшем %8.0f нс/поиск%n",
+                (double) withoutCache / searches, (double) withCache / searches);
+        System.out.printf(Locale.ROOT, "один запрос \"%s\":     без кэша %8.0f нс/поиск, с кэшем %8.0f нс/поиск%n",
+                queries[0], (double) repeat(uncached, queries[0], searches) / searches, (double) repeat(cached, queries[0], searches) / searches);
+        withCache = run(cached, queries, zipf, searches, books, 3, true);
+        withoutCache = run(uncached, queries, zipf, searches, books, 3, true);
+        System.out.printf(Locale.ROOT, "правка на каждые %d поисков: без кэша %8.0f нс/оп.,   с кэшем %8.0f нс/оп.%n",
+                SEARCHES_PER_WRITE, (double) withoutCache / searches, (double) withCache / searches);
+        System.out.println("контрольная сумма: " + checksum);
+        String dump = cached.metrics().dump();
+        for (String line : dump.split("\n")) {
+            if (line.startsWith("cache bookSearch")) {
+                System.out.println(line);
+            }
+        }
+
+        if (!sameResults(cached, uncached, queries)) {
+            System.exit(1);
+        }
+    }
+
+    private static LibraryEngine newEngine(int books, int cacheEntries) {
+        LibraryEngine engine = new LibraryEngine("CACHE", 0.5, System.out::println);
+        engine.setSearchCacheCapacity(cacheEntries);
+        engine.beginBulkLoad();
+        int first = engine.reserveBookIds(books);
+        for (int i = 0; i < books; i++) {
+            engine.addImportedBook(first + i, "Книга " + i, "Автор " + (i % AUTHORS), 1900 + i % 125, "978-" + i, "Роман");
+        }
+        engine.addUser("Читатель", "Кэша", 1990, "+7", "cache@mail");
+        return engine;
+    }
+
+    // Поиски и правки по одному и тому же seed; возвращает время в наносекундах.
+    // С writes раз в SEARCHES_PER_WRITE поисков меняется автор случайной книги или книга выдаётся и возвращается
+    private static long run(LibraryEngine engine, String[] queries, double[] zipf, int searches, int books, long seed,
+                            boolean writes) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] sink = new int[1];
+        LibraryEngine.BookVisitor visitor = (store, slot) -> sink[0] += store.year(slot);
+        long start = System.nanoTime();
+        for (int i = 0; i < searches; i++) {
+            if (writes && i % SEARCHES_PER_WRITE == 0) {
+                int bookId = 1 + random.nextInt(books);
+                if (random.nextBoolean()) {
+                    engine.updateBook(bookId, null, "Автор " + random.nextInt(AUTHORS), null);
+                } else {
+                    engine.borrow(bookId, 1);
+                    engine.returnBook(bookId);
+                }
+            }
+            double roll = random.nextDouble() * zipf[zipf.length - 1];
+            int rank = Arrays.binarySearch(zipf, roll);
+            engine.searchBooks(queries[rank >= 0 ? rank : -rank - 1], visitor);
+        }
+        long elapsed = System.nanoTime() - start;
+        checksum += sink[0];
+        return elapsed;
+    }
+
+    private static long repeat(LibraryEngine engine, String query, int searches) {
+        int[] sink = new int[1];
+        LibraryEngine.BookVisitor visitor = (store, slot) -> sink[0] += store.year(slot);
+        long start = System.nanoTime();
+        for (int i = 0; i < searches; i++) {
+            engine.searchBooks(query, visitor);
+        }
+        long elapsed = System.nanoTime() - start;
+        checksum += sink[0];
+        return elapsed;
+    }
+
+    private static boolean sameResults(LibraryEngine cached, LibraryEngine uncached, String[] queries) {
+        for (String query : queries) {
+            StringBuilder expected = new StringBuilder();
+            StringBuilder actual = new StringBuilder();
+            uncached.searchBooks(query, (store, slot) -> expected.append(store.id(slot)).append(store.author(slot)).append(';'));
+            cached.searchBooks(query, (store, slot) -> actual.append(store.id(slot)).append(store.author(slot)).append(';'));
+            if (!expected.toString().equals(actual.toString())) {
+                System.out.println("устаревший результат в кэше для \"" + query + "\"");
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.antipatterns;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Секционированная библиотека (ShardedLibrary) на 1, 2, 4... процессах-секциях: одинаковая загрузка через
+// координатор, затем время поиска по id (один запрос владельцу), поиска по подстроке и статистики (опрос всех секций).
+// Проверка: найденное и статистика совпадают при любом числе секций; расхождение - код выхода 1.
+// Каталоги секций создаются во временном каталоге и удаляются в конце.
+// Запуск: java -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.ShardBenchmark [книг] [секций...]
+final class ShardBenchmark {
+    private static final int LOOKUPS = 5_000;
+    private static final int ROUNDS = 20;
+    private static final String[] GENRES = {"Роман", "Фантастика", "Детектив", "Поэзия", "Наука", "История"};
+    private static final String[] QUERIES = {"Автор 7", "Книга 12", "Фамилия3"};
+
+    private ShardBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int[] counts = args.length > 1 ? new int[args.length - 1] : new int[] {1, 2, 4};
+        for (int i = 1; i < args.length; i++) {
+            counts[i - 1] = Integer.parseInt(args[i]);
+        }
+        int users = books / 2;
+        Path directory = Files.createTempDirectory("shard-bench");
+        boolean ok = true;
+        try {
+            System.out.printf(Locale.ROOT, "%8s %14s %14s %12s %14s%n", "секций", "загрузка, с", "по id, мкс", "поиск, мс",
+                    "статистика, мс");
+            String reference = null;
+            for (int count : counts) {
+                try (ShardedLibrary library = ShardedLibrary.launch(count, directory.resolve("n" + count))) {
+                    library.login("aboba");
+                    long start = System.nanoTime();
+                    for (int i = 0; i < books; i++) {
+                        library.addBook("Книга " + i, "Автор " + (i % 500), 1850 + i % 175, "978-" + i,
+                                GENRES[i % GENRES.length]);
+                    }
+                    for (int i = 0; i < users; i++) {
+                        library.addUser("Имя" + i, "Фамилия" + i, 1980, "+7" + i, "u" + i + "@mail");
+                    }
+                    double load = (System.nanoTime() - start) / 1e9;
+                    SplittableRandom random = new SplittableRandom(5);
+                    start = System.nanoTime();
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        library.book(1 + random.nextInt(books));
+                    }
+                    double lookup = (System.nanoTime() - start) / 1e3 / LOOKUPS;
+                    StringBuilder result = new StringBuilder();
+                    start = System.nanoTime();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        result.setLength(0);
+                        for (String query : QUERIES) {
+                            List<String> found = query.startsWith("Фамилия") ? library.findUsers(query) : library.findBooks(query);
+                            result.append(query).append(": ").append(found).append('\n');
+                        }
+                    }
+                    double find = (System.nanoTime() - start) / 1e6 / ROUNDS / QUERIES.length;
+                    LibraryStatistics stats = null;
+                    start = System.nanoTime();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        stats = library.statistics();
+                    }
+                    double statistics = (System.nanoTime() - start) / 1e6 / ROUNDS;
+                    result.append(String.format(Locale.ROOT, "books=%d available=%d users=%d", stats.totalBooks(),
+                            stats.availableBooks(), stats.totalUsers()));
+                    System.out.printf(Locale.ROOT, "%8d %14.2f %14.1f %12.2f %14.2f%n", count, load, lookup, find, statistics);
+                    if (stats.totalBooks() != books || stats.totalUsers() != users) {
+                        System.out.println("в статистике " + stats.totalBooks() + " книг и " + stats.totalUsers()
+                                + " читателей, а добавлено " + books + " и " + users);
+                        ok = false;
+                    }
+                    if (reference == null) {
+                        reference = result.toString();
+                    } else if (!reference.equals(result.toString())) {
+                        System.out.println("результаты при " + count + " секциях отличаются от первого замера");
+                        ok = false;
+                    }
+                }
+            }
+        } finally {
+            try (var files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.antipatterns;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+// Поиск пользователей: прежний проход по всем пользователям с 12 способами сравнения (копия старого
+// LibraryAntiPatterns.searchUsers) против n-граммного индекса LibraryEngine.searchUsers.
+// На каждый запрос - время и байты, выделенные потоком (com.sun.management.ThreadMXBean), лучшее из ROUNDS.
+// Результаты обоих способов сверяются поэлементно, при расхождении код выхода 1.
+// Запуск: java -Xmx2g -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.UserSearchBenchmark [пользователей]
+final class UserSearchBenchmark {
+    private static final int ROUNDS = 5;
+    private static final String[] NAMES = {"Анна", "Иван", "Ольга", "Пётр", "Мария", "Сергей", "Елена", "Алексей",
+            "Наталья", "Дмитрий", "Татьяна", "Андрей", "Ирина", "Михаил", "Светлана", "Николай", "John", "Maria", "Ali", "Yuki"};
+
+    private UserSearchBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        LibraryEngine engine = new LibraryEngine("USERS", 0.5, System.out::println);
+        engine.beginBulkLoad();
+        int firstUser = engine.reserveUserIds(userCount);
+        for (int i = 0; i < userCount; i++) {
+            engine.addImportedUser(firstUser + i, NAMES[i % NAMES.length], "Фамилия" + i, 1980, "+7" + i, "u" + i + "@mail", 0);
+        }
+        int probe = userCount / 3;
+        String[] queries = {
+                NAMES[probe % NAMES.length],
+                NAMES[probe % NAMES.length].toLowerCase(Locale.ROOT),
+                "ФАМИЛИЯ" + probe,
+                "амилия" + probe / 10,
+                NAMES[probe % NAMES.length] + " Фамилия" + probe,
+                "фамилия" + probe + " " + NAMES[probe % NAMES.length].toLowerCase(Locale.ROOT),
+                "ri",
+                "Зоя",
+        };
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        System.out.printf(Locale.ROOT, "пользователей %d%n%-28s %8s %12s %14s %12s %14s%n", userCount,
+                "query", "found", "scan, ms", "scan, bytes", "index, ms", "index, bytes");
+        boolean mismatch = false;
+        // первый поиск строит индекс
+        long buildStart = System.nanoTime();
+        engine.searchUsers("", user -> { });
+        System.out.printf(Locale.ROOT, "построение индекса %.1f мс%n", (System.nanoTime() - buildStart) / 1e6);
+        for (String query : queries) {
+            long scanNanos = Long.MAX_VALUE;
+            long scanBytes = Long.MAX_VALUE;
+            long indexNanos = Long.MAX_VALUE;
+            long indexBytes = Long.MAX_VALUE;
+            ArrayList<HashMap<String, Object>> scanned = null;
+            ArrayList<HashMap<String, Object>> indexed = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                long bytes = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                scanned = legacySearch(engine, query);
+                scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+                scanBytes = Math.min(scanBytes, threads.getThreadAllocatedBytes(thread) - bytes);
+
+                bytes = threads.getThreadAllocatedBytes(thread);
+                start = System.nanoTime();
+                indexed = new ArrayList<>();
+                engine.searchUsers(query, indexed::add);
+                indexNanos = Math.min(indexNanos, System.nanoTime() - start);
+                indexBytes = Math.min(indexBytes, threads.getThreadAllocatedBytes(thread) - bytes);
+            }
+            if (!scanned.equals(indexed)) {
+                System.out.printf("расхождение на запросе \"%s\": проход %d, индекс %d%n", query, scanned.size(), indexed.size());
+                mismatch = true;
+            }
+            System.out.printf(Locale.ROOT, "%-28s %8d %12.2f %14d %12.3f %14d%n",
+                    query, indexed.size(), scanNanos / 1e6, scanBytes, indexNanos / 1e6, indexBytes);
+        }
+        if (mismatch) {
+            System.exit(1);
+        }
+    }
+
+    // Прежний LibraryAntiPatterns.searchUsers: 12 попыток на каждого пользователя, копии строк на каждой
+    private static ArrayList<HashMap<String, Object>> legacySearch(LibraryEngine engine, String query) {
+        ArrayList<HashMap<String, Object>> results = new ArrayList<>();
+        engine.forEachUser(user -> {
+            String name = (String) user.get("name");
+            String surname = (String) user.get("surname");
+            boolean match = false;
+            if (name != null && name.equals(query)) match = true;
+            if (!match && surname != null && surname.equals(query)) match = true;
+            if (!match && name != null && name.equalsIgnoreCase(query)) match = true;
+            if (!match && surname != null && surname.equalsIgnoreCase(query)) match = true;
+            if (!match && name != null && name.contains(query)) match = true;
+            if (!match && surname != null && surname.contains(query)) match = true;
+            if (!match && name != null && name.toLowerCase().contains(query.toLowerCase())) match = true;
+            if (!match && surname != null && surname.toLowerCase().contains(query.toLowerCase())) match = true;
+            if (!match && name != null && surname != null) {
+                String fullName = name + " " + surname;
+                if (fullName.toLowerCase().contains(query.toLowerCase())) match = true;
+            }
+            if (!match && name != null && surname != null) {
+                String fullName = surname + " " + name;
+                if (fullName.toLowerCase().contains(query.toLowerCase())) match = true;
+            }
+            if (!match && name != null && asciiFoldedContains(name, query)) match = true;
+            if (!match && surname != null && asciiFoldedContains(surname, query)) match = true;
+            if (match) {
+                results.add(user);
+            }
+        });
+        return results;
+    }
+
+    // Прежний myOwnContains: регистр приводится только у латиницы
+    private static boolean asciiFoldedContains(String haystack, String needle) {
+        for (int i = 0; i <= haystack.length() - needle.length(); i++) {
+            boolean found = true;
+            for (int j = 0; j < needle.length() && found; j++) {
+                char h = haystack.charAt(i + j);
+                char n = needle.charAt(j);
+                if (h >= 'A' && h <= 'Z') h = (char) (h + 32);
+                if (n >= 'A' && n <= 'Z') n = (char) (n + 32);
+                found = h == n;
+            }
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
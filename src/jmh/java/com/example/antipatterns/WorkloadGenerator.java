@@ -0,0 +1,373 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Генератор нагрузки, похожей на работу настоящей библиотеки: N читателей, M книг и смесь поиска, выдач,
+// возвратов и правок с заданной частотой.
+// - Популярность книг по закону Ципфа: книга ранга r выбирается с весом 1/r^zipf, ранги перемешаны по id.
+// - Время в движке ускорено (days-per-second симулированных суток за секунду). Каждый читатель держит книгу
+//   1..LOAN_DAYS дней, а доля late читателей - LOAN_DAYS+1..LOAN_DAYS+21 дней, поэтому часть возвратов
+//   приходит с просрочкой и штрафом. Операция return возвращает книгу, срок которой по плану наступил,
+//   а если таких нет - книгу обычного читателя раньше срока (см. nextReturn).
+// - Открытый цикл: операции отправляются по расписанию независимо от того, успевает ли движок;
+//   задержка считается от запланированного момента, а не от фактического начала (учитывает очередь).
+// - Каждые CHECK_EVERY_MS начисляются штрафы по просроченным книгам (как планировщик в консольном режиме)
+//   и сверяются инварианты движка; в конце сверяется ещё и план выдач с движком.
+//   При нарушениях код выхода 1.
+// Параметры ключ=значение, например:
+//   java -cp build/classes/java/main:build/classes/java/jmh com.example.antipatterns.WorkloadGenerator users=10000 books=100000 rate=5000
+//        seconds=30 mix=search:55,borrow:20,return:20,update:5 zipf=1.0 late=0.2 days-per-second=2 threads=4 [wal=dir]
+final class WorkloadGenerator {
+    private static final int AUTHORS = 5_000;
+    private static final int CHECK_EVERY_MS = 1_000;
+    private static final String[] OPS = {"search", "borrow", "return", "update"};
+    private static final int SEARCH = 0;
+    private static final int BORROW = 1;
+    private static final int RETURN = 2;
+    private static final int UPDATE = 3;
+
+    // Выдача, возврат которой запланирован на plannedReturn (симулированное время)
+    private static final class Loan implements Comparable<Loan> {
+        final int bookId;
+        final int userId;
+        final long plannedReturn;
+
+        Loan(int bookId, int userId, long plannedReturn) {
+            this.bookId = bookId;
+            this.userId = userId;
+            this.plannedReturn = plannedReturn;
+        }
+
+        @Override
+        public int compareTo(Loan other) {
+            return Long.compare(plannedReturn, other.plannedReturn);
+        }
+    }
+
+    private final int userCount;
+    private final int bookCount;
+    private final double rate;
+    private final int seconds;
+    private final int[] mix;
+    private final double zipf;
+    private final double lateShare;
+    private final double daysPerSecond;
+    private final int threads;
+    private final String walDirectory;
+
+    private final long simulationStart = System.currentTimeMillis();
+    private final long realStart = System.nanoTime();
+    private final LibraryEngine engine;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private int[] bookIds;
+    private int firstBook;
+    private int firstUser;
+    private boolean[] lateUsers;
+    // накопленные веса Ципфа по рангу
+    private double[] popularity;
+
+    // выдачи по дате планового возврата, отдельно для обычных читателей и для читателей с просрочками
+    private final PriorityBlockingQueue<Loan> normalReturns = new PriorityBlockingQueue<>();
+    private final PriorityBlockingQueue<Loan> lateReturns = new PriorityBlockingQueue<>();
+    private final LatencyHistogram[] latency = new LatencyHistogram[OPS.length];
+    private final AtomicLongArray succeeded = new AtomicLongArray(OPS.length);
+    private final AtomicLongArray rejected = new AtomicLongArray(OPS.length);
+    private final AtomicLong finedReturns = new AtomicLong();
+    private final AtomicLong accruedLoans = new AtomicLong();
+    private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+
+    private WorkloadGenerator(HashMap<String, String> options) {
+        userCount = Integer.parseInt(options.getOrDefault("users", "10000"));
+        bookCount = Integer.parseInt(options.getOrDefault("books", "100000"));
+        rate = Double.parseDouble(options.getOrDefault("rate", "5000"));
+        seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        mix = parseMix(options.getOrDefault("mix", "search:55,borrow:20,return:20,update:5"));
+        zipf = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+        lateShare = Double.parseDouble(options.getOrDefault("late", "0.2"));
+        daysPerSecond = Double.parseDouble(options.getOrDefault("days-per-second", "2"));
+        threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Math.max(2, Runtime.getRuntime().availableProcessors()))));
+        walDirectory = options.get("wal");
+        engine = new LibraryEngine("WORKLOAD", 0.5, System.out::println, this::simulatedNow);
+        for (int i = 0; i < OPS.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        HashMap<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                System.out.println("Ожидается ключ=значение: " + arg);
+                System.exit(2);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        if (!new WorkloadGenerator(options).run()) {
+            System.exit(1);
+        }
+    }
+
+    // Симулированное время: реальное, ускоренное в daysPerSecond * 86400 раз
+    private long simulatedNow() {
+        double realMillis = (System.nanoTime() - realStart) / 1e6;
+        return simulationStart + (long) (realMillis * daysPerSecond * LibraryEngine.DAY_MILLIS / 1000);
+    }
+
+    private static int[] parseMix(String spec) {
+        int[] weights = new int[OPS.length];
+        for (String part : spec.split(",")) {
+            String[] kv = part.split(":");
+            int op = List.of(OPS).indexOf(kv[0].trim());
+            if (kv.length != 2 || op < 0) {
+                throw new IllegalArgumentException("Неверная смесь операций: " + part + " (ожидается search|borrow|return|update:вес)");
+            }
+            weights[op] = Integer.parseInt(kv[1].trim());
+        }
+        return weights;
+    }
+
+    private boolean run() throws IOException, InterruptedException {
+        long setupStart = System.nanoTime();
+        populate();
+        System.out.printf(Locale.ROOT, "книг %d, читателей %d (%.0f%% с просрочками), Ципф %.2f, %.1f дн./с, подготовка %.1f с%n",
+                bookCount, userCount, lateShare * 100, zipf, daysPerSecond, (System.nanoTime() - setupStart) / 1e9);
+
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        int totalWeight = 0;
+        for (int weight : mix) {
+            totalWeight += weight;
+        }
+        long interval = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long nextCheck = start + CHECK_EVERY_MS * 1_000_000L;
+        long scheduled = 0;
+        int maxBacklog = 0;
+        long maxLag = 0;
+        for (long intended = start; intended < end; intended += interval) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                maxLag = Math.max(maxLag, -wait);
+            }
+            int roll = random.nextInt(totalWeight);
+            int op = 0;
+            while (roll >= mix[op]) {
+                roll -= mix[op++];
+            }
+            workers.execute(operation(op, intended));
+            scheduled++;
+            maxBacklog = Math.max(maxBacklog, workers.getQueue().size());
+            if (System.nanoTime() >= nextCheck) {
+                workers.execute(() -> accruedLoans.addAndGet(engine.accrueOverdueFines()));
+                workers.execute(() -> violations.addAll(engine.verifyInvariants()));
+                nextCheck += CHECK_EVERY_MS * 1_000_000L;
+            }
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        verifyAtEnd();
+        report(scheduled, elapsed, maxBacklog, maxLag);
+        engine.close();
+        return violations.isEmpty();
+    }
+
+    private void populate() throws IOException {
+        if (walDirectory != null) {
+            engine.open(Path.of(walDirectory), false, 100_000);
+        }
+        engine.beginBulkLoad();
+        firstBook = engine.reserveBookIds(bookCount);
+        bookIds = new int[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            engine.addImportedBook(firstBook + i, "Книга " + i, "Автор " + (i % AUTHORS), 1900 + i % 125, "978-" + i,
+                    i % 3 == 0 ? "Роман" : "Наука");
+            bookIds[i] = firstBook + i;
+        }
+        // ранг популярности -> книга: перемешиваем, чтобы популярные книги не шли подряд по id
+        for (int i = bookCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = bookIds[i];
+            bookIds[i] = bookIds[j];
+            bookIds[j] = swap;
+        }
+        firstUser = engine.reserveUserIds(userCount);
+        lateUsers = new boolean[userCount];
+        long now = simulatedNow();
+        for (int i = 0; i < userCount; i++) {
+            engine.addImportedUser(firstUser + i, "Имя" + i, "Фамилия" + i, 1950 + i % 60, "+7" + i, "u" + i + "@mail", now);
+            lateUsers[i] = random.nextDouble() < lateShare;
+        }
+        popularity = new double[bookCount];
+        double sum = 0;
+        for (int rank = 0; rank < bookCount; rank++) {
+            sum += 1 / Math.pow(rank + 1, zipf);
+            popularity[rank] = sum;
+        }
+        // индексы после массовой загрузки строятся при первом поиске, строим заранее
+        engine.searchBooks("Книга 1", (books, slot) -> { });
+    }
+
+    // Индекс книги (0..bookCount) по Ципфу; bookIds[индекс] - её id
+    private int popularBook() {
+        double target = random.nextDouble() * popularity[bookCount - 1];
+        int low = 0;
+        int high = bookCount - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (popularity[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Книга, которую пора вернуть: сначала любая с наступившим сроком по плану, иначе обычный читатель
+    // возвращает раньше плана. Читатели с просрочками раньше срока не возвращают; null - возвращать нечего
+    private Loan nextReturn() {
+        long now = simulatedNow();
+        Loan normal = normalReturns.peek();
+        Loan late = lateReturns.peek();
+        if (late != null && late.plannedReturn <= now && (normal == null || late.plannedReturn <= normal.plannedReturn)) {
+            return lateReturns.poll();
+        }
+        return normalReturns.poll();
+    }
+
+    // Параметры операции выбираются здесь, в потоке расписания (random не потокобезопасен), выполнение - в пуле
+    private Runnable operation(int op, long intended) {
+        switch (op) {
+            case SEARCH: {
+                int book = popularBook();
+                // номер книги при заполнении даёт её настоящие автора и название
+                int index = bookIds[book] - firstBook;
+                String query = random.nextInt(10) < 7 ? "Автор " + (index % AUTHORS) : "Книга " + index;
+                return timed(op, intended, () -> engine.searchBooks(query, (books, slot) -> { }) >= 0);
+            }
+            case BORROW: {
+                int bookId = bookIds[popularBook()];
+                int user = random.nextInt(userCount);
+                int holdDays = lateUsers[user]
+                        ? LibraryEngine.LOAN_DAYS + 1 + random.nextInt(21)
+                        : 1 + random.nextInt(LibraryEngine.LOAN_DAYS);
+                return timed(op, intended, () -> {
+                    engine.borrow(bookId, firstUser + user);
+                    Loan loan = new Loan(bookId, firstUser + user, simulatedNow() + holdDays * LibraryEngine.DAY_MILLIS);
+                    (lateUsers[user] ? lateReturns : normalReturns).add(loan);
+                    return true;
+                });
+            }
+            case RETURN: {
+                Loan loan = nextReturn();
+                if (loan == null) {
+                    return timed(op, intended, () -> false);
+                }
+                return timed(op, intended, () -> {
+                    LibraryEngine.Receipt receipt = engine.returnBook(loan.bookId);
+                    if (receipt.userId() != loan.userId) {
+                        violations.add("книгу " + loan.bookId + " вернул " + receipt.userId() + ", а выдавалась " + loan.userId);
+                    }
+                    if (receipt.fine() > 0) {
+                        finedReturns.incrementAndGet();
+                    }
+                    return true;
+                });
+            }
+            default: {
+                int index = random.nextInt(bookCount);
+                int bookId = bookIds[index];
+                int edition = random.nextInt(100);
+                return timed(op, intended, () -> engine.updateBook(bookId, null, null, 1900 + edition));
+            }
+        }
+    }
+
+    private interface Action {
+        boolean run();
+    }
+
+    private Runnable timed(int op, long intended, Action action) {
+        return () -> {
+            boolean ok;
+            try {
+                ok = action.run();
+            } catch (IllegalArgumentException e) {
+                ok = false;
+            }
+            latency[op].record(System.nanoTime() - intended);
+            (ok ? succeeded : rejected).incrementAndGet(op);
+        };
+    }
+
+    // Выдачи, возврат которых ещё не наступил, должны совпадать с тем, что знает движок
+    private void verifyAtEnd() {
+        violations.addAll(engine.verifyInvariants());
+        try {
+            engine.verifyStatistics();
+        } catch (IllegalStateException e) {
+            violations.add(e.getMessage());
+        }
+        LinkedHashMap<Integer, Integer> expected = new LinkedHashMap<>();
+        ArrayList<Loan> planned = new ArrayList<>(normalReturns);
+        planned.addAll(lateReturns);
+        for (Loan loan : planned) {
+            if (expected.put(loan.bookId, loan.userId) != null) {
+                violations.add("книга " + loan.bookId + " выдана дважды");
+            }
+        }
+        for (var entry : expected.entrySet()) {
+            int borrower = engine.borrowerOf(entry.getKey());
+            if (borrower != entry.getValue()) {
+                violations.add("книга " + entry.getKey() + ": по плану у " + entry.getValue() + ", в движке у " + borrower);
+            }
+        }
+        int activeLoans = engine.statistics().activeLoans();
+        if (activeLoans != expected.size()) {
+            violations.add("активных выдач " + activeLoans + ", по плану " + expected.size());
+        }
+    }
+
+    private void report(long scheduled, double elapsed, int maxBacklog, long maxLag) {
+        long done = 0;
+        for (int i = 0; i < OPS.length; i++) {
+            done += succeeded.get(i) + rejected.get(i);
+        }
+        LibraryStatistics stats = engine.statistics();
+        System.out.printf(Locale.ROOT, "цель %.0f оп/с, запланировано %d, выполнено %d за %.1f с: %.0f оп/с%n",
+                rate, scheduled, done, elapsed, done / elapsed);
+        System.out.printf(Locale.ROOT, "макс. очередь %d, макс. отставание расписания %.1f мс%n", maxBacklog, maxLag / 1e6);
+        System.out.printf(Locale.ROOT, "%-7s %9s %9s  %s%n", "op", "ok", "rejected", "задержка от запланированного момента");
+        for (int i = 0; i < OPS.length; i++) {
+            System.out.printf(Locale.ROOT, "%-7s %9d %9d  %s%n", OPS[i], succeeded.get(i), rejected.get(i), latency[i].summary());
+        }
+        System.out.printf(Locale.ROOT, "возвратов со штрафом %d, штрафов на %.2f, на руках %d книг%n",
+                finedReturns.get(), stats.totalFines(), stats.activeLoans());
+        System.out.printf(Locale.ROOT, "начислений штрафа по расписанию %d, просрочено сейчас %d книг%n",
+                accruedLoans.get(), engine.forEachOverdue((books, slot, userId, dueDate) -> { }));
+        System.out.println("нарушений инвариантов: " + violations.size());
+        for (int i = 0; i < Math.min(violations.size(), 10); i++) {
+            System.out.println("  " + violations.get(i));
+        }
+    }
+}
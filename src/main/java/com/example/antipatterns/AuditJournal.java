@@ -0,0 +1,219 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Двоичный журнал аудита только на дозапись с фоновым писателем и групповым fsync.
+// Вызывающий поток лишь кладёт запись в очередь; писатель забирает всё накопившееся
+// одной пачкой, пишет одним вызовом и (в режиме BATCHED) делает один fsync на пачку.
+// Формат: заголовок "LIBAUD01", затем записи фиксированной длины RECORD_BYTES.
+final class AuditJournal implements AutoCloseable {
+    enum Durability {
+        // запись в ОС без fsync: переживает падение процесса, но не питания
+        NONE,
+        // один fsync на каждую пачку накопившихся записей, вызывающий не ждёт
+        BATCHED,
+        // fsync после каждой записи, вызывающий ждёт, пока его запись окажется на диске
+        PER_OP
+    }
+
+    enum Op { LOGIN, ADD_BOOK, REMOVE_BOOK, UPDATE_BOOK, ADD_USER, REMOVE_USER, UPDATE_USER,
+        BORROW, RETURN, SEARCH, LISTING, REPORT, OTHER,
+        // новые операции только в конец: в файле хранится порядковый номер
+        IMPORT }
+
+    static final byte[] MAGIC = "LIBAUD01".getBytes(StandardCharsets.US_ASCII);
+    // seq(8) + время(8) + операция(1) + два аргумента(4 + 4) + CRC32(4)
+    static final int RECORD_BYTES = 29;
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int BUFFER_BYTES = RECORD_BYTES * 2048;
+
+    private final Durability durability;
+    private final FileChannel channel;
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private final Object durableLock = new Object();
+    private long nextSequence;
+    private long durableSequence = -1;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    AuditJournal(Path file, Durability durability) throws IOException {
+        this.durability = durability;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // без APPEND: хвост после падения посреди записи нужно отрезать, а писатель один и пишет с позиции канала
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < MAGIC.length) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(MAGIC), 0);
+            size = MAGIC.length;
+        }
+        // нумерация продолжается с конца существующего журнала; недописанная последняя запись отбрасывается,
+        // иначе все следующие сдвинулись бы относительно границ записей
+        nextSequence = (size - MAGIC.length) / RECORD_BYTES;
+        long whole = MAGIC.length + nextSequence * RECORD_BYTES;
+        if (whole < size) {
+            channel.truncate(whole);
+            channel.force(true);
+        }
+        channel.position(whole);
+        writer = new Thread(this::writeLoop, "audit-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    Durability durability() {
+        return durability;
+    }
+
+    // Добавляет запись; блокируется только при переполненной очереди и, в режиме PER_OP, до fsync
+    void append(Op op, int first, int second) {
+        if (closed) {
+            throw new IllegalStateException("Журнал аудита закрыт");
+        }
+        long sequence;
+        Record record;
+        synchronized (this) {
+            sequence = nextSequence++;
+            record = new Record(sequence, System.currentTimeMillis(), op, first, second);
+            try {
+                queue.put(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Прервано при записи в журнал аудита", e);
+            }
+        }
+        if (durability == Durability.PER_OP) {
+            awaitDurable(sequence);
+        }
+    }
+
+    // Ждёт, пока все записи до sequence включительно будут записаны писателем
+    void awaitDurable(long sequence) {
+        synchronized (durableLock) {
+            while (durableSequence < sequence && failure == null && writer.isAlive()) {
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Журнал аудита недоступен", failure);
+        }
+    }
+
+    private void writeLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        ArrayList<Record> batch = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Record first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                for (Record record : batch) {
+                    if (buffer.remaining() < RECORD_BYTES) {
+                        writeFully(buffer);
+                    }
+                    record.encode(buffer, crc);
+                    if (durability == Durability.PER_OP) {
+                        writeFully(buffer);
+                        channel.force(false);
+                        markDurable(record.sequence);
+                    }
+                }
+                writeFully(buffer);
+                if (durability == Durability.BATCHED) {
+                    channel.force(false);
+                }
+                markDurable(batch.get(batch.size() - 1).sequence);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+            System.err.println("Журнал аудита: ошибка записи: " + e.getMessage());
+        } finally {
+            synchronized (durableLock) {
+                durableLock.notifyAll();
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void markDurable(long sequence) {
+        synchronized (durableLock) {
+            durableSequence = sequence;
+            durableLock.notifyAll();
+        }
+    }
+
+    // Дописывает всё из очереди и закрывает файл
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+            channel.force(false);
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Журнал аудита: ошибка закрытия: " + e.getMessage());
+        }
+    }
+
+    private static final class Record {
+        private final long sequence;
+        private final long timestamp;
+        private final Op op;
+        private final int first;
+        private final int second;
+
+        Record(long sequence, long timestamp, Op op, int first, int second) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.op = op;
+            this.first = first;
+            this.second = second;
+        }
+
+        void encode(ByteBuffer buffer, CRC32 crc) {
+            int start = buffer.position();
+            buffer.putLong(sequence).putLong(timestamp).put((byte) op.ordinal()).putInt(first).putInt(second);
+            crc.reset();
+            ByteBuffer written = buffer.duplicate();
+            written.position(start).limit(buffer.position());
+            crc.update(written);
+            buffer.putInt((int) crc.getValue());
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.antipatterns;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+// Пакетный режим: команды построчно из файла или канала, без подсказок и без сброса вывода на каждой строке.
+// Протокол: КОМАНДА аргументы; текстовые поля разделяются '|', пустое поле в UPDATE* - не менять.
+//   LOGIN <пароль>                              (обязательна перед остальными командами)
+//   ADDBOOK название|автор|год|isbn|жанр        -> OK <id>
+//   UPDATEBOOK <id> название|автор|год          REMOVEBOOK <id>
+//   ADDUSER имя|фамилия|год|телефон|email       -> OK <id>
+//   UPDATEUSER <id> телефон|email               REMOVEUSER <id>
+//   BORROW <книга> <пользователь>               RETURN <книга> -> OK <штраф>
+//   FINDBOOK <запрос>, FINDUSER <запрос>, BOOKS, USERS -> OK <n> и n строк
+//   STATS                                       -> OK счётчики одной строкой
+//   IMPORT BOOKS|USERS <файл.csv>               -> OK <загружено> <отклонено>, см. CsvBulkImporter
+//   EXPORT BOOKS|USERS <файл>                   -> OK <n>, строки как у BOOKS/USERS, см. ListingWriter
+//   REPORT CSV <префикс>|JSON <файл>            -> OK <выдач> <мс>, полный отчёт, см. LibraryReport
+//   PUTBOOK <id> как ADDBOOK, PUTUSER <id> как ADDUSER - с заданным id (секции ShardedLibrary)
+//   GETBOOK <id>, GETUSER <id>                  -> OK 1 и строка как у BOOKS/USERS
+//   IDS                                         -> OK <последний id книги> <последний id пользователя>
+//   выдача в секциях ShardedLibrary (книга и читатель могут жить в разных секциях):
+//   RESERVE <пользователь> <книга>              проверки читателя из BORROW, книга заносится в его список
+//   RELEASE <пользователь> <книга>              -> OK 1 - снято, OK 0 - книги в списке не было
+//   LEND <книга> <пользователь>                 BORROW без проверок читателя
+//   UNLEND <книга>                              RETURN -> OK <штраф> <пользователь>
+//   BORROWER <книга>                            -> OK <пользователь>, 0 - книга на полке
+// Пустые строки и строки с '#' в начале пропускаются. Ошибка команды: ERR <текст>, выполнение продолжается.
+// Вывод сбрасывается, только когда во входе не осталось готовых команд: из файла - большими пачками,
+// а по сокету (ShardServer) - ответ на каждый запрос, которого ждёт клиент.
+final class BatchCommandRunner {
+    private static final int IO_BUFFER_CHARS = 1 << 16;
+
+    private final LibraryGodObject library;
+    private final LibraryEngine engine;
+    private boolean authenticated;
+    private long commands;
+    private long errors;
+
+    BatchCommandRunner(LibraryGodObject library) {
+        this.library = library;
+        this.engine = library.engine();
+    }
+
+    // "-" означает стандартный ввод/вывод
+    static void run(LibraryGodObject library, String input, String output) throws IOException {
+        InputStream in = "-".equals(input) ? System.in : Files.newInputStream(Paths.get(input));
+        OutputStream out = "-".equals(output) ? System.out : Files.newOutputStream(Paths.get(output));
+        BatchCommandRunner runner = new BatchCommandRunner(library);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), IO_BUFFER_CHARS);
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), IO_BUFFER_CHARS);
+        long start = System.nanoTime();
+        try {
+            runner.run(reader, writer);
+        } finally {
+            // стандартные потоки не закрываем, только сбрасываем
+            writer.flush();
+            if (in != System.in) {
+                reader.close();
+            }
+            if (out != System.out) {
+                writer.close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf(Locale.ROOT, "Пакетный режим: %d команд (ошибок: %d) за %.3f с, %.0f команд/с%n",
+                runner.commands, runner.errors, seconds, runner.commands / Math.max(seconds, 1e-9));
+    }
+
+    void run(BufferedReader in, BufferedWriter out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            commands++;
+            try {
+                execute(line, out);
+            } catch (IllegalArgumentException e) {
+                errors++;
+                out.write("ERR ");
+                out.write(e.getMessage());
+                out.newLine();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (!in.ready()) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    private void execute(String line, BufferedWriter out) throws IOException {
+        int space = line.indexOf(' ');
+        String command = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+        String args = space < 0 ? "" : line.substring(space + 1).trim();
+        if (command.equals("LOGIN")) {
+            authenticated = library.authenticate(args);
+            if (!authenticated) {
+                throw new IllegalArgumentException("Неверный пароль");
+            }
+            ok(out, null);
+            return;
+        }
+        if (!authenticated) {
+            throw new IllegalArgumentException("Требуется LOGIN <пароль>");
+        }
+        switch (command) {
+            case "ADDBOOK":
+            case "PUTBOOK": {
+                int id = command.equals("PUTBOOK") ? parseId(head(args)) : LibraryEngine.NEXT_ID;
+                String[] f = fields(command.equals("PUTBOOK") ? tail(args) : args, 5);
+                int bookId = engine.addBook(id, f[0], f[1], parseYear(f[2]), f[3], f[4]);
+                library.logOperationToOldServer(AuditJournal.Op.ADD_BOOK, bookId, 0);
+                ok(out, String.valueOf(bookId));
+                break;
+            }
+            case "UPDATEBOOK": {
+                int bookId = parseId(head(args));
+                String[] f = fields(tail(args), 3);
+                Integer year = f[2].isEmpty() ? null : parseYear(f[2]);
+                if (!engine.updateBook(bookId, emptyToNull(f[0]), emptyToNull(f[1]), year)) {
+                    throw new IllegalArgumentException("Книга не найдена");
+                }
+                library.logOperationToOldServer(AuditJournal.Op.UPDATE_BOOK, bookId, 0);
+                ok(out, null);
+                break;
+            }
+            case "REMOVEBOOK": {
+                int bookId = parseId(args);
+                if (!engine.removeBook(bookId)) {
+                    throw new IllegalArgumentException("Книга не найдена");
+                }
+                library.logOperationToOldServer(AuditJournal.Op.REMOVE_BOOK, bookId, 0);
+                ok(out, null);
+                break;
+            }
+            case "ADDUSER":
+            case "PUTUSER": {
+                int id = command.equals("PUTUSER") ? parseId(head(args)) : LibraryEngine.NEXT_ID;
+                String[] f = fields(command.equals("PUTUSER") ? tail(args) : args, 5);
+                HashMap<String, Object> user = engine.addUser(id, f[0], f[1], parseYear(f[2]), f[3], f[4]);
+                int userId = (Integer) user.get("id");
+                library.logOperationToOldServer(AuditJournal.Op.ADD_USER, userId, 0);
+                ok(out, String.valueOf(userId));
+                break;
+            }
+            case "UPDATEUSER": {
+                int userId = parseId(head(args));
+                String[] f = fields(tail(args), 2);
+                if (!engine.updateUser(userId, emptyToNull(f[0]), emptyToNull(f[1]))) {
+                    throw new IllegalArgumentException("Пользователь не найден");
+                }
+                library.logOperationToOldServer(AuditJournal.Op.UPDATE_USER, userId, 0);
+                ok(out, null);
+                break;
+            }
+            case "REMOVEUSER": {
+                int userId = parseId(args);
+                if (!engine.removeUser(userId)) {
+                    throw new IllegalArgumentException("Пользователь не найден");
+                }
+                library.logOperationToOldServer(AuditJournal.Op.REMOVE_USER, userId, 0);
+                ok(out, null);
+                break;
+            }
+            case "BORROW": {
+                int bookId = parseId(head(args));
+                int userId = parseId(tail(args));
+                engine.borrow(bookId, userId);
+                library.logOperationToOldServer(AuditJournal.Op.BORROW, bookId, userId);
+                ok(out, null);
+                break;
+            }
+            case "RETURN": {
+                int bookId = parseId(args);
+                LibraryEngine.Receipt receipt = engine.returnBook(bookId);
+                library.logOperationToOldServer(AuditJournal.Op.RETURN, bookId, receipt.userId());
+                ok(out, String.format(Locale.ROOT, "%.2f", receipt.fine()));
+                break;
+            }
+            case "RESERVE":
+                engine.reserve(parseId(head(args)), parseId(tail(args)));
+                ok(out, null);
+                break;
+            case "RELEASE":
+                ok(out, engine.release(parseId(head(args)), parseId(tail(args))) ? "1" : "0");
+                break;
+            case "LEND": {
+                int bookId = parseId(head(args));
+                int userId = parseId(tail(args));
+                engine.lend(bookId, userId);
+                library.logOperationToOldServer(AuditJournal.Op.BORROW, bookId, userId);
+                ok(out, null);
+                break;
+            }
+            case "UNLEND": {
+                int bookId = parseId(args);
+                LibraryEngine.Receipt receipt = engine.returnBook(bookId);
+                library.logOperationToOldServer(AuditJournal.Op.RETURN, bookId, receipt.userId());
+                ok(out, String.format(Locale.ROOT, "%.2f %d", receipt.fine(), receipt.userId()));
+                break;
+            }
+            case "BORROWER": {
+                int borrower = engine.borrowerOf(parseId(args));
+                if (borrower < 0) {
+                    throw new IllegalArgumentException("Книга не найдена");
+                }
+                ok(out, String.valueOf(borrower));
+                break;
+            }
+            case "GETBOOK": {
+                String[] found = new String[1];
+                if (!engine.findBook(parseId(args), (books, slot) -> found[0] = library.formatBook(books, slot))) {
+                    throw new IllegalArgumentException("Книга не найдена");
+                }
+                ok(out, "1");
+                line(out, found[0]);
+                break;
+            }
+            case "GETUSER": {
+                HashMap<String, Object> user = engine.findUser(parseId(args));
+                if (user == null) {
+                    throw new IllegalArgumentException("Пользователь не найден");
+                }
+                ok(out, "1");
+                line(out, library.formatUser(user));
+                break;
+            }
+            case "IDS":
+                ok(out, engine.lastBookId() + " " + engine.lastUserId());
+                break;
+            case "FINDBOOK": {
+                ArrayList<String> found = new ArrayList<>();
+                engine.searchBooks(args, (books, slot) -> found.add(library.formatBook(books, slot)));
+                ok(out, String.valueOf(found.size()));
+                for (String book : found) {
+                    line(out, book);
+                }
+                library.logOperationToOldServer(AuditJournal.Op.SEARCH, found.size(), 0);
+                break;
+            }
+            case "BOOKS": {
+                // строки собираются за один обход под блокировкой движка: счётчик statistics() отдельно от обхода
+                // мог бы разойтись с числом строк при изменениях из других соединений и сбить разбор ответа
+                StringBuilder rows = new StringBuilder();
+                int count = engine.forEachBookByTitle(0, Integer.MAX_VALUE,
+                        (books, slot) -> rows.append(library.formatBook(books, slot)).append(System.lineSeparator()));
+                ok(out, String.valueOf(count));
+                out.append(rows);
+                library.logOperationToOldServer(AuditJournal.Op.LISTING, count, 0);
+                break;
+            }
+            case "FINDUSER": {
+                ArrayList<HashMap<String, Object>> users = library.searchUsers(args);
+                ok(out, String.valueOf(users.size()));
+                for (HashMap<String, Object> user : users) {
+                    line(out, library.formatUser(user));
+                }
+                break;
+            }
+            case "USERS": {
+                StringBuilder rows = new StringBuilder();
+                int count = engine.forEachUser(0, Integer.MAX_VALUE,
+                        user -> rows.append(library.formatUser(user)).append(System.lineSeparator()));
+                ok(out, String.valueOf(count));
+                out.append(rows);
+                library.logOperationToOldServer(AuditJournal.Op.LISTING, count, 0);
+                break;
+            }
+            case "STATS": {
+                LibraryStatistics stats = engine.statistics();
+                ok(out, String.format(Locale.ROOT, "books=%d available=%d borrowed=%d loans=%d users=%d fines=%.2f",
+                        stats.totalBooks(), stats.availableBooks(), stats.borrowedBooks(), stats.activeLoans(),
+                        stats.totalUsers(), stats.totalFines()));
+                library.logOperationToOldServer(AuditJournal.Op.REPORT, 0, 0);
+                break;
+            }
+            case "IMPORT": {
+                CsvBulkImporter.Kind kind;
+                try {
+                    kind = CsvBulkImporter.Kind.valueOf(head(args).toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Ожидается IMPORT BOOKS|USERS <файл>");
+                }
+                String csv = tail(args);
+                CsvBulkImporter.Report report;
+                try {
+                    report = new CsvBulkImporter(library, library.importThreads())
+                            .importFile(kind, Paths.get(csv), Paths.get(csv + ".rejected.csv"));
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Ошибка импорта: " + e);
+                }
+                ok(out, report.imported() + " " + report.rejected());
+                break;
+            }
+            case "EXPORT": {
+                CsvBulkImporter.Kind kind;
+                try {
+                    kind = CsvBulkImporter.Kind.valueOf(head(args).toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Ожидается EXPORT BOOKS|USERS <файл>");
+                }
+                int written;
+                try {
+                    written = kind == CsvBulkImporter.Kind.BOOKS
+                            ? library.exportBooks(Paths.get(tail(args)))
+                            : library.exportUsers(Paths.get(tail(args)));
+                } catch (IOException | UncheckedIOException e) {
+                    throw new IllegalArgumentException("Ошибка выгрузки: " + e);
+                }
+                ok(out, String.valueOf(written));
+                break;
+            }
+            case "REPORT": {
+                String format = head(args);
+                if (!format.equalsIgnoreCase("csv") && !format.equalsIgnoreCase("json") || tail(args).isEmpty()) {
+                    throw new IllegalArgumentException("Ожидается REPORT CSV <префикс>|JSON <файл>");
+                }
+                LibraryReport report;
+                try {
+                    report = engine.report(library.reportThreads());
+                    library.exportReport(report, format, Paths.get(tail(args)));
+                } catch (IOException | UncheckedIOException e) {
+                    throw new IllegalArgumentException("Ошибка отчёта: " + e);
+                }
+                library.logOperationToOldServer(AuditJournal.Op.REPORT, 0, 0);
+                ok(out, report.loans() + " " + String.format(Locale.ROOT, "%.1f", report.elapsedNanos() / 1e6));
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Неизвестная команда: " + command);
+        }
+    }
+
+    private static void ok(BufferedWriter out, String value) throws IOException {
+        out.write(value == null ? "OK" : "OK " + value);
+        out.newLine();
+    }
+
+    private static void line(BufferedWriter out, String text) throws IOException {
+        out.write(text);
+        out.newLine();
+    }
+
+    // Ровно count полей через '|'
+    private static String[] fields(String args, int count) {
+        ArrayList<String> parts = new ArrayList<>(count);
+        int from = 0;
+        for (int i = 0; i < count - 1; i++) {
+            int bar = args.indexOf('|', from);
+            if (bar < 0) {
+                throw new IllegalArgumentException("Ожидается полей: " + count);
+            }
+            parts.add(args.substring(from, bar).trim());
+            from = bar + 1;
+        }
+        parts.add(args.substring(from).trim());
+        return parts.toArray(new String[0]);
+    }
+
+    private static String head(String args) {
+        int space = args.indexOf(' ');
+        return space < 0 ? args : args.substring(0, space);
+    }
+
+    private static String tail(String args) {
+        int space = args.indexOf(' ');
+        return space < 0 ? "" : args.substring(space + 1).trim();
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверный ID: " + text);
+        }
+    }
+
+    // Как в интерактивном режиме: нечисловой год заменяется на 2000
+    private static int parseYear(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return 2000;
+        }
+    }
+
+    private static String emptyToNull(String text) {
+        return text.isEmpty() ? null : text;
+    }
+}
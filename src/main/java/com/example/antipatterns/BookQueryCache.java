@@ -0,0 +1,85 @@
+package com.example.antipatterns;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Кэш результатов поиска книг: запрос, приведённый к нижнему регистру (NgramIndex.fold) -> id найденных книг
+// в порядке названия. Вытеснение LRU по числу записей; результаты длиннее MAX_RESULT_IDS не кэшируются,
+// их вывод всё равно дороже самого поиска.
+// Хранятся только id: доступность и остальные поля читаются из BookStore при выводе, поэтому выдачи и возвраты
+// кэш не трогают. Добавление, изменение и удаление книги сбрасывают ровно те записи, чей запрос входит в её поля
+// до или после изменения: только их результат мог измениться.
+// get/put идут под блокировкой чтения движка из многих потоков, отсюда synchronized; invalidate - под блокировкой записи.
+final class BookQueryCache {
+    static final int MAX_RESULT_IDS = 4096;
+
+    private final OperationMetrics metrics;
+    // порядок доступа: первая запись - давно не использованная
+    private final LinkedHashMap<String, int[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int capacity;
+
+    BookQueryCache(int capacity, OperationMetrics metrics) {
+        this.capacity = capacity;
+        this.metrics = metrics;
+    }
+
+    // null - запроса в кэше нет
+    synchronized int[] get(String foldedQuery) {
+        int[] ids = entries.get(foldedQuery);
+        if (ids != null) {
+            metrics.cacheHit(OperationMetrics.Cache.BOOK_SEARCH);
+        } else {
+            metrics.cacheMiss(OperationMetrics.Cache.BOOK_SEARCH);
+        }
+        return ids;
+    }
+
+    synchronized void put(String foldedQuery, int[] ids) {
+        if (capacity == 0 || ids.length > MAX_RESULT_IDS) {
+            return;
+        }
+        entries.put(foldedQuery, ids);
+        evictOverCapacity();
+    }
+
+    // Сброс записей, в результат которых книга с такими полями входит (или войдёт)
+    synchronized void invalidate(String title, String author, String genre) {
+        int removed = 0;
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext(); ) {
+            String query = it.next();
+            if (NgramIndex.containsFolded(title, query) || NgramIndex.containsFolded(author, query)
+                    || NgramIndex.containsFolded(genre, query)) {
+                it.remove();
+                removed++;
+            }
+        }
+        metrics.cacheInvalidated(OperationMetrics.Cache.BOOK_SEARCH, removed);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    // 0 - кэш выключен
+    synchronized void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Размер кэша поиска не может быть отрицательным: " + capacity);
+        }
+        this.capacity = capacity;
+        evictOverCapacity();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void evictOverCapacity() {
+        Iterator<Map.Entry<String, int[]>> eldest = entries.entrySet().iterator();
+        while (entries.size() > capacity) {
+            eldest.next();
+            eldest.remove();
+            metrics.cacheEvicted(OperationMetrics.Cache.BOOK_SEARCH);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Колоночное хранилище книг: отдельный массив на каждое поле вместо HashMap на каждую книгу.
+// Книга адресуется номером слота; при удалении последний слот переезжает на место удалённого.
+// Соответствие id -> слот поддерживается хэш-индексом, поэтому indexOf работает за O(1).
+// После загрузки из снимка строки книг читаются прямо из отображённого файла
+// и переносятся в массивы только при изменении или переезде слота.
+// Выдавать и возвращать книги в разных слотах можно из разных потоков одновременно
+// (бит доступности меняется атомарно); add/remove/set* требуют исключительного доступа, см. LibraryEngine.
+// Автор и жанр хранятся кодами общих словарей (StringDictionary): различных значений тысячи на миллионы книг,
+// так что строка хранится один раз, а отбор по автору или жанру сравнивает int.
+final class BookStore {
+    private static final VarHandle AVAILABLE_WORD = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int INITIAL_CAPACITY = 16;
+    // 0 в borrowedBy/borrowDate означает "не выдана" (id начинаются с 1)
+    static final int NO_USER = 0;
+    static final long NO_DATE = 0L;
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] years = new int[INITIAL_CAPACITY];
+    private double[] ratings = new double[INITIAL_CAPACITY];
+    private int[] borrowedBy = new int[INITIAL_CAPACITY];
+    private long[] borrowDates = new long[INITIAL_CAPACITY];
+    // битовая маска доступности: бит slot установлен, если книга на полке
+    private long[] available = new long[(INITIAL_CAPACITY + 63) >>> 6];
+    private String[] titles = new String[INITIAL_CAPACITY];
+    private String[] isbns = new String[INITIAL_CAPACITY];
+    private int[] authorCodes = new int[INITIAL_CAPACITY];
+    private int[] genreCodes = new int[INITIAL_CAPACITY];
+    private final StringDictionary authorDictionary = new StringDictionary();
+    private final StringDictionary genreDictionary = new StringDictionary();
+    private final IntSlotIndex idIndex = new IntSlotIndex();
+    // установленный бит: строки слота ещё лежат в снимке под тем же номером
+    private BitSet mapped = new BitSet();
+    private MappedSnapshot.StringColumn mappedTitles;
+    private MappedSnapshot.StringColumn mappedIsbns;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int add(int id, String title, String author, int year, String isbn, String genre, double rating) {
+        if (idIndex.get(id) != IntSlotIndex.MISSING) {
+            throw new IllegalStateException("Книга с ID " + id + " уже существует");
+        }
+        ensureCapacity(size + 1);
+        int slot = size++;
+        mapped.clear(slot);
+        idIndex.put(id, slot);
+        ids[slot] = id;
+        years[slot] = year;
+        ratings[slot] = rating;
+        borrowedBy[slot] = NO_USER;
+        borrowDates[slot] = NO_DATE;
+        titles[slot] = title;
+        isbns[slot] = isbn;
+        authorCodes[slot] = authorDictionary.encode(author);
+        genreCodes[slot] = genreDictionary.encode(genre);
+        setAvailableBit(slot, true);
+        return slot;
+    }
+
+    // Удаляет слот, перенося на его место последний. Возвращает id переехавшей книги или -1.
+    int removeAt(int slot) {
+        checkSlot(slot);
+        idIndex.remove(ids[slot]);
+        int last = --size;
+        int movedId = -1;
+        if (slot != last) {
+            materialize(last);
+            mapped.clear(slot);
+            ids[slot] = ids[last];
+            years[slot] = years[last];
+            ratings[slot] = ratings[last];
+            borrowedBy[slot] = borrowedBy[last];
+            borrowDates[slot] = borrowDates[last];
+            titles[slot] = titles[last];
+            isbns[slot] = isbns[last];
+            authorCodes[slot] = authorCodes[last];
+            genreCodes[slot] = genreCodes[last];
+            setAvailableBit(slot, (available[last >>> 6] & (1L << last)) != 0);
+            movedId = ids[slot];
+            idIndex.put(movedId, slot);
+        }
+        titles[last] = null;
+        isbns[last] = null;
+        mapped.clear(last);
+        setAvailableBit(last, false);
+        return movedId;
+    }
+
+    // Слот книги по id, -1 если книги нет
+    int indexOf(int id) {
+        return idIndex.get(id);
+    }
+
+    int id(int slot) { checkSlot(slot); return ids[slot]; }
+    int year(int slot) { checkSlot(slot); return years[slot]; }
+    double rating(int slot) { checkSlot(slot); return ratings[slot]; }
+    int borrowedBy(int slot) { checkSlot(slot); return borrowedBy[slot]; }
+    long borrowDate(int slot) { checkSlot(slot); return borrowDates[slot]; }
+    String title(int slot) { checkSlot(slot); return mapped.get(slot) ? mappedTitles.get(slot) : titles[slot]; }
+    String author(int slot) { checkSlot(slot); return authorDictionary.value(authorCodes[slot]); }
+    String isbn(int slot) { checkSlot(slot); return mapped.get(slot) ? mappedIsbns.get(slot) : isbns[slot]; }
+    String genre(int slot) { checkSlot(slot); return genreDictionary.value(genreCodes[slot]); }
+    int authorCode(int slot) { checkSlot(slot); return authorCodes[slot]; }
+    int genreCode(int slot) { checkSlot(slot); return genreCodes[slot]; }
+
+    // Код автора или жанра для отбора на равенство; StringDictionary.NO_CODE - ни у одной книги такого нет
+    int codeOfAuthor(String author) { return authorDictionary.codeOf(author); }
+    int codeOfGenre(String genre) { return genreDictionary.codeOf(genre); }
+
+    // Коды жанров идут подряд с 0: отчёты считают по жанрам в массивах, а не в картах
+    int genreCount() { return genreDictionary.size(); }
+    String genreName(int code) { return genreDictionary.value(code); }
+
+    boolean isAvailable(int slot) {
+        checkSlot(slot);
+        return (available[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    void setTitle(int slot, String title) { checkSlot(slot); materialize(slot); titles[slot] = title; }
+    void setAuthor(int slot, String author) { checkSlot(slot); authorCodes[slot] = authorDictionary.encode(author); }
+    void setYear(int slot, int year) { checkSlot(slot); years[slot] = year; }
+    void setGenre(int slot, String genre) { checkSlot(slot); genreCodes[slot] = genreDictionary.encode(genre); }
+    void setRating(int slot, double rating) { checkSlot(slot); ratings[slot] = rating; }
+
+    void markBorrowed(int slot, int userId, long borrowDate) {
+        checkSlot(slot);
+        borrowedBy[slot] = userId;
+        borrowDates[slot] = borrowDate;
+        setAvailableBit(slot, false);
+    }
+
+    void markReturned(int slot) {
+        checkSlot(slot);
+        borrowedBy[slot] = NO_USER;
+        borrowDates[slot] = NO_DATE;
+        setAvailableBit(slot, true);
+    }
+
+    // Подсчёт доступных книг по битовой маске, без обхода записей
+    int countAvailable() {
+        int count = 0;
+        int words = (size + 63) >>> 6;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(available[w]);
+        }
+        return count;
+    }
+
+    // Копия колонок, которые читает LibraryReport: отчёт считается по ней уже без блокировки структуры.
+    // Снимается под блокировкой чтения; бит доступности может меняться параллельной выдачей, как и при обходе
+    ReportColumns reportColumns() {
+        return new ReportColumns(size, Arrays.copyOf(years, size), Arrays.copyOf(ratings, size),
+                Arrays.copyOf(genreCodes, size), Arrays.copyOf(available, (size + 63) >>> 6), idIndex.copy());
+    }
+
+    static final class ReportColumns {
+        private final int size;
+        private final int[] years;
+        private final double[] ratings;
+        private final int[] genreCodes;
+        private final long[] available;
+        private final IntSlotIndex idIndex;
+
+        private ReportColumns(int size, int[] years, double[] ratings, int[] genreCodes, long[] available,
+                              IntSlotIndex idIndex) {
+            this.size = size;
+            this.years = years;
+            this.ratings = ratings;
+            this.genreCodes = genreCodes;
+            this.available = available;
+            this.idIndex = idIndex;
+        }
+
+        int size() { return size; }
+        int indexOf(int id) { return idIndex.get(id); }
+        int year(int slot) { return years[slot]; }
+        double rating(int slot) { return ratings[slot]; }
+        int genreCode(int slot) { return genreCodes[slot]; }
+        boolean isAvailable(int slot) { return (available[slot >>> 6] & (1L << slot)) != 0; }
+    }
+
+    // Колонки снимка: числовые массивы целиком, строки кучей UTF-8, автор и жанр - кодами со словарями,
+    // индекс id -> слот как таблица
+    void writeTo(SnapshotWriter out) throws IOException {
+        out.intColumn("book.id", size, i -> ids[i]);
+        out.intColumn("book.year", size, i -> years[i]);
+        out.doubleColumn("book.rating", size, i -> ratings[i]);
+        out.intColumn("book.borrowedBy", size, i -> borrowedBy[i]);
+        out.longColumn("book.borrowDate", size, i -> borrowDates[i]);
+        out.longColumn("book.available", (size + 63) >>> 6, w -> available[w]);
+        out.stringColumn("book.title", size, this::title);
+        out.stringColumn("book.isbn", size, this::isbn);
+        out.intColumn("book.authorCode", size, i -> authorCodes[i]);
+        out.intColumn("book.genreCode", size, i -> genreCodes[i]);
+        authorDictionary.writeTo(out, "book.authorDictionary");
+        genreDictionary.writeTo(out, "book.genreDictionary");
+        idIndex.writeTo(out, "book.index");
+    }
+
+    // Загрузка в пустое хранилище: числовые колонки копируются одним блоком, строки остаются в отображении
+    void readFrom(MappedSnapshot in) throws IOException {
+        if (size != 0) {
+            throw new IllegalStateException("Снимок загружается только в пустое хранилище");
+        }
+        int[] loadedIds = in.ints("book.id");
+        int count = loadedIds.length;
+        int capacity = Math.max(count, INITIAL_CAPACITY);
+        MappedSnapshot.StringColumn loadedTitles = in.strings("book.title");
+        MappedSnapshot.StringColumn loadedIsbns = in.strings("book.isbn");
+        if (loadedTitles.size() != count || loadedIsbns.size() != count) {
+            throw new IOException("Снимок повреждён: колонки книг разной длины");
+        }
+        if (in.has("book.authorCode")) {
+            authorCodes = readCodes(in, "book.authorCode", authorDictionary, "book.authorDictionary", count, capacity);
+            genreCodes = readCodes(in, "book.genreCode", genreDictionary, "book.genreDictionary", count, capacity);
+        } else {
+            // в снимках до словарей автор и жанр лежат строками у каждой книги
+            authorCodes = encodeLegacy(in.strings("book.author"), authorDictionary, count, capacity);
+            genreCodes = encodeLegacy(in.strings("book.genre"), genreDictionary, count, capacity);
+        }
+        ids = Arrays.copyOf(loadedIds, capacity);
+        years = Arrays.copyOf(in.ints("book.year"), capacity);
+        ratings = Arrays.copyOf(in.doubles("book.rating"), capacity);
+        borrowedBy = Arrays.copyOf(in.ints("book.borrowedBy"), capacity);
+        borrowDates = Arrays.copyOf(in.longs("book.borrowDate"), capacity);
+        available = Arrays.copyOf(in.longs("book.available"), (capacity + 63) >>> 6);
+        titles = new String[capacity];
+        isbns = new String[capacity];
+        mappedTitles = loadedTitles;
+        mappedIsbns = loadedIsbns;
+        mapped = new BitSet(count);
+        mapped.set(0, count);
+        idIndex.readFrom(in, "book.index");
+        size = count;
+    }
+
+    // Переносит строки слота из снимка в массивы перед изменением или переездом
+    private void materialize(int slot) {
+        if (!mapped.get(slot)) {
+            return;
+        }
+        titles[slot] = mappedTitles.get(slot);
+        isbns[slot] = mappedIsbns.get(slot);
+        mapped.clear(slot);
+    }
+
+    private static int[] readCodes(MappedSnapshot in, String name, StringDictionary dictionary, String dictionaryName,
+                                   int count, int capacity) throws IOException {
+        dictionary.readFrom(in, dictionaryName);
+        int[] codes = in.ints(name);
+        if (codes.length != count) {
+            throw new IOException("Снимок повреждён: колонки книг разной длины");
+        }
+        for (int code : codes) {
+            if (code < StringDictionary.NO_CODE || code >= dictionary.size()) {
+                throw new IOException("Снимок повреждён: код " + code + " вне словаря " + dictionaryName);
+            }
+        }
+        return Arrays.copyOf(codes, capacity);
+    }
+
+    private static int[] encodeLegacy(MappedSnapshot.StringColumn values, StringDictionary dictionary,
+                                      int count, int capacity) throws IOException {
+        if (values.size() != count) {
+            throw new IOException("Снимок повреждён: колонки книг разной длины");
+        }
+        dictionary.clear();
+        int[] codes = new int[capacity];
+        for (int i = 0; i < count; i++) {
+            codes[i] = dictionary.encode(values.get(i));
+        }
+        return codes;
+    }
+
+    // Атомарно: в одном слове маски 64 книги, их могут одновременно выдавать разные потоки
+    private void setAvailableBit(int slot, boolean value) {
+        if (value) {
+            AVAILABLE_WORD.getAndBitwiseOr(available, slot >>> 6, 1L << slot);
+        } else {
+            AVAILABLE_WORD.getAndBitwiseAnd(available, slot >>> 6, ~(1L << slot));
+        }
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("slot " + slot + ", size " + size);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        years = Arrays.copyOf(years, capacity);
+        ratings = Arrays.copyOf(ratings, capacity);
+        borrowedBy = Arrays.copyOf(borrowedBy, capacity);
+        borrowDates = Arrays.copyOf(borrowDates, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        isbns = Arrays.copyOf(isbns, capacity);
+        authorCodes = Arrays.copyOf(authorCodes, capacity);
+        genreCodes = Arrays.copyOf(genreCodes, capacity);
+        available = Arrays.copyOf(available, (capacity + 63) >>> 6);
+    }
+}
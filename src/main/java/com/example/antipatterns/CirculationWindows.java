@@ -0,0 +1,151 @@
+package com.example.antipatterns;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Скользящие окна выдач, возвратов, новых читателей и штрафов: последняя минута, час и сутки.
+// Каждое окно - кольцо корзин фиксированной ширины (секунда, минута, час); корзина помечена номером своего
+// интервала (эпохой), и устаревшую корзину обнуляет первое событие нового интервала, поэтому запись - O(1)
+// без фоновой очистки, а память не зависит от времени работы.
+// Запись без блокировок: счётчики атомарные, блокировка берётся только на обнуление корзины (раз в её интервал).
+// Время событий - их собственное (дата выдачи, возврата, штрафа), поэтому проигрывание журнала при восстановлении
+// раскладывает события по тем же корзинам; событие старше своего кольца пропускается.
+final class CirculationWindows {
+    enum Kind {
+        CHECKOUT,
+        RETURN,
+        NEW_USER,
+        FINE
+    }
+
+    enum Window {
+        MINUTE(1000L, 60),
+        HOUR(60_000L, 60),
+        DAY(3_600_000L, 24);
+
+        private final long bucketMillis;
+        private final int buckets;
+
+        Window(long bucketMillis, int buckets) {
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+        }
+
+        long bucketMillis() {
+            return bucketMillis;
+        }
+
+        int buckets() {
+            return buckets;
+        }
+    }
+
+    // колонки корзины: счётчики по Kind, затем сумма штрафов в копейках
+    private static final int FINE_KOPECKS = Kind.values().length;
+    private static final int COLUMNS = FINE_KOPECKS + 1;
+    private static final long NO_EPOCH = Long.MIN_VALUE;
+
+    private final Ring[] rings = new Ring[Window.values().length];
+
+    CirculationWindows() {
+        for (Window window : Window.values()) {
+            rings[window.ordinal()] = new Ring(window);
+        }
+    }
+
+    void record(Kind kind, long time) {
+        for (Ring ring : rings) {
+            ring.add(time, kind.ordinal(), 1);
+        }
+    }
+
+    void fine(double amount, long time) {
+        long kopecks = Math.round(amount * 100);
+        for (Ring ring : rings) {
+            ring.add(time, Kind.FINE.ordinal(), 1);
+            ring.add(time, FINE_KOPECKS, kopecks);
+        }
+    }
+
+    // События kind за окно, заканчивающееся в now (текущая корзина входит, хотя ещё не закончилась)
+    long count(Kind kind, Window window, long now) {
+        return rings[window.ordinal()].sum(kind.ordinal(), now);
+    }
+
+    double fineAmount(Window window, long now) {
+        return rings[window.ordinal()].sum(FINE_KOPECKS, now) / 100.0;
+    }
+
+    // По корзинам окна от самой старой до текущей
+    long[] series(Kind kind, Window window, long now) {
+        return rings[window.ordinal()].series(kind.ordinal(), now);
+    }
+
+    private static final class Ring {
+        private final long bucketMillis;
+        private final int buckets;
+        // эпоха корзины - номер интервала времени (time / bucketMillis), за который в ней счётчики
+        private final AtomicLongArray epochs;
+        private final AtomicLongArray counters;
+
+        Ring(Window window) {
+            bucketMillis = window.bucketMillis;
+            buckets = window.buckets;
+            epochs = new AtomicLongArray(buckets);
+            counters = new AtomicLongArray(buckets * COLUMNS);
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                epochs.set(bucket, NO_EPOCH);
+            }
+        }
+
+        void add(long time, int column, long value) {
+            long epoch = Math.floorDiv(time, bucketMillis);
+            int bucket = (int) Math.floorMod(epoch, (long) buckets);
+            long seen = epochs.get(bucket);
+            if (seen != epoch) {
+                if (seen > epoch) {
+                    // корзина уже занята более новым интервалом: событие вышло за кольцо
+                    return;
+                }
+                synchronized (this) {
+                    seen = epochs.get(bucket);
+                    if (seen > epoch) {
+                        return;
+                    }
+                    if (seen != epoch) {
+                        // сначала обнуление, потом новая эпоха: кто увидит эпоху, пишет уже в чистую корзину
+                        for (int c = 0; c < COLUMNS; c++) {
+                            counters.set(bucket * COLUMNS + c, 0);
+                        }
+                        epochs.set(bucket, epoch);
+                    }
+                }
+            }
+            counters.addAndGet(bucket * COLUMNS + column, value);
+        }
+
+        long sum(int column, long now) {
+            long current = Math.floorDiv(now, bucketMillis);
+            long sum = 0;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                long epoch = epochs.get(bucket);
+                if (epoch <= current && epoch > current - buckets) {
+                    sum += counters.get(bucket * COLUMNS + column);
+                }
+            }
+            return sum;
+        }
+
+        long[] series(int column, long now) {
+            long current = Math.floorDiv(now, bucketMillis);
+            long[] values = new long[buckets];
+            for (int i = 0; i < buckets; i++) {
+                long epoch = current - buckets + 1 + i;
+                int bucket = (int) Math.floorMod(epoch, (long) buckets);
+                if (epochs.get(bucket) == epoch) {
+                    values[i] = counters.get(bucket * COLUMNS + column);
+                }
+            }
+            return values;
+        }
+    }
+}
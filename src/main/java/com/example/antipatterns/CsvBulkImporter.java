@@ -0,0 +1,319 @@
+package com.example.antipatterns;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Массовый импорт книг и пользователей из CSV.
+// Файл читается потоком по CHUNK_LINES строк; каждая пачка разбирается параллельно в ForkJoinPool,
+// а вставка идёт в одном потоке в порядке файла: пока вставляется одна пачка, следующие уже разбираются.
+// Книги с ISBN, который уже есть в каталоге или встречался выше в файле, отклоняются.
+// Отклонённые строки пишутся в отдельный CSV: номер строки, причина, исходная строка.
+final class CsvBulkImporter {
+    enum Kind {
+        BOOKS("книг", "title", "author", "year", "isbn", "genre"),
+        USERS("пользователей", "name", "surname", "year", "phone", "email");
+
+        private final String label;
+        private final String[] header;
+
+        Kind(String label, String... header) {
+            this.label = label;
+            this.header = header;
+        }
+    }
+
+    static final class Report {
+        private final Kind kind;
+        private final long rows;
+        private final long imported;
+        private final long rejected;
+        private final long duplicates;
+        private final long nanos;
+
+        Report(Kind kind, long rows, long imported, long rejected, long duplicates, long nanos) {
+            this.kind = kind;
+            this.rows = rows;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.duplicates = duplicates;
+            this.nanos = nanos;
+        }
+
+        long imported() {
+            return imported;
+        }
+
+        long rejected() {
+            return rejected;
+        }
+
+        double rowsPerSecond() {
+            return rows / Math.max(nanos / 1e9, 1e-9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Импорт %s: строк %d, загружено %d, отклонено %d (дубликатов ISBN %d) за %.2f с, %.0f строк/с",
+                    kind.label, rows, imported, rejected, duplicates, nanos / 1e9, rowsPerSecond());
+        }
+    }
+
+    private static final int FIELD_COUNT = 5;
+    private static final int YEAR_FIELD = 2;
+    private static final int ISBN_FIELD = 3;
+    private static final int CHUNK_LINES = 8192;
+    private static final int SPLIT_THRESHOLD = 1024;
+    private static final int IO_BUFFER_CHARS = 1 << 16;
+
+    private final LibraryGodObject library;
+    private final LibraryEngine engine;
+    private final int parallelism;
+
+    CsvBulkImporter(LibraryGodObject library, int parallelism) {
+        this.library = library;
+        this.engine = library.engine();
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    Report importFile(Kind kind, Path csv, Path rejectedFile) throws IOException {
+        long start = System.nanoTime();
+        HashSet<String> isbns = new HashSet<>();
+        if (kind == Kind.BOOKS) {
+            engine.collectIsbns(isbns);
+        }
+        long[] counters = new long[4];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        // пачек в работе не больше чем 2 x потоков, чтобы не держать в памяти весь файл
+        ArrayDeque<Chunk> inFlight = new ArrayDeque<>();
+        int window = parallelism * 2;
+        boolean completed = false;
+        Report report;
+        engine.beginBulkLoad();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(csv), StandardCharsets.UTF_8), IO_BUFFER_CHARS);
+             BufferedWriter rejected = new BufferedWriter(
+                     new OutputStreamWriter(Files.newOutputStream(rejectedFile), StandardCharsets.UTF_8), IO_BUFFER_CHARS)) {
+            rejected.write("line,reason,row");
+            rejected.newLine();
+            Chunk chunk = new Chunk();
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || (lineNumber == 1 && isHeader(kind, line))) {
+                    continue;
+                }
+                chunk.add(line, lineNumber);
+                if (chunk.size == CHUNK_LINES) {
+                    submit(pool, kind, chunk, inFlight);
+                    chunk = new Chunk();
+                    if (inFlight.size() >= window) {
+                        insert(kind, inFlight.poll(), isbns, rejected, counters);
+                    }
+                }
+            }
+            if (chunk.size > 0) {
+                submit(pool, kind, chunk, inFlight);
+            }
+            while (!inFlight.isEmpty()) {
+                insert(kind, inFlight.poll(), isbns, rejected, counters);
+            }
+            completed = true;
+        } finally {
+            pool.shutdownNow();
+            // вставленные пачки не попадают в журнал изменений (см. LibraryEngine.beginBulkLoad): без снимка
+            // импорт, оборвавшийся посреди файла, пропал бы при перезапуске, а записи журнала после него
+            // ссылались бы на несуществующие id
+            report = new Report(kind, counters[0], counters[1], counters[2], counters[3], System.nanoTime() - start);
+            library.endBulkLoad(completed ? report.toString() : report + " (прерван)");
+        }
+        library.logOperationToOldServer(AuditJournal.Op.IMPORT, (int) report.imported, (int) report.rejected);
+        return report;
+    }
+
+    private static void submit(ForkJoinPool pool, Kind kind, Chunk chunk, ArrayDeque<Chunk> inFlight) {
+        chunk.task = pool.submit(new ParseTask(kind, chunk, 0, chunk.size));
+        inFlight.add(chunk);
+    }
+
+    // Вставка разобранной пачки в порядке строк файла: принятые строки сдвигаются в начало массивов пачки
+    // и уходят в движок одним вызовом - один диапазон id и один захват блокировки записи на пачку
+    private void insert(Kind kind, Chunk chunk, HashSet<String> isbns, BufferedWriter rejected, long[] counters) throws IOException {
+        chunk.task.join();
+        int accepted = 0;
+        for (int i = 0; i < chunk.size; i++) {
+            if (chunk.reasons[i] == null && kind == Kind.BOOKS) {
+                String isbn = chunk.fields[i][ISBN_FIELD];
+                if (!isbn.isEmpty() && !isbns.add(isbn)) {
+                    chunk.reasons[i] = "дубликат ISBN " + isbn;
+                    counters[3]++;
+                }
+            }
+            if (chunk.reasons[i] == null) {
+                chunk.fields[accepted] = chunk.fields[i];
+                chunk.years[accepted] = chunk.years[i];
+                accepted++;
+            } else {
+                writeRejected(rejected, chunk.lineNumbers[i], chunk.reasons[i], chunk.lines[i]);
+            }
+        }
+        if (kind == Kind.BOOKS) {
+            engine.addImportedBooks(chunk.fields, chunk.years, accepted);
+        } else {
+            engine.addImportedUsers(chunk.fields, chunk.years, accepted, System.currentTimeMillis());
+        }
+        counters[0] += chunk.size;
+        counters[1] += accepted;
+        counters[2] += chunk.size - accepted;
+    }
+
+    private static boolean isHeader(Kind kind, String line) {
+        String[] fields;
+        try {
+            fields = parseLine(line);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (fields.length != kind.header.length) {
+            return false;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (!fields[i].equalsIgnoreCase(kind.header[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Разбор строки CSV: поля через запятую, поле в кавычках может содержать запятые и "" как кавычку.
+    // Перевод строки внутри поля не поддерживается.
+    static String[] parseLine(String line) {
+        ArrayList<String> fields = new ArrayList<>(FIELD_COUNT);
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        int n = line.length();
+        while (true) {
+            field.setLength(0);
+            if (i < n && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= n) {
+                        throw new IllegalArgumentException("незакрытая кавычка");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < n && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (i < n && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("символ после закрывающей кавычки");
+                }
+            } else {
+                int comma = line.indexOf(',', i);
+                int end = comma < 0 ? n : comma;
+                field.append(line, i, end);
+                i = end;
+            }
+            fields.add(field.toString().trim());
+            if (i >= n) {
+                return fields.toArray(new String[0]);
+            }
+            i++;
+        }
+    }
+
+    private static void writeRejected(BufferedWriter out, long lineNumber, String reason, String line) throws IOException {
+        out.write(Long.toString(lineNumber));
+        out.write(',');
+        out.write(quote(reason));
+        out.write(',');
+        out.write(quote(line));
+        out.newLine();
+    }
+
+    private static String quote(String text) {
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    // Строки пачки и результаты разбора: поля и год либо причина отказа
+    private static final class Chunk {
+        private final String[] lines = new String[CHUNK_LINES];
+        private final long[] lineNumbers = new long[CHUNK_LINES];
+        private final String[][] fields = new String[CHUNK_LINES][];
+        private final int[] years = new int[CHUNK_LINES];
+        private final String[] reasons = new String[CHUNK_LINES];
+        private int size;
+        private ForkJoinTask<?> task;
+
+        void add(String line, long lineNumber) {
+            lines[size] = line;
+            lineNumbers[size] = lineNumber;
+            size++;
+        }
+    }
+
+    // Разбор диапазона строк пачки; большие диапазоны делятся пополам
+    private static final class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Kind kind;
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        ParseTask(Kind kind, Chunk chunk, int from, int to) {
+            this.kind = kind;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseTask(kind, chunk, from, middle), new ParseTask(kind, chunk, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    String[] f = parseLine(chunk.lines[i]);
+                    if (f.length != FIELD_COUNT) {
+                        throw new IllegalArgumentException("ожидается полей: " + FIELD_COUNT + ", найдено: " + f.length);
+                    }
+                    if (f[0].isEmpty() || f[1].isEmpty()) {
+                        throw new IllegalArgumentException("пустое поле " + kind.header[f[0].isEmpty() ? 0 : 1]);
+                    }
+                    try {
+                        chunk.years[i] = Integer.parseInt(f[YEAR_FIELD]);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("неверный год: " + f[YEAR_FIELD]);
+                    }
+                    chunk.fields[i] = f;
+                } catch (IllegalArgumentException e) {
+                    chunk.reasons[i] = e.getMessage();
+                }
+            }
+        }
+    }
+}
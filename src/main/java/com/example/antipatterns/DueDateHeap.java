@@ -0,0 +1,180 @@
+package com.example.antipatterns;
+
+import java.util.Arrays;
+
+// Двоичная min-куча открытых выдач по сроку возврата: корень - выдача с самым ранним сроком.
+// Куча индексирована по id книги (у книги не больше одной открытой выдачи), поэтому возврат
+// убирает выдачу из середины за O(log n), а не поиском по всей куче.
+// Просроченные на момент now выдачи образуют "верхушку" кучи: обход forEachDueBefore
+// спускается только в узлы со сроком до now и отдаёт k выдач в порядке срока за O(k log k).
+// Потокобезопасности нет: LibraryEngine работает с кучей под ledgerLock.
+final class DueDateHeap {
+    interface Visitor {
+        void visit(int bookId, int userId, long dueDate);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] dueDates = new long[INITIAL_CAPACITY];
+    private int[] bookIds = new int[INITIAL_CAPACITY];
+    private int[] userIds = new int[INITIAL_CAPACITY];
+    private int size;
+    // id книги -> позиция в куче
+    private final IntSlotIndex positions = new IntSlotIndex();
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int bookId) {
+        return positions.get(bookId) != IntSlotIndex.MISSING;
+    }
+
+    void clear() {
+        size = 0;
+        positions.clear();
+    }
+
+    void add(int bookId, int userId, long dueDate) {
+        if (contains(bookId)) {
+            throw new IllegalStateException("У книги " + bookId + " уже есть открытая выдача");
+        }
+        if (size == dueDates.length) {
+            int capacity = size * 2;
+            dueDates = Arrays.copyOf(dueDates, capacity);
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+        }
+        dueDates[size] = dueDate;
+        bookIds[size] = bookId;
+        userIds[size] = userId;
+        positions.put(bookId, size);
+        siftUp(size++);
+    }
+
+    // false, если у книги нет выдачи в куче
+    boolean remove(int bookId) {
+        int position = positions.remove(bookId);
+        if (position == IntSlotIndex.MISSING) {
+            return false;
+        }
+        int last = --size;
+        if (position != last) {
+            move(last, position);
+            siftDown(position);
+            siftUp(position);
+        }
+        return true;
+    }
+
+    // Выдачи со сроком строго раньше now в порядке срока; возвращает их число
+    int forEachDueBefore(long now, Visitor visitor) {
+        if (size == 0 || dueDates[0] >= now) {
+            return 0;
+        }
+        // вспомогательная куча позиций-кандидатов: из неё достаём ближайший срок, потомков добавляем
+        int[] frontier = new int[16];
+        int frontierSize = 0;
+        frontier[frontierSize++] = 0;
+        int visited = 0;
+        while (frontierSize > 0) {
+            int position = frontier[0];
+            frontier[0] = frontier[--frontierSize];
+            siftDownFrontier(frontier, frontierSize, 0);
+            visitor.visit(bookIds[position], userIds[position], dueDates[position]);
+            visited++;
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < size; child++) {
+                if (dueDates[child] < now) {
+                    if (frontierSize == frontier.length) {
+                        frontier = Arrays.copyOf(frontier, frontierSize * 2);
+                    }
+                    frontier[frontierSize] = child;
+                    siftUpFrontier(frontier, frontierSize++);
+                }
+            }
+        }
+        return visited;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (dueDates[parent] <= dueDates[position]) {
+                return;
+            }
+            swap(parent, position);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && dueDates[left] < dueDates[smallest]) {
+                smallest = left;
+            }
+            if (right < size && dueDates[right] < dueDates[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(smallest, position);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long due = dueDates[a];
+        int book = bookIds[a];
+        int user = userIds[a];
+        move(b, a);
+        dueDates[b] = due;
+        bookIds[b] = book;
+        userIds[b] = user;
+        positions.put(book, b);
+    }
+
+    private void move(int from, int to) {
+        dueDates[to] = dueDates[from];
+        bookIds[to] = bookIds[from];
+        userIds[to] = userIds[from];
+        positions.put(bookIds[to], to);
+    }
+
+    private void siftUpFrontier(int[] frontier, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (dueDates[frontier[parent]] <= dueDates[frontier[index]]) {
+                return;
+            }
+            int swap = frontier[parent];
+            frontier[parent] = frontier[index];
+            frontier[index] = swap;
+            index = parent;
+        }
+    }
+
+    private void siftDownFrontier(int[] frontier, int frontierSize, int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < frontierSize && dueDates[frontier[left]] < dueDates[frontier[smallest]]) {
+                smallest = left;
+            }
+            if (right < frontierSize && dueDates[frontier[right]] < dueDates[frontier[smallest]]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            int swap = frontier[smallest];
+            frontier[smallest] = frontier[index];
+            frontier[index] = swap;
+            index = smallest;
+        }
+    }
+}
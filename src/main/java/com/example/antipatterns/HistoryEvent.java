@@ -0,0 +1,36 @@
+package com.example.antipatterns;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+// Одна запись истории операций
+final class HistoryEvent {
+    enum Kind { SYSTEM, SECURITY, OPERATION, LEGACY }
+
+    private final long sequence;
+    private final long timestamp;
+    private final Kind kind;
+    private final String message;
+
+    HistoryEvent(long sequence, long timestamp, Kind kind, String message) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.kind = kind;
+        this.message = message;
+    }
+
+    long sequence() { return sequence; }
+    long timestamp() { return timestamp; }
+    Kind kind() { return kind; }
+    String message() { return message; }
+
+    // Строка для сегмента на диске: seq, время, тип и текст через табуляцию
+    String toLine() {
+        return sequence + "\t" + timestamp + "\t" + kind + "\t" + message.replace('\n', ' ').replace('\t', ' ');
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + new SimpleDateFormat("HH:mm:ss").format(new Date(timestamp)) + " [" + kind + "] " + message;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+// Кольцевой буфер истории фиксированной ёмкости без блокировок, безопасный для нескольких писателей.
+// Писатель занимает номер через getAndIncrement и кладёт событие в ячейку seq % capacity.
+// Вытесненные события асинхронно дописываются в сегменты на диске; при переполнении
+// очереди выгрузки события отбрасываются (писатель никогда не ждёт диск).
+final class HistoryRing implements AutoCloseable {
+    private static final int SPILL_QUEUE_CAPACITY = 8192;
+    private static final long SEGMENT_BYTES = 8L * 1024 * 1024;
+    private static final int MAX_SEGMENTS = 16;
+
+    private final AtomicReferenceArray<HistoryEvent> slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong droppedSpills = new AtomicLong();
+    private final BlockingQueue<HistoryEvent> spillQueue = new ArrayBlockingQueue<>(SPILL_QUEUE_CAPACITY);
+    private final Path spillDirectory;
+    private volatile Thread spillThread;
+    private volatile boolean closed;
+
+    // capacity округляется вверх до степени двойки; spillDirectory == null отключает выгрузку на диск
+    HistoryRing(int capacity, Path spillDirectory) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.spillDirectory = spillDirectory;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    // Сколько событий записано за всё время (включая вытесненные)
+    long totalRecorded() {
+        return nextSequence.get();
+    }
+
+    long droppedSpills() {
+        return droppedSpills.get();
+    }
+
+    void record(HistoryEvent.Kind kind, String message) {
+        long sequence = nextSequence.getAndIncrement();
+        HistoryEvent event = new HistoryEvent(sequence, System.currentTimeMillis(), kind, message);
+        int index = (int) (sequence & mask);
+        while (true) {
+            HistoryEvent current = slots.get(index);
+            if (current != null && current.sequence() > sequence) {
+                // пока мы шли, ячейку уже занял более новый писатель: наше событие сразу вытеснено
+                spill(event);
+                return;
+            }
+            if (slots.compareAndSet(index, current, event)) {
+                if (current != null) {
+                    spill(current);
+                }
+                return;
+            }
+        }
+    }
+
+    // Самые свежие события, от новых к старым, начиная с skip-го; работает за O(skip + limit)
+    List<HistoryEvent> recent(int skip, int limit) {
+        long head = nextSequence.get();
+        long oldest = Math.max(0, head - capacity());
+        ArrayList<HistoryEvent> result = new ArrayList<>(Math.max(0, Math.min(limit, capacity())));
+        for (long sequence = head - 1 - skip; sequence >= oldest && result.size() < limit; sequence--) {
+            HistoryEvent event = slots.get((int) (sequence & mask));
+            // событие ещё не опубликовано или уже перезаписано - пропускаем
+            if (event != null && event.sequence() == sequence) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    // Число событий, доступных в памяти для просмотра
+    int available() {
+        return (int) Math.min(nextSequence.get(), capacity());
+    }
+
+    private void spill(HistoryEvent event) {
+        if (spillDirectory == null || closed) {
+            return;
+        }
+        if (!spillQueue.offer(event)) {
+            droppedSpills.incrementAndGet();
+            return;
+        }
+        if (spillThread == null) {
+            startSpillThread();
+        }
+    }
+
+    private synchronized void startSpillThread() {
+        if (spillThread != null) {
+            return;
+        }
+        Thread thread = new Thread(this::spillLoop, "history-spill");
+        thread.setDaemon(true);
+        thread.start();
+        spillThread = thread;
+    }
+
+    private void spillLoop() {
+        SegmentWriter writer = new SegmentWriter(spillDirectory);
+        ArrayList<HistoryEvent> batch = new ArrayList<>();
+        try {
+            while (!closed || !spillQueue.isEmpty()) {
+                HistoryEvent first = spillQueue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    writer.flush();
+                    continue;
+                }
+                batch.add(first);
+                spillQueue.drainTo(batch);
+                for (HistoryEvent event : batch) {
+                    writer.write(event.toLine());
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("История: не удалось записать сегмент: " + e.getMessage());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread = spillThread;
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Последовательность сегментов history-NNNNNN.log; старые сегменты сверх MAX_SEGMENTS удаляются
+    private static final class SegmentWriter {
+        private final Path directory;
+        private Writer out;
+        private long written;
+        private int segment;
+
+        SegmentWriter(Path directory) {
+            this.directory = directory;
+        }
+
+        void write(String line) throws IOException {
+            if (out == null || written >= SEGMENT_BYTES) {
+                roll();
+            }
+            out.write(line);
+            out.write('\n');
+            written += utf8Length(line) + 1;
+        }
+
+        // Размер строки в файле: кириллица занимает два байта на символ, а не один
+        private static int utf8Length(String line) {
+            int bytes = 0;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c < 0x80) {
+                    bytes++;
+                } else if (c < 0x800) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < line.length() && Character.isLowSurrogate(line.charAt(i + 1))) {
+                    bytes += 4;
+                    i++;
+                } else {
+                    // одиночный суррогат кодировщик заменяет на '?'
+                    bytes += Character.isSurrogate(c) ? 1 : 3;
+                }
+            }
+            return bytes;
+        }
+
+        void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        void close() {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException e) {
+                // при закрытии ошибку уже некуда сообщать
+            }
+        }
+
+        private void roll() throws IOException {
+            if (out == null) {
+                Files.createDirectories(directory);
+                segment = lastSegmentNumber() + 1;
+            } else {
+                out.close();
+                segment++;
+            }
+            out = Files.newBufferedWriter(segmentPath(segment), StandardCharsets.UTF_8);
+            written = 0;
+            Files.deleteIfExists(segmentPath(segment - MAX_SEGMENTS));
+        }
+
+        private int lastSegmentNumber() throws IOException {
+            int last = 0;
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith("history-") && name.endsWith(".log")) {
+                        try {
+                            last = Math.max(last, Integer.parseInt(name.substring(8, name.length() - 4)));
+                        } catch (NumberFormatException e) {
+                            // чужой файл - пропускаем
+                        }
+                    }
+                }
+            }
+            return last;
+        }
+
+        private Path segmentPath(int number) {
+            return directory.resolve(String.format("history-%06d.log", number));
+        }
+    }
+}
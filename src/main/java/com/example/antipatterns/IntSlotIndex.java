@@ -0,0 +1,138 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// Хэш-индекс int -> слот с открытой адресацией и линейным пробированием.
+// Ключи и значения лежат в примитивных массивах, поиск ничего не аллоцирует.
+final class IntSlotIndex {
+    static final int MISSING = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys = new int[INITIAL_CAPACITY];
+    // MISSING в values означает пустую ячейку, поэтому слоты должны быть неотрицательными
+    private int[] values = newValues(INITIAL_CAPACITY);
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    int get(int key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            int value = values[i];
+            if (value == MISSING) {
+                return MISSING;
+            }
+            if (keys[i] == key) {
+                return value;
+            }
+        }
+    }
+
+    void put(int key, int slot) {
+        if (slot < 0) {
+            throw new IllegalArgumentException("slot must be non-negative: " + slot);
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            if (values[i] == MISSING) {
+                keys[i] = key;
+                values[i] = slot;
+                size++;
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = slot;
+                return;
+            }
+        }
+    }
+
+    // Удаление со сдвигом последующих элементов цепочки, без "надгробий"
+    int remove(int key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != MISSING && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        int removed = values[i];
+        if (removed == MISSING) {
+            return MISSING;
+        }
+        int gap = i;
+        for (int j = (gap + 1) & mask; values[j] != MISSING; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            // элемент j можно сдвинуть в gap, если его домашняя ячейка не лежит в (gap, j]
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = MISSING;
+        size--;
+        return removed;
+    }
+
+    void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    // Независимая копия таблицы (копирование массивов, без повторных вставок)
+    IntSlotIndex copy() {
+        IntSlotIndex copy = new IntSlotIndex();
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    // Таблица сохраняется в снимок как есть и загружается копированием массивов, без повторных вставок
+    void writeTo(SnapshotWriter out, String name) throws IOException {
+        out.intColumn(name + ".keys", keys.length, i -> keys[i]);
+        out.intColumn(name + ".values", values.length, i -> values[i]);
+        out.intColumn(name + ".size", 1, i -> size);
+    }
+
+    void readFrom(MappedSnapshot in, String name) throws IOException {
+        int[] loadedKeys = in.ints(name + ".keys");
+        int[] loadedValues = in.ints(name + ".values");
+        int[] loadedSize = in.ints(name + ".size");
+        if (loadedKeys.length != loadedValues.length || Integer.bitCount(loadedKeys.length) != 1 || loadedSize.length != 1) {
+            throw new IOException("Снимок повреждён: индекс " + name);
+        }
+        keys = loadedKeys;
+        values = loadedValues;
+        size = loadedSize[0];
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = newValues(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int[] newValues(int capacity) {
+        int[] values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        return values;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.antipatterns;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Гистограмма задержек в наносекундах в духе HdrHistogram: логарифмические корзины,
+// каждая степень двойки поделена на 2^SUB_BITS линейных подкорзин (погрешность перцентиля не больше 1/32).
+// Значения до 2^(SUB_BITS + 1) хранятся точно. Запись - инкремент корзины и сумма, без блокировок и выделений,
+// поэтому record() можно звать из любого числа потоков. Общее число записей считается при чтении по корзинам.
+final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // последняя корзина покрывает значения до Long.MAX_VALUE
+    private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(index(value));
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // повторяем, пока не обновим максимум
+        }
+    }
+
+    long count() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        long n = count();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    // Значение, не меньше которого percentile% записей (верхняя граница корзины); 0 для пустой гистограммы
+    long percentile(double percentile) {
+        long n = count();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Добавляет записи другой гистограммы (например, собранной в другом потоке)
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long current;
+        while (otherMax > (current = max.get()) && !max.compareAndSet(current, otherMax)) {
+            // повторяем, пока не обновим максимум
+        }
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        sum.set(0);
+        max.set(0);
+    }
+
+    // Краткая сводка в миллисекундах: число, среднее, p50, p99, p99.9, максимум
+    String summary() {
+        return String.format(Locale.ROOT, "n=%d mean=%.3f p50=%.3f p99=%.3f p99.9=%.3f max=%.3f ms",
+                count(), mean() / 1e6, percentile(50) / 1e6, percentile(99) / 1e6, percentile(99.9) / 1e6, max() / 1e6);
+    }
+
+    private static int index(long value) {
+        if (value < 2 * SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        long top = (index & (SUB_COUNT - 1)) + SUB_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,1879 @@
+package com.example.antipatterns;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+// Ядро библиотеки без консоли: книги, пользователи, бронирования, штрафы, индексы и сохранение на диск.
+// Консольное меню, пакетный режим и импорт работают через него.
+// Потокобезопасность:
+// - выдача и возврат берут блокировку чтения структуры, затем полосу блокировок по id книги и полосу по id
+//   пользователя (всегда в этом порядке), поэтому выдачи разных книг не ждут друг друга;
+// - журнал бронирований и штрафов дописывается под короткой общей блокировкой, запись в WAL сериализует LibraryPersistence;
+// - добавление, изменение и удаление двигают слоты и индексы и идут под блокировкой записи, как и снимок;
+// - поиск и обходы идут под блокировкой чтения, параллельно друг с другом и с выдачами.
+// Штрафы за просрочку начисляются фоновым accrueOverdueFines по куче сроков возврата (DueDateHeap),
+// возврат добирает только дни, за которые штраф ещё не начислен; начисления идут по одному, до блокировки структуры.
+// Отклонённая операция (книга занята, превышен лимит и т.п.) - IllegalArgumentException с текстом для пользователя.
+// Время каждой операции и её ошибки пишутся в OperationMetrics; у поиска и обходов туда входит и работа посетителя.
+final class LibraryEngine {
+    // Чтение книги внутри обхода: слот действителен только до выхода из visit, менять библиотеку отсюда нельзя
+    interface BookVisitor {
+        void visit(BookStore books, int slot);
+    }
+
+    // Бронирование: книга в слоте, читатель и срок возврата; те же ограничения, что у BookVisitor
+    interface LoanVisitor {
+        void visit(BookStore books, int slot, int userId, long dueDate);
+    }
+
+    // Итог возврата: кто держал книгу и начисленный штраф
+    static final class Receipt {
+        private final int userId;
+        private final double fine;
+
+        Receipt(int userId, double fine) {
+            this.userId = userId;
+            this.fine = fine;
+        }
+
+        int userId() {
+            return userId;
+        }
+
+        double fine() {
+            return fine;
+        }
+    }
+
+    // Бронирования, снятые под ledgerLock: посетитель вызывается уже после её снятия, чтобы медленный посетитель
+    // (вывод в консоль) не задерживал выдачи и возвраты всего процесса
+    private static final class LoanBuffer implements DueDateHeap.Visitor {
+        private int[] bookIds = new int[16];
+        private int[] userIds = new int[16];
+        private long[] dueDates = new long[16];
+        private int size;
+
+        @Override
+        public void visit(int bookId, int userId, long dueDate) {
+            if (size == bookIds.length) {
+                bookIds = Arrays.copyOf(bookIds, size * 2);
+                userIds = Arrays.copyOf(userIds, size * 2);
+                dueDates = Arrays.copyOf(dueDates, size * 2);
+            }
+            bookIds[size] = bookId;
+            userIds[size] = userId;
+            dueDates[size++] = dueDate;
+        }
+
+        // Под блокировкой чтения структуры: книги не удаляются, слоты действительны
+        int visitAll(BookStore books, LoanVisitor visitor) {
+            for (int i = 0; i < size; i++) {
+                visitor.visit(books, books.indexOf(bookIds[i]), userIds[i], dueDates[i]);
+            }
+            return size;
+        }
+    }
+
+    static final int LOAN_DAYS = 7;
+    static final int DEFAULT_BORROW_LIMIT = 7;
+    static final long DAY_MILLIS = 86_400_000L;
+    static final String LOAN_ARCHIVE_FILE = "loans.archive";
+    private static final double DEFAULT_RATING = 4.2;
+    private static final double FINE_FACTOR = 3.14159;
+    static final int DEFAULT_SEARCH_CACHE_ENTRIES = 1024;
+    // id для addBook/addUser берётся из счётчика движка
+    static final int NEXT_ID = 0;
+    // число полос блокировок по id, степень двойки
+    private static final int LOCK_STRIPES = 256;
+
+    private static final RecordSchema USER_SCHEMA = new RecordSchema("user")
+            .field("id", RecordSchema.Type.INT)
+            .field("name", RecordSchema.Type.STRING)
+            .field("surname", RecordSchema.Type.STRING)
+            .field("year", RecordSchema.Type.INT)
+            .field("phone", RecordSchema.Type.STRING)
+            .field("email", RecordSchema.Type.STRING)
+            .field("active", RecordSchema.Type.BOOLEAN)
+            .field("borrowLimit", RecordSchema.Type.INT)
+            .field("registrationDate", RecordSchema.Type.DATE)
+            .field("borrowedBooks", RecordSchema.Type.INT_LIST);
+    // бронирования в снимках до LoanLedger: открытые и закрытые вместе, только для чтения
+    private static final RecordSchema LOAN_SCHEMA = new RecordSchema("loan")
+            .field("bookId", RecordSchema.Type.INT)
+            .field("userId", RecordSchema.Type.INT)
+            .field("borrowDate", RecordSchema.Type.DATE)
+            .field("returnDate", RecordSchema.Type.DATE)
+            .field("dueDate", RecordSchema.Type.DATE);
+    private static final RecordSchema FINE_SCHEMA = new RecordSchema("fine")
+            .field("bookId", RecordSchema.Type.INT)
+            .field("amount", RecordSchema.Type.DOUBLE)
+            .field("date", RecordSchema.Type.DATE);
+
+    // книги хранятся по колонкам, см. BookStore
+    private final BookStore bookStore = new BookStore();
+    // полнотекстовый индекс по названию, автору и жанру, ключ - id книги
+    private final NgramIndex bookTextIndex = new NgramIndex();
+    // книги в порядке названия, поддерживается при каждом изменении вместо сортировки при выводе
+    private final OrderedIdIndex<String> bookTitleIndex = new OrderedIdIndex<>();
+    // после восстановления и массовой загрузки индексы книг строятся при первом обращении
+    private volatile boolean bookIndexesStale;
+    private final Object indexBuildLock = new Object();
+    // пользователи и штрафы после загрузки снимка читаются из него по мере обращения
+    private final MappedRecordList<HashMap<String, Object>> users = new MappedRecordList<>();
+    // id пользователя -> позиция в users
+    private final IntSlotIndex userIndex = new IntSlotIndex();
+    // поиск пользователей: n-граммы имени, фамилии и полного имени в обоих порядках, ключ - id пользователя
+    private final NgramIndex userTextIndex = new NgramIndex();
+    // как bookIndexesStale: после восстановления и массовой загрузки строится при первом поиске,
+    // чтобы не декодировать всех пользователей из снимка заранее
+    private volatile boolean userTextIndexStale;
+    // открытые бронирования по книге и читателю, закрытые - в архиве (файл LOAN_ARCHIVE_FILE)
+    private final LoanLedger loans = new LoanLedger();
+    // открытые бронирования по сроку возврата: просроченные без прохода по всем
+    private final DueDateHeap dueHeap = new DueDateHeap();
+    // bookId -> дней просрочки, за которые штраф уже начислен; запись есть - бронирование отмечено просроченным
+    private final IntSlotIndex finedDays = new IntSlotIndex();
+    // userId -> число его бронирований, отмеченных просроченными
+    private final IntSlotIndex overdueUsers = new IntSlotIndex();
+    private final MappedRecordList<HashMap<String, Object>> fines = new MappedRecordList<>();
+    // счётчики для статистики и отчётов, обновляются на каждой операции
+    private final LibraryStatistics statistics = new LibraryStatistics();
+    // выдачи, возвраты, новые читатели и штрафы за последнюю минуту, час и сутки
+    private final CirculationWindows circulation = new CirculationWindows();
+    // задержки и ошибки по операциям
+    private final OperationMetrics metrics = new OperationMetrics(16);
+    // результаты поиска книг по запросу; сбрасываются при изменении подходящих книг
+    private final BookQueryCache searchCache = new BookQueryCache(DEFAULT_SEARCH_CACHE_ENTRIES, metrics);
+    private int bookIdCounter;
+    private int userIdCounter;
+    // см. reportPool(); потоки ForkJoinPool - демоны и не держат процесс
+    private ForkJoinPool reportPool;
+
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] bookLocks = newStripes();
+    private final ReentrantLock[] userLocks = newStripes();
+    // loans, fines, dueHeap, finedDays и overdueUsers
+    private final ReentrantLock ledgerLock = new ReentrantLock();
+    // одно начисление штрафов за раз: overdueBuffer переиспользуется между вызовами accrueOverdueFines
+    private final ReentrantLock accrualLock = new ReentrantLock();
+    // id книг просроченных бронирований текущего начисления; растёт по числу просроченных, а не по всем выдачам
+    private int[] overdueBuffer = new int[16];
+    private int overdueCount;
+    private final DueDateHeap.Visitor overdueCollector = (bookId, userId, dueDate) -> {
+        if (overdueCount == overdueBuffer.length) {
+            overdueBuffer = Arrays.copyOf(overdueBuffer, overdueCount * 2);
+        }
+        overdueBuffer[overdueCount++] = bookId;
+    };
+
+    private final String sessionId;
+    private final double finePerDay;
+    // сообщения о сбоях записи на диск: операция в памяти уже выполнена, поэтому только предупреждаем
+    private final Consumer<String> warnings;
+    // источник времени для дат выдачи, возврата и удаления; генератор нагрузки подменяет его ускоренными часами
+    private final LongSupplier clock;
+    // снимок + журнал предзаписи; null, пока open() не вызван или если сохранение отключено
+    private volatile LibraryPersistence persistence;
+
+    LibraryEngine(String sessionId, double finePerDay, Consumer<String> warnings) {
+        this(sessionId, finePerDay, warnings, System::currentTimeMillis);
+    }
+
+    LibraryEngine(String sessionId, double finePerDay, Consumer<String> warnings, LongSupplier clock) {
+        this.sessionId = sessionId;
+        this.finePerDay = finePerDay;
+        this.warnings = warnings;
+        this.clock = clock;
+    }
+
+    // Загрузка последнего снимка и проигрывание хвоста журнала; возвращает число проигранных записей
+    int open(Path directory, boolean fsync, int snapshotEvery) throws IOException {
+        structureLock.writeLock().lock();
+        try {
+            LibraryPersistence opened = new LibraryPersistence(directory, fsync, snapshotEvery, warnings);
+            bookIndexesStale = true;
+            userTextIndexStale = true;
+            searchCache.clear();
+            loans.attachArchive(directory.resolve(LOAN_ARCHIVE_FILE));
+            if (!opened.hasSnapshot()) {
+                // журнал проигрывается с начала и заново допишет все закрытые бронирования
+                loans.truncateArchive(0);
+            }
+            int replayed = opened.recover(this::readState, this::replayMutation);
+            persistence = opened;
+            return replayed;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // Снимок на выходе и закрытие файлов
+    void close() {
+        structureLock.writeLock().lock();
+        try {
+            if (persistence == null) {
+                return;
+            }
+            try {
+                persistence.snapshot(this::writeState);
+                persistence.close();
+                loans.closeArchive();
+            } catch (IOException e) {
+                warnings.accept("Не удалось сохранить снимок: " + e.getMessage());
+            }
+            persistence = null;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    void snapshot() {
+        structureLock.writeLock().lock();
+        try {
+            if (persistence != null) {
+                persistence.snapshot(this::writeState);
+            }
+        } catch (IOException e) {
+            warnings.accept("Не удалось сохранить снимок: " + e.getMessage());
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // ---- изменения ----
+
+    int addBook(String title, String author, int year, String isbn, String genre) {
+        return addBook(NEXT_ID, title, author, year, isbn, genre);
+    }
+
+    // id > 0 выдан снаружи (секция ShardedLibrary, где id раздаёт координатор), NEXT_ID - следующий по счётчику
+    int addBook(int id, String title, String author, int year, String isbn, String genre) {
+        long started = metrics.start(OperationMetrics.Op.ADD_BOOK);
+        try {
+            int bookId;
+            boolean snapshotDue;
+            structureLock.writeLock().lock();
+            try {
+                if (id != NEXT_ID && (id < 0 || bookStore.indexOf(id) >= 0)) {
+                    throw new IllegalArgumentException("Книга с id " + id + " уже есть");
+                }
+                bookId = id == NEXT_ID ? bookIdCounter + 1 : id;
+                applyAddBook(bookId, title, author, year, isbn, genre);
+                snapshotDue = persist(WriteAheadLog.Op.ADD_BOOK, out -> writeBook(out, bookId));
+            } finally {
+                structureLock.writeLock().unlock();
+            }
+            snapshotIfDue(snapshotDue);
+            return bookId;
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.ADD_BOOK);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.ADD_BOOK, started);
+        }
+    }
+
+    // null в параметре - поле не меняется
+    boolean updateBook(int bookId, String title, String author, Integer year) {
+        long started = metrics.start(OperationMetrics.Op.UPDATE_BOOK);
+        try {
+            boolean snapshotDue;
+            structureLock.writeLock().lock();
+            try {
+                if (!applyUpdateBook(bookId, title, author, year)) {
+                    return false;
+                }
+                snapshotDue = persist(WriteAheadLog.Op.UPDATE_BOOK, out -> writeBook(out, bookId));
+            } finally {
+                structureLock.writeLock().unlock();
+            }
+            snapshotIfDue(snapshotDue);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.UPDATE_BOOK);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.UPDATE_BOOK, started);
+        }
+    }
+
+    boolean removeBook(int bookId) {
+        long started = metrics.start(OperationMetrics.Op.REMOVE_BOOK);
+        try {
+            boolean snapshotDue;
+            structureLock.writeLock().lock();
+            try {
+                long removeTime = clock.getAsLong();
+                if (!applyRemoveBook(bookId, removeTime)) {
+                    return false;
+                }
+                // время удаления закрывает бронирование книги, как дата возврата в RETURN
+                snapshotDue = persist(WriteAheadLog.Op.REMOVE_BOOK, out -> {
+                    out.writeInt(bookId);
+                    out.writeLong(removeTime);
+                });
+            } finally {
+                structureLock.writeLock().unlock();
+            }
+            snapshotIfDue(snapshotDue);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.REMOVE_BOOK);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.REMOVE_BOOK, started);
+        }
+    }
+
+    HashMap<String, Object> addUser(String name, String surname, int year, String phone, String email) {
+        return addUser(NEXT_ID, name, surname, year, phone, email);
+    }
+
+    // id - как у addBook
+    HashMap<String, Object> addUser(int id, String name, String surname, int year, String phone, String email) {
+        long started = metrics.start(OperationMetrics.Op.ADD_USER);
+        try {
+            HashMap<String, Object> user;
+            boolean snapshotDue;
+            structureLock.writeLock().lock();
+            try {
+                if (id != NEXT_ID && (id < 0 || userIndex.get(id) != IntSlotIndex.MISSING)) {
+                    throw new IllegalArgumentException("Пользователь с id " + id + " уже есть");
+                }
+                user = applyAddUser(id == NEXT_ID ? userIdCounter + 1 : id, name, surname, year, phone, email,
+                        true, DEFAULT_BORROW_LIMIT, clock.getAsLong());
+                snapshotDue = persist(WriteAheadLog.Op.ADD_USER, out -> writeUser(out, user));
+            } finally {
+                structureLock.writeLock().unlock();
+            }
+            snapshotIfDue(snapshotDue);
+            return user;
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.ADD_USER);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.ADD_USER, started);
+        }
+    }
+
+    // null в параметре - поле не меняется
+    boolean updateUser(int userId, String phone, String email) {
+        long started = metrics.start(OperationMetrics.Op.UPDATE_USER);
+        try {
+            boolean snapshotDue;
+            structureLock.writeLock().lock();
+            try {
+                if (!applyUpdateUser(userId, phone, email)) {
+                    return false;
+                }
+                snapshotDue = persist(WriteAheadLog.Op.UPDATE_USER, out -> writeUser(out, findUserById(userId)));
+            } finally {
+                structureLock.writeLock().unlock();
+            }
+            snapshotIfDue(snapshotDue);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.UPDATE_USER);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.UPDATE_USER, started);
+        }
+    }
+
+    boolean removeUser(int userId) {
+        long started = metrics.start(OperationMetrics.Op.REMOVE_USER);
+        try {
+            boolean snapshotDue;
+            structureLock.writeLock().lock();
+            try {
+                if (!applyRemoveUser(userId)) {
+                    return false;
+                }
+                snapshotDue = persist(WriteAheadLog.Op.REMOVE_USER, out -> out.writeInt(userId));
+            } finally {
+                structureLock.writeLock().unlock();
+            }
+            snapshotIfDue(snapshotDue);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.REMOVE_USER);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.REMOVE_USER, started);
+        }
+    }
+
+    // Проверка и выдача одним шагом под блокировками книги и пользователя
+    void borrow(int bookId, int userId) {
+        checkOut(bookId, userId, true);
+    }
+
+    // Выдача книги читателю из другой секции (ShardedLibrary): его лимит и активность уже проверила
+    // и заняла место в его списке секция читателя (reserve), здесь проверяется только книга
+    void lend(int bookId, int userId) {
+        checkOut(bookId, userId, false);
+    }
+
+    // Место под выдачу в списке читателя (ShardedLibrary): проверки читателя те же, что у borrow, и книга
+    // сразу попадает в его borrowedBooks, так что следующие выдачи видят её в лимите ещё до lend в секции книги
+    void reserve(int userId, int bookId) {
+        boolean snapshotDue;
+        structureLock.readLock().lock();
+        try {
+            ReentrantLock userLock = userLocks[stripe(userId)];
+            userLock.lock();
+            try {
+                String rejection = checkBorrower(userId);
+                if (rejection != null) {
+                    throw new IllegalArgumentException(rejection);
+                }
+                if (!applyReserve(userId, bookId)) {
+                    throw new IllegalArgumentException("Книга уже забронирована");
+                }
+                snapshotDue = persist(WriteAheadLog.Op.RESERVE, out -> {
+                    out.writeInt(userId);
+                    out.writeInt(bookId);
+                });
+            } finally {
+                userLock.unlock();
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+        snapshotIfDue(snapshotDue);
+    }
+
+    // Снятие места, занятого reserve: книгу вернули или её секция отказала в выдаче; false - книги в списке нет
+    // (в одной секции с книгой её уже убрал returnBook)
+    boolean release(int userId, int bookId) {
+        boolean snapshotDue;
+        structureLock.readLock().lock();
+        try {
+            ReentrantLock userLock = userLocks[stripe(userId)];
+            userLock.lock();
+            try {
+                if (!applyRelease(userId, bookId)) {
+                    return false;
+                }
+                snapshotDue = persist(WriteAheadLog.Op.RELEASE, out -> {
+                    out.writeInt(userId);
+                    out.writeInt(bookId);
+                });
+            } finally {
+                userLock.unlock();
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+        snapshotIfDue(snapshotDue);
+        return true;
+    }
+
+    // checkUser = false - читатель проверен в своей секции (lend)
+    private void checkOut(int bookId, int userId, boolean checkUser) {
+        long started = metrics.start(OperationMetrics.Op.BORROW_BOOK);
+        try {
+            boolean snapshotDue;
+            structureLock.readLock().lock();
+            try {
+                ReentrantLock bookLock = bookLocks[stripe(bookId)];
+                bookLock.lock();
+                try {
+                    ReentrantLock userLock = userLocks[stripe(userId)];
+                    userLock.lock();
+                    try {
+                        String rejection = checkUser ? checkBorrow(bookId, userId) : checkBook(bookId);
+                        if (rejection != null) {
+                            throw new IllegalArgumentException(rejection);
+                        }
+                        long borrowTime = clock.getAsLong();
+                        applyBorrow(bookId, userId, borrowTime);
+                        snapshotDue = persist(WriteAheadLog.Op.BORROW, out -> {
+                            out.writeInt(bookId);
+                            out.writeInt(userId);
+                            out.writeLong(borrowTime);
+                        });
+                    } finally {
+                        userLock.unlock();
+                    }
+                } finally {
+                    bookLock.unlock();
+                }
+            } finally {
+                structureLock.readLock().unlock();
+            }
+            snapshotIfDue(snapshotDue);
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.BORROW_BOOK);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.BORROW_BOOK, started);
+        }
+    }
+
+    Receipt returnBook(int bookId) {
+        long started = metrics.start(OperationMetrics.Op.RETURN_BOOK);
+        try {
+            Receipt receipt;
+            boolean snapshotDue;
+            structureLock.readLock().lock();
+            try {
+                ReentrantLock bookLock = bookLocks[stripe(bookId)];
+                bookLock.lock();
+                try {
+                    int slot = bookStore.indexOf(bookId);
+                    if (slot < 0) {
+                        throw new IllegalArgumentException("Книга не найдена");
+                    }
+                    if (bookStore.isAvailable(slot)) {
+                        throw new IllegalArgumentException("Эта книга не была забронирована");
+                    }
+                    // читатель книги не меняется, пока держим её полосу
+                    int userId = bookStore.borrowedBy(slot);
+                    ReentrantLock userLock = userLocks[stripe(userId)];
+                    userLock.lock();
+                    try {
+                        long returnTime = clock.getAsLong();
+                        receipt = new Receipt(userId, applyReturn(bookId, returnTime));
+                        snapshotDue = persist(WriteAheadLog.Op.RETURN, out -> {
+                            out.writeInt(bookId);
+                            out.writeLong(returnTime);
+                        });
+                    } finally {
+                        userLock.unlock();
+                    }
+                } finally {
+                    bookLock.unlock();
+                }
+            } finally {
+                structureLock.readLock().unlock();
+            }
+            snapshotIfDue(snapshotDue);
+            return receipt;
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.RETURN_BOOK);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.RETURN_BOOK, started);
+        }
+    }
+
+    // Начисление штрафов по просроченным бронированиям и отметка их читателей; вызывается планировщиком.
+    // Просроченные берутся с верхушки кучи сроков, O(k log n) для k просроченных, остальные бронирования не трогаются.
+    // Штраф за каждый день просрочки начисляется один раз. Возвращает число изменённых бронирований
+    int accrueOverdueFines() {
+        long accrualTime = clock.getAsLong();
+        int changed = 0;
+        boolean snapshotDue = false;
+        accrualLock.lock();
+        structureLock.readLock().lock();
+        try {
+            int count;
+            ledgerLock.lock();
+            try {
+                overdueCount = 0;
+                count = dueHeap.forEachDueBefore(accrualTime, overdueCollector);
+            } finally {
+                ledgerLock.unlock();
+            }
+            for (int i = 0; i < count; i++) {
+                int bookId = overdueBuffer[i];
+                // полоса книги: бронирование не закроется и не откроется заново, пока пишем его начисление в журнал
+                ReentrantLock bookLock = bookLocks[stripe(bookId)];
+                bookLock.lock();
+                try {
+                    if (applyFineAccrual(bookId, accrualTime)) {
+                        changed++;
+                        snapshotDue |= persist(WriteAheadLog.Op.FINE_ACCRUED, out -> {
+                            out.writeInt(bookId);
+                            out.writeLong(accrualTime);
+                        });
+                    }
+                } finally {
+                    bookLock.unlock();
+                }
+            }
+        } finally {
+            structureLock.readLock().unlock();
+            accrualLock.unlock();
+        }
+        snapshotIfDue(snapshotDue);
+        return changed;
+    }
+
+    // ---- чтение ----
+
+    // Книга по id; false, если её нет
+    boolean findBook(int bookId, BookVisitor visitor) {
+        long started = metrics.start(OperationMetrics.Op.FIND_BOOK);
+        try {
+            structureLock.readLock().lock();
+            try {
+                int slot = bookStore.indexOf(bookId);
+                if (slot < 0) {
+                    return false;
+                }
+                visitor.visit(bookStore, slot);
+                return true;
+            } finally {
+                structureLock.readLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.FIND_BOOK);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.FIND_BOOK, started);
+        }
+    }
+
+    // Наибольшие выданные id книг и пользователей (счётчики addBook/addUser)
+    int lastBookId() {
+        structureLock.readLock().lock();
+        try {
+            return bookIdCounter;
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    int lastUserId() {
+        structureLock.readLock().lock();
+        try {
+            return userIdCounter;
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    boolean hasBook(int bookId) {
+        structureLock.readLock().lock();
+        try {
+            return bookStore.indexOf(bookId) >= 0;
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    // Кто держит книгу: BookStore.NO_USER - книга на полке, -1 - книги нет
+    int borrowerOf(int bookId) {
+        structureLock.readLock().lock();
+        try {
+            int slot = bookStore.indexOf(bookId);
+            return slot < 0 ? -1 : bookStore.borrowedBy(slot);
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    // Бронирования, просроченные на текущий момент, в порядке срока; O(k log n) для k просроченных.
+    // Под ledgerLock они только копируются, посетитель работает после её снятия. Возвращает их число
+    int forEachOverdue(LoanVisitor visitor) {
+        long now = clock.getAsLong();
+        structureLock.readLock().lock();
+        try {
+            LoanBuffer overdue = new LoanBuffer();
+            ledgerLock.lock();
+            try {
+                dueHeap.forEachDueBefore(now, overdue);
+            } finally {
+                ledgerLock.unlock();
+            }
+            return overdue.visitAll(bookStore, visitor);
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    // Книги на руках у пользователя, от последней выдачи к первой: O(k) по списку его бронирований.
+    // Как и в forEachOverdue, посетитель работает после снятия ledgerLock. Возвращает их число
+    int forEachLoanOf(int userId, LoanVisitor visitor) {
+        structureLock.readLock().lock();
+        try {
+            LoanBuffer held = new LoanBuffer();
+            ledgerLock.lock();
+            try {
+                loans.forEachOfUser(userId, (bookId, borrower, borrowDate) ->
+                        held.visit(bookId, borrower, borrowDate + DAY_MILLIS * LOAN_DAYS));
+            } finally {
+                ledgerLock.unlock();
+            }
+            return held.visitAll(bookStore, visitor);
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    // Отмечен ли пользователь должником последним начислением штрафов
+    boolean hasOverdue(int userId) {
+        ledgerLock.lock();
+        try {
+            return overdueUsers.get(userId) != IntSlotIndex.MISSING;
+        } finally {
+            ledgerLock.unlock();
+        }
+    }
+
+    // Пользователь по id, null если не найден
+    HashMap<String, Object> findUser(int userId) {
+        long started = metrics.start(OperationMetrics.Op.FIND_USER);
+        try {
+            structureLock.readLock().lock();
+            try {
+                return findUserById(userId);
+            } finally {
+                structureLock.readLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.FIND_USER);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.FIND_USER, started);
+        }
+    }
+
+    // Пользователи, у которых запрос без учёта регистра входит в имя, фамилию или полное имя в любом порядке,
+    // в порядке id; возвращает число найденных
+    int searchUsers(String query, Consumer<HashMap<String, Object>> visitor) {
+        long started = metrics.start(OperationMetrics.Op.FIND_USER);
+        try {
+            structureLock.readLock().lock();
+            try {
+                int[] positions = searchUserPositions(query);
+                for (int position : positions) {
+                    visitor.accept(users.get(position));
+                }
+                return positions.length;
+            } finally {
+                structureLock.readLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.FIND_USER);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.FIND_USER, started);
+        }
+    }
+
+    // Книги, у которых запрос входит в название, автора или жанр, в порядке названия; возвращает число найденных
+    int searchBooks(String query, BookVisitor visitor) {
+        long started = metrics.start(OperationMetrics.Op.FIND_BOOK);
+        try {
+            structureLock.readLock().lock();
+            try {
+                int[] slots = searchBookSlots(query);
+                for (int slot : slots) {
+                    visitor.visit(bookStore, slot);
+                }
+                return slots.length;
+            } finally {
+                structureLock.readLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.FIND_BOOK);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.FIND_BOOK, started);
+        }
+    }
+
+    // Книги с точно таким автором и/или жанром (null - любой), в порядке слотов; возвращает число найденных.
+    // Строки переводятся в коды словарей один раз, дальше сравниваются только int
+    int filterBooks(String author, String genre, BookVisitor visitor) {
+        long started = metrics.start(OperationMetrics.Op.FIND_BOOK);
+        try {
+            structureLock.readLock().lock();
+            try {
+                int authorCode = author == null ? StringDictionary.NO_CODE : bookStore.codeOfAuthor(author);
+                int genreCode = genre == null ? StringDictionary.NO_CODE : bookStore.codeOfGenre(genre);
+                if ((author != null && authorCode == StringDictionary.NO_CODE)
+                        || (genre != null && genreCode == StringDictionary.NO_CODE)) {
+                    return 0;
+                }
+                int found = 0;
+                for (int slot = 0; slot < bookStore.size(); slot++) {
+                    if ((author == null || bookStore.authorCode(slot) == authorCode)
+                            && (genre == null || bookStore.genreCode(slot) == genreCode)) {
+                        visitor.visit(bookStore, slot);
+                        found++;
+                    }
+                }
+                return found;
+            } finally {
+                structureLock.readLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.FIND_BOOK);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.FIND_BOOK, started);
+        }
+    }
+
+    // Обход всех книг в порядке названия: индекс названий уже даёт нужный порядок, сортировка не нужна
+    void forEachBookByTitle(BookVisitor visitor) {
+        forEachBookByTitle(0, Integer.MAX_VALUE, visitor);
+    }
+
+    // Страница каталога в порядке названия: не больше limit книг начиная с позиции offset (с 0);
+    // возвращает число обойденных
+    int forEachBookByTitle(int offset, int limit, BookVisitor visitor) {
+        checkPage(offset, limit);
+        long started = metrics.start(OperationMetrics.Op.PRINT_ALL_BOOKS);
+        try {
+            structureLock.readLock().lock();
+            try {
+                ensureBookIndexes();
+                return bookTitleIndex.forEach(offset, limit, id -> visitor.visit(bookStore, bookStore.indexOf(id)));
+            } finally {
+                structureLock.readLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.PRINT_ALL_BOOKS);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.PRINT_ALL_BOOKS, started);
+        }
+    }
+
+    void forEachUser(Consumer<HashMap<String, Object>> visitor) {
+        forEachUser(0, Integer.MAX_VALUE, visitor);
+    }
+
+    // Не больше limit пользователей начиная с позиции offset в порядке списка; возвращает число обойденных
+    int forEachUser(int offset, int limit, Consumer<HashMap<String, Object>> visitor) {
+        checkPage(offset, limit);
+        long started = metrics.start(OperationMetrics.Op.PRINT_ALL_USERS);
+        try {
+            structureLock.readLock().lock();
+            try {
+                int end = (int) Math.min(users.size(), (long) offset + limit);
+                for (int i = offset; i < end; i++) {
+                    visitor.accept(users.get(i));
+                }
+                return Math.max(0, end - offset);
+            } finally {
+                structureLock.readLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(OperationMetrics.Op.PRINT_ALL_USERS);
+            throw e;
+        } finally {
+            metrics.record(OperationMetrics.Op.PRINT_ALL_USERS, started);
+        }
+    }
+
+    // Полный отчёт по жанрам, десятилетиям и читателям за один проход в parallelism потоках, см. LibraryReport.
+    // Под блокировкой чтения снимается только срез книг и читателей, под ledgerLock - граница архива, открытые
+    // бронирования и штрафы; сам проход идёт после снятия блокировок в общем для отчётов пуле потоков.
+    // Метрику GENERATE_REPORT пишет вызывающий
+    LibraryReport report(int parallelism) throws IOException {
+        LibraryReport report;
+        structureLock.readLock().lock();
+        try {
+            report = new LibraryReport(bookStore, users.size(), users::get, userIndex, parallelism, clock.getAsLong());
+            ledgerLock.lock();
+            try {
+                report.archive(loans.archiveView());
+                int[] bookIds = new int[loans.size()];
+                int[] userIds = new int[bookIds.length];
+                long[] borrowDates = new long[bookIds.length];
+                int[] next = new int[1];
+                loans.forEach((bookId, userId, borrowDate) -> {
+                    bookIds[next[0]] = bookId;
+                    userIds[next[0]] = userId;
+                    borrowDates[next[0]++] = borrowDate;
+                });
+                report.activeLoans(bookIds, userIds, borrowDates);
+                int[] fineBookIds = new int[fines.size()];
+                double[] fineAmounts = new double[fineBookIds.length];
+                for (int i = 0; i < fineBookIds.length; i++) {
+                    HashMap<String, Object> fine = fines.get(i);
+                    Object bookId = fine.get("bookId");
+                    Object amount = fine.get("amount");
+                    fineBookIds[i] = bookId == null ? IntSlotIndex.MISSING : (Integer) bookId;
+                    fineAmounts[i] = amount == null ? 0 : (Double) amount;
+                }
+                report.fines(fineBookIds, fineAmounts);
+            } finally {
+                ledgerLock.unlock();
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+        report.compute(reportPool(parallelism));
+        return report;
+    }
+
+    // Пул потоков отчётов переиспользуется между вызовами и пересоздаётся, только если сменилось число потоков
+    // (уже запущенный на старом пуле проход дорабатывает: shutdown не прерывает задачи)
+    private synchronized ForkJoinPool reportPool(int parallelism) {
+        if (reportPool == null || reportPool.getParallelism() != parallelism) {
+            if (reportPool != null) {
+                reportPool.shutdown();
+            }
+            reportPool = new ForkJoinPool(parallelism);
+        }
+        return reportPool;
+    }
+
+    LibraryStatistics statistics() {
+        return statistics;
+    }
+
+    // Окна считаются по часам движка, поэтому и запросы к ним - на момент now()
+    CirculationWindows circulation() {
+        return circulation;
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    OperationMetrics metrics() {
+        return metrics;
+    }
+
+    // Число запросов в кэше результатов поиска книг; 0 - без кэша
+    void setSearchCacheCapacity(int entries) {
+        searchCache.setCapacity(entries);
+    }
+
+    // Полный пересчёт и сверка со счётчиками статистики; расхождение - IllegalStateException
+    void verifyStatistics() {
+        structureLock.writeLock().lock();
+        try {
+            verifyStatisticsLocked();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // Проверка согласованности всего состояния; пустой список - нарушений нет.
+    // Книга выдана ровно тогда, когда у неё есть читатель и открытое бронирование, и она есть в его borrowedBooks;
+    // в borrowedBooks каждого пользователя нет повторов и только книги, выданные именно ему, и их столько же,
+    // сколько его открытых бронирований. Книги, которых в этой секции нет, - места под выдачу в других секциях
+    // (reserve), их здесь не проверить;
+    // каждое открытое бронирование есть в куче сроков, отметки просрочки - только у открытых.
+    List<String> verifyInvariants() {
+        structureLock.writeLock().lock();
+        try {
+            ArrayList<String> violations = new ArrayList<>();
+            int borrowed = 0;
+            int flagged = 0;
+            HashMap<Integer, Integer> flaggedByUser = new HashMap<>();
+            for (int slot = 0; slot < bookStore.size(); slot++) {
+                int bookId = bookStore.id(slot);
+                int userId = bookStore.borrowedBy(slot);
+                if (bookStore.isAvailable(slot) == (userId != BookStore.NO_USER)) {
+                    violations.add("книга " + bookId + ": доступность не совпадает с читателем " + userId);
+                }
+                if (userId == BookStore.NO_USER) {
+                    continue;
+                }
+                borrowed++;
+                if (loans.userOf(bookId) != userId) {
+                    violations.add("книга " + bookId + ": нет открытого бронирования на пользователя " + userId);
+                }
+                HashMap<String, Object> user = findUserById(userId);
+                if (user != null && !borrowedBooks(user).contains(bookId)) {
+                    violations.add("книга " + bookId + " выдана пользователю " + userId + ", но её нет в его списке");
+                }
+                if (!dueHeap.contains(bookId)) {
+                    violations.add("книга " + bookId + ": бронирования нет в куче сроков");
+                }
+                if (finedDays.get(bookId) != IntSlotIndex.MISSING) {
+                    flagged++;
+                    flaggedByUser.merge(userId, 1, Integer::sum);
+                }
+            }
+            if (loans.size() != borrowed) {
+                violations.add("открытых бронирований " + loans.size() + ", выданных книг " + borrowed);
+            }
+            if (dueHeap.size() != borrowed) {
+                violations.add("в куче сроков " + dueHeap.size() + " бронирований, выданных книг " + borrowed);
+            }
+            if (finedDays.size() != flagged) {
+                violations.add("отметок просрочки " + finedDays.size() + ", у выданных книг " + flagged);
+            }
+            if (overdueUsers.size() != flaggedByUser.size()) {
+                violations.add("должников " + overdueUsers.size() + ", по отметкам просрочки " + flaggedByUser.size());
+            }
+            for (Map.Entry<Integer, Integer> entry : flaggedByUser.entrySet()) {
+                if (overdueUsers.get(entry.getKey()) != entry.getValue()) {
+                    violations.add("пользователь " + entry.getKey() + ": просроченных бронирований " + entry.getValue()
+                            + ", в отметке должника " + overdueUsers.get(entry.getKey()));
+                }
+            }
+            for (HashMap<String, Object> user : users) {
+                int userId = (Integer) user.get("id");
+                HashSet<Integer> seen = new HashSet<>();
+                int local = 0;
+                for (Integer bookId : borrowedBooks(user)) {
+                    if (!seen.add(bookId)) {
+                        violations.add("пользователь " + userId + ": книга " + bookId + " в списке дважды");
+                    }
+                    int slot = bookStore.indexOf(bookId);
+                    if (slot < 0) {
+                        continue;
+                    }
+                    local++;
+                    if (bookStore.borrowedBy(slot) != userId) {
+                        violations.add("пользователь " + userId + ": книга " + bookId + " в списке, но не выдана ему");
+                    }
+                }
+                int userLoans = loans.countOfUser(userId);
+                if (userLoans != local) {
+                    violations.add("пользователь " + userId + ": открытых бронирований " + userLoans
+                            + ", книг этой секции в списке " + local);
+                }
+            }
+            try {
+                verifyStatisticsLocked();
+            } catch (IllegalStateException e) {
+                violations.add(e.getMessage());
+            }
+            return violations;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // ---- массовая загрузка (CsvBulkImporter) ----
+    // Записи применяются в памяти без журнала предзаписи, индексы книг перестраиваются один раз
+    // при первом обращении, в конце вызывающий делает snapshot()
+
+    void beginBulkLoad() {
+        structureLock.writeLock().lock();
+        try {
+            bookIndexesStale = true;
+            userTextIndexStale = true;
+            searchCache.clear();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // Диапазон id для пачки записей выдаётся одним шагом: [первый, первый + count)
+    int reserveBookIds(int count) {
+        structureLock.writeLock().lock();
+        try {
+            int first = bookIdCounter + 1;
+            bookIdCounter += count;
+            return first;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    int reserveUserIds(int count) {
+        structureLock.writeLock().lock();
+        try {
+            int first = userIdCounter + 1;
+            userIdCounter += count;
+            return first;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    void addImportedBook(int bookId, String title, String author, int year, String isbn, String genre) {
+        structureLock.writeLock().lock();
+        try {
+            applyAddBook(bookId, title, author, year, isbn, genre);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    void addImportedUser(int userId, String name, String surname, int year, String phone, String email, long registrationDate) {
+        structureLock.writeLock().lock();
+        try {
+            applyAddUser(userId, name, surname, year, phone, email, true, DEFAULT_BORROW_LIMIT, registrationDate);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // Пачка импорта целиком под одним захватом блокировки записи: диапазон id и вставка всех записей.
+    // rows[i] - поля строки в порядке CSV импорта (см. CsvBulkImporter.Kind), год уже разобран в years[i];
+    // вставляются первые count строк, id идут подряд в их порядке. Возвращает id первой записи
+    int addImportedBooks(String[][] rows, int[] years, int count) {
+        structureLock.writeLock().lock();
+        try {
+            int first = bookIdCounter + 1;
+            bookIdCounter += count;
+            for (int i = 0; i < count; i++) {
+                String[] f = rows[i];
+                applyAddBook(first + i, f[0], f[1], years[i], f[3], f[4]);
+            }
+            return first;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    int addImportedUsers(String[][] rows, int[] years, int count, long registrationDate) {
+        structureLock.writeLock().lock();
+        try {
+            int first = userIdCounter + 1;
+            userIdCounter += count;
+            for (int i = 0; i < count; i++) {
+                String[] f = rows[i];
+                applyAddUser(first + i, f[0], f[1], years[i], f[3], f[4], true, DEFAULT_BORROW_LIMIT, registrationDate);
+            }
+            return first;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    void collectIsbns(Set<String> into) {
+        structureLock.readLock().lock();
+        try {
+            for (int slot = 0; slot < bookStore.size(); slot++) {
+                into.add(bookStore.isbn(slot));
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    // ---- применение изменений: общее для операций и восстановления из журнала ----
+    // Вызывается под блокировкой записи либо (applyBorrow/applyReturn) под блокировкой чтения и полосами книги и пользователя
+
+    private void applyAddBook(int bookId, String title, String author, int year, String isbn, String genre) {
+        int slot = bookStore.add(bookId, title, author, year, isbn, genre, DEFAULT_RATING);
+        bookIdCounter = Math.max(bookIdCounter, bookId);
+        statistics.bookAdded();
+        indexBook(slot);
+    }
+
+    // Удаление выданной книги закрывает её бронирование и убирает книгу из списка читателя
+    private boolean applyRemoveBook(int bookId, long removeTime) {
+        int slot = bookStore.indexOf(bookId);
+        if (slot < 0) {
+            return false;
+        }
+        if (!bookStore.isAvailable(slot)) {
+            int userId = bookStore.borrowedBy(slot);
+            HashMap<String, Object> borrower = findUserById(userId);
+            if (borrower != null) {
+                borrowedBooks(borrower).remove(Integer.valueOf(bookId));
+            }
+            ledgerLock.lock();
+            try {
+                closeLoan(bookId, userId, removeTime);
+            } finally {
+                ledgerLock.unlock();
+            }
+        }
+        unindexBook(bookId, bookStore.title(slot), bookStore.author(slot), bookStore.genre(slot));
+        statistics.bookRemoved(bookStore.isAvailable(slot));
+        bookStore.removeAt(slot);
+        return true;
+    }
+
+    private boolean applyUpdateBook(int bookId, String title, String author, Integer year) {
+        int slot = bookStore.indexOf(bookId);
+        if (slot < 0) {
+            return false;
+        }
+        String oldTitle = bookStore.title(slot);
+        String oldAuthor = bookStore.author(slot);
+        if (title != null) {
+            bookStore.setTitle(slot, title);
+        }
+        if (author != null) {
+            bookStore.setAuthor(slot, author);
+        }
+        if (year != null) {
+            bookStore.setYear(slot, year);
+        }
+        reindexBook(slot, oldTitle, oldAuthor);
+        return true;
+    }
+
+    private HashMap<String, Object> applyAddUser(int userId, String name, String surname, int year, String phone, String email,
+                                                 boolean active, int borrowLimit, long registrationDate) {
+        HashMap<String, Object> user = new HashMap<>();
+        user.put("id", userId);
+        user.put("name", name);
+        user.put("surname", surname);
+        user.put("year", year);
+        user.put("phone", phone);
+        user.put("email", email);
+        user.put("active", active);
+        user.put("borrowedBooks", new ArrayList<Integer>());
+        user.put("registrationDate", new Date(registrationDate));
+        user.put("borrowLimit", borrowLimit);
+        user.put("sessionId", sessionId);
+        userIdCounter = Math.max(userIdCounter, userId);
+        userIndex.put(userId, users.size());
+        users.add(user);
+        indexUser(userId, name, surname);
+        statistics.userAdded();
+        circulation.record(CirculationWindows.Kind.NEW_USER, registrationDate);
+        return user;
+    }
+
+    // Имя и фамилия не меняются, поэтому индекс поиска пользователей здесь не трогаем
+    private boolean applyUpdateUser(int userId, String phone, String email) {
+        HashMap<String, Object> user = findUserById(userId);
+        if (user == null) {
+            return false;
+        }
+        if (phone != null) {
+            user.put("phone", phone);
+        }
+        if (email != null) {
+            user.put("email", email);
+        }
+        return true;
+    }
+
+    // Удаление перестановкой последнего пользователя на место удалённого, чтобы не сдвигать список
+    private boolean applyRemoveUser(int userId) {
+        int index = userIndex.remove(userId);
+        if (index == IntSlotIndex.MISSING) {
+            return false;
+        }
+        statistics.userRemoved();
+        if (!userTextIndexStale) {
+            HashMap<String, Object> removed = users.get(index);
+            userTextIndex.remove(userId, userSearchFields((String) removed.get("name"), (String) removed.get("surname")));
+        }
+        int last = users.size() - 1;
+        HashMap<String, Object> moved = users.remove(last);
+        if (index != last) {
+            users.set(index, moved);
+            userIndex.put((Integer) moved.get("id"), index);
+        }
+        return true;
+    }
+
+    private void applyBorrow(int bookId, int userId, long borrowTime) {
+        int slot = bookStore.indexOf(bookId);
+        bookStore.markBorrowed(slot, userId, borrowTime);
+        statistics.bookBorrowed();
+        // после reserve в той же секции книга уже в списке читателя
+        HashMap<String, Object> user = findUserById(userId);
+        if (user != null && !borrowedBooks(user).contains(bookId)) {
+            borrowedBooks(user).add(bookId);
+        }
+        ledgerLock.lock();
+        try {
+            loans.open(bookId, userId, borrowTime);
+            dueHeap.add(bookId, userId, borrowTime + DAY_MILLIS * LOAN_DAYS);
+        } finally {
+            ledgerLock.unlock();
+        }
+        statistics.loanOpened();
+        circulation.record(CirculationWindows.Kind.CHECKOUT, borrowTime);
+    }
+
+    private boolean applyReserve(int userId, int bookId) {
+        HashMap<String, Object> user = findUserById(userId);
+        if (user == null || borrowedBooks(user).contains(bookId)) {
+            return false;
+        }
+        borrowedBooks(user).add(bookId);
+        return true;
+    }
+
+    private boolean applyRelease(int userId, int bookId) {
+        HashMap<String, Object> user = findUserById(userId);
+        return user != null && borrowedBooks(user).remove(Integer.valueOf(bookId));
+    }
+
+    // Возврат книги; возвращает штраф за всю просрочку (0, если просрочки нет).
+    // В fines добавляется только часть за дни, которые ещё не начислил accrueOverdueFines
+    private double applyReturn(int bookId, long returnTime) {
+        int slot = bookStore.indexOf(bookId);
+        long borrowTime = bookStore.borrowDate(slot);
+        long daysOverdue = borrowTime == BookStore.NO_DATE ? 0 : (returnTime - borrowTime) / DAY_MILLIS - LOAN_DAYS;
+        int borrowedByUser = bookStore.borrowedBy(slot);
+        bookStore.markReturned(slot);
+        statistics.bookReturned();
+        circulation.record(CirculationWindows.Kind.RETURN, returnTime);
+        HashMap<String, Object> borrower = findUserById(borrowedByUser);
+        if (borrower != null) {
+            borrowedBooks(borrower).remove(Integer.valueOf(bookId));
+        }
+        ledgerLock.lock();
+        try {
+            int alreadyFined = closeLoan(bookId, borrowedByUser, returnTime);
+            if (daysOverdue <= 0) {
+                return 0;
+            }
+            if (daysOverdue > alreadyFined) {
+                addFine(bookId, (daysOverdue - alreadyFined) * finePerDay * FINE_FACTOR, returnTime);
+            }
+            return daysOverdue * finePerDay * FINE_FACTOR;
+        } finally {
+            ledgerLock.unlock();
+        }
+    }
+
+    // Отметка просроченного бронирования и штраф за дни просрочки, ещё не начисленные; false - менять нечего.
+    // Вызывается под полосой книги либо под блокировкой записи при восстановлении
+    private boolean applyFineAccrual(int bookId, long accrualTime) {
+        int slot = bookStore.indexOf(bookId);
+        if (slot < 0 || bookStore.isAvailable(slot) || bookStore.borrowDate(slot) == BookStore.NO_DATE) {
+            return false;
+        }
+        long overdueMillis = accrualTime - bookStore.borrowDate(slot) - DAY_MILLIS * LOAN_DAYS;
+        if (overdueMillis <= 0) {
+            return false;
+        }
+        int days = (int) (overdueMillis / DAY_MILLIS);
+        ledgerLock.lock();
+        try {
+            int fined = finedDays.get(bookId);
+            if (fined == IntSlotIndex.MISSING) {
+                int userId = bookStore.borrowedBy(slot);
+                int loans = overdueUsers.get(userId);
+                overdueUsers.put(userId, loans == IntSlotIndex.MISSING ? 1 : loans + 1);
+                fined = 0;
+            } else if (days <= fined) {
+                return false;
+            }
+            finedDays.put(bookId, days);
+            if (days > fined) {
+                addFine(bookId, (days - fined) * finePerDay * FINE_FACTOR, accrualTime);
+            }
+            return true;
+        } finally {
+            ledgerLock.unlock();
+        }
+    }
+
+    // Под ledgerLock: закрывает бронирование, убирает его из кучи сроков и снимает отметку просрочки.
+    // Возвращает дни просрочки, за которые штраф уже начислен
+    private int closeLoan(int bookId, int userId, long returnTime) {
+        if (loans.isOpen(bookId)) {
+            try {
+                loans.close(bookId, returnTime);
+            } catch (IOException e) {
+                // возврат уже выполнен, теряется только история: архив дальше ведётся без файла
+                loans.detachArchive();
+                warnings.accept("Архив бронирований отключён: " + e.getMessage());
+            }
+            statistics.loanClosed();
+        }
+        dueHeap.remove(bookId);
+        int fined = finedDays.remove(bookId);
+        if (fined == IntSlotIndex.MISSING) {
+            return 0;
+        }
+        int loans = overdueUsers.get(userId);
+        if (loans <= 1) {
+            overdueUsers.remove(userId);
+        } else {
+            overdueUsers.put(userId, loans - 1);
+        }
+        return fined;
+    }
+
+    // Под ledgerLock
+    private void addFine(int bookId, double amount, long date) {
+        HashMap<String, Object> fineRecord = new HashMap<>();
+        fineRecord.put("bookId", bookId);
+        fineRecord.put("amount", amount);
+        fineRecord.put("date", new Date(date));
+        fines.add(fineRecord);
+        statistics.fineAdded(amount);
+        circulation.fine(amount, date);
+    }
+
+    // Вызывается под полосами книги и пользователя; null - выдача допустима, иначе текст ошибки
+    private String checkBorrow(int bookId, int userId) {
+        String rejection = checkBook(bookId);
+        return rejection != null ? rejection : checkBorrower(userId);
+    }
+
+    private String checkBook(int bookId) {
+        int slot = bookStore.indexOf(bookId);
+        if (slot < 0) {
+            return "Книга не найдена";
+        }
+        if (!bookStore.isAvailable(slot)) {
+            return "Книга уже забронирована";
+        }
+        return null;
+    }
+
+    private String checkBorrower(int userId) {
+        HashMap<String, Object> user = findUserById(userId);
+        if (user == null) {
+            return "Пользователь не найден";
+        }
+        int limit = user.get("borrowLimit") != null ? (Integer) user.get("borrowLimit") : DEFAULT_BORROW_LIMIT;
+        if (borrowedBooks(user).size() >= limit) {
+            return "Превышен лимит книг (макс: " + limit + ")";
+        }
+        if (user.get("active") != null && !(Boolean) user.get("active")) {
+            return "Пользователь неактивен";
+        }
+        return null;
+    }
+
+    private HashMap<String, Object> findUserById(int userId) {
+        int index = userIndex.get(userId);
+        if (index == IntSlotIndex.MISSING) {
+            return null;
+        }
+        if (users.peek(index) != null) {
+            metrics.cacheHit(OperationMetrics.Cache.USER_RECORD);
+        } else {
+            metrics.cacheMiss(OperationMetrics.Cache.USER_RECORD);
+        }
+        return users.get(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayList<Integer> borrowedBooks(HashMap<String, Object> user) {
+        return (ArrayList<Integer>) user.get("borrowedBooks");
+    }
+
+    private void verifyStatisticsLocked() {
+        int[] activeLoans = new int[1];
+        loans.forEach((bookId, userId, borrowDate) -> activeLoans[0]++);
+        long fineKopecks = 0;
+        for (HashMap<String, Object> fine : fines) {
+            if (fine.get("amount") != null) {
+                fineKopecks += LibraryStatistics.kopecks((Double) fine.get("amount"));
+            }
+        }
+        statistics.verify(bookStore.size(), bookStore.countAvailable(), activeLoans[0], fineKopecks, users.size());
+    }
+
+    private static ReentrantLock[] newStripes() {
+        ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+
+    // Перемешивание id, чтобы соседние id попадали в разные полосы
+    private static int stripe(int id) {
+        return (id * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(LOCK_STRIPES));
+    }
+
+    private static void checkPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Неверная страница: с " + offset + ", не больше " + limit);
+        }
+    }
+
+    // ---- индекс поиска пользователей ----
+
+    private void indexUser(int userId, String name, String surname) {
+        if (!userTextIndexStale) {
+            userTextIndex.add(userId, userSearchFields(name, surname));
+        }
+    }
+
+    // Полные имена содержат имя и фамилию целиком, поэтому их n-граммы покрывают оба поля
+    private static String[] userSearchFields(String name, String surname) {
+        if (name == null || surname == null) {
+            return new String[] {name, surname};
+        }
+        return new String[] {name + " " + surname, surname + " " + name};
+    }
+
+    private void ensureUserTextIndex() {
+        if (!userTextIndexStale) {
+            return;
+        }
+        synchronized (indexBuildLock) {
+            if (!userTextIndexStale) {
+                return;
+            }
+            userTextIndex.clear();
+            for (HashMap<String, Object> user : users) {
+                userTextIndex.add((Integer) user.get("id"), userSearchFields((String) user.get("name"), (String) user.get("surname")));
+            }
+            userTextIndexStale = false;
+        }
+    }
+
+    // Позиции подходящих пользователей в users в порядке id: удаление переставляет последнего пользователя
+    // на место удалённого, и порядок списка зависел бы от истории удалений (а у ShardedLibrary - ещё и от секций).
+    // Кандидаты индекса уже идут по id. Длинные запросы проверяем по полям без склейки полного имени
+    private int[] searchUserPositions(String query) {
+        String folded = NgramIndex.fold(query);
+        ensureUserTextIndex();
+        int[] candidates = userTextIndex.candidates(folded);
+        if (candidates == null) {
+            int[] ids = new int[users.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = (Integer) users.get(i).get("id");
+            }
+            Arrays.sort(ids);
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = userIndex.get(ids[i]);
+            }
+            return ids;
+        }
+        boolean verify = NgramIndex.needsVerification(folded);
+        int[] positions = new int[candidates.length];
+        int found = 0;
+        for (int id : candidates) {
+            int position = userIndex.get(id);
+            if (!verify || userMatches(users.get(position), folded)) {
+                positions[found++] = position;
+            }
+        }
+        return found == positions.length ? positions : Arrays.copyOf(positions, found);
+    }
+
+    private static boolean userMatches(HashMap<String, Object> user, String folded) {
+        String name = (String) user.get("name");
+        String surname = (String) user.get("surname");
+        if (name == null || surname == null) {
+            return NgramIndex.containsFolded(name, folded) || NgramIndex.containsFolded(surname, folded);
+        }
+        return NgramIndex.containsFolded(name, ' ', surname, folded) || NgramIndex.containsFolded(surname, ' ', name, folded);
+    }
+
+    // ---- индексы книг ----
+
+    // При изменении полей книгу нужно сначала убрать из индексов.
+    // Кэш поиска сбрасывается по старым полям в unindexBook и по новым здесь; пока индексы не построены, он пуст
+    private void indexBook(int slot) {
+        if (bookIndexesStale) {
+            return;
+        }
+        int id = bookStore.id(slot);
+        bookTextIndex.add(id, bookStore.title(slot), bookStore.author(slot), bookStore.genre(slot));
+        bookTitleIndex.add(bookStore.title(slot), id);
+        searchCache.invalidate(bookStore.title(slot), bookStore.author(slot), bookStore.genre(slot));
+    }
+
+    private void unindexBook(int id, String title, String author, String genre) {
+        if (bookIndexesStale) {
+            return;
+        }
+        bookTextIndex.remove(id, title, author, genre);
+        bookTitleIndex.remove(title, id);
+        searchCache.invalidate(title, author, genre);
+    }
+
+    // Индексы перестраиваются только для этой книги, а в n-граммном - только по n-граммам, которых нет в одной
+    // из версий полей: у частых 1- и 2-грамм списки длиной почти в каталог, и их лучше не трогать
+    private void reindexBook(int slot, String oldTitle, String oldAuthor) {
+        if (bookIndexesStale) {
+            return;
+        }
+        int id = bookStore.id(slot);
+        String genre = bookStore.genre(slot);
+        bookTextIndex.update(id, new String[] {oldTitle, oldAuthor, genre},
+                new String[] {bookStore.title(slot), bookStore.author(slot), genre});
+        bookTitleIndex.remove(oldTitle, id);
+        bookTitleIndex.add(bookStore.title(slot), id);
+        searchCache.invalidate(oldTitle, oldAuthor, genre);
+        searchCache.invalidate(bookStore.title(slot), bookStore.author(slot), genre);
+    }
+
+    // Полное построение отложенных индексов. Вызывается под блокировкой чтения, поэтому строит один поток,
+    // остальные ждут его на indexBuildLock; запись volatile-флага публикует готовые индексы
+    private void ensureBookIndexes() {
+        if (!bookIndexesStale) {
+            return;
+        }
+        synchronized (indexBuildLock) {
+            if (!bookIndexesStale) {
+                return;
+            }
+            bookTextIndex.clear();
+            bookTitleIndex.clear();
+            for (int slot = 0; slot < bookStore.size(); slot++) {
+                int id = bookStore.id(slot);
+                bookTextIndex.add(id, bookStore.title(slot), bookStore.author(slot), bookStore.genre(slot));
+                bookTitleIndex.add(bookStore.title(slot), id);
+            }
+            bookIndexesStale = false;
+        }
+    }
+
+    // Слоты подходящих книг в порядке названия: из кэша результатов или поиском.
+    // Кандидаты из n-граммного индекса, длинные запросы дополнительно проверяем по полям
+    private int[] searchBookSlots(String query) {
+        String folded = NgramIndex.fold(query);
+        ensureBookIndexes();
+        int[] cached = searchCache.get(folded);
+        if (cached != null) {
+            int[] slots = new int[cached.length];
+            for (int i = 0; i < cached.length; i++) {
+                slots[i] = bookStore.indexOf(cached[i]);
+            }
+            return slots;
+        }
+        int[] candidates = bookTextIndex.candidates(folded);
+        boolean verify = NgramIndex.needsVerification(folded);
+        int total = candidates == null ? bookStore.size() : candidates.length;
+        int[] results = new int[total];
+        int found = 0;
+        for (int i = 0; i < total; i++) {
+            int slot = candidates == null ? i : bookStore.indexOf(candidates[i]);
+            if (!verify ||
+                    NgramIndex.containsFolded(bookStore.title(slot), folded) ||
+                    NgramIndex.containsFolded(bookStore.author(slot), folded) ||
+                    NgramIndex.containsFolded(bookStore.genre(slot), folded)) {
+                results[found++] = slot;
+            }
+        }
+        sortSlotsByTitle(results, found);
+        if (found <= BookQueryCache.MAX_RESULT_IDS) {
+            int[] ids = new int[found];
+            for (int i = 0; i < found; i++) {
+                ids[i] = bookStore.id(results[i]);
+            }
+            searchCache.put(folded, ids);
+        }
+        return found == results.length ? results : Arrays.copyOf(results, found);
+    }
+
+    // Упорядочивает найденные слоты по названию (при равенстве - по id).
+    // Небольшую выборку сортируем, а большую собираем обходом индекса названий, отмечая найденные id.
+    private void sortSlotsByTitle(int[] slots, int n) {
+        if (n < 2) {
+            return;
+        }
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(n)) < bookTitleIndex.size()) {
+            Integer[] boxed = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                boxed[i] = slots[i];
+            }
+            Arrays.sort(boxed, (a, b) -> {
+                int byTitle = bookStore.title(a).compareTo(bookStore.title(b));
+                return byTitle != 0 ? byTitle : Integer.compare(bookStore.id(a), bookStore.id(b));
+            });
+            for (int i = 0; i < n; i++) {
+                slots[i] = boxed[i];
+            }
+            return;
+        }
+        BitSet wanted = new BitSet();
+        for (int i = 0; i < n; i++) {
+            wanted.set(bookStore.id(slots[i]));
+        }
+        int[] position = {0};
+        bookTitleIndex.forEach(id -> {
+            if (wanted.get(id)) {
+                slots[position[0]++] = bookStore.indexOf(id);
+            }
+        });
+    }
+
+    // ---- журнал предзаписи и снимок ----
+
+    // Запись изменения в журнал предзаписи; true - пора делать снимок.
+    // Снимок требует блокировки записи, поэтому делается после снятия блокировок операции (snapshotIfDue)
+    private boolean persist(WriteAheadLog.Op op, WriteAheadLog.Payload payload) {
+        LibraryPersistence current = persistence;
+        if (current == null) {
+            return false;
+        }
+        try {
+            return current.append(op, payload);
+        } catch (IOException e) {
+            warnings.accept("Не удалось сохранить изменение: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void snapshotIfDue(boolean due) {
+        if (!due) {
+            return;
+        }
+        structureLock.writeLock().lock();
+        try {
+            // несколько потоков могли одновременно дойти до порога, снимок нужен один
+            if (persistence != null && persistence.snapshotDue()) {
+                persistence.snapshot(this::writeState);
+            }
+        } catch (IOException e) {
+            warnings.accept("Не удалось сохранить снимок: " + e.getMessage());
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    private void writeBook(DataOutputStream out, int bookId) throws IOException {
+        int slot = bookStore.indexOf(bookId);
+        out.writeInt(bookId);
+        out.writeUTF(bookStore.title(slot));
+        out.writeUTF(bookStore.author(slot));
+        out.writeInt(bookStore.year(slot));
+        out.writeUTF(bookStore.isbn(slot));
+        out.writeUTF(bookStore.genre(slot));
+    }
+
+    private static void writeUser(DataOutputStream out, HashMap<String, Object> user) throws IOException {
+        out.writeInt((Integer) user.get("id"));
+        out.writeUTF((String) user.get("name"));
+        out.writeUTF((String) user.get("surname"));
+        out.writeInt((Integer) user.get("year"));
+        out.writeUTF((String) user.get("phone"));
+        out.writeUTF((String) user.get("email"));
+        out.writeBoolean((Boolean) user.get("active"));
+        out.writeInt((Integer) user.get("borrowLimit"));
+        out.writeLong(((Date) user.get("registrationDate")).getTime());
+    }
+
+    private HashMap<String, Object> readUser(DataInputStream in) throws IOException {
+        return applyAddUser(in.readInt(), in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(), in.readUTF(),
+                in.readBoolean(), in.readInt(), in.readLong());
+    }
+
+    // Проигрывание одной записи журнала предзаписи (под блокировкой записи из open)
+    private void replayMutation(WriteAheadLog.Op op, DataInputStream in) throws IOException {
+        switch (op) {
+            case ADD_BOOK:
+                applyAddBook(in.readInt(), in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(), in.readUTF());
+                break;
+            case UPDATE_BOOK: {
+                int bookId = in.readInt();
+                String title = in.readUTF();
+                String author = in.readUTF();
+                int year = in.readInt();
+                applyUpdateBook(bookId, title, author, year);
+                break;
+            }
+            case REMOVE_BOOK: {
+                int bookId = in.readInt();
+                // в записях старых версий времени удаления нет
+                applyRemoveBook(bookId, in.available() >= Long.BYTES ? in.readLong() : clock.getAsLong());
+                break;
+            }
+            case ADD_USER:
+                readUser(in);
+                break;
+            case UPDATE_USER: {
+                int userId = in.readInt();
+                in.readUTF();
+                in.readUTF();
+                in.readInt();
+                String phone = in.readUTF();
+                String email = in.readUTF();
+                applyUpdateUser(userId, phone, email);
+                break;
+            }
+            case REMOVE_USER:
+                applyRemoveUser(in.readInt());
+                break;
+            case BORROW:
+                applyBorrow(in.readInt(), in.readInt(), in.readLong());
+                break;
+            case RETURN:
+                applyReturn(in.readInt(), in.readLong());
+                break;
+            case FINE_ACCRUED:
+                applyFineAccrual(in.readInt(), in.readLong());
+                break;
+            case RESERVE:
+                applyReserve(in.readInt(), in.readInt());
+                break;
+            case RELEASE:
+                applyRelease(in.readInt(), in.readInt());
+                break;
+            default:
+                throw new IOException("Неизвестная операция журнала: " + op);
+        }
+    }
+
+    // Снимок всего состояния по колонкам (см. MappedSnapshot): счётчики id, книги, пользователи,
+    // открытые бронирования и длина архива закрытых, штрафы и хэш-индексы id -> позиция,
+    // чтобы при загрузке их не перестраивать
+    private void writeState(SnapshotWriter out) throws IOException {
+        out.intColumn("meta.idCounters", 2, i -> i == 0 ? bookIdCounter : userIdCounter);
+        out.doubleColumn("meta.totalFines", 1, i -> statistics.totalFines());
+        bookStore.writeTo(out);
+        USER_SCHEMA.write(out, users);
+        userIndex.writeTo(out, "user.index");
+        loans.writeTo(out);
+        finedDays.writeTo(out, "loan.finedDays");
+        FINE_SCHEMA.write(out, fines);
+    }
+
+    // Снимок до LoanLedger: бронирования записями, закрытые переносятся в архив
+    private void readLegacyLoans(MappedSnapshot in) throws IOException {
+        MappedRecordList<HashMap<String, Object>> borrowings = new MappedRecordList<>();
+        LOAN_SCHEMA.read(in, borrowings, null);
+        loans.clear();
+        loans.truncateArchive(0);
+        for (HashMap<String, Object> loan : borrowings) {
+            int bookId = (Integer) loan.get("bookId");
+            int userId = (Integer) loan.get("userId");
+            long borrowDate = ((Date) loan.get("borrowDate")).getTime();
+            Date returnDate = (Date) loan.get("returnDate");
+            if (returnDate == null) {
+                loans.open(bookId, userId, borrowDate);
+            } else {
+                loans.archiveClosed(bookId, userId, borrowDate, returnDate.getTime());
+            }
+        }
+    }
+
+    // Куча сроков и должники не сохраняются: восстанавливаются по выданным книгам и отметкам просрочки
+    private void rebuildDueHeap() {
+        dueHeap.clear();
+        overdueUsers.clear();
+        for (int slot = 0; slot < bookStore.size(); slot++) {
+            int userId = bookStore.borrowedBy(slot);
+            if (userId == BookStore.NO_USER) {
+                continue;
+            }
+            int bookId = bookStore.id(slot);
+            long borrowTime = bookStore.borrowDate(slot);
+            dueHeap.add(bookId, userId, borrowTime == BookStore.NO_DATE ? Long.MAX_VALUE : borrowTime + DAY_MILLIS * LOAN_DAYS);
+            if (finedDays.get(bookId) != IntSlotIndex.MISSING) {
+                int loans = overdueUsers.get(userId);
+                overdueUsers.put(userId, loans == IntSlotIndex.MISSING ? 1 : loans + 1);
+            }
+        }
+    }
+
+    // Загрузка без разбора записей: массивы копируются блоками, строки и записи читаются из отображения при обращении
+    private void readState(MappedSnapshot in) throws IOException {
+        int[] idCounters = in.ints("meta.idCounters");
+        bookStore.readFrom(in);
+        USER_SCHEMA.read(in, users, user -> user.put("sessionId", sessionId));
+        userIndex.readFrom(in, "user.index");
+        if (in.has("loan.active.bookId")) {
+            loans.readFrom(in);
+        } else {
+            readLegacyLoans(in);
+        }
+        // в снимках до начисления штрафов по расписанию отметок просрочки нет
+        if (in.has("loan.finedDays.keys")) {
+            finedDays.readFrom(in, "loan.finedDays");
+        } else {
+            finedDays.clear();
+        }
+        FINE_SCHEMA.read(in, fines, null);
+        rebuildDueHeap();
+        statistics.restore(bookStore.size(), bookStore.countAvailable(), loans.size(), users.size(),
+                in.doubles("meta.totalFines")[0]);
+        bookIdCounter = Math.max(bookIdCounter, idCounters[0]);
+        userIdCounter = Math.max(userIdCounter, idCounters[1]);
+    }
+}
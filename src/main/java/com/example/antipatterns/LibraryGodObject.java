@@ -0,0 +1,1358 @@
+package com.example.antipatterns;
+
+import java.util.*;
+import java.io.*;
+import java.text.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
+// антипатерн: Interface Soup объединение нескольких интерфейсов в один монструозный, нарушая Interface Segregation Principle
+interface ILibraryEverything {
+    void addBook();
+    void removeBook();
+    void findBook();
+    void updateBook();
+    void addUser();
+    void removeUser();
+    void findUser();
+    void updateUser();
+    void borrowBook();
+    void returnBook();
+    void printStatistics();
+    void printAllBooks();
+    void printAllUsers();
+    void generateReport();
+}
+
+// антипатерн: Висящие концы интерфейс с методами, которые бессмысленны и реализуются пустышками
+interface ILegacyMiddleware {
+    boolean checkSecurityToken();
+    void logOperationToOldServer();
+    void validateTransaction();
+    int computeLegacyChecksum(String data);
+}
+
+// антипатерн: Stub  использование малоподходящего по смыслу интерфейса вместо создания нового
+interface IBarcodeScannerDriver {
+    void laserOn();
+    void laserOff();
+    String readData();
+}
+
+// антипатерн: Lasagna Code  использование большого количества уровней абстракции
+abstract class Level1AbstractEntity {
+    protected String id;
+    public abstract String getId();
+}
+
+abstract class Level2AbstractNamedEntity extends Level1AbstractEntity {
+    protected String name;
+    public abstract String getName();
+}
+
+abstract class Level3AbstractDescribableEntity extends Level2AbstractNamedEntity {
+    protected String description;
+    public abstract String getDescription();
+}
+
+abstract class Level4AbstractTimestampedEntity extends Level3AbstractDescribableEntity {
+    protected long timestamp;
+    public abstract long getTimestamp();
+}
+
+abstract class Level5AbstractVersionedEntity extends Level4AbstractTimestampedEntity {
+    protected int version;
+    public abstract int getVersion();
+}
+
+abstract class Level6AbstractAuditableEntity extends Level5AbstractVersionedEntity {
+    protected String createdBy;
+    protected String modifiedBy;
+    public abstract String getCreatedBy();
+    public abstract String getModifiedBy();
+}
+
+// антипатерн: God Object  объект, который берет на себя слишком много функций и хранит все данные
+class LibraryGodObject extends Level6AbstractAuditableEntity implements ILibraryEverything, ILegacyMiddleware, IBarcodeScannerDriver {
+    // антипатерн: Hard Code  внедрение данных об окружении прямо в код
+    private static final String admin_password = "aboba";
+    // антипатерн: Magic Numbers константы без пояснения смысла
+    private static final int magic_42 = 42;
+    private static final int magic_7 = 7;
+    private static final double magic_3_14 = 3.14159;
+    private static final int magic_256 = 256;
+    private static final int magic_1337 = 1337;
+    private static final long magic_86400000 = 86400000L;
+    // Все данные хранятся здесь - God Object
+    // книги, пользователи, бронирования, индексы и сохранение на диск - в потокобезопасном ядре без консоли
+    private LibraryEngine engine;
+    private ArrayList<HashMap<String, Object>> logs = new ArrayList<>();
+    private ArrayList<HashMap<String, Object>> cache = new ArrayList<>();
+    // антипатерн: Soft Code выносим в конфиг абсолютно всё, даже очевидные вещи
+    private HashMap<String, String> config = new HashMap<>();
+    private HashMap<String, String> messages = new HashMap<>();
+    private HashMap<String, Integer> limits = new HashMap<>();
+    private HashMap<String, Boolean> flags = new HashMap<>();
+    private HashMap<String, Double> coefficients = new HashMap<>();
+    private Scanner scanner;
+    private int loginAttempts = 0;
+    private boolean isAuthenticated = false;
+    // антипатерн: Soap Bubble объект с мусорными данными, притворяющийся полезным
+    private HashMap<String, Object> bubbleCache = new HashMap<>();
+    // история операций: кольцевой буфер фиксированного размера, вытесненное уходит на диск
+    private HistoryRing history;
+    // журнал аудита; null, если файл журнала открыть не удалось
+    private AuditJournal auditJournal;
+    // периодическая запись метрик в файл; null, если отключена
+    private ScheduledExecutorService metricsDumper;
+    private ScheduledExecutorService fineAccrual;
+    // антипатерн: Object Cesspool переиспользуемые грязные объекты
+    private HashMap<String, Object> reusableBookObject = new HashMap<>();
+    private HashMap<String, Object> reusableUserObject = new HashMap<>();
+    private StringBuilder reusableStringBuilder = new StringBuilder();
+    // антипатерн: Temporary Field поля которые имеют значение только в определённых ситуациях
+    private int tempCalculationResult;
+    private String tempSearchQuery;
+    private HashMap<String, Object> tempFoundItem;
+    private int tempFoundBookId = -1;
+    private boolean tempOperationSuccess;
+    // антипатерн: Lava Flow  устаревшие переменные которые страшно удалять
+    @Deprecated private int oldBookCounter = 0;
+    @Deprecated private String oldSystemStatus = "legacy";
+    private final PrintStream diagnostics;
+
+    public LibraryGodObject() {
+        this(System.out);
+    }
+
+    // diagnostics - куда писать предупреждения движка и сообщения запуска (восстановление, журнал аудита);
+    // в пакетном режиме и в секции stdout занят протоколом, поэтому туда передаётся System.err
+    LibraryGodObject(PrintStream diagnostics) {
+        this.diagnostics = diagnostics;
+        scanner = new Scanner(System.in);
+        initializeSoftCodeConfig();
+        history = new HistoryRing(limits.get("history.capacity"), Paths.get(config.get("history.spill.dir")));
+        initializeBubbleData();
+        initializeLavaFlow();
+        initializeAuditJournal();
+        engine = new LibraryEngine((String) bubbleCache.get("fake_session"), coefficients.get("fine.per.day"), diagnostics::println);
+        try {
+            engine.setSearchCacheCapacity(limits.get("search.cache.entries"));
+        } catch (IllegalArgumentException e) {
+            diagnostics.println(e.getMessage() + ", оставлено " + LibraryEngine.DEFAULT_SEARCH_CACHE_ENTRIES);
+        }
+        initializePersistence();
+        initializeMetrics();
+        initializeFineAccrual();
+        // Lasagna Code - используем все уровни наследования
+        this.id = "god_001";
+        this.name = "Library God Object";
+        this.description = "This object does everything";
+        this.timestamp = System.currentTimeMillis();
+        this.version = 1;
+        this.createdBy = "System";
+        this.modifiedBy = "System";
+    }
+    // Lasagna Code - реализация абстрактных методов
+    @Override public String getId() { return id; }
+    @Override public String getName() { return name; }
+    @Override public String getDescription() { return description; }
+    @Override public long getTimestamp() { return timestamp; }
+    @Override public int getVersion() { return version; }
+    @Override public String getCreatedBy() { return createdBy; }
+    @Override public String getModifiedBy() { return modifiedBy; }
+
+    private void initializeSoftCodeConfig() {
+        // Soft Code - даже очевидные вещи в конфиге
+        config.put("greeting.message", "Добро пожаловать");
+        config.put("goodbye.message", "До свидания");
+        config.put("error.message", "Ошибка");
+        config.put("success.message", "Успех");
+        config.put("book.entity.name", "книга");
+        config.put("user.entity.name", "пользователь");
+        config.put("yes.word", "да");
+        config.put("no.word", "нет");
+        config.put("number.one", "1");
+        config.put("number.two", "2");
+        config.put("space.char", " ");
+        config.put("newline.char", "\n");
+        config.put("empty.string", "");
+        config.put("history.spill.dir", System.getProperty("library.history.dir", "library-data/history"));
+        config.put("data.dir", System.getProperty("library.data.dir", "library-data"));
+        config.put("audit.journal.file", System.getProperty("library.audit.file", "library-data/audit.journal"));
+        // NONE, BATCHED или PER_OP, см. AuditJournal.Durability
+        config.put("audit.durability", System.getProperty("library.audit.durability", "BATCHED"));
+        config.put("http.host", System.getProperty("library.http.host", "127.0.0.1"));
+        config.put("metrics.file", System.getProperty("library.metrics.file", "library-data/metrics.txt"));
+        messages.put("msg.001", "Введите название: ");
+        messages.put("msg.002", "Введите автора: ");
+        messages.put("msg.003", "Введите год: ");
+        messages.put("msg.004", "Книга добавлена");
+        messages.put("msg.005", "Книга не найдена");
+        messages.put("msg.006", "Операция выполнена");
+        messages.put("msg.007", "Доступ запрещён");
+        limits.put("max.books", 1000);
+        limits.put("max.users", 500);
+        limits.put("max.borrowings", 5);
+        limits.put("min.year", 1800);
+        limits.put("max.year", 2025);
+        limits.put("max.login.attempts", 3);
+        limits.put("snapshot.every.ops", Integer.getInteger("library.snapshot.every", 10_000));
+        limits.put("history.capacity", Integer.getInteger("library.history.capacity", 4096));
+        limits.put("import.threads", Integer.getInteger("library.import.threads", Runtime.getRuntime().availableProcessors()));
+        // потоки полного отчёта (generateReport, REPORT в пакетном режиме), см. LibraryReport
+        limits.put("report.threads", Integer.getInteger("library.report.threads", Runtime.getRuntime().availableProcessors()));
+        limits.put("http.port", Integer.getInteger("library.http.port", 8080));
+        // пул обработчиков HTTP, если виртуальных потоков нет (JDK до 21)
+        limits.put("http.threads", Integer.getInteger("library.http.threads", Math.max(4, 2 * Runtime.getRuntime().availableProcessors())));
+        // период записи метрик в файл, 0 - не записывать
+        limits.put("metrics.dump.seconds", Integer.getInteger("library.metrics.dumpSeconds", 60));
+        // число запросов в кэше результатов поиска книг, 0 - без кэша
+        limits.put("search.cache.entries", Integer.getInteger("library.search.cacheEntries", LibraryEngine.DEFAULT_SEARCH_CACHE_ENTRIES));
+        // время замеряется у каждой N-й операции (степень двойки), см. OperationMetrics
+        limits.put("metrics.sample.every", Integer.getInteger("library.metrics.sampleEvery", 16));
+        // период начисления штрафов по просроченным книгам, 0 - только при возврате
+        limits.put("fines.accrual.seconds", Integer.getInteger("library.fines.accrualSeconds", 60));
+        flags.put("debug.mode", false);
+        flags.put("verbose.mode", true);
+        flags.put("safe.mode", true);
+        flags.put("legacy.mode", true);
+        flags.put("persistence.enabled", !Boolean.getBoolean("library.persistence.disabled"));
+        flags.put("wal.fsync", Boolean.getBoolean("library.wal.fsync"));
+        // самопроверка: сверять счётчики статистики с полным пересчётом при каждом отчёте
+        flags.put("stats.self.check", Boolean.getBoolean("library.stats.selfCheck"));
+        flags.put("metrics.enabled", !Boolean.getBoolean("library.metrics.disabled"));
+        coefficients.put("fine.per.day", 0.5);
+        coefficients.put("tax.rate", 0.13);
+        coefficients.put("discount.rate", 0.1);
+    }
+
+    // антипатерн: Soap Bubble - инициализация мусорных данных
+    private void initializeBubbleData() {
+        bubbleCache.put("init_time", System.currentTimeMillis());
+        bubbleCache.put("fake_session", "SESSION_" + Math.random());
+        bubbleCache.put("placeholder", new Object());
+        history.record(HistoryEvent.Kind.SYSTEM, "System initialized");
+        history.record(HistoryEvent.Kind.SYSTEM, "Cache warmed up");
+        history.record(HistoryEvent.Kind.SYSTEM, "Ready for operations");
+    }
+
+    private void initializeAuditJournal() {
+        try {
+            auditJournal = new AuditJournal(Paths.get(config.get("audit.journal.file")),
+                    AuditJournal.Durability.valueOf(config.get("audit.durability")));
+        } catch (IOException | IllegalArgumentException e) {
+            diagnostics.println("Журнал аудита отключён: " + e.getMessage());
+        }
+    }
+
+    // Загрузка последнего снимка и проигрывание хвоста журнала изменений
+    private void initializePersistence() {
+        if (!flags.get("persistence.enabled")) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int replayed = engine.open(Paths.get(config.get("data.dir")),
+                    flags.get("wal.fsync"), limits.get("snapshot.every.ops"));
+            if (statistics().totalBooks() > 0 || statistics().totalUsers() > 0) {
+                diagnostics.printf("Восстановлено книг: %d, пользователей: %d (записей журнала: %d) за %d мс%n",
+                        statistics().totalBooks(), statistics().totalUsers(), replayed, (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (IOException e) {
+            diagnostics.println("Сохранение состояния отключено: " + e.getMessage());
+        }
+    }
+
+    // Метрики операций: JMX (jconsole) и периодический сброс таблицы в файл фоновым потоком
+    private void initializeMetrics() {
+        OperationMetrics metrics = engine.metrics();
+        metrics.setEnabled(flags.get("metrics.enabled"));
+        try {
+            metrics.setSampleEvery(limits.get("metrics.sample.every"));
+        } catch (IllegalArgumentException e) {
+            diagnostics.println(e.getMessage() + ", оставлено " + metrics.sampleEvery());
+        }
+        try {
+            metrics.registerMBean();
+        } catch (JMException e) {
+            diagnostics.println("Метрики недоступны через JMX: " + e.getMessage());
+        }
+        int period = limits.get("metrics.dump.seconds");
+        if (period <= 0) {
+            return;
+        }
+        metricsDumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metricsDumper.scheduleAtFixedRate(this::dumpMetrics, period, period, TimeUnit.SECONDS);
+    }
+
+    // Фоновое начисление штрафов: первый проход сразу, чтобы отметить просрочки, накопившиеся до запуска
+    private void initializeFineAccrual() {
+        int period = limits.get("fines.accrual.seconds");
+        if (period <= 0) {
+            return;
+        }
+        fineAccrual = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "fine-accrual");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fineAccrual.scheduleAtFixedRate(this::accrueFines, 0, period, TimeUnit.SECONDS);
+    }
+
+    private void accrueFines() {
+        try {
+            int accrued = engine.accrueOverdueFines();
+            if (accrued > 0) {
+                history.record(HistoryEvent.Kind.SYSTEM, "Fines accrued: " + accrued + " loans");
+            }
+        } catch (RuntimeException e) {
+            // исключение отменило бы все следующие запуски планировщика
+            diagnostics.println("Не удалось начислить штрафы: " + e.getMessage());
+        }
+    }
+
+    private void dumpMetrics() {
+        try {
+            engine.metrics().dumpTo(Paths.get(config.get("metrics.file")));
+        } catch (IOException e) {
+            diagnostics.println("Не удалось записать метрики: " + e.getMessage());
+        }
+    }
+
+    // антипатерн: Lava Flow - инициализация устаревшего кода
+    private void initializeLavaFlow() {
+        oldBookCounter = 0;
+        oldSystemStatus = "initialized";
+        history.record(HistoryEvent.Kind.LEGACY, "legacy_data_1");
+        history.record(HistoryEvent.Kind.LEGACY, "legacy_data_2");
+    }
+
+    // антипатерн: Golden Hammer используем один подход HashMap для всего, даже где не нужно
+    public boolean authenticate() {
+        System.out.println("\nАвторизация");
+        System.out.println("пароль - " + admin_password);
+        // Golden Hammer - храним данные авторизации в HashMap вместо простых переменных
+        HashMap<String, Object> authData = new HashMap<>();
+        authData.put("attempts", 0);
+        authData.put("maxAttempts", limits.get("max.login.attempts"));
+        authData.put("authenticated", false);
+        authData.put("timestamp", System.currentTimeMillis());
+        while ((Integer)authData.get("attempts") < (Integer)authData.get("maxAttempts")) {
+            System.out.print("Введите пароль: ");
+            String password = scanner.nextLine();
+            // антипатерн: Magic Numbers - используем магические числа добавляем искусственную проверку безопасности
+            int securityHash = computeSecurityHash(password);
+            // Hard Code - сравниваем с захардкоженным паролем
+            if (password.equals(admin_password) && securityHash % magic_7 < magic_7) {
+                authData.put("authenticated", true);
+                isAuthenticated = true;
+                // Висящие концы - вызываем бесполезную проверку
+                checkSecurityToken();
+                logOperationToOldServer(AuditJournal.Op.LOGIN, 0, 0);
+                // Soap Bubble - записываем в мусорный кэш
+                bubbleCache.put("last_login", new Date());
+                bubbleCache.put("login_hash", securityHash);
+                history.record(HistoryEvent.Kind.SECURITY, "Login successful at " + new Date());
+                System.out.println("Авторизация успешна!");
+                // Lava Flow - обновляем устаревшие данные
+                oldSystemStatus = "authenticated";
+                // Stub - вызываем методы сканера
+                laserOn();
+                return true;
+            } else {
+                authData.put("attempts", (Integer)authData.get("attempts") + 1);
+                loginAttempts++;
+                int remaining = magic_42 / 14 - (Integer)authData.get("attempts");
+                System.out.println("Неверный пароль! Осталось попыток: " + remaining);
+                validateTransaction();
+            }
+        }
+        System.out.println("Превышено количество попыток входа!");
+        return false;
+    }
+
+    // антипатерн: Accidental Complexity излишне сложный расчёт хэша
+    private int computeSecurityHash(String input) {
+        int hash = magic_1337;
+        for (int i = 0; i < input.length(); i++) {
+            hash = ((hash * magic_42) + input.charAt(i)) % magic_256;
+            hash ^= (int)(magic_3_14 * magic_7);
+        }
+        if (System.currentTimeMillis() % magic_86400000 > 0) {
+            hash += magic_7;
+        }
+        return Math.abs(hash);
+    }
+
+    // антипатерн: Stub - библиотека реализует интерфейс сканера
+    @Override
+    public void laserOn() {
+        System.out.println("Система запущена");
+        config.put("system.status", "running");
+        bubbleCache.put("laser_status", "on");
+        history.record(HistoryEvent.Kind.SYSTEM, "Laser activated");
+    }
+    @Override
+    public void laserOff() {
+        System.out.println("Завершение работы системы");
+        config.put("system.status", "stopped");
+        bubbleCache.put("laser_status", "off");
+        history.record(HistoryEvent.Kind.SYSTEM, "Laser deactivated");
+        oldSystemStatus = "shotdown";
+    }
+    @Override
+    public String readData() {
+        // Stub - читаем данные со сканера которые на самом деле мусор
+        String data = "scan " + System.currentTimeMillis();
+        bubbleCache.put("last_scan", data);
+        return data;
+    }
+    // антипатерн: Висящие концы - методы которые формально работают, но бессмысленны
+    @Override
+    public boolean checkSecurityToken() {
+        tempOperationSuccess = true;
+        history.record(HistoryEvent.Kind.SECURITY, "Security check passed");
+        return true;
+    }
+    @Override
+    public void logOperationToOldServer() {
+        logOperationToOldServer(AuditJournal.Op.OTHER, 0, 0);
+    }
+
+    // Запись в журнал аудита: только постановка в очередь, диском занимается фоновый писатель
+    void logOperationToOldServer(AuditJournal.Op op, int first, int second) {
+        if (auditJournal != null) {
+            auditJournal.append(op, first, second);
+        }
+    }
+
+    @Override
+    public void validateTransaction() {
+        // Бессмысленная нагрузка, но влияет на временные поля
+        int x = 0;
+        for (int i = 0; i < magic_42 * 2; i++) {
+            x += i % magic_7;
+        }
+        tempCalculationResult = x;
+    }
+
+    @Override
+    public int computeLegacyChecksum(String data) {
+        // Висящие концы - вычисляем контрольную сумму которая ни на что не влияет
+        int checksum = 0;
+        for (char c : data.toCharArray()) {
+            checksum = (checksum + c * magic_7) % magic_256;
+        }
+        bubbleCache.put("last_checksum", checksum);
+        return checksum;
+    }
+
+    // антипатерн: Copy and Paste Programming практически идентичный код для добавления книги и пользователя
+    @Override
+    public void addBook() {
+        System.out.println("\nДобавление книги");
+        if (!checkSecurityToken()) return;
+        validateTransaction();
+        System.out.print("Введите название книги: ");
+        String title = scanner.nextLine();
+        // Lava Flow - вызываем устаревший метод проверки
+        performLegacyValidation(title);
+        System.out.print("Введите автора книги: ");
+        String author = scanner.nextLine();
+        System.out.print("Введите год издания: ");
+        String yearStr = scanner.nextLine();
+        int year = 0;
+        try {
+            year = Integer.parseInt(yearStr);
+        } catch (Exception e) {
+            year = 2000;
+        }
+        System.out.print("Введите ISBN: ");
+        String isbn = scanner.nextLine();
+        System.out.print("Введите жанр: ");
+        String genre = scanner.nextLine();
+        int bookId = engine.addBook(title, author, year, isbn, genre);
+        // Висящие концы
+        logOperationToOldServer(AuditJournal.Op.ADD_BOOK, bookId, 0);
+        computeLegacyChecksum(title);
+        // Lava Flow - обновляем устаревший счётчик
+        oldBookCounter++;
+        history.record(HistoryEvent.Kind.OPERATION, "Book indexed: " + bookId);
+        System.out.println("Книга успешно добавлена! ID: " + bookId);
+    }
+
+    // Copy-Paste: Практически идентичный код для добавления пользователя
+    @Override
+    public void addUser() {
+        System.out.println("\nДобвление пользователя");
+        if (!checkSecurityToken()) return;
+        validateTransaction();
+        System.out.print("Введите имя пользователя: ");
+        String name = scanner.nextLine();
+        performLegacyValidation(name);
+        System.out.print("Введите фамилию пользователя: ");
+        String surname = scanner.nextLine();
+        System.out.print("Введите год рождения: ");
+        String yearStr = scanner.nextLine();
+        int year = 0;
+        try {
+            year = Integer.parseInt(yearStr);
+        } catch (Exception e) {
+            year = 2000;
+        }
+        System.out.print("Введите телефон: ");
+        String phone = scanner.nextLine();
+        System.out.print("Введите email: ");
+        String email = scanner.nextLine();
+        HashMap<String, Object> user = engine.addUser(name, surname, year, phone, email);
+        int userId = (Integer) user.get("id");
+        logOperationToOldServer(AuditJournal.Op.ADD_USER, userId, 0);
+        computeLegacyChecksum(name + surname);
+        futureFeatureUserNotification(user);
+        System.out.println("Пользователь успешно добавлен! ID: " + userId);
+    }
+    // антипатерн: Lava Flow устаревший код который страшно удалять
+    @Deprecated
+    private void performLegacyValidation(String input) {
+        // Старый код валидации
+        int hash = 0;
+        for (char c : input.toCharArray()) {
+            hash += c * magic_7;
+        }
+        String unusedResult = "legace_hash " + hash;
+        history.record(HistoryEvent.Kind.LEGACY, "Legacy validation: " + unusedResult);
+    }
+
+    // антипатерн: Boat Anchor код на будущее
+    private void futureFeatureUserNotification(HashMap<String, Object> user) {
+        // TODO: Когда-нибудь здесь будет отправка уведомлений
+        String notificationId = "NOTIF_" + user.get("id") + "_" + System.currentTimeMillis();
+        bubbleCache.put(notificationId, "Welcome " + user.get("name"));
+        history.record(HistoryEvent.Kind.SYSTEM, "Notification queued (placeholder): " + notificationId);
+    }
+
+    // антипатерн: Spaghetti Code запутанный код с множеством переходов и вложенных условий
+    @Override
+    public void borrowBook() {
+        System.out.println("\nБронирование книги");
+        // Висящие концы
+        validateTransaction();
+        int step = 1;
+        int bookId = -1;
+        int userId = -1;
+        int foundBook = -1;
+        HashMap<String, Object> foundUser = null;
+        String errorMessage = "";
+        // Спагетти-код с множеством шагов
+        while (step <= 10) {
+            if (step == 1) {
+                System.out.print("Введите ID книги: ");
+                try {
+                    bookId = Integer.parseInt(scanner.nextLine());
+                    if (bookId < 0 || bookId > magic_1337) {
+                        errorMessage = "ID вне допустимого диапазона";
+                        step = 8;
+                    } else {
+                        step = 2;
+                    }
+                } catch (Exception e) {
+                    errorMessage = "Неверный формат ID книги";
+                    step = 8;
+                }
+            } else if (step == 2) {
+                foundBook = engine.borrowerOf(bookId);
+                tempFoundBookId = bookId;
+                if (foundBook >= 0) {
+                    step = 3;
+                } else {
+                    errorMessage = "Книга не найдена";
+                    step = 8;
+                }
+            } else if (step == 3) {
+                if ((foundBook == BookStore.NO_USER) == true) {
+                    step = 4;
+                } else {
+                    errorMessage = "Книга уже забронирована";
+                    step = 8;
+                }
+            } else if (step == 4) {
+                System.out.print("Введите ID пользователя: ");
+                try {
+                    userId = Integer.parseInt(scanner.nextLine());
+                    step = 5;
+                } catch (Exception e) {
+                    errorMessage = "Неверный формат ID пользователя";
+                    step = 8;
+                }
+            } else if (step == 5) {
+                foundUser = engine.findUser(userId);
+                if (foundUser != null) {
+                    step = 6;
+                } else {
+                    errorMessage = "Пользователь не найден";
+                    step = 8;
+                }
+            } else if (step == 6) {
+                @SuppressWarnings("unchecked")
+                ArrayList<Integer> currentBooks = (ArrayList<Integer>)foundUser.get("borrowedBooks");
+                int limit = foundUser.get("borrowLimit") != null ?
+                        (Integer)foundUser.get("borrowLimit") : magic_7;
+                if (currentBooks != null && currentBooks.size() >= limit) {
+                    errorMessage = "Превышен лимит книг (макс: " + limit + ")";
+                    step = 8;
+                } else if (foundUser.get("active") != null && !(Boolean)foundUser.get("active")) {
+                    errorMessage = "Пользователь неактивен";
+                    step = 8;
+                } else {
+                    step = 7;
+                }
+            } else if (step == 7) {
+                // проверки выше могли устареть: движок повторяет их атомарно вместе с выдачей
+                try {
+                    engine.borrow(bookId, userId);
+                } catch (IllegalArgumentException e) {
+                    errorMessage = e.getMessage();
+                    step = 8;
+                    continue;
+                }
+                logOperationToOldServer(AuditJournal.Op.BORROW, bookId, userId);
+                history.record(HistoryEvent.Kind.OPERATION, "Borrow: book " + bookId + " to user " + userId);
+                tempOperationSuccess = true;
+                step = 9;
+            } else if (step == 8) {
+                System.out.println("ошибка: " + errorMessage);
+                tempOperationSuccess = false;
+                step = 11;
+            } else if (step == 9) {
+                System.out.println("Книга успешно забронирована!");
+                step = 11;
+            } else {
+                step = 11;
+            }
+        }
+    }
+    // антипатерн: Accidental Complexity слишком сложное решение для простой задачи
+    @Override
+    public void returnBook() {
+        System.out.println("\nВозврат книги");
+        System.out.print("Введите ID книги для возврата: ");
+        String input = scanner.nextLine();
+        // Излишне сложная валидация ввода Object Cesspool - используем грязный StringBuilder
+        reusableStringBuilder.setLength(0);
+        reusableStringBuilder.append("processing:");
+        StringBuilder cleanInput = new StringBuilder();
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c >= '0' && c <= '9') {
+                cleanInput.append(c);
+            }
+        }
+        reusableStringBuilder.append(cleanInput.toString());
+        int bookId;
+        try {
+            bookId = Integer.parseInt(cleanInput.toString());
+        } catch (Exception e) {
+            System.out.println("Ошибка: неверный ID");
+            return;
+        }
+        tempFoundBookId = bookId;
+        LibraryEngine.Receipt receipt;
+        try {
+            receipt = engine.returnBook(bookId);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        int borrowedByUser = receipt.userId();
+        double fine = receipt.fine();
+        if (fine > 0) {
+            System.out.printf("Штраф за просрочку: %.2f руб.\n", fine);
+        }
+        logOperationToOldServer(AuditJournal.Op.RETURN, bookId, borrowedByUser);
+        history.record(HistoryEvent.Kind.OPERATION, "Return: book " + bookId);
+        System.out.println("Книга успешно возвращена!");
+    }
+
+    @Override
+    public void findBook() {
+        System.out.println("\nПоиск книги");
+        System.out.print("Введите поисковый запрос: ");
+        String query = scanner.nextLine();
+        tempSearchQuery = query;
+        ArrayList<String> results = new ArrayList<>();
+        int found = engine.searchBooks(query, (books, slot) -> results.add(formatBook(books, slot)));
+        if (found == 0) {
+            System.out.println("Книги не найдены");
+        } else {
+            System.out.println("Найдено книг: " + found);
+            for (int i = 0; i < found; i++) {
+                System.out.println(results.get(i));
+            }
+        }
+        logOperationToOldServer(AuditJournal.Op.SEARCH, found, 0);
+    }
+
+    // антипатерн: Cryptic Code непонятные аббревиатуры в названиях
+    private void pBI(BookStore books, int b) {
+        // pBI = printBookInfo
+        System.out.println(formatBook(books, b));
+    }
+
+    String formatBook(BookStore books, int b) {
+        int i = books.id(b);
+        String t = books.title(b);
+        String a = books.author(b);
+        int y = books.year(b);
+        boolean av = books.isAvailable(b);
+        String s = av ? "Доступна" : "Забронирована";
+        String r = String.format("%.1f", books.rating(b));
+        return "[" + i + "] " + t + " - " + a + " (" + y + ") - " + s + " | Рейтинг: " + r;
+    }
+
+    // антипатерн: Programming by Permutation пробуем разные комбинации не понимая какая правильная
+    @Override
+    public void findUser() {
+        System.out.println("\nПоиск пользователя");
+        System.out.print("Введите имя или фамилию: ");
+        String query = scanner.nextLine();
+        tempSearchQuery = query;
+        ArrayList<HashMap<String, Object>> results = searchUsers(query);
+        if (results.isEmpty()) {
+            System.out.println("Пользователи не найдены");
+        } else {
+            System.out.println("Найдено пользователей: " + results.size());
+            for (HashMap<String, Object> user : results) {
+                pUI(user);
+                engine.forEachLoanOf((Integer) user.get("id"), (books, slot, userId, dueDate) ->
+                        System.out.printf("    на руках: [%d] %s, вернуть до %s%n", books.id(slot), books.title(slot), new Date(dueDate)));
+            }
+        }
+        history.record(HistoryEvent.Kind.OPERATION, "User search: " + query + ", found: " + results.size());
+    }
+
+    // Cryptic Code - pUI = printUserInfo
+    private void pUI(HashMap<String, Object> u) {
+        System.out.println(formatUser(u));
+    }
+
+    String formatUser(HashMap<String, Object> u) {
+        return "[" + u.get("id") + "] " +
+                u.get("name") + " " + u.get("surname") +
+                " | Тел: " + u.get("phone") +
+                " | Email: " + u.get("email") +
+                " | Лимит книг: " + (u.get("borrowLimit") != null ? u.get("borrowLimit") : magic_7) +
+                (engine.hasOverdue((Integer) u.get("id")) ? " | Есть просрочка" : "");
+    }
+
+    // Пользователи, у которых запрос без учёта регистра входит в имя, фамилию или полное имя в любом порядке
+    ArrayList<HashMap<String, Object>> searchUsers(String query) {
+        ArrayList<HashMap<String, Object>> results = new ArrayList<>();
+        engine.searchUsers(query, results::add);
+        return results;
+    }
+
+    // антипатерн: Blind Faith никаких проверок
+    @Override
+    public void removeBook() {
+        System.out.println("\nУдаление книги");
+        System.out.print("Введите ID книги для удаления: ");
+        // Blind Faith - не проверяем ввод
+        int bookId = Integer.parseInt(scanner.nextLine());
+        // Blind Faith - уверены что книга есть
+        engine.removeBook(bookId);
+        logOperationToOldServer(AuditJournal.Op.REMOVE_BOOK, bookId, 0);
+        oldBookCounter--;
+        System.out.println("Книга удалена!");
+    }
+
+    @Override
+    public void removeUser() {
+        System.out.println("\nУдаление пользователя");
+        System.out.print("Введите ID пользователя: ");
+        // Blind Faith
+        int userId = Integer.parseInt(scanner.nextLine());
+        engine.removeUser(userId);
+        logOperationToOldServer(AuditJournal.Op.REMOVE_USER, userId, 0);
+        System.out.println("Пользователь удалён!");
+    }
+    // антипатерн: Object Cesspool переиспользование грязных объектов
+    @Override
+    public void updateBook() {
+        System.out.println("\nОбновление книги");
+        System.out.print("Введите ID книги: ");
+        try {
+            int bookId = Integer.parseInt(scanner.nextLine());
+            tempFoundBookId = bookId;
+            if (!engine.hasBook(bookId)) {
+                System.out.println("Книга не найдена");
+                return;
+            }
+            // Object Cesspool - используем грязный объект, в нём остались данные от предыдущих операций
+            reusableBookObject.put("dirty_data", "left_from_previous_operation");
+            reusableBookObject.put("old_id", magic_1337);
+            reusableBookObject.put("garbage", new Object());
+            reusableBookObject.remove("title");
+            reusableBookObject.remove("author");
+            reusableBookObject.remove("year");
+            System.out.print("Новое название (Enter - оставить): ");
+            String newTitle = scanner.nextLine();
+            if (!newTitle.isEmpty()) {
+                reusableBookObject.put("title", newTitle);
+            }
+            System.out.print("Новый автор (Enter - оставить): ");
+            String newAuthor = scanner.nextLine();
+            if (!newAuthor.isEmpty()) {
+                reusableBookObject.put("author", newAuthor);
+            }
+            System.out.print("Новый год (Enter - оставить): ");
+            String newYear = scanner.nextLine();
+            if (!newYear.isEmpty()) {
+                try {
+                    reusableBookObject.put("year", Integer.parseInt(newYear));
+                } catch (Exception e) {
+                    // Blind Faith - игнорируем ошибку
+                }
+            }
+            engine.updateBook(bookId, (String) reusableBookObject.get("title"),
+                    (String) reusableBookObject.get("author"), (Integer) reusableBookObject.get("year"));
+            logOperationToOldServer(AuditJournal.Op.UPDATE_BOOK, bookId, 0);
+            history.record(HistoryEvent.Kind.OPERATION, "Book updated: " + bookId);
+            System.out.println("Книга обновлена!");
+        } catch (Exception e) {
+            System.out.println("Ошибка при обновлении");
+        }
+    }
+
+    @Override
+    public void updateUser() {
+        System.out.println("\nОбновление пользователя");
+        System.out.print("Введите ID пользователя: ");
+        try {
+            int userId = Integer.parseInt(scanner.nextLine());
+            HashMap<String, Object> userToUpdate = engine.findUser(userId);
+            tempFoundItem = userToUpdate;
+            if (userToUpdate == null) {
+                System.out.println("Пользователь не найден");
+                return;
+            }
+            // Object Cesspool - грязный объект
+            reusableUserObject.put("garbage", "from_last_time");
+            reusableUserObject.put("zombie_data", new Object());
+            reusableUserObject.put("old_timestamp", System.currentTimeMillis() - magic_86400000);
+            reusableUserObject.remove("phone");
+            reusableUserObject.remove("email");
+            System.out.print("Новый телефон (Enter - оставить): ");
+            String newPhone = scanner.nextLine();
+            if (!newPhone.isEmpty()) {
+                reusableUserObject.put("phone", newPhone);
+            }
+            System.out.print("Новый email (Enter - оставить): ");
+            String newEmail = scanner.nextLine();
+            if (!newEmail.isEmpty()) {
+                reusableUserObject.put("email", newEmail);
+            }
+            engine.updateUser(userId, (String) reusableUserObject.get("phone"), (String) reusableUserObject.get("email"));
+            logOperationToOldServer(AuditJournal.Op.UPDATE_USER, userId, 0);
+            history.record(HistoryEvent.Kind.OPERATION, "User updated: " + userId);
+            System.out.println("Пользователь обновлён!");
+        } catch (Exception e) {
+            System.out.println("Ошибка при обновлении");
+        }
+    }
+
+    // антипатерн: Ravioli Code методы тесно связаны друг с другом как пельмени
+    @Override
+    public void printStatistics() {
+        long started = engine.metrics().start(OperationMetrics.Op.PRINT_STATISTICS);
+        try {
+            System.out.println("\nСтатистика библиотеки");
+            selfCheckStatistics();
+            // Ravioli - цепочка вызовов зависимых методов
+            int totalBooks = calcTB();
+            int availableBooks = calcAB(totalBooks);
+            int borrowedBooks = calcBB(totalBooks, availableBooks);
+            double borrowRate = calcBR(borrowedBooks, totalBooks);
+            String status = detLS(borrowRate, totalBooks);
+            String recommendation = genRec(status, borrowRate);
+            int fineTotal = calcTF();
+            pSR(totalBooks, availableBooks, borrowedBooks, borrowRate, status, recommendation, fineTotal);
+            history.record(HistoryEvent.Kind.OPERATION, "Statistics viewed");
+        } catch (RuntimeException e) {
+            engine.metrics().failed(OperationMetrics.Op.PRINT_STATISTICS);
+            throw e;
+        } finally {
+            engine.metrics().record(OperationMetrics.Op.PRINT_STATISTICS, started);
+        }
+    }
+
+    // Cryptic Code calcTB = calculateTotalBooks
+    private int calcTB() {
+        return statistics().totalBooks();
+    }
+    // Cryptic Code calcAB = calculateAvailableBooks
+    private int calcAB(int total) {
+        return statistics().availableBooks();
+    }
+
+    // Cryptic Code calcBB = calculateBorrowedBooks
+    private int calcBB(int total, int available) {
+        return total - available;
+    }
+
+    // Cryptic Code calcBR = calculateBorrowRate
+    private double calcBR(int borrowed, int total) {
+        if (total == 0) return 0;
+        return (double) borrowed / total * (magic_42 * 2 + 16);
+    }
+
+    // Cryptic Code detLS = determineLibraryStatus
+    private String detLS(double rate, int total) {
+        if (total == 0) return "пустая";
+        if (rate > magic_42 * 2 - 4) return "высокая загрузка";
+        if (rate > magic_42 + 8) return "средняя загрузка";
+        return "низкая загрузка";
+    }
+    // Cryptic Code genRec = generateRecommendation
+    private String genRec(String status, double rate) {
+        if (status.equals("пустая")) return "Добавьте книги!";
+        if (status.equals("высокая загрузка")) return "Закупите больше экземпляров";
+        if (status.equals("средняя загрузка")) return "Всё в порядке";
+        return "Проведите маркетинговую кампанию";
+    }
+    // Cryptic Code calcTF = calculateTotalFines
+    private int calcTF() {
+        return (int) statistics().totalFines();
+    }
+
+    // Cryptic Code pSR = printStatisticsReport; антипатерн: Long Parameter List
+    private void pSR(int t, int a, int b, double r, String s, String rec, int f) {
+        System.out.println("Всего книг: " + t);
+        System.out.println("Доступно: " + a);
+        System.out.println("Забронировано: " + b);
+        System.out.printf("Процент загрузки: %.2f%%\n", r);
+        System.out.println("Статус: " + s);
+        System.out.println("Рекомендация: " + rec);
+        System.out.println("Всего пользователей: " + statistics().totalUsers());
+        System.out.println("Всего штрафов: " + f + " руб.");
+        System.out.println("Записей в истории: " + history.totalRecorded());
+        CirculationWindows circulation = engine.circulation();
+        long now = engine.now();
+        System.out.println("За последний час: выдач " + circulation.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.HOUR, now)
+                + ", возвратов " + circulation.count(CirculationWindows.Kind.RETURN, CirculationWindows.Window.HOUR, now)
+                + " (" + trend(circulation.series(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.HOUR, now)) + ")");
+    }
+
+    @Override
+    public void printAllBooks() {
+        System.out.println("\nВсе книги");
+        if (statistics().totalBooks() == 0) {
+            System.out.println("Библиотека пуста");
+            return;
+        }
+        printListing(true);
+    }
+
+    @Override
+    public void printAllUsers() {
+        System.out.println("\nВсе пользователи");
+        if (statistics().totalUsers() == 0) {
+            System.out.println("Пользователей нет");
+            return;
+        }
+        printListing(false);
+    }
+
+    // Весь список, страница "с сколько" (позиции с 0) или выгрузка "> файл"; строки идут через ListingWriter
+    private void printListing(boolean books) {
+        System.out.print("Enter - весь список, \"с сколько\" - страница, \"> файл\" - выгрузка в файл: ");
+        String choice = scanner.nextLine().trim();
+        try {
+            if (choice.startsWith(">")) {
+                Path file = Paths.get(choice.substring(1).trim());
+                long started = System.nanoTime();
+                int written = books ? exportBooks(file) : exportUsers(file);
+                System.out.printf("Выгружено записей: %d в %s за %.2f с%n", written, file.toAbsolutePath(),
+                        (System.nanoTime() - started) / 1e9);
+                return;
+            }
+            int offset = 0;
+            int limit = Integer.MAX_VALUE;
+            if (!choice.isEmpty()) {
+                String[] page = choice.split("\\s+");
+                offset = Integer.parseInt(page[0]);
+                limit = page.length > 1 ? Integer.parseInt(page[1]) : limit;
+            }
+            System.out.flush();
+            // System.out не закрываем, только сбрасываем
+            ListingWriter out = new ListingWriter(System.out, ListingWriter.DEFAULT_BUFFER_BYTES, false);
+            try {
+                int written = books ? listBooks(out, offset, limit) : listUsers(out, offset, limit);
+                if (written == 0) {
+                    out.text("На этой странице записей нет").newLine();
+                }
+            } finally {
+                out.close();
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Неверный формат страницы: " + choice);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Ошибка вывода: " + e.getMessage());
+        }
+    }
+
+    // Страница каталога в порядке названия; возвращает число выведенных книг
+    int listBooks(ListingWriter out, int offset, int limit) {
+        int written = engine.forEachBookByTitle(offset, limit, (books, slot) -> writeBook(out, books, slot));
+        logOperationToOldServer(AuditJournal.Op.LISTING, written, 0);
+        return written;
+    }
+
+    int listUsers(ListingWriter out, int offset, int limit) {
+        int written = engine.forEachUser(offset, limit, user -> writeUser(out, user));
+        logOperationToOldServer(AuditJournal.Op.LISTING, written, 0);
+        return written;
+    }
+
+    // Весь каталог в файл (UTF-8, строки как у formatBook); возвращает число записей
+    int exportBooks(Path file) throws IOException {
+        try (ListingWriter out = new ListingWriter(new FileOutputStream(file.toFile()), ListingWriter.DEFAULT_BUFFER_BYTES, true)) {
+            return listBooks(out, 0, Integer.MAX_VALUE);
+        }
+    }
+
+    int exportUsers(Path file) throws IOException {
+        try (ListingWriter out = new ListingWriter(new FileOutputStream(file.toFile()), ListingWriter.DEFAULT_BUFFER_BYTES, true)) {
+            return listUsers(out, 0, Integer.MAX_VALUE);
+        }
+    }
+
+    // Та же строка, что formatBook, без промежуточных строк
+    void writeBook(ListingWriter out, BookStore books, int b) {
+        out.ascii('[').number(books.id(b)).text("] ").text(books.title(b)).text(" - ").text(books.author(b))
+                .text(" (").number(books.year(b)).text(") - ").text(books.isAvailable(b) ? "Доступна" : "Забронирована")
+                .text(" | Рейтинг: ").oneDecimal(books.rating(b)).newLine();
+    }
+
+    // Та же строка, что formatUser
+    void writeUser(ListingWriter out, HashMap<String, Object> u) {
+        Object limit = u.get("borrowLimit");
+        out.ascii('[').text(u.get("id")).text("] ").text(u.get("name")).ascii(' ').text(u.get("surname"))
+                .text(" | Тел: ").text(u.get("phone"))
+                .text(" | Email: ").text(u.get("email"))
+                .text(" | Лимит книг: ").text(limit != null ? limit : magic_7);
+        if (engine.hasOverdue((Integer) u.get("id"))) {
+            out.text(" | Есть просрочка");
+        }
+        out.newLine();
+    }
+
+    // антипатерн: Two Tunnel Отдельная система отчётов вместо расширения статистики
+    @Override
+    public void generateReport() {
+        long started = engine.metrics().start(OperationMetrics.Op.GENERATE_REPORT);
+        try {
+            System.out.println("\nОтчёт");
+            selfCheckStatistics();
+            // Вместо расширения printStatistics создаём дублирующий функционал
+            System.out.println("Дата отчёта: " + new Date());
+            System.out.println("ID системы: " + getId());
+            System.out.println("Версия: " + getVersion());
+            System.out.println("Книг в системе: " + statistics().totalBooks());
+            System.out.println("Пользователей: " + statistics().totalUsers());
+            System.out.println("Активных бронирований: " + cntAB());
+            System.out.println("Общая сумма штрафов: " + calcTF() + " руб.");
+            LibraryReport report = engine.report(reportThreads());
+            System.out.flush();
+            ListingWriter out = new ListingWriter(System.out, ListingWriter.DEFAULT_BUFFER_BYTES, false);
+            try {
+                report.writeText(out);
+            } finally {
+                out.close();
+            }
+            history.record(HistoryEvent.Kind.OPERATION, "Report generated");
+            logOperationToOldServer(AuditJournal.Op.REPORT, 0, 0);
+            System.out.print("Выгрузка: \"csv префикс\" - файлы CSV по разрезам, \"json файл\" - один JSON, Enter - без выгрузки: ");
+            String choice = scanner.nextLine().trim();
+            if (!choice.isEmpty()) {
+                String[] parts = choice.split("\\s+", 2);
+                if (parts.length < 2) {
+                    System.out.println("Не указан файл");
+                } else {
+                    for (Path file : exportReport(report, parts[0], Paths.get(parts[1]))) {
+                        System.out.println("Записан " + file.toAbsolutePath());
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            engine.metrics().failed(OperationMetrics.Op.GENERATE_REPORT);
+            System.out.println("Ошибка отчёта: " + e.getMessage());
+        } catch (RuntimeException e) {
+            engine.metrics().failed(OperationMetrics.Op.GENERATE_REPORT);
+            throw e;
+        } finally {
+            engine.metrics().record(OperationMetrics.Op.GENERATE_REPORT, started);
+        }
+    }
+
+    // format - csv (target - префикс файлов) или json (target - файл); возвращает записанные файлы
+    List<Path> exportReport(LibraryReport report, String format, Path target) throws IOException {
+        switch (format.toLowerCase(Locale.ROOT)) {
+            case "csv":
+                return report.writeCsv(target);
+            case "json":
+                report.writeJson(target);
+                return Collections.singletonList(target);
+            default:
+                throw new IllegalArgumentException("Неизвестный формат отчёта: " + format + " (csv или json)");
+        }
+    }
+
+    // Cryptic Code cntAB = countActiveBorrowings
+    private int cntAB() {
+        return statistics().activeLoans();
+    }
+
+    // Самопроверка: пересчитываем всё полным проходом и сверяем со счётчиками
+    private void selfCheckStatistics() {
+        if (!flags.get("stats.self.check")) {
+            return;
+        }
+        engine.verifyStatistics();
+    }
+
+    // Вход без консоли: та же проверка пароля, что и в authenticate()
+    boolean authenticate(String password) {
+        if (!password.equals(admin_password) || computeSecurityHash(password) % magic_7 >= magic_7) {
+            loginAttempts++;
+            return false;
+        }
+        isAuthenticated = true;
+        logOperationToOldServer(AuditJournal.Op.LOGIN, 0, 0);
+        history.record(HistoryEvent.Kind.SECURITY, "Login successful at " + new Date());
+        return true;
+    }
+
+    // Проверка пароля без побочных эффектов (HTTP: на каждый изменяющий запрос)
+    boolean checkPassword(String password) {
+        return admin_password.equals(password);
+    }
+
+    LibraryStatistics statistics() {
+        return engine.statistics();
+    }
+
+    LibraryEngine engine() {
+        return engine;
+    }
+
+    // Массовая загрузка (CsvBulkImporter): записи идут в движок без журнала предзаписи, в конце пишется один снимок
+    int importThreads() {
+        return limits.get("import.threads");
+    }
+
+    int reportThreads() {
+        return limits.get("report.threads");
+    }
+
+    // Встроенный HTTP-сервер, см. LibraryHttpServer; port 0 - взять из настроек
+    LibraryHttpServer startHttpServer(int port) throws IOException {
+        LibraryHttpServer server = new LibraryHttpServer(this, config.get("http.host"),
+                port > 0 ? port : limits.get("http.port"), limits.get("http.threads"));
+        server.start();
+        history.record(HistoryEvent.Kind.SYSTEM, "HTTP server started on port " + server.port());
+        return server;
+    }
+
+    void endBulkLoad(String summary) {
+        history.record(HistoryEvent.Kind.OPERATION, "Bulk import: " + summary);
+        engine.snapshot();
+    }
+
+    // Снимок на выходе и закрытие всех файлов
+    void shutdown() {
+        if (metricsDumper != null) {
+            metricsDumper.shutdownNow();
+            dumpMetrics();
+        }
+        if (fineAccrual != null) {
+            fineAccrual.shutdownNow();
+        }
+        history.close();
+        if (auditJournal != null) {
+            auditJournal.close();
+        }
+        engine.close();
+    }
+
+    // антипатерн: Dead Code код который никогда не вызывается
+    private void neverCalledMethod() {
+        System.out.println("код никогда не выполнится");
+        int x = magic_42 + magic_7;
+        String s = "dead";
+        for (int i = 0; i < magic_256; i++) {
+            x += i;
+        }
+    }
+    public void showMenu() {
+        while (true) {
+            System.out.println("1.  Добавить книгу");
+            System.out.println("2.  Удалить книгу");
+            System.out.println("3.  Найти книгу");
+            System.out.println("4.  Обновить книгу");
+            System.out.println("5.  Все книги");
+            System.out.println("6.  Добавить пользователя");
+            System.out.println("7.  Удалить пользователя");
+            System.out.println("8.  Найти пользователя");
+            System.out.println("9.  Обновить пользователя");
+            System.out.println("10. Все пользователи");
+            System.out.println("11. Забронировать книгу");
+            System.out.println("12. Вернуть книгу");
+            System.out.println("13. Статистика");
+            System.out.println("14. Отчёт");
+            System.out.println("15. История операций");
+            System.out.println("16. Метрики операций");
+            System.out.println("17. Просроченные книги");
+            System.out.println("18. Динамика выдач");
+            System.out.println("0.  Выход");
+            System.out.print("Выберите действие: ");
+            String choice = scanner.nextLine();
+            checkSecurityToken();
+            switch (choice) {
+                case "1": addBook(); break;
+                case "2": removeBook(); break;
+                case "3": findBook(); break;
+                case "4": updateBook(); break;
+                case "5": printAllBooks(); break;
+                case "6": addUser(); break;
+                case "7": removeUser(); break;
+                case "8": findUser(); break;
+                case "9": updateUser(); break;
+                case "10": printAllUsers(); break;
+                case "11": borrowBook(); break;
+                case "12": returnBook(); break;
+                case "13": printStatistics(); break;
+                case "14": generateReport(); break;
+                case "15": showHistory(); break;
+                case "16": System.out.print("\n" + engine.metrics().dump()); break;
+                case "17": printOverdue(); break;
+                case "18": printCirculation(); break;
+                case "0":
+                    laserOff();
+                    shutdown();
+                    System.out.println(config.get("goodbye.message"));
+                    return;
+                default:
+                    System.out.println("сделайте правильный выбор");
+            }
+        }
+    }
+    // Просроченные на сейчас книги, самые давние первыми
+    private void printOverdue() {
+        System.out.println("\nПросроченные книги");
+        // дни просрочки - по тем же часам, по которым движок отбирает просроченные
+        long now = engine.now();
+        int found = engine.forEachOverdue((books, slot, userId, dueDate) ->
+                System.out.printf("[%d] %s | Читатель: %d | Срок: %s | Просрочено дней: %d%n", books.id(slot), books.title(slot),
+                        userId, new Date(dueDate), (now - dueDate) / LibraryEngine.DAY_MILLIS));
+        if (found == 0) {
+            System.out.println("Просроченных книг нет");
+        }
+    }
+
+    // Выдачи, возвраты, новые читатели и штрафы за последние минуту, час и сутки и их ход по частям окна
+    private void printCirculation() {
+        System.out.println("\nДинамика выдач");
+        CirculationWindows circulation = engine.circulation();
+        long now = engine.now();
+        CirculationWindows.Window[] windows = CirculationWindows.Window.values();
+        System.out.printf("%-16s %10s %10s %10s%n", "", "минута", "час", "сутки");
+        String[] labels = {"Выдачи", "Возвраты", "Новые читатели", "Штрафы"};
+        for (CirculationWindows.Kind kind : CirculationWindows.Kind.values()) {
+            System.out.printf("%-16s", labels[kind.ordinal()]);
+            for (CirculationWindows.Window window : windows) {
+                System.out.printf(" %10d", circulation.count(kind, window, now));
+            }
+            System.out.println();
+        }
+        System.out.printf("%-16s", "Штрафы, руб.");
+        for (CirculationWindows.Window window : windows) {
+            System.out.printf(" %10.2f", circulation.fineAmount(window, now));
+        }
+        System.out.println();
+        String[] parts = {"по 10 с", "по 10 мин", "по 4 ч"};
+        for (CirculationWindows.Window window : windows) {
+            long[] series = circulation.series(CirculationWindows.Kind.CHECKOUT, window, now);
+            StringBuilder line = new StringBuilder();
+            for (long value : group(series, TREND_PARTS)) {
+                line.append(' ').append(value);
+            }
+            System.out.println("Выдачи " + parts[window.ordinal()] + ":" + line + "  " + trend(series));
+        }
+    }
+
+    private static final int TREND_PARTS = 6;
+
+    // Суммы по parts равным частям ряда, от старых к новым
+    private static long[] group(long[] series, int parts) {
+        long[] groups = new long[parts];
+        for (int i = 0; i < series.length; i++) {
+            groups[i * parts / series.length] += series[i];
+        }
+        return groups;
+    }
+
+    // Вторая половина окна против первой: рост или спад больше чем на 10%.
+    // Текущая корзина ещё не закончилась и не учитывается
+    private static String trend(long[] series) {
+        int half = (series.length - 1) / 2;
+        int end = series.length - 1;
+        long first = 0;
+        long second = 0;
+        for (int i = end - half; i < end; i++) {
+            first += series[i - half];
+            second += series[i];
+        }
+        if (second * 10 > first * 11) {
+            return "растёт";
+        }
+        if (second * 10 < first * 9) {
+            return "падает";
+        }
+        return "ровно";
+    }
+
+    // Постраничный просмотр истории от новых событий к старым
+    private void showHistory() {
+        System.out.println("\nИстория операций");
+        int pageSize = magic_42 / 2;
+        int shown = 0;
+        while (true) {
+            List<HistoryEvent> page = history.recent(shown, pageSize);
+            for (HistoryEvent event : page) {
+                System.out.println("- " + event);
+            }
+            shown += page.size();
+            int remaining = history.available() - shown;
+            if (page.isEmpty() || remaining <= 0) {
+                break;
+            }
+            System.out.print("... и ещё " + remaining + " записей (Enter - дальше, 0 - выход): ");
+            if (!scanner.nextLine().isEmpty()) {
+                break;
+            }
+        }
+    }
+}
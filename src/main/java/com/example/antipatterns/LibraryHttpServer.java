@@ -0,0 +1,293 @@
+package com.example.antipatterns;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Встроенный HTTP/JSON-сервер поверх LibraryEngine (com.sun.net.httpserver, без внешних зависимостей).
+//   GET  /books?q=запрос&limit=50        -> {"count":N,"books":[...]} в порядке названия, не больше limit книг
+//   GET  /books?author=А&genre=Ж         -> книги с точно таким автором и/или жанром (вместо q), в порядке каталога
+//   POST /borrow?book=ID&user=ID         -> {"ok":true}
+//   POST /return?book=ID                 -> {"ok":true,"userId":ID,"fine":0.00}
+//   GET  /stats                          -> счётчики статистики
+//   GET  /report                         -> то же, что generateReport
+// Изменяющие запросы требуют заголовка "Authorization: Bearer <пароль администратора>".
+// Ответы об ошибках: {"error":"текст"} с кодом 400 (неверный запрос), 401, 405 или 409 (операция отклонена).
+// Каждый запрос обрабатывается в своём виртуальном потоке; на JDK без виртуальных потоков (до 21)
+// используется пул из http.threads платформенных потоков.
+final class LibraryHttpServer implements AutoCloseable {
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 1000;
+    private static final int BACKLOG = 4096;
+
+    static {
+        // Заголовки и тело ответа уходят двумя записями в сокет; с алгоритмом Нагла и отложенным ACK клиента
+        // это добавляет ~40 мс к каждому ответу. Свойство читается один раз при первом создании HttpServer.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final LibraryGodObject library;
+    private final LibraryEngine engine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    LibraryHttpServer(LibraryGodObject library, String host, int port, int fallbackThreads) throws IOException {
+        this.library = library;
+        this.engine = library.engine();
+        this.server = HttpServer.create(new InetSocketAddress(host, port), BACKLOG);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(fallbackThreads);
+        server.setExecutor(executor);
+        server.createContext("/books", exchange -> handle(exchange, "GET", false, this::books));
+        server.createContext("/borrow", exchange -> handle(exchange, "POST", true, this::borrow));
+        server.createContext("/return", exchange -> handle(exchange, "POST", true, this::returnBook));
+        server.createContext("/stats", exchange -> handle(exchange, "GET", false, this::stats));
+        server.createContext("/report", exchange -> handle(exchange, "GET", false, this::report));
+    }
+
+    void start() {
+        server.start();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    boolean virtualThreads() {
+        return virtualThreads;
+    }
+
+    // Останавливает приём соединений, даёт текущим запросам до секунды на завершение
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() появился в JDK 21; сборка под 17, поэтому ищем его отражением
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private interface Handler {
+        // Заполняет JSON ответа и возвращает HTTP-код
+        int handle(HashMap<String, String> params, StringBuilder json);
+    }
+
+    private void handle(HttpExchange exchange, String method, boolean authorized, Handler handler) throws IOException {
+        int status;
+        StringBuilder json = new StringBuilder(256);
+        try {
+            drain(exchange.getRequestBody());
+            if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                status = error(json, 405, "Ожидается метод " + method);
+            } else if (authorized && !library.checkPassword(bearer(exchange))) {
+                status = error(json, 401, "Требуется заголовок Authorization: Bearer <пароль>");
+            } else {
+                status = handler.handle(parseQuery(exchange.getRequestURI().getRawQuery()), json);
+            }
+        } catch (BadRequest e) {
+            json.setLength(0);
+            status = error(json, 400, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            json.setLength(0);
+            status = error(json, 409, e.getMessage());
+        } catch (RuntimeException e) {
+            json.setLength(0);
+            status = error(json, 500, "Внутренняя ошибка: " + e);
+        }
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private int books(HashMap<String, String> params, StringBuilder json) {
+        String query = params.getOrDefault("q", "");
+        int limit = Math.min(intParam(params, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+        json.append("{\"books\":[");
+        int[] written = {0};
+        LibraryEngine.BookVisitor writer = (books, slot) -> {
+            if (written[0] >= limit) {
+                return;
+            }
+            if (written[0]++ > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(books.id(slot));
+            json.append(",\"title\":");
+            string(json, books.title(slot));
+            json.append(",\"author\":");
+            string(json, books.author(slot));
+            json.append(",\"year\":").append(books.year(slot));
+            json.append(",\"isbn\":");
+            string(json, books.isbn(slot));
+            json.append(",\"genre\":");
+            string(json, books.genre(slot));
+            json.append(",\"rating\":").append(books.rating(slot));
+            json.append(",\"available\":").append(books.isAvailable(slot));
+            json.append('}');
+        };
+        String author = params.get("author");
+        String genre = params.get("genre");
+        int count = author != null || genre != null
+                ? engine.filterBooks(author, genre, writer)
+                : engine.searchBooks(query, writer);
+        json.append("],\"count\":").append(count).append('}');
+        library.logOperationToOldServer(AuditJournal.Op.SEARCH, count, 0);
+        return 200;
+    }
+
+    private int borrow(HashMap<String, String> params, StringBuilder json) {
+        int bookId = intParam(params, "book", -1);
+        int userId = intParam(params, "user", -1);
+        engine.borrow(bookId, userId);
+        library.logOperationToOldServer(AuditJournal.Op.BORROW, bookId, userId);
+        json.append("{\"ok\":true}");
+        return 200;
+    }
+
+    private int returnBook(HashMap<String, String> params, StringBuilder json) {
+        int bookId = intParam(params, "book", -1);
+        LibraryEngine.Receipt receipt = engine.returnBook(bookId);
+        library.logOperationToOldServer(AuditJournal.Op.RETURN, bookId, receipt.userId());
+        json.append(String.format(Locale.ROOT, "{\"ok\":true,\"userId\":%d,\"fine\":%.2f}", receipt.userId(), receipt.fine()));
+        return 200;
+    }
+
+    private int stats(HashMap<String, String> params, StringBuilder json) {
+        LibraryStatistics stats = engine.statistics();
+        json.append(String.format(Locale.ROOT,
+                "{\"books\":%d,\"available\":%d,\"borrowed\":%d,\"activeLoans\":%d,\"users\":%d,\"fines\":%.2f}",
+                stats.totalBooks(), stats.availableBooks(), stats.borrowedBooks(), stats.activeLoans(),
+                stats.totalUsers(), stats.totalFines()));
+        return 200;
+    }
+
+    private int report(HashMap<String, String> params, StringBuilder json) {
+        LibraryStatistics stats = engine.statistics();
+        json.append("{\"date\":");
+        string(json, new Date().toString());
+        json.append(",\"systemId\":");
+        string(json, library.getId());
+        json.append(String.format(Locale.ROOT, ",\"version\":%d,\"books\":%d,\"users\":%d,\"activeLoans\":%d,\"fines\":%d}",
+                library.getVersion(), stats.totalBooks(), stats.totalUsers(), stats.activeLoans(), (int) stats.totalFines()));
+        library.logOperationToOldServer(AuditJournal.Op.REPORT, 0, 0);
+        return 200;
+    }
+
+    private static int error(StringBuilder json, int status, String message) {
+        json.append("{\"error\":");
+        string(json, message);
+        json.append('}');
+        return status;
+    }
+
+    // Строка JSON в кавычках с экранированием управляющих символов
+    private static void string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    private static String bearer(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith("Bearer ") ? header.substring("Bearer ".length()).trim() : "";
+    }
+
+    private static HashMap<String, String> parseQuery(String rawQuery) {
+        HashMap<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            try {
+                params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequest("Неверная строка запроса: " + e.getMessage());
+            }
+        }
+        return params;
+    }
+
+    private static int intParam(HashMap<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) {
+            if (defaultValue < 0) {
+                throw new BadRequest("Нет параметра " + name);
+            }
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequest("Неверное значение " + name + ": " + value);
+        }
+    }
+
+    // Тело запроса не используется, но его нужно дочитать, чтобы соединение можно было переиспользовать
+    private static void drain(InputStream body) throws IOException {
+        byte[] skip = new byte[1024];
+        while (body.read(skip) >= 0) {
+            // отбрасываем
+        }
+        body.close();
+    }
+
+    // Ошибка в параметрах запроса (400), в отличие от IllegalArgumentException движка - отказа в операции (409)
+    private static final class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+}
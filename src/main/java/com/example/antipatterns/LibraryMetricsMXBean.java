@@ -0,0 +1,35 @@
+package com.example.antipatterns;
+
+import java.util.Map;
+
+// JMX-представление OperationMetrics (jconsole: com.example.antipatterns:type=LibraryMetrics).
+// Ключи карт - имена методов ILibraryEverything. Интерфейс MXBean обязан быть public.
+public interface LibraryMetricsMXBean {
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getErrorCounts();
+
+    Map<String, Double> getMeanMillis();
+
+    Map<String, Double> getP50Millis();
+
+    Map<String, Double> getP99Millis();
+
+    Map<String, Double> getMaxMillis();
+
+    Map<String, Long> getCacheHits();
+
+    Map<String, Long> getCacheMisses();
+
+    Map<String, Long> getCacheEvictions();
+
+    Map<String, Long> getCacheInvalidations();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    String getSummary();
+
+    void reset();
+}
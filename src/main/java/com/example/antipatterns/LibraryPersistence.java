@@ -0,0 +1,89 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+// Сохранение состояния библиотеки: снимок + журнал предзаписи (WAL).
+// Каждое изменение дописывается в WAL; раз в snapshotEvery изменений пишется снимок
+// (во временный файл с атомарным переименованием), после чего WAL очищается.
+// При старте снимок отображается в память (MappedSnapshot) и проигрывается хвост WAL
+// с LSN больше, чем в снимке.
+// append/snapshot синхронизированы: изменения приходят из нескольких потоков (см. LibraryEngine).
+final class LibraryPersistence implements AutoCloseable {
+    interface StateWriter {
+        void write(SnapshotWriter out) throws IOException;
+    }
+
+    interface StateReader {
+        void read(MappedSnapshot in) throws IOException;
+    }
+
+    private final Path snapshotFile;
+    private final WriteAheadLog wal;
+    private final int snapshotEvery;
+    private int mutationsSinceSnapshot;
+
+    LibraryPersistence(Path directory, boolean fsync, int snapshotEvery, Consumer<String> warnings) throws IOException {
+        Files.createDirectories(directory);
+        this.snapshotFile = directory.resolve("snapshot.bin");
+        this.wal = new WriteAheadLog(directory.resolve("wal.log"), fsync, warnings);
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    boolean hasSnapshot() {
+        return Files.exists(snapshotFile);
+    }
+
+    // Загружает снимок (если есть) и проигрывает журнал; возвращает число проигранных записей
+    int recover(StateReader snapshotReader, WriteAheadLog.Handler handler) throws IOException {
+        long snapshotLsn = 0;
+        if (Files.exists(snapshotFile)) {
+            MappedSnapshot snapshot = new MappedSnapshot(snapshotFile);
+            try {
+                snapshotLsn = snapshot.lsn();
+                snapshotReader.read(snapshot);
+            } finally {
+                snapshot.close();
+            }
+        }
+        int replayed = wal.replay(snapshotLsn, handler);
+        mutationsSinceSnapshot = replayed;
+        return replayed;
+    }
+
+    // Дописывает изменение в WAL; возвращает true, когда пора делать снимок
+    synchronized boolean append(WriteAheadLog.Op op, WriteAheadLog.Payload payload) throws IOException {
+        wal.append(op, payload);
+        return ++mutationsSinceSnapshot >= snapshotEvery;
+    }
+
+    synchronized boolean snapshotDue() {
+        return mutationsSinceSnapshot >= snapshotEvery;
+    }
+
+    synchronized void snapshot(StateWriter writer) throws IOException {
+        long lsn = wal.nextLsn() - 1;
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotWriter out = new SnapshotWriter(channel, lsn);
+            writer.write(out);
+            out.finish();
+            channel.force(true);
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // если упадём до очистки, записи с LSN <= lsn при восстановлении будут пропущены
+        wal.reset();
+        mutationsSinceSnapshot = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        wal.close();
+    }
+}
@@ -0,0 +1,501 @@
+package com.example.antipatterns;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
+
+// Отчёт по библиотеке за один параллельный проход: книги, читатели, вся история выдач (архив и открытые
+// бронирования) и штрафы режутся на части по PARTITION записей, части считаются в ForkJoinPool и складываются попарно.
+// Разрезы: по жанрам, по десятилетиям года издания и по читателям.
+// Жанры и десятилетия - маленькие таблицы, у каждой части свои, поэтому потоки не делят память;
+// читателей миллионы, их счётчики общие атомарные (разные читатели почти не сталкиваются).
+// Данные снимаются срезом в LibraryEngine.report: нужные колонки BookStore, копия индекса читателей и их имена -
+// под блокировкой чтения структуры, журнал бронирований и штрафы - под ledgerLock. Сам проход идёт уже без
+// блокировок, так что добавление и удаление книг и читателей не ждут отчёт.
+// Результат выводится текстом, CSV (файл на разрез) или одним JSON через ListingWriter.
+final class LibraryReport {
+    static final int YEAR_BUCKET = 10;
+    static final int FIRST_YEAR = 1800;
+    static final int LAST_YEAR = 2099;
+    // записей истории, штрафов или слотов книг в одной части прохода
+    private static final int PARTITION = 1 << 18;
+    private static final int ARCHIVE_CHUNK_RECORDS = 4096;
+
+    // колонки счётчиков в таблицах жанров и десятилетий
+    private static final int BOOKS = 0;
+    private static final int AVAILABLE = 1;
+    private static final int LOANS = 2;
+    private static final int ACTIVE = 3;
+    private static final int LOAN_DAYS = 4;
+    private static final int OVERDUE = 5;
+    private static final int COUNTERS = 6;
+    // денежные и дробные колонки
+    private static final int RATING_SUM = 0;
+    private static final int FINES = 1;
+    private static final int AMOUNTS = 2;
+
+    private enum Source { BOOKS, ARCHIVE, ACTIVE, FINES }
+
+    // ---- входные данные (только для прохода) ----
+    private BookStore.ReportColumns books;
+    // id читателя -> позиция в userIds
+    private IntSlotIndex userPositions;
+    private LoanArchive.View archive;
+    private int[] activeBookIds;
+    private int[] activeUserIds;
+    private long[] activeBorrowDates;
+    private int[] fineBookIds;
+    private double[] fineAmounts;
+    private final List<Source> partitionSources = new ArrayList<>();
+    private final List<long[]> partitionRanges = new ArrayList<>();
+
+    // ---- результат ----
+    private final long generatedAt;
+    private final int parallelism;
+    private final String[] genreNames;
+    private final String[] bucketNames;
+    // строки: коды жанров, затем "без жанра" и "удалённые книги"; десятилетия, затем "удалённые книги"
+    private final int noGenreRow;
+    private final int removedGenreRow;
+    private final int removedBucketRow;
+    private Partial totals;
+    private final int[] userIds;
+    private final String[] userNames;
+    private final String[] userSurnames;
+    private final AtomicIntegerArray userLoans;
+    private final AtomicIntegerArray userActive;
+    private final AtomicIntegerArray userOverdue;
+    private final AtomicLongArray userLoanDays;
+    private long historyDropped;
+    private long elapsedNanos;
+
+    // Вызывается LibraryEngine под блокировкой чтения и копирует всё, что читает проход:
+    // userAt - пользователь по позиции, userIndex - позиция по id
+    LibraryReport(BookStore books, int userCount, IntFunction<HashMap<String, Object>> userAt, IntSlotIndex userIndex,
+                  int parallelism, long now) {
+        this.books = books.reportColumns();
+        this.userPositions = userIndex.copy();
+        this.parallelism = parallelism;
+        this.generatedAt = now;
+        int genres = books.genreCount();
+        genreNames = new String[genres + 2];
+        for (int code = 0; code < genres; code++) {
+            genreNames[code] = books.genreName(code);
+        }
+        noGenreRow = genres;
+        removedGenreRow = genres + 1;
+        genreNames[noGenreRow] = "(без жанра)";
+        genreNames[removedGenreRow] = "(удалённые книги)";
+        int decades = (LAST_YEAR - FIRST_YEAR + 1) / YEAR_BUCKET;
+        bucketNames = new String[decades + 3];
+        bucketNames[0] = "до " + FIRST_YEAR;
+        for (int i = 0; i < decades; i++) {
+            int from = FIRST_YEAR + i * YEAR_BUCKET;
+            bucketNames[i + 1] = from + "-" + (from + YEAR_BUCKET - 1);
+        }
+        bucketNames[decades + 1] = "после " + LAST_YEAR;
+        removedBucketRow = decades + 2;
+        bucketNames[removedBucketRow] = "(удалённые книги)";
+        userIds = new int[userCount];
+        userNames = new String[userCount];
+        userSurnames = new String[userCount];
+        userLoans = new AtomicIntegerArray(userCount);
+        userActive = new AtomicIntegerArray(userCount);
+        userOverdue = new AtomicIntegerArray(userCount);
+        userLoanDays = new AtomicLongArray(userCount);
+        for (int i = 0; i < userCount; i++) {
+            HashMap<String, Object> user = userAt.apply(i);
+            userIds[i] = (Integer) user.get("id");
+            userNames[i] = (String) user.get("name");
+            userSurnames[i] = (String) user.get("surname");
+        }
+    }
+
+    void activeLoans(int[] bookIds, int[] userIds, long[] borrowDates) {
+        activeBookIds = bookIds;
+        activeUserIds = userIds;
+        activeBorrowDates = borrowDates;
+    }
+
+    void fines(int[] bookIds, double[] amounts) {
+        fineBookIds = bookIds;
+        fineAmounts = amounts;
+    }
+
+    void archive(LoanArchive.View view) {
+        archive = view;
+    }
+
+    // Проход по всем частям; после него срез входных данных отпускается
+    void compute(ForkJoinPool pool) throws IOException {
+        long started = System.nanoTime();
+        partition(Source.BOOKS, books.size());
+        partition(Source.ARCHIVE, archive.size());
+        partition(Source.ACTIVE, activeBookIds.length);
+        partition(Source.FINES, fineBookIds.length);
+        historyDropped = archive.dropped();
+        try {
+            totals = partitionSources.isEmpty() ? new Partial(this) : pool.invoke(new PartTask(this, 0, partitionSources.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            books = null;
+            userPositions = null;
+            archive = null;
+            activeBookIds = activeUserIds = fineBookIds = null;
+            activeBorrowDates = null;
+            fineAmounts = null;
+            partitionSources.clear();
+            partitionRanges.clear();
+        }
+        elapsedNanos = System.nanoTime() - started;
+    }
+
+    long loans() {
+        long loans = 0;
+        for (int row = 0; row < genreNames.length; row++) {
+            loans += totals.genres[row * COUNTERS + LOANS];
+        }
+        return loans;
+    }
+
+    double totalFines() {
+        double fines = 0;
+        for (int row = 0; row < genreNames.length; row++) {
+            fines += totals.genreAmounts[row * AMOUNTS + FINES];
+        }
+        return fines;
+    }
+
+    long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    // Краткий текст для консоли: итоги и таблицы жанров и десятилетий (читатели - только в файлах)
+    void writeText(ListingWriter out) {
+        long books = 0;
+        long available = 0;
+        long active = 0;
+        for (int row = 0; row < genreNames.length; row++) {
+            books += totals.genres[row * COUNTERS + BOOKS];
+            available += totals.genres[row * COUNTERS + AVAILABLE];
+            active += totals.genres[row * COUNTERS + ACTIVE];
+        }
+        out.text("Книг: ").number(books).text(", доступно: ").number(available).text(", читателей: ").number(userIds.length).newLine();
+        out.text("Выдач за всё время: ").number(loans()).text(", сейчас на руках: ").number(active)
+                .text(", штрафов: ").decimal(totalFines(), 2).text(" руб.").newLine();
+        if (historyDropped > 0) {
+            out.text("Без файла архива недоступно закрытых бронирований: ").number(historyDropped).newLine();
+        }
+        if (totals.removedUserLoans > 0) {
+            out.text("Выдач удалённым читателям: ").number(totals.removedUserLoans).newLine();
+        }
+        out.text("По жанрам (книг / выдач / на руках / просрочено / штрафы):").newLine();
+        for (int row = 0; row < genreNames.length; row++) {
+            textRow(out, genreNames[row], totals.genres, totals.genreAmounts, row);
+        }
+        out.text("По десятилетиям издания:").newLine();
+        for (int row = 0; row < bucketNames.length; row++) {
+            textRow(out, bucketNames[row], totals.years, totals.yearAmounts, row);
+        }
+        out.text("Посчитано за ").decimal(elapsedNanos / 1e6, 1).text(" мс в ").number(parallelism).text(" потоках").newLine();
+    }
+
+    // Файлы prefix-summary.csv, prefix-genres.csv, prefix-years.csv, prefix-users.csv; возвращает их пути
+    List<Path> writeCsv(Path prefix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (ListingWriter out = open(files, prefix, "-summary.csv")) {
+            out.text("generatedAt,parallelism,elapsedMs,loans,historyDropped,removedUserLoans,fines").newLine();
+            out.csvField(new Date(generatedAt).toString()).ascii(',').number(parallelism).ascii(',')
+                    .decimal(elapsedNanos / 1e6, 3).ascii(',').number(loans()).ascii(',').number(historyDropped).ascii(',')
+                    .number(totals.removedUserLoans).ascii(',').decimal(totalFines(), 2).newLine();
+        }
+        try (ListingWriter out = open(files, prefix, "-genres.csv")) {
+            out.text("genre,").text(CSV_COLUMNS).newLine();
+            for (int row = 0; row < genreNames.length; row++) {
+                out.csvField(genreNames[row]).ascii(',');
+                csvCounters(out, totals.genres, totals.genreAmounts, row);
+            }
+        }
+        try (ListingWriter out = open(files, prefix, "-years.csv")) {
+            out.text("years,").text(CSV_COLUMNS).newLine();
+            for (int row = 0; row < bucketNames.length; row++) {
+                out.csvField(bucketNames[row]).ascii(',');
+                csvCounters(out, totals.years, totals.yearAmounts, row);
+            }
+        }
+        try (ListingWriter out = open(files, prefix, "-users.csv")) {
+            out.text("userId,name,surname,loans,activeLoans,returnedLoanDays,overdueLoans").newLine();
+            for (int i = 0; i < userIds.length; i++) {
+                out.number(userIds[i]).ascii(',').csvField(userNames[i]).ascii(',').csvField(userSurnames[i]).ascii(',')
+                        .number(userLoans.get(i)).ascii(',').number(userActive.get(i)).ascii(',')
+                        .number(userLoanDays.get(i)).ascii(',').number(userOverdue.get(i)).newLine();
+            }
+        }
+        return files;
+    }
+
+    // Один JSON-документ: {"summary":{...},"genres":[...],"years":[...],"users":[...]}
+    void writeJson(Path file) throws IOException {
+        try (ListingWriter out = new ListingWriter(new FileOutputStream(file.toFile()), ListingWriter.DEFAULT_BUFFER_BYTES, true)) {
+            out.text("{\"summary\":{\"generatedAt\":").jsonString(new Date(generatedAt).toString())
+                    .text(",\"parallelism\":").number(parallelism)
+                    .text(",\"elapsedMs\":").decimal(elapsedNanos / 1e6, 3)
+                    .text(",\"loans\":").number(loans())
+                    .text(",\"historyDropped\":").number(historyDropped)
+                    .text(",\"removedUserLoans\":").number(totals.removedUserLoans)
+                    .text(",\"fines\":").decimal(totalFines(), 2).text("},").newLine();
+            out.text("\"genres\":[");
+            for (int row = 0; row < genreNames.length; row++) {
+                jsonCounters(out, row > 0, "genre", genreNames[row], totals.genres, totals.genreAmounts, row);
+            }
+            out.text("],").newLine().text("\"years\":[");
+            for (int row = 0; row < bucketNames.length; row++) {
+                jsonCounters(out, row > 0, "years", bucketNames[row], totals.years, totals.yearAmounts, row);
+            }
+            out.text("],").newLine().text("\"users\":[");
+            for (int i = 0; i < userIds.length; i++) {
+                if (i > 0) {
+                    out.ascii(',');
+                }
+                out.newLine().text("{\"userId\":").number(userIds[i])
+                        .text(",\"name\":").jsonString(userNames[i])
+                        .text(",\"surname\":").jsonString(userSurnames[i])
+                        .text(",\"loans\":").number(userLoans.get(i))
+                        .text(",\"activeLoans\":").number(userActive.get(i))
+                        .text(",\"returnedLoanDays\":").number(userLoanDays.get(i))
+                        .text(",\"overdueLoans\":").number(userOverdue.get(i)).ascii('}');
+            }
+            out.text("]}").newLine();
+        }
+    }
+
+    private static final String CSV_COLUMNS = "books,available,avgRating,loans,activeLoans,returnedLoanDays,overdueLoans,fines";
+
+    private static ListingWriter open(List<Path> files, Path prefix, String suffix) throws IOException {
+        Path file = prefix.resolveSibling(prefix.getFileName() + suffix);
+        files.add(file);
+        return new ListingWriter(new FileOutputStream(file.toFile()), ListingWriter.DEFAULT_BUFFER_BYTES, true);
+    }
+
+    private static void textRow(ListingWriter out, String name, long[] counters, double[] amounts, int row) {
+        int at = row * COUNTERS;
+        if (counters[at + BOOKS] == 0 && counters[at + LOANS] == 0 && amounts[row * AMOUNTS + FINES] == 0) {
+            return;
+        }
+        out.text("  ").text(name).text(": ").number(counters[at + BOOKS]).text(" / ").number(counters[at + LOANS])
+                .text(" / ").number(counters[at + ACTIVE]).text(" / ").number(counters[at + OVERDUE])
+                .text(" / ").decimal(amounts[row * AMOUNTS + FINES], 2).newLine();
+    }
+
+    private static void csvCounters(ListingWriter out, long[] counters, double[] amounts, int row) {
+        int at = row * COUNTERS;
+        long books = counters[at + BOOKS];
+        out.number(books).ascii(',').number(counters[at + AVAILABLE]).ascii(',')
+                .decimal(books == 0 ? 0 : amounts[row * AMOUNTS + RATING_SUM] / books, 2).ascii(',')
+                .number(counters[at + LOANS]).ascii(',').number(counters[at + ACTIVE]).ascii(',')
+                .number(counters[at + LOAN_DAYS]).ascii(',').number(counters[at + OVERDUE]).ascii(',')
+                .decimal(amounts[row * AMOUNTS + FINES], 2).newLine();
+    }
+
+    private static void jsonCounters(ListingWriter out, boolean comma, String key, String name, long[] counters,
+                                     double[] amounts, int row) {
+        int at = row * COUNTERS;
+        long books = counters[at + BOOKS];
+        if (comma) {
+            out.ascii(',');
+        }
+        out.newLine().text("{\"").text(key).text("\":").jsonString(name)
+                .text(",\"books\":").number(books)
+                .text(",\"available\":").number(counters[at + AVAILABLE])
+                .text(",\"avgRating\":").decimal(books == 0 ? 0 : amounts[row * AMOUNTS + RATING_SUM] / books, 2)
+                .text(",\"loans\":").number(counters[at + LOANS])
+                .text(",\"activeLoans\":").number(counters[at + ACTIVE])
+                .text(",\"returnedLoanDays\":").number(counters[at + LOAN_DAYS])
+                .text(",\"overdueLoans\":").number(counters[at + OVERDUE])
+                .text(",\"fines\":").decimal(amounts[row * AMOUNTS + FINES], 2).ascii('}');
+    }
+
+    private void partition(Source source, long count) {
+        for (long from = 0; from < count; from += PARTITION) {
+            partitionSources.add(source);
+            partitionRanges.add(new long[] {from, Math.min(count, from + PARTITION)});
+        }
+    }
+
+    // ---- проход ----
+
+    private void computePart(int index, Partial part) throws IOException {
+        long from = partitionRanges.get(index)[0];
+        long to = partitionRanges.get(index)[1];
+        switch (partitionSources.get(index)) {
+            case BOOKS:
+                for (int slot = (int) from; slot < to; slot++) {
+                    int genre = genreRow(slot);
+                    int bucket = bucketRow(slot);
+                    boolean available = books.isAvailable(slot);
+                    double rating = books.rating(slot);
+                    part.add(genre, bucket, BOOKS, 1);
+                    part.add(genre, bucket, AVAILABLE, available ? 1 : 0);
+                    part.addAmount(genre, bucket, RATING_SUM, rating);
+                }
+                break;
+            case ARCHIVE:
+                ByteBuffer buffer = ByteBuffer.allocate(ARCHIVE_CHUNK_RECORDS * LoanArchive.RECORD_BYTES);
+                archive.forEach(from, to, buffer, (bookId, userId, borrowDate, returnDate) ->
+                        loan(part, bookId, userId, borrowDate, returnDate));
+                break;
+            case ACTIVE:
+                for (int i = (int) from; i < to; i++) {
+                    loan(part, activeBookIds[i], activeUserIds[i], activeBorrowDates[i], BookStore.NO_DATE);
+                }
+                break;
+            case FINES:
+                for (int i = (int) from; i < to; i++) {
+                    int slot = books.indexOf(fineBookIds[i]);
+                    part.addAmount(slot < 0 ? removedGenreRow : genreRow(slot), slot < 0 ? removedBucketRow : bucketRow(slot),
+                            FINES, fineAmounts[i]);
+                }
+                break;
+        }
+    }
+
+    // returnDate == NO_DATE - бронирование ещё открыто
+    private void loan(Partial part, int bookId, int userId, long borrowDate, long returnDate) {
+        int slot = books.indexOf(bookId);
+        int genre = slot < 0 ? removedGenreRow : genreRow(slot);
+        int bucket = slot < 0 ? removedBucketRow : bucketRow(slot);
+        boolean active = returnDate == BookStore.NO_DATE;
+        long end = active ? generatedAt : returnDate;
+        // в данных до сохранения дат выдачи дата неизвестна
+        long held = borrowDate == BookStore.NO_DATE ? 0 : end - borrowDate;
+        long days = active ? 0 : held / LibraryEngine.DAY_MILLIS;
+        boolean overdue = held > LibraryEngine.LOAN_DAYS * LibraryEngine.DAY_MILLIS;
+        part.add(genre, bucket, LOANS, 1);
+        if (active) {
+            part.add(genre, bucket, ACTIVE, 1);
+        }
+        part.add(genre, bucket, LOAN_DAYS, days);
+        if (overdue) {
+            part.add(genre, bucket, OVERDUE, 1);
+        }
+        int position = userPositions.get(userId);
+        if (position == IntSlotIndex.MISSING) {
+            part.removedUserLoans++;
+            return;
+        }
+        userLoans.incrementAndGet(position);
+        if (active) {
+            userActive.incrementAndGet(position);
+        }
+        if (days != 0) {
+            userLoanDays.addAndGet(position, days);
+        }
+        if (overdue) {
+            userOverdue.incrementAndGet(position);
+        }
+    }
+
+    private int genreRow(int slot) {
+        int code = books.genreCode(slot);
+        return code == StringDictionary.NO_CODE ? noGenreRow : code;
+    }
+
+    private int bucketRow(int slot) {
+        int year = books.year(slot);
+        if (year < FIRST_YEAR) {
+            return 0;
+        }
+        if (year > LAST_YEAR) {
+            return removedBucketRow - 1;
+        }
+        return 1 + (year - FIRST_YEAR) / YEAR_BUCKET;
+    }
+
+    // Счётчики одной части прохода (или суммы нескольких)
+    private static final class Partial {
+        final long[] genres;
+        final long[] years;
+        final double[] genreAmounts;
+        final double[] yearAmounts;
+        long removedUserLoans;
+
+        Partial(LibraryReport report) {
+            genres = new long[report.genreNames.length * COUNTERS];
+            years = new long[report.bucketNames.length * COUNTERS];
+            genreAmounts = new double[report.genreNames.length * AMOUNTS];
+            yearAmounts = new double[report.bucketNames.length * AMOUNTS];
+        }
+
+        void add(int genre, int bucket, int counter, long value) {
+            genres[genre * COUNTERS + counter] += value;
+            years[bucket * COUNTERS + counter] += value;
+        }
+
+        void addAmount(int genre, int bucket, int column, double value) {
+            genreAmounts[genre * AMOUNTS + column] += value;
+            yearAmounts[bucket * AMOUNTS + column] += value;
+        }
+
+        Partial merge(Partial other) {
+            for (int i = 0; i < genres.length; i++) {
+                genres[i] += other.genres[i];
+            }
+            for (int i = 0; i < years.length; i++) {
+                years[i] += other.years[i];
+            }
+            for (int i = 0; i < genreAmounts.length; i++) {
+                genreAmounts[i] += other.genreAmounts[i];
+            }
+            for (int i = 0; i < yearAmounts.length; i++) {
+                yearAmounts[i] += other.yearAmounts[i];
+            }
+            removedUserLoans += other.removedUserLoans;
+            return this;
+        }
+    }
+
+    // Части [from, to): одна считается на месте, больше - делятся пополам
+    private static final class PartTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final LibraryReport report;
+        private final int from;
+        private final int to;
+
+        PartTask(LibraryReport report, int from, int to) {
+            this.report = report;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from == 1) {
+                Partial part = new Partial(report);
+                try {
+                    report.computePart(from, part);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return part;
+            }
+            int middle = (from + to) >>> 1;
+            PartTask left = new PartTask(report, from, middle);
+            left.fork();
+            Partial right = new PartTask(report, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.antipatterns;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Счётчики статистики, обновляемые на каждой операции, чтобы отчёты читали их за O(1).
+// LongAdder вместо int: выдачи из разных потоков не борются за одну ячейку памяти.
+// verify() сверяет счётчики с полным пересчётом (режим самопроверки).
+// Штрафы считаются в целых копейках, как в CirculationWindows: сумма double зависела бы от порядка сложения,
+// и на больших суммах счётчик и пересчёт расходились бы без всякой ошибки.
+final class LibraryStatistics {
+    private final LongAdder totalBooks = new LongAdder();
+    private final LongAdder availableBooks = new LongAdder();
+    private final LongAdder activeLoans = new LongAdder();
+    private final LongAdder totalUsers = new LongAdder();
+    private final LongAdder fineKopecks = new LongAdder();
+
+    void bookAdded() {
+        totalBooks.increment();
+        availableBooks.increment();
+    }
+
+    void bookRemoved(boolean wasAvailable) {
+        totalBooks.decrement();
+        if (wasAvailable) {
+            availableBooks.decrement();
+        }
+    }
+
+    void bookBorrowed() {
+        availableBooks.decrement();
+    }
+
+    void bookReturned() {
+        availableBooks.increment();
+    }
+
+    void loanOpened() {
+        activeLoans.increment();
+    }
+
+    void loanClosed() {
+        activeLoans.decrement();
+    }
+
+    void userAdded() {
+        totalUsers.increment();
+    }
+
+    void userRemoved() {
+        totalUsers.decrement();
+    }
+
+    void fineAdded(double amount) {
+        fineKopecks.add(kopecks(amount));
+    }
+
+    // Установка счётчиков целиком при загрузке снимка
+    void restore(int totalBooks, int availableBooks, int activeLoans, int totalUsers, double totalFines) {
+        set(this.totalBooks, totalBooks);
+        set(this.availableBooks, availableBooks);
+        set(this.activeLoans, activeLoans);
+        set(this.totalUsers, totalUsers);
+        fineKopecks.reset();
+        fineKopecks.add(kopecks(totalFines));
+    }
+
+    int totalBooks() {
+        return totalBooks.intValue();
+    }
+
+    int availableBooks() {
+        return availableBooks.intValue();
+    }
+
+    int borrowedBooks() {
+        return totalBooks() - availableBooks();
+    }
+
+    int activeLoans() {
+        return activeLoans.intValue();
+    }
+
+    int totalUsers() {
+        return totalUsers.intValue();
+    }
+
+    double totalFines() {
+        return fineKopecks.sum() / 100.0;
+    }
+
+    static long kopecks(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    void verify(int scannedBooks, int scannedAvailable, int scannedActiveLoans, long scannedFineKopecks, int scannedUsers) {
+        ArrayList<String> mismatches = new ArrayList<>();
+        if (scannedBooks != totalBooks()) {
+            mismatches.add("книг " + totalBooks() + " != " + scannedBooks);
+        }
+        if (scannedAvailable != availableBooks()) {
+            mismatches.add("доступно " + availableBooks() + " != " + scannedAvailable);
+        }
+        if (scannedActiveLoans != activeLoans()) {
+            mismatches.add("активных бронирований " + activeLoans() + " != " + scannedActiveLoans);
+        }
+        if (scannedFineKopecks != fineKopecks.sum()) {
+            mismatches.add(String.format(Locale.ROOT, "штрафов %.2f != %.2f", totalFines(), scannedFineKopecks / 100.0));
+        }
+        if (scannedUsers != totalUsers()) {
+            mismatches.add("пользователей " + totalUsers() + " != " + scannedUsers);
+        }
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("Счётчики статистики расходятся с пересчётом: " + String.join(", ", mismatches));
+        }
+    }
+
+    private static void set(LongAdder counter, int value) {
+        counter.reset();
+        counter.add(value);
+    }
+}
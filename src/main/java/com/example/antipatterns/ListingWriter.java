@@ -0,0 +1,284 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+// Потоковый вывод больших списков: строки кодируются в UTF-8 прямо в один переиспользуемый буфер байтов,
+// который уходит в поток целиком, когда заполнится. Ни строк на каждую запись, ни сброса на каждой строке:
+// вывод миллиона книг - это несколько сотен записей в поток, а не миллион.
+// Методы записи вызываются из обходчиков движка, поэтому ошибку записи отдают как UncheckedIOException.
+// Потокобезопасности нет.
+final class ListingWriter implements AutoCloseable {
+    static final int DEFAULT_BUFFER_BYTES = 1 << 18;
+    // самый длинный UTF-8 код одного char
+    private static final int MAX_CHAR_BYTES = 3;
+
+    private final OutputStream out;
+    private final boolean closeTarget;
+    private final byte[] buffer;
+    // символы строки копируются сюда пачкой (String.getChars): так быстрее, чем charAt на каждый символ
+    private final char[] chars;
+    // разделитель дробной части как у String.format("%.1f") в текущей локали
+    private final byte decimalSeparator;
+    private int position;
+    private long bytesWritten;
+
+    // closeTarget = false - поток (например, System.out) при close только сбрасывается
+    ListingWriter(OutputStream out, int bufferBytes, boolean closeTarget) {
+        if (bufferBytes < 64) {
+            throw new IllegalArgumentException("Буфер вывода слишком мал: " + bufferBytes);
+        }
+        this.out = out;
+        this.closeTarget = closeTarget;
+        this.buffer = new byte[bufferBytes];
+        this.chars = new char[bufferBytes / MAX_CHAR_BYTES];
+        char separator = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getDecimalSeparator();
+        this.decimalSeparator = separator < 0x80 ? (byte) separator : (byte) '.';
+    }
+
+    ListingWriter text(String text) {
+        if (text == null) {
+            return text("null");
+        }
+        int length = text.length();
+        for (int i = 0; i < length; ) {
+            // сколько символов гарантированно помещается в остаток буфера
+            int room = (buffer.length - position) / MAX_CHAR_BYTES;
+            if (room < 2) {
+                drain();
+                continue;
+            }
+            int end = Math.min(length, i + room - 1);
+            // пара суррогатов на границе пачки берётся целиком; одиночный старший суррогат перед парой
+            // остаётся в этой пачке, иначе пара разорвалась бы на следующей границе
+            if (end < length && Character.isHighSurrogate(text.charAt(end - 1)) && Character.isLowSurrogate(text.charAt(end))) {
+                end++;
+            }
+            text.getChars(i, end, chars, 0);
+            encode(end - i);
+            i = end;
+        }
+        return this;
+    }
+
+    ListingWriter text(Object value) {
+        return text(String.valueOf(value));
+    }
+
+    ListingWriter ascii(char c) {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) c;
+        return this;
+    }
+
+    ListingWriter number(long value) {
+        if (buffer.length - position < 20) {
+            drain();
+        }
+        if (value == Long.MIN_VALUE) {
+            return text(Long.toString(value));
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        if (value <= Integer.MAX_VALUE) {
+            // id, годы и счётчики: деление int заметно дешевле деления long
+            int rest = (int) value;
+            int digits = 1;
+            for (int limit = 10; digits < 10 && rest >= limit; limit *= 10) {
+                digits++;
+            }
+            for (int i = position + digits - 1; i >= position; i--) {
+                int next = rest / 10;
+                buffer[i] = (byte) ('0' + rest - next * 10);
+                rest = next;
+            }
+            position += digits;
+            return this;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+        return this;
+    }
+
+    // Одна цифра после запятой, как "%.1f"
+    ListingWriter oneDecimal(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e17) {
+            return text(String.format("%.1f", value));
+        }
+        long tenths = Math.round(Math.abs(value) * 10);
+        if (value < 0 && tenths != 0) {
+            ascii('-');
+        }
+        number(tenths / 10);
+        ascii((char) decimalSeparator);
+        return ascii((char) ('0' + tenths % 10));
+    }
+
+    // digits знаков после точки, разделитель всегда '.': для CSV и JSON, а не для чтения человеком
+    ListingWriter decimal(double value, int digits) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e15 || digits < 0 || digits > 6) {
+            return text(String.format(Locale.ROOT, "%." + Math.max(0, Math.min(digits, 17)) + "f", value));
+        }
+        long scale = 1;
+        for (int i = 0; i < digits; i++) {
+            scale *= 10;
+        }
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            ascii('-');
+        }
+        number(scaled / scale);
+        if (digits > 0) {
+            ascii('.');
+            long fraction = scaled % scale;
+            for (long pad = scale / 10; pad > fraction && pad > 1; pad /= 10) {
+                ascii('0');
+            }
+            number(fraction);
+        }
+        return this;
+    }
+
+    // Поле CSV: в кавычках (с удвоением кавычек), только если в нём есть запятая, кавычка или перевод строки
+    ListingWriter csvField(String value) {
+        if (value == null) {
+            return this;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return text(value);
+        }
+        ascii('"');
+        int from = 0;
+        for (int i = value.indexOf('"'); i >= 0; i = value.indexOf('"', from)) {
+            text(value.substring(from, i + 1)).ascii('"');
+            from = i + 1;
+        }
+        return text(value.substring(from)).ascii('"');
+    }
+
+    // Строка JSON в кавычках; null - литерал null
+    ListingWriter jsonString(String value) {
+        if (value == null) {
+            return text("null");
+        }
+        ascii('"');
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) {
+                continue;
+            }
+            if (from < i) {
+                text(value.substring(from, i));
+            }
+            switch (c) {
+                case '"': text("\\\""); break;
+                case '\\': text("\\\\"); break;
+                case '\n': text("\\n"); break;
+                case '\r': text("\\r"); break;
+                case '\t': text("\\t"); break;
+                default: text(String.format("\\u%04x", (int) c));
+            }
+            from = i + 1;
+        }
+        if (from == 0) {
+            text(value);
+        } else if (from < value.length()) {
+            text(value.substring(from));
+        }
+        return ascii('"');
+    }
+
+    ListingWriter newLine() {
+        return ascii('\n');
+    }
+
+    long bytesWritten() {
+        return bytesWritten + position;
+    }
+
+    void flush() throws IOException {
+        writeBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (closeTarget) {
+                out.close();
+            }
+        }
+    }
+
+    // Кодирует первые count символов chars; места в буфере хватает (см. text)
+    private void encode(int count) {
+        byte[] buf = buffer;
+        char[] src = chars;
+        int p = position;
+        int i = 0;
+        while (i < count) {
+            char c = src[i++];
+            if (c < 0x80) {
+                buf[p++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[p++] = (byte) (0xC0 | (c >> 6));
+                buf[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i < count && Character.isLowSurrogate(src[i])) {
+                    int cp = Character.toCodePoint(c, src[i++]);
+                    buf[p++] = (byte) (0xF0 | (cp >> 18));
+                    buf[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[p++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    // одиночный суррогат, как в String.getBytes(UTF_8)
+                    buf[p++] = '?';
+                }
+            } else {
+                buf[p++] = (byte) (0xE0 | (c >> 12));
+                buf[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        position = p;
+    }
+
+    private void drain() {
+        try {
+            writeBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        out.write(buffer, 0, position);
+        bytesWritten += position;
+        position = 0;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Архив закрытых бронирований: записи фиксированной длины (книга, читатель, дата выдачи, дата возврата),
+// только дописываются. В памяти держится один сегмент на SEGMENT_RECORDS записей; заполненный сегмент
+// уходит в файл архива одной записью на диск, так что закрытые бронирования не занимают память.
+// Без файла (сохранение отключено) заполненные сегменты отбрасываются, остаётся только их счёт.
+// Снимок фиксирует число записей (force), при восстановлении архив обрезается до него и дописывается
+// проигрыванием журнала.
+// Потокобезопасности нет: LoanLedger вызывается под ledgerLock движка.
+final class LoanArchive {
+    interface Visitor {
+        void visit(int bookId, int userId, long borrowDate, long returnDate);
+    }
+
+    static final int RECORD_BYTES = 24;
+    private static final int SEGMENT_RECORDS = 4096;
+
+    private final ByteBuffer segment = ByteBuffer.allocate(SEGMENT_RECORDS * RECORD_BYTES);
+    // байты текущего сегмента, уже записанные в файл (force перед снимком пишет неполный сегмент)
+    private int flushedBytes;
+    // записей до текущего сегмента: в файле или отброшенных
+    private long sealed;
+    private FileChannel file;
+
+    // Подключение файла архива; оборванная последняя запись (падение посреди записи) отрезается
+    void attach(Path path) throws IOException {
+        close();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long records = channel.size() / RECORD_BYTES;
+        channel.truncate(records * RECORD_BYTES);
+        channel.position(records * RECORD_BYTES);
+        file = channel;
+        sealed = records;
+        segment.clear();
+        flushedBytes = 0;
+    }
+
+    // Оставляет первые records записей. Если файл короче (его удалили), остаётся то, что есть
+    void truncate(long records) throws IOException {
+        segment.clear();
+        flushedBytes = 0;
+        if (file == null) {
+            sealed = records;
+            return;
+        }
+        long kept = Math.min(records, file.size() / RECORD_BYTES);
+        file.truncate(kept * RECORD_BYTES);
+        file.position(kept * RECORD_BYTES);
+        sealed = kept;
+    }
+
+    long size() {
+        return sealed + segment.position() / RECORD_BYTES;
+    }
+
+    boolean attached() {
+        return file != null;
+    }
+
+    void append(int bookId, int userId, long borrowDate, long returnDate) throws IOException {
+        segment.putInt(bookId).putInt(userId).putLong(borrowDate).putLong(returnDate);
+        if (!segment.hasRemaining()) {
+            // сегмент очищается и при сбое записи: иначе следующий append упрётся в переполненный буфер
+            try {
+                writeUnflushed();
+            } finally {
+                sealed += SEGMENT_RECORDS;
+                segment.clear();
+                flushedBytes = 0;
+            }
+        }
+    }
+
+    // Всё дописанное - на диск; вызывается перед снимком, который запоминает size()
+    void force() throws IOException {
+        if (file != null) {
+            writeUnflushed();
+            file.force(false);
+        }
+    }
+
+    // Все записи в порядке добавления: из файла, затем из памяти. Без файла - только текущий сегмент
+    long forEach(Visitor visitor) throws IOException {
+        long visited = 0;
+        int fromSegment = 0;
+        if (file != null) {
+            long fileBytes = file.size();
+            ByteBuffer chunk = ByteBuffer.allocate(SEGMENT_RECORDS * RECORD_BYTES);
+            for (long position = 0; position < fileBytes; ) {
+                chunk.clear();
+                chunk.limit((int) Math.min(chunk.capacity(), fileBytes - position));
+                while (chunk.hasRemaining()) {
+                    if (file.read(chunk, position + chunk.position()) < 0) {
+                        throw new IOException("Архив бронирований укоротился при чтении");
+                    }
+                }
+                chunk.flip();
+                position += chunk.limit();
+                visited += visitRecords(chunk, visitor);
+            }
+            fromSegment = flushedBytes;
+        }
+        ByteBuffer unflushed = segment.duplicate();
+        unflushed.position(fromSegment).limit(segment.position());
+        return visited + visitRecords(unflushed, visitor);
+    }
+
+    // Неизменяемый срез архива на сейчас для чтения из многих потоков (LibraryReport).
+    // Файл только дописывается, поэтому записи среза дочитываются позиционным чтением без блокировок;
+    // без файла в срез попадает копия текущего сегмента, отброшенные сегменты недоступны
+    View view() throws IOException {
+        if (file != null) {
+            writeUnflushed();
+            return new View(file, sealed + flushedBytes / RECORD_BYTES, null, 0);
+        }
+        ByteBuffer copy = ByteBuffer.allocate(segment.position());
+        copy.put(segment.duplicate().flip());
+        return new View(null, 0, copy.flip(), sealed);
+    }
+
+    static final class View {
+        private final FileChannel file;
+        private final long fileRecords;
+        private final ByteBuffer memory;
+        private final long dropped;
+
+        private View(FileChannel file, long fileRecords, ByteBuffer memory, long dropped) {
+            this.file = file;
+            this.fileRecords = fileRecords;
+            this.memory = memory;
+            this.dropped = dropped;
+        }
+
+        // Доступные для чтения записи
+        long size() {
+            return memory == null ? fileRecords : memory.limit() / RECORD_BYTES;
+        }
+
+        // Закрытые бронирования, отброшенные без файла архива: они есть только в счёте
+        long dropped() {
+            return dropped;
+        }
+
+        // Записи [from, to) среза; buffer - рабочий буфер вызывающего потока (кратен RECORD_BYTES)
+        long forEach(long from, long to, ByteBuffer buffer, Visitor visitor) throws IOException {
+            if (from < 0 || to > size() || from > to) {
+                throw new IndexOutOfBoundsException("[" + from + ", " + to + ") вне среза из " + size());
+            }
+            if (memory != null) {
+                ByteBuffer records = memory.duplicate();
+                records.position((int) from * RECORD_BYTES).limit((int) to * RECORD_BYTES);
+                return visitRecords(records, visitor);
+            }
+            long visited = 0;
+            int chunkRecords = buffer.capacity() / RECORD_BYTES;
+            for (long record = from; record < to; ) {
+                buffer.clear();
+                buffer.limit((int) Math.min(chunkRecords, to - record) * RECORD_BYTES);
+                long position = record * RECORD_BYTES;
+                while (buffer.hasRemaining()) {
+                    if (file.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("Архив бронирований укоротился при чтении");
+                    }
+                }
+                buffer.flip();
+                record += buffer.limit() / RECORD_BYTES;
+                visited += visitRecords(buffer, visitor);
+            }
+            return visited;
+        }
+    }
+
+    void close() throws IOException {
+        if (file == null) {
+            return;
+        }
+        try {
+            force();
+        } finally {
+            file.close();
+            file = null;
+        }
+    }
+
+    // Отключение файла без записи: архив дальше ведётся только в памяти
+    void detach() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException ignored) {
+            // файл уже не используется
+        }
+        file = null;
+        sealed += flushedBytes / RECORD_BYTES;
+        segment.flip();
+        segment.position(flushedBytes);
+        segment.compact();
+        flushedBytes = 0;
+    }
+
+    private void writeUnflushed() throws IOException {
+        if (file == null) {
+            return;
+        }
+        ByteBuffer pending = segment.duplicate();
+        pending.position(flushedBytes).limit(segment.position());
+        while (pending.hasRemaining()) {
+            file.write(pending);
+        }
+        flushedBytes = segment.position();
+    }
+
+    private static int visitRecords(ByteBuffer records, Visitor visitor) {
+        int visited = 0;
+        while (records.remaining() >= RECORD_BYTES) {
+            visitor.visit(records.getInt(), records.getInt(), records.getLong(), records.getLong());
+            visited++;
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Журнал бронирований: открытые бронирования по колонкам с индексами по книге и по читателю,
+// закрытые - в архиве (LoanArchive).
+// Бронирования одного читателя связаны в двусвязный список через слоты, поэтому его выдачи - O(k)
+// без прохода по всем. Закрытое бронирование сразу уходит в архив, а его слот занимает последнее
+// открытое: память пропорциональна числу книг на руках, а не всей истории выдач.
+// Потокобезопасности нет: LibraryEngine работает с журналом под ledgerLock.
+final class LoanLedger {
+    interface Visitor {
+        void visit(int bookId, int userId, long borrowDate);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+
+    private int[] bookIds = new int[INITIAL_CAPACITY];
+    private int[] userIds = new int[INITIAL_CAPACITY];
+    private long[] borrowDates = new long[INITIAL_CAPACITY];
+    // соседние слоты в списке бронирований того же читателя, NONE - конец списка
+    private int[] nextOfUser = new int[INITIAL_CAPACITY];
+    private int[] prevOfUser = new int[INITIAL_CAPACITY];
+    private int size;
+    // id книги -> слот
+    private final IntSlotIndex byBook = new IntSlotIndex();
+    // id читателя -> первый слот его списка
+    private final IntSlotIndex userHeads = new IntSlotIndex();
+    private final LoanArchive archive = new LoanArchive();
+
+    // Число открытых бронирований
+    int size() {
+        return size;
+    }
+
+    boolean isOpen(int bookId) {
+        return byBook.get(bookId) != IntSlotIndex.MISSING;
+    }
+
+    // Читатель открытого бронирования книги, IntSlotIndex.MISSING - бронирования нет
+    int userOf(int bookId) {
+        int slot = byBook.get(bookId);
+        return slot == IntSlotIndex.MISSING ? IntSlotIndex.MISSING : userIds[slot];
+    }
+
+    long borrowDate(int bookId) {
+        int slot = byBook.get(bookId);
+        if (slot == IntSlotIndex.MISSING) {
+            throw new IllegalStateException("У книги " + bookId + " нет открытого бронирования");
+        }
+        return borrowDates[slot];
+    }
+
+    void open(int bookId, int userId, long borrowDate) {
+        if (isOpen(bookId)) {
+            throw new IllegalStateException("У книги " + bookId + " уже есть открытое бронирование");
+        }
+        if (size == bookIds.length) {
+            int capacity = size * 2;
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            borrowDates = Arrays.copyOf(borrowDates, capacity);
+            nextOfUser = Arrays.copyOf(nextOfUser, capacity);
+            prevOfUser = Arrays.copyOf(prevOfUser, capacity);
+        }
+        int slot = size++;
+        bookIds[slot] = bookId;
+        userIds[slot] = userId;
+        borrowDates[slot] = borrowDate;
+        int head = userHeads.get(userId);
+        nextOfUser[slot] = head;
+        prevOfUser[slot] = NONE;
+        if (head != IntSlotIndex.MISSING) {
+            prevOfUser[head] = slot;
+        }
+        userHeads.put(userId, slot);
+        byBook.put(bookId, slot);
+    }
+
+    // Закрытие бронирования и перенос в архив; false - открытого бронирования у книги нет.
+    // IOException - сбой записи архива, сам журнал при этом уже изменён
+    boolean close(int bookId, long returnDate) throws IOException {
+        int slot = byBook.remove(bookId);
+        if (slot == IntSlotIndex.MISSING) {
+            return false;
+        }
+        int userId = userIds[slot];
+        long borrowDate = borrowDates[slot];
+        unlink(slot);
+        int last = --size;
+        if (slot != last) {
+            moveSlot(last, slot);
+        }
+        archive.append(bookId, userId, borrowDate, returnDate);
+        return true;
+    }
+
+    // Открытые бронирования читателя, от последней выдачи к первой; возвращает их число
+    int forEachOfUser(int userId, Visitor visitor) {
+        int visited = 0;
+        for (int slot = userHeads.get(userId); slot != NONE; slot = nextOfUser[slot]) {
+            visitor.visit(bookIds[slot], userIds[slot], borrowDates[slot]);
+            visited++;
+        }
+        return visited;
+    }
+
+    int countOfUser(int userId) {
+        int count = 0;
+        for (int slot = userHeads.get(userId); slot != NONE; slot = nextOfUser[slot]) {
+            count++;
+        }
+        return count;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int slot = 0; slot < size; slot++) {
+            visitor.visit(bookIds[slot], userIds[slot], borrowDates[slot]);
+        }
+    }
+
+    // Число закрытых бронирований за всё время
+    long archivedCount() {
+        return archive.size();
+    }
+
+    long forEachArchived(LoanArchive.Visitor visitor) throws IOException {
+        return archive.forEach(visitor);
+    }
+
+    LoanArchive.View archiveView() throws IOException {
+        return archive.view();
+    }
+
+    void attachArchive(Path file) throws IOException {
+        archive.attach(file);
+    }
+
+    void truncateArchive(long records) throws IOException {
+        archive.truncate(records);
+    }
+
+    void detachArchive() {
+        archive.detach();
+    }
+
+    void closeArchive() throws IOException {
+        archive.close();
+    }
+
+    // Перенос закрытого бронирования из старого снимка, где закрытые хранились вместе с открытыми
+    void archiveClosed(int bookId, int userId, long borrowDate, long returnDate) throws IOException {
+        archive.append(bookId, userId, borrowDate, returnDate);
+    }
+
+    void clear() {
+        size = 0;
+        byBook.clear();
+        userHeads.clear();
+    }
+
+    // Открытые бронирования и длина архива, которую снимок считает своей (архив перед этим сбрасывается на диск).
+    // Индексы при загрузке строятся заново: открытых бронирований не больше, чем книг
+    void writeTo(SnapshotWriter out) throws IOException {
+        archive.force();
+        out.intColumn("loan.active.bookId", size, i -> bookIds[i]);
+        out.intColumn("loan.active.userId", size, i -> userIds[i]);
+        out.longColumn("loan.active.borrowDate", size, i -> borrowDates[i]);
+        out.longColumn("loan.archived", 1, i -> archive.size());
+    }
+
+    void readFrom(MappedSnapshot in) throws IOException {
+        int[] books = in.ints("loan.active.bookId");
+        int[] users = in.ints("loan.active.userId");
+        long[] dates = in.longs("loan.active.borrowDate");
+        long[] archived = in.longs("loan.archived");
+        if (books.length != users.length || books.length != dates.length || archived.length != 1) {
+            throw new IOException("Снимок повреждён: журнал бронирований");
+        }
+        clear();
+        for (int i = 0; i < books.length; i++) {
+            open(books[i], users[i], dates[i]);
+        }
+        archive.truncate(archived[0]);
+    }
+
+    private void unlink(int slot) {
+        int prev = prevOfUser[slot];
+        int next = nextOfUser[slot];
+        if (prev != NONE) {
+            nextOfUser[prev] = next;
+        } else if (next != NONE) {
+            userHeads.put(userIds[slot], next);
+        } else {
+            userHeads.remove(userIds[slot]);
+        }
+        if (next != NONE) {
+            prevOfUser[next] = prev;
+        }
+    }
+
+    private void moveSlot(int from, int to) {
+        bookIds[to] = bookIds[from];
+        userIds[to] = userIds[from];
+        borrowDates[to] = borrowDates[from];
+        int prev = prevOfUser[from];
+        int next = nextOfUser[from];
+        prevOfUser[to] = prev;
+        nextOfUser[to] = next;
+        if (prev != NONE) {
+            nextOfUser[prev] = to;
+        } else {
+            userHeads.put(userIds[to], to);
+        }
+        if (next != NONE) {
+            prevOfUser[next] = to;
+        }
+        byBook.put(bookIds[to], to);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.antipatterns;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+// Список записей, загруженных из снимка лениво: запись i создаётся декодером при первом get(i)
+// и дальше хранится как обычный элемент. До этого в памяти есть только пустая ячейка.
+// null-элементы не поддерживаются: пустая ячейка означает "ещё в снимке".
+// get() можно вызывать из нескольких потоков одновременно: запись декодируется один раз и публикуется безопасно.
+// Изменения списка требуют внешней синхронизации.
+final class MappedRecordList<T> extends AbstractList<T> implements RandomAccess {
+    private static final VarHandle ITEM = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] items = new Object[INITIAL_CAPACITY];
+    private int size;
+    private IntFunction<T> decoder;
+    // ячейки [0, mappedCount) без элемента берутся из снимка под тем же номером
+    private int mappedCount;
+
+    // Подключает count записей снимка к пустому списку
+    void load(int count, IntFunction<T> decoder) {
+        if (size != 0) {
+            throw new IllegalStateException("Снимок загружается только в пустой список");
+        }
+        items = new Object[Math.max(count, INITIAL_CAPACITY)];
+        size = count;
+        mappedCount = count;
+        this.decoder = decoder;
+        modCount++;
+    }
+
+    IntFunction<T> decoder() {
+        return decoder;
+    }
+
+    // Элемент, если он уже создан, иначе null (запись ещё только в снимке)
+    @SuppressWarnings("unchecked")
+    T peek(int index) {
+        Objects.checkIndex(index, size);
+        return (T) items[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        Object item = ITEM.getAcquire(items, index);
+        if (item == null && index < mappedCount) {
+            item = decode(index);
+        }
+        return (T) item;
+    }
+
+    // Два читателя одной ещё не созданной записи должны получить один и тот же объект
+    private synchronized Object decode(int index) {
+        Object item = items[index];
+        if (item == null) {
+            item = decoder.apply(index);
+            ITEM.setRelease(items, index, item);
+        }
+        return item;
+    }
+
+    @Override
+    public T set(int index, T element) {
+        Objects.requireNonNull(element);
+        T previous = get(index);
+        items[index] = element;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        Objects.requireNonNull(element);
+        Objects.checkIndex(index, size + 1);
+        materializeFrom(index);
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size + (size >> 1) + 1);
+        }
+        System.arraycopy(items, index, items, index + 1, size - index);
+        items[index] = element;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        T removed = get(index);
+        materializeFrom(index + 1);
+        System.arraycopy(items, index + 1, items, index, size - index - 1);
+        items[--size] = null;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        size = 0;
+        mappedCount = 0;
+        decoder = null;
+        modCount++;
+    }
+
+    // Перед сдвигом элементов декодируем хвост: после сдвига номера ячеек перестают совпадать с номерами в снимке
+    private void materializeFrom(int index) {
+        for (int i = index; i < Math.min(size, mappedCount); i++) {
+            get(i);
+        }
+        mappedCount = Math.min(mappedCount, index);
+    }
+}
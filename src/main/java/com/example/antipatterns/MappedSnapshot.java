@@ -0,0 +1,167 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Двоичный снимок, читаемый через FileChannel.map без разбора и без копирования.
+// Формат (little-endian, версия VERSION):
+//   заголовок: MAGIC, версия (int), резерв (int), LSN (long);
+//   колонки: сырые массивы int/long/double и строки (куча UTF-8 + смещения), каждая с границы 8 байт;
+//   каталог: число колонок, затем имя (short длина + UTF-8), смещение и длина каждой;
+//   в конце: смещение каталога (long) и снова MAGIC.
+// Каждая колонка отображается отдельно, поэтому файл может быть больше 2 ГБ.
+final class MappedSnapshot {
+    static final byte[] MAGIC = "LIBSNAP2".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = MAGIC.length + 2 * Integer.BYTES + Long.BYTES;
+    static final int FOOTER_BYTES = Long.BYTES + MAGIC.length;
+
+    private final FileChannel channel;
+    private final long lsn;
+    private final HashMap<String, long[]> columns = new HashMap<>();
+
+    // Отображения не зависят от канала: после close() они остаются действительными,
+    // а сам файл можно заменять новым снимком через переименование
+    MappedSnapshot(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size < HEADER_BYTES + FOOTER_BYTES) {
+            throw new IOException("Снимок повреждён: " + file);
+        }
+        ByteBuffer header = read(0, HEADER_BYTES);
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Неизвестный формат снимка: " + file);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия снимка " + version + ": " + file);
+        }
+        header.getInt();
+        lsn = header.getLong();
+        ByteBuffer footer = read(size - FOOTER_BYTES, FOOTER_BYTES);
+        long directory = footer.getLong();
+        footer.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || directory < HEADER_BYTES || directory > size - FOOTER_BYTES) {
+            throw new IOException("Снимок записан не до конца: " + file);
+        }
+        ByteBuffer entries = read(directory, (int) (size - FOOTER_BYTES - directory));
+        int count = entries.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[entries.getShort()];
+            entries.get(name);
+            long offset = entries.getLong();
+            long length = entries.getLong();
+            if (offset < HEADER_BYTES || length < 0 || offset + length > directory) {
+                throw new IOException("Снимок повреждён: колонка " + new String(name, StandardCharsets.UTF_8));
+            }
+            columns.put(new String(name, StandardCharsets.UTF_8), new long[]{offset, length});
+        }
+    }
+
+    long lsn() {
+        return lsn;
+    }
+
+    boolean has(String name) {
+        return columns.containsKey(name);
+    }
+
+    ByteBuffer bytes(String name) throws IOException {
+        long[] extent = columns.get(name);
+        if (extent == null) {
+            throw new IOException("В снимке нет колонки " + name);
+        }
+        if (extent[1] > Integer.MAX_VALUE) {
+            throw new IOException("Колонка " + name + " больше 2 ГБ");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, extent[0], extent[1]).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Представления поверх отображения: чтение идёт прямо из страниц файла
+    IntBuffer intView(String name) throws IOException {
+        return bytes(name).asIntBuffer();
+    }
+
+    LongBuffer longView(String name) throws IOException {
+        return bytes(name).asLongBuffer();
+    }
+
+    DoubleBuffer doubleView(String name) throws IOException {
+        return bytes(name).asDoubleBuffer();
+    }
+
+    // Копии колонок для массивов, которые дальше меняются на месте (одно копирование памяти)
+    int[] ints(String name) throws IOException {
+        IntBuffer view = intView(name);
+        int[] values = new int[view.remaining()];
+        view.get(values);
+        return values;
+    }
+
+    long[] longs(String name) throws IOException {
+        LongBuffer view = longView(name);
+        long[] values = new long[view.remaining()];
+        view.get(values);
+        return values;
+    }
+
+    double[] doubles(String name) throws IOException {
+        DoubleBuffer view = doubleView(name);
+        double[] values = new double[view.remaining()];
+        view.get(values);
+        return values;
+    }
+
+    StringColumn strings(String name) throws IOException {
+        return new StringColumn(bytes(name + ".utf8"), intView(name + ".offsets"));
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Неожиданный конец снимка");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Строковая колонка: строка декодируется из отображения только при обращении
+    static final class StringColumn {
+        private final ByteBuffer heap;
+        private final IntBuffer offsets;
+
+        StringColumn(ByteBuffer heap, IntBuffer offsets) {
+            this.heap = heap;
+            this.offsets = offsets;
+        }
+
+        int size() {
+            return offsets.limit() - 1;
+        }
+
+        String get(int index) {
+            int from = offsets.get(index);
+            byte[] bytes = new byte[offsets.get(index + 1) - from];
+            heap.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.antipatterns;
+
+import java.util.Arrays;
+
+// Инвертированный индекс по n-граммам длины 1..3 для поиска подстроки без учёта регистра.
+// Запрос длиной до 3 символов отвечается одним списком вхождений точно;
+// для более длинных пересекаются списки триграмм, а кандидатов нужно проверить
+// через containsFolded (совпадение всех триграмм ещё не означает совпадение подстроки).
+// Списки вхождений лежат в таблице с открытой адресацией по ключу n-граммы (как IntSlotIndex, но ключ long):
+// поиск и обновление не упаковывают ключи в Long.
+final class NgramIndex {
+    static final int MAX_GRAM = 3;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    // null - пустая ячейка
+    private PostingList[] lists = new PostingList[INITIAL_CAPACITY];
+    private int size;
+
+    // Приведение к нижнему регистру для любых букв, включая кириллицу
+    static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            char lower = Character.toLowerCase(c);
+            if (lower != c) {
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                chars[i] = lower;
+            }
+        }
+        return chars == null ? text : new String(chars);
+    }
+
+    // Проверка, что foldedNeedle входит в haystack без учёта регистра, без копирования haystack
+    static boolean containsFolded(String haystack, String foldedNeedle) {
+        if (haystack == null) {
+            return false;
+        }
+        int n = foldedNeedle.length();
+        for (int i = 0; i <= haystack.length() - n; i++) {
+            int j = 0;
+            while (j < n && Character.toLowerCase(haystack.charAt(i + j)) == foldedNeedle.charAt(j)) {
+                j++;
+            }
+            if (j == n) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // То же для first + separator + second без склейки строк
+    static boolean containsFolded(String first, char separator, String second, String foldedNeedle) {
+        int n = foldedNeedle.length();
+        int length = first.length() + 1 + second.length();
+        for (int i = 0; i <= length - n; i++) {
+            int j = 0;
+            while (j < n && Character.toLowerCase(joinedCharAt(first, separator, second, i + j)) == foldedNeedle.charAt(j)) {
+                j++;
+            }
+            if (j == n) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Нужна ли проверка кандидатов, возвращённых candidates()
+    static boolean needsVerification(String foldedQuery) {
+        return foldedQuery.length() > MAX_GRAM;
+    }
+
+    void add(int id, String... fields) {
+        for (long gram : gramsOf(fields)) {
+            listFor(gram).add(id);
+        }
+    }
+
+    void remove(int id, String... fields) {
+        for (long gram : gramsOf(fields)) {
+            removeFrom(gram, id);
+        }
+    }
+
+    // Изменение полей: трогаются только n-граммы, которые есть в одной из версий, общие остаются на месте
+    void update(int id, String[] oldFields, String[] newFields) {
+        long[] before = gramsOf(oldFields);
+        long[] after = gramsOf(newFields);
+        int i = 0;
+        int j = 0;
+        while (i < before.length || j < after.length) {
+            if (j == after.length || (i < before.length && before[i] < after[j])) {
+                removeFrom(before[i++], id);
+            } else if (i == before.length || after[j] < before[i]) {
+                listFor(after[j++]).add(id);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(lists, null);
+        size = 0;
+    }
+
+    // Отсортированные id кандидатов для уже приведённого запроса; null - пустой запрос, подходит всё
+    int[] candidates(String foldedQuery) {
+        if (foldedQuery.isEmpty()) {
+            return null;
+        }
+        if (foldedQuery.length() <= MAX_GRAM) {
+            PostingList list = get(key(foldedQuery, 0, foldedQuery.length()));
+            return list == null ? new int[0] : list.toArray();
+        }
+        int count = foldedQuery.length() - MAX_GRAM + 1;
+        PostingList[] found = new PostingList[count];
+        for (int i = 0; i < count; i++) {
+            PostingList list = get(key(foldedQuery, i, MAX_GRAM));
+            if (list == null) {
+                return new int[0];
+            }
+            found[i] = list;
+        }
+        // пересечение начинаем с самого короткого списка
+        Arrays.sort(found, (a, b) -> Integer.compare(a.size(), b.size()));
+        int[] result = found[0].toArray();
+        int matched = 0;
+        for (int id : result) {
+            boolean inAll = true;
+            for (int l = 1; l < found.length && inAll; l++) {
+                inAll = found[l].contains(id);
+            }
+            if (inAll) {
+                result[matched++] = id;
+            }
+        }
+        return Arrays.copyOf(result, matched);
+    }
+
+    // ---- таблица n-грамма -> список вхождений ----
+
+    private PostingList get(long gram) {
+        int mask = keys.length - 1;
+        for (int i = slot(gram, mask); ; i = (i + 1) & mask) {
+            PostingList list = lists[i];
+            if (list == null || keys[i] == gram) {
+                return list;
+            }
+        }
+    }
+
+    private PostingList listFor(long gram) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(gram, mask); ; i = (i + 1) & mask) {
+            if (lists[i] == null) {
+                keys[i] = gram;
+                lists[i] = new PostingList();
+                size++;
+                return lists[i];
+            }
+            if (keys[i] == gram) {
+                return lists[i];
+            }
+        }
+    }
+
+    // Опустевший список убирается со сдвигом последующих элементов цепочки, как в IntSlotIndex.remove
+    private void removeFrom(long gram, int id) {
+        int mask = keys.length - 1;
+        int i = slot(gram, mask);
+        while (lists[i] != null && keys[i] != gram) {
+            i = (i + 1) & mask;
+        }
+        PostingList list = lists[i];
+        if (list == null || !list.remove(id) || !list.isEmpty()) {
+            return;
+        }
+        int gap = i;
+        for (int j = (gap + 1) & mask; lists[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                lists[gap] = lists[j];
+                gap = j;
+            }
+        }
+        lists[gap] = null;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        PostingList[] oldLists = lists;
+        keys = new long[capacity];
+        lists = new PostingList[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldLists[i] != null) {
+                int j = slot(oldKeys[i], mask);
+                while (lists[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                lists[j] = oldLists[i];
+            }
+        }
+    }
+
+    // ключи уже перемешаны в key(), лучше всего - старшие биты
+    private static int slot(long gram, int mask) {
+        return (int) (gram >>> 32 ^ gram) & mask;
+    }
+
+    // Уникальные ключи n-грамм всех полей: массив, сортировка и схлопывание повторов без упаковки в Long
+    private static long[] gramsOf(String... fields) {
+        int total = 0;
+        String[] folded = new String[fields.length];
+        for (int f = 0; f < fields.length; f++) {
+            folded[f] = fold(fields[f]);
+            total += MAX_GRAM * folded[f].length();
+        }
+        long[] grams = new long[total];
+        int count = 0;
+        for (String text : folded) {
+            for (int len = 1; len <= MAX_GRAM; len++) {
+                for (int i = 0; i + len <= text.length(); i++) {
+                    grams[count++] = key(text, i, len);
+                }
+            }
+        }
+        Arrays.sort(grams, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || grams[unique - 1] != grams[i]) {
+                grams[unique++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, unique);
+    }
+
+    // До трёх символов по 16 бит плюс длина n-граммы в старших битах.
+    // Умножение на нечётную константу взаимно однозначно и перемешивает биты:
+    // без него упакованные символы дают массу коллизий в таблице
+    private static long key(String text, int from, int len) {
+        long key = len;
+        for (int i = 0; i < len; i++) {
+            key = (key << 16) | text.charAt(from + i);
+        }
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    private static char joinedCharAt(String first, char separator, String second, int index) {
+        if (index < first.length()) {
+            return first.charAt(index);
+        }
+        return index == first.length() ? separator : second.charAt(index - first.length() - 1);
+    }
+}
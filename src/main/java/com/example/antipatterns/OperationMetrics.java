@@ -0,0 +1,303 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Метрики операций: точные счётчики вызовов и ошибок на каждую операцию ILibraryEverything, гистограмма задержек
+// (LatencyHistogram) и попадания, промахи, вытеснения и сбросы записей кэшей. Всё без блокировок и выделений.
+// Время замеряется у каждой sampleEvery-й операции: nanoTime стоит ~40 нс, а выдача или поиск пользователя -
+// единицы микросекунд, так что замер каждой операции добавил бы к ним больше 10%. Перцентили по выборке
+// при тысячах операций практически те же; sampleEvery = 1 - замерять всё.
+// Ошибка - операция, завершившаяся исключением (в том числе отказ IllegalArgumentException).
+// setEnabled(false) отключает всё, MetricsOverheadBenchmark сравнивает оба режима.
+final class OperationMetrics implements LibraryMetricsMXBean {
+    static final String MBEAN_NAME = "com.example.antipatterns:type=LibraryMetrics";
+
+    enum Op {
+        ADD_BOOK("addBook"),
+        REMOVE_BOOK("removeBook"),
+        FIND_BOOK("findBook"),
+        UPDATE_BOOK("updateBook"),
+        ADD_USER("addUser"),
+        REMOVE_USER("removeUser"),
+        FIND_USER("findUser"),
+        UPDATE_USER("updateUser"),
+        BORROW_BOOK("borrowBook"),
+        RETURN_BOOK("returnBook"),
+        PRINT_STATISTICS("printStatistics"),
+        PRINT_ALL_BOOKS("printAllBooks"),
+        PRINT_ALL_USERS("printAllUsers"),
+        GENERATE_REPORT("generateReport");
+
+        private final String method;
+
+        Op(String method) {
+            this.method = method;
+        }
+    }
+
+    enum Cache {
+        // запись пользователя из снимка: попадание - уже декодирована, промах - декодируется при обращении
+        USER_RECORD("userRecord"),
+        // результаты поиска книг (BookQueryCache)
+        BOOK_SEARCH("bookSearch");
+
+        private final String label;
+
+        Cache(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Op[] OPS = Op.values();
+    private static final Cache[] CACHES = Cache.values();
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[OPS.length];
+    private final LongAdder[] calls = new LongAdder[OPS.length];
+    private final LongAdder[] errors = new LongAdder[OPS.length];
+    // счётчики для выбора замеряемых операций; гонки между потоками только сдвигают выборку, поэтому без атомиков
+    private final int[] sampleTicks = new int[OPS.length];
+    private volatile int sampleMask;
+    private final LongAdder[] cacheHits = new LongAdder[CACHES.length];
+    private final LongAdder[] cacheMisses = new LongAdder[CACHES.length];
+    // вытеснены из-за ёмкости
+    private final LongAdder[] cacheEvictions = new LongAdder[CACHES.length];
+    // сброшены изменением данных
+    private final LongAdder[] cacheInvalidations = new LongAdder[CACHES.length];
+    private volatile boolean enabled = true;
+
+    // sampleEvery - степень двойки
+    OperationMetrics(int sampleEvery) {
+        setSampleEvery(sampleEvery);
+        for (int i = 0; i < OPS.length; i++) {
+            latency[i] = new LatencyHistogram();
+            calls[i] = new LongAdder();
+            errors[i] = new LongAdder();
+        }
+        for (int i = 0; i < CACHES.length; i++) {
+            cacheHits[i] = new LongAdder();
+            cacheMisses[i] = new LongAdder();
+            cacheEvictions[i] = new LongAdder();
+            cacheInvalidations[i] = new LongAdder();
+        }
+    }
+
+    void setSampleEvery(int sampleEvery) {
+        if (sampleEvery < 1 || Integer.bitCount(sampleEvery) != 1) {
+            throw new IllegalArgumentException("Частота замеров должна быть степенью двойки: " + sampleEvery);
+        }
+        sampleMask = sampleEvery - 1;
+    }
+
+    int sampleEvery() {
+        return sampleMask + 1;
+    }
+
+    // Начало операции; 0 - время этой операции не замеряется, record() его пропустит
+    long start(Op op) {
+        if (!enabled) {
+            return 0;
+        }
+        calls[op.ordinal()].increment();
+        return (sampleTicks[op.ordinal()]++ & sampleMask) == 0 ? System.nanoTime() : 0;
+    }
+
+    void record(Op op, long started) {
+        if (started != 0) {
+            latency[op.ordinal()].record(System.nanoTime() - started);
+        }
+    }
+
+    void failed(Op op) {
+        if (enabled) {
+            errors[op.ordinal()].increment();
+        }
+    }
+
+    void cacheHit(Cache cache) {
+        if (enabled) {
+            cacheHits[cache.ordinal()].increment();
+        }
+    }
+
+    void cacheMiss(Cache cache) {
+        if (enabled) {
+            cacheMisses[cache.ordinal()].increment();
+        }
+    }
+
+    void cacheEvicted(Cache cache) {
+        if (enabled) {
+            cacheEvictions[cache.ordinal()].increment();
+        }
+    }
+
+    void cacheInvalidated(Cache cache, int entries) {
+        if (enabled && entries > 0) {
+            cacheInvalidations[cache.ordinal()].add(entries);
+        }
+    }
+
+    // Таблица для меню и файла метрик
+    String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append("# метрики операций, ").append(new Date())
+                .append(enabled ? ", время замеряется у 1 из " + sampleEvery() + " операций" : " (замеры выключены)").append('\n');
+        out.append(String.format(Locale.ROOT, "%-16s %10s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "calls", "errors", "mean ms", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Op op : OPS) {
+            LatencyHistogram h = latency[op.ordinal()];
+            out.append(String.format(Locale.ROOT, "%-16s %10d %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    op.method, calls[op.ordinal()].sum(), errors[op.ordinal()].sum(), h.mean() / 1e6, h.percentile(50) / 1e6,
+                    h.percentile(99) / 1e6, h.percentile(99.9) / 1e6, h.max() / 1e6));
+        }
+        for (Cache cache : CACHES) {
+            long hits = cacheHits[cache.ordinal()].sum();
+            long misses = cacheMisses[cache.ordinal()].sum();
+            out.append(String.format(Locale.ROOT, "cache %-10s hits %d, misses %d, hit rate %.1f%%, evictions %d, invalidations %d%n",
+                    cache.label, hits, misses, hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses),
+                    cacheEvictions[cache.ordinal()].sum(), cacheInvalidations[cache.ordinal()].sum()));
+        }
+        return out.toString();
+    }
+
+    // Запись через временный файл и переименование: читатель файла не увидит его недописанным
+    void dumpTo(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporary, dump().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Регистрация в платформенном MBeanServer; прежний экземпляр с тем же именем заменяется
+    void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MBEAN_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    // ---- LibraryMetricsMXBean ----
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        return perOperation(calls);
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        return perOperation(errors);
+    }
+
+    @Override
+    public Map<String, Double> getMeanMillis() {
+        return perOperationMillis(LatencyHistogram::mean);
+    }
+
+    @Override
+    public Map<String, Double> getP50Millis() {
+        return perOperationMillis(h -> h.percentile(50));
+    }
+
+    @Override
+    public Map<String, Double> getP99Millis() {
+        return perOperationMillis(h -> h.percentile(99));
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        return perOperationMillis(LatencyHistogram::max);
+    }
+
+    @Override
+    public Map<String, Long> getCacheHits() {
+        return perCache(cacheHits);
+    }
+
+    @Override
+    public Map<String, Long> getCacheMisses() {
+        return perCache(cacheMisses);
+    }
+
+    @Override
+    public Map<String, Long> getCacheEvictions() {
+        return perCache(cacheEvictions);
+    }
+
+    @Override
+    public Map<String, Long> getCacheInvalidations() {
+        return perCache(cacheInvalidations);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String getSummary() {
+        return dump();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPS.length; i++) {
+            latency[i].reset();
+            calls[i].reset();
+            errors[i].reset();
+        }
+        for (int i = 0; i < CACHES.length; i++) {
+            cacheHits[i].reset();
+            cacheMisses[i].reset();
+            cacheEvictions[i].reset();
+            cacheInvalidations[i].reset();
+        }
+    }
+
+    private static Map<String, Long> perOperation(LongAdder[] counters) {
+        LinkedHashMap<String, Long> values = new LinkedHashMap<>();
+        for (Op op : OPS) {
+            values.put(op.method, counters[op.ordinal()].sum());
+        }
+        return values;
+    }
+
+    private Map<String, Double> perOperationMillis(ToDoubleFunction<LatencyHistogram> nanos) {
+        LinkedHashMap<String, Double> values = new LinkedHashMap<>();
+        for (Op op : OPS) {
+            values.put(op.method, nanos.applyAsDouble(latency[op.ordinal()]) / 1e6);
+        }
+        return values;
+    }
+
+    private static Map<String, Long> perCache(LongAdder[] counters) {
+        LinkedHashMap<String, Long> values = new LinkedHashMap<>();
+        for (Cache cache : CACHES) {
+            values.put(cache.label, counters[cache.ordinal()].sum());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.antipatterns;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+// Упорядоченный индекс ключ -> id, обновляемый поштучно при добавлении, изменении и удалении.
+// Обход идёт по возрастанию ключа, при равных ключах - по возрастанию id.
+final class OrderedIdIndex<K extends Comparable<K>> {
+    private final TreeMap<K, SortedIntSet> entries = new TreeMap<>();
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(K key, int id) {
+        if (entries.computeIfAbsent(key, k -> new SortedIntSet(1)).add(id)) {
+            size++;
+        }
+    }
+
+    void remove(K key, int id) {
+        SortedIntSet ids = entries.get(key);
+        if (ids != null && ids.remove(id)) {
+            size--;
+            if (ids.isEmpty()) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    void forEach(IntConsumer action) {
+        forEach(0, Integer.MAX_VALUE, action);
+    }
+
+    // Не больше limit id начиная с позиции offset в порядке обхода; возвращает число обойденных.
+    // Пропуск идёт целыми группами равных ключей, id по одному не перебираются
+    int forEach(int offset, int limit, IntConsumer action) {
+        int skip = offset;
+        int visited = 0;
+        for (Map.Entry<K, SortedIntSet> entry : entries.entrySet()) {
+            SortedIntSet ids = entry.getValue();
+            if (skip >= ids.size()) {
+                skip -= ids.size();
+                continue;
+            }
+            for (int i = skip; i < ids.size(); i++) {
+                if (visited == limit) {
+                    return visited;
+                }
+                action.accept(ids.get(i));
+                visited++;
+            }
+            skip = 0;
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.antipatterns;
+
+import java.util.Arrays;
+
+// Список вхождений n-граммы для NgramIndex: отсортированные id и отложенные удаления.
+// Списки частых 1- и 2-грамм покрывают почти весь каталог, и удаление сдвигом массива стоило бы O(каталога)
+// на каждую такую n-грамму. Из длинного списка id сначала попадает в маленький отсортированный буфер удалённых,
+// а массив уплотняется одним проходом, когда буфер дорастает до корня из длины списка: удаление в среднем O(sqrt(n)).
+// Чтение учитывает буфер и ничего не меняет, поэтому безопасно из нескольких потоков под блокировкой чтения.
+final class PostingList {
+    // короткие списки дешевле сдвинуть сразу
+    private static final int DIRECT_REMOVE_MAX = 64;
+    private static final int[] NONE = new int[0];
+
+    private int[] ids = new int[4];
+    // число id в ids, включая отложенно удалённые
+    private int stored;
+    private int[] removed = NONE;
+    private int removedCount;
+
+    int size() {
+        return stored - removedCount;
+    }
+
+    boolean isEmpty() {
+        return stored == removedCount;
+    }
+
+    boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, stored, id) >= 0
+                && (removedCount == 0 || Arrays.binarySearch(removed, 0, removedCount, id) < 0);
+    }
+
+    boolean add(int id) {
+        if (removedCount > 0) {
+            int pending = Arrays.binarySearch(removed, 0, removedCount, id);
+            if (pending >= 0) {
+                // удалён и тут же добавлен снова (изменение полей): достаточно отменить удаление
+                System.arraycopy(removed, pending + 1, removed, pending, removedCount - pending - 1);
+                removedCount--;
+                return true;
+            }
+        }
+        int pos;
+        if (stored == 0 || ids[stored - 1] < id) {
+            pos = stored;
+        } else {
+            pos = Arrays.binarySearch(ids, 0, stored, id);
+            if (pos >= 0) {
+                return false;
+            }
+            pos = -pos - 1;
+        }
+        if (stored == ids.length) {
+            ids = Arrays.copyOf(ids, stored + (stored >> 1) + 1);
+        }
+        System.arraycopy(ids, pos, ids, pos + 1, stored - pos);
+        ids[pos] = id;
+        stored++;
+        return true;
+    }
+
+    boolean remove(int id) {
+        int pos = Arrays.binarySearch(ids, 0, stored, id);
+        if (pos < 0) {
+            return false;
+        }
+        if (stored <= DIRECT_REMOVE_MAX && removedCount == 0) {
+            System.arraycopy(ids, pos + 1, ids, pos, stored - pos - 1);
+            stored--;
+            return true;
+        }
+        int pending = Arrays.binarySearch(removed, 0, removedCount, id);
+        if (pending >= 0) {
+            return false;
+        }
+        pending = -pending - 1;
+        if (removedCount == removed.length) {
+            removed = Arrays.copyOf(removed, Math.max(8, removedCount * 2));
+        }
+        System.arraycopy(removed, pending, removed, pending + 1, removedCount - pending);
+        removed[pending] = id;
+        removedCount++;
+        if ((long) removedCount * removedCount >= stored) {
+            compact();
+        }
+        return true;
+    }
+
+    // Отсортированные id без отложенно удалённых
+    int[] toArray() {
+        if (removedCount == 0) {
+            return Arrays.copyOf(ids, stored);
+        }
+        int[] result = new int[size()];
+        filterInto(result);
+        return result;
+    }
+
+    private void compact() {
+        int live = filterInto(ids);
+        stored = live;
+        removedCount = 0;
+        removed = NONE;
+    }
+
+    // Слияние ids с буфером удалённых в target (может совпадать с ids: запись не обгоняет чтение)
+    private int filterInto(int[] target) {
+        int live = 0;
+        int r = 0;
+        for (int i = 0; i < stored; i++) {
+            int id = ids[i];
+            if (r < removedCount && removed[r] == id) {
+                r++;
+            } else {
+                target[live++] = id;
+            }
+        }
+        return live;
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+// Описание записей-HashMap (пользователи, бронирования, штрафы) для колоночного снимка.
+// Каждое поле пишется отдельной колонкой prefix.key; при загрузке записи собираются
+// из отображения лениво, через MappedRecordList.
+final class RecordSchema {
+    enum Type {
+        INT, LONG, DOUBLE, BOOLEAN, STRING,
+        // Date, null хранится как 0
+        DATE,
+        // ArrayList<Integer>: смещения + общий массив значений
+        INT_LIST
+    }
+
+    private final String prefix;
+    private final ArrayList<String> keys = new ArrayList<>();
+    private final ArrayList<Type> types = new ArrayList<>();
+
+    RecordSchema(String prefix) {
+        this.prefix = prefix;
+    }
+
+    RecordSchema field(String key, Type type) {
+        keys.add(key);
+        types.add(type);
+        return this;
+    }
+
+    // Ещё не прочитанные записи переносятся из прежнего отображения, не создавая HashMap
+    void write(SnapshotWriter out, MappedRecordList<HashMap<String, Object>> records) throws IOException {
+        int count = records.size();
+        out.intColumn(prefix + ".count", 1, i -> count);
+        for (int f = 0; f < keys.size(); f++) {
+            int field = f;
+            String column = prefix + "." + keys.get(f);
+            IntFunction<Object> value = i -> valueOf(records, field, i);
+            switch (types.get(f)) {
+                case INT:
+                    out.intColumn(column, count, i -> (Integer) value.apply(i));
+                    break;
+                case BOOLEAN:
+                    out.intColumn(column, count, i -> (Boolean) value.apply(i) ? 1 : 0);
+                    break;
+                case LONG:
+                    out.longColumn(column, count, i -> (Long) value.apply(i));
+                    break;
+                case DATE:
+                    out.longColumn(column, count, i -> {
+                        Date date = (Date) value.apply(i);
+                        return date == null ? 0L : date.getTime();
+                    });
+                    break;
+                case DOUBLE:
+                    out.doubleColumn(column, count, i -> (Double) value.apply(i));
+                    break;
+                case STRING:
+                    out.stringColumn(column, count, i -> (String) value.apply(i));
+                    break;
+                case INT_LIST: {
+                    int[] offsets = new int[count + 1];
+                    for (int i = 0; i < count; i++) {
+                        offsets[i + 1] = offsets[i] + listOf(value.apply(i)).size();
+                    }
+                    out.intColumn(column + ".offsets", count + 1, i -> offsets[i]);
+                    int[] flat = new int[offsets[count]];
+                    for (int i = 0; i < count; i++) {
+                        ArrayList<Integer> list = listOf(value.apply(i));
+                        for (int j = 0; j < list.size(); j++) {
+                            flat[offsets[i] + j] = list.get(j);
+                        }
+                    }
+                    out.intColumn(column, flat.length, i -> flat[i]);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Неизвестный тип поля " + types.get(f));
+            }
+        }
+    }
+
+    // Подключает записи снимка к пустому списку; extras дополняет каждую собранную запись
+    void read(MappedSnapshot in, MappedRecordList<HashMap<String, Object>> records,
+              Consumer<HashMap<String, Object>> extras) throws IOException {
+        int count = in.ints(prefix + ".count")[0];
+        Object[] views = new Object[keys.size()];
+        IntBuffer[] listOffsets = new IntBuffer[keys.size()];
+        for (int f = 0; f < keys.size(); f++) {
+            String column = prefix + "." + keys.get(f);
+            switch (types.get(f)) {
+                case INT:
+                case BOOLEAN:
+                    views[f] = in.intView(column);
+                    break;
+                case LONG:
+                case DATE:
+                    views[f] = in.longView(column);
+                    break;
+                case DOUBLE:
+                    views[f] = in.doubleView(column);
+                    break;
+                case STRING:
+                    views[f] = in.strings(column);
+                    break;
+                case INT_LIST:
+                    views[f] = in.intView(column);
+                    listOffsets[f] = in.intView(column + ".offsets");
+                    break;
+                default:
+                    throw new IllegalStateException("Неизвестный тип поля " + types.get(f));
+            }
+        }
+        records.load(count, new Decoder(views, listOffsets, extras));
+    }
+
+    private Object valueOf(MappedRecordList<HashMap<String, Object>> records, int field, int index) {
+        HashMap<String, Object> record = records.peek(index);
+        if (record != null) {
+            return record.get(keys.get(field));
+        }
+        return ((Decoder) records.decoder()).raw(field, index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayList<Integer> listOf(Object value) {
+        return value == null ? new ArrayList<>() : (ArrayList<Integer>) value;
+    }
+
+    private final class Decoder implements IntFunction<HashMap<String, Object>> {
+        private final Object[] views;
+        private final IntBuffer[] listOffsets;
+        private final Consumer<HashMap<String, Object>> extras;
+
+        Decoder(Object[] views, IntBuffer[] listOffsets, Consumer<HashMap<String, Object>> extras) {
+            this.views = views;
+            this.listOffsets = listOffsets;
+            this.extras = extras;
+        }
+
+        @Override
+        public HashMap<String, Object> apply(int index) {
+            HashMap<String, Object> record = new HashMap<>();
+            for (int f = 0; f < keys.size(); f++) {
+                record.put(keys.get(f), raw(f, index));
+            }
+            if (extras != null) {
+                extras.accept(record);
+            }
+            return record;
+        }
+
+        // Значение поля в том виде, в каком оно лежит в HashMap
+        Object raw(int field, int index) {
+            Object view = views[field];
+            switch (types.get(field)) {
+                case INT:
+                    return ((IntBuffer) view).get(index);
+                case BOOLEAN:
+                    return ((IntBuffer) view).get(index) != 0;
+                case LONG:
+                    return ((LongBuffer) view).get(index);
+                case DATE: {
+                    long time = ((LongBuffer) view).get(index);
+                    return time == 0L ? null : new Date(time);
+                }
+                case DOUBLE:
+                    return ((DoubleBuffer) view).get(index);
+                case STRING:
+                    return ((MappedSnapshot.StringColumn) view).get(index);
+                case INT_LIST: {
+                    IntBuffer offsets = listOffsets[field];
+                    int from = offsets.get(index);
+                    int to = offsets.get(index + 1);
+                    ArrayList<Integer> list = new ArrayList<>(Math.max(to - from, 4));
+                    for (int i = from; i < to; i++) {
+                        list.add(((IntBuffer) view).get(i));
+                    }
+                    return list;
+                }
+                default:
+                    throw new IllegalStateException("Неизвестный тип поля " + types.get(field));
+            }
+        }
+    }
+}
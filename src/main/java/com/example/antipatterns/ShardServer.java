@@ -0,0 +1,61 @@
+package com.example.antipatterns;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// Секция секционированной библиотеки (ShardedLibrary): отдельный процесс со своей библиотекой и каталогом данных,
+// принимает соединения только с loopback и на каждом выполняет команды пакетного режима (BatchCommandRunner),
+// по потоку на соединение. Первая строка в stdout - "SHARD <порт>", по ней координатор находит порт.
+// Процесс живёт, пока открыт его stdin: координатор закрывает его (или завершается сам), секция сохраняет
+// снимок и выходит.
+final class ShardServer {
+    private static final int IO_BUFFER_CHARS = 1 << 16;
+
+    private ShardServer() {
+    }
+
+    static void run(LibraryGodObject library, int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            Thread acceptor = new Thread(() -> accept(library, server), "shard-accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            System.out.println("SHARD " + server.getLocalPort());
+            System.out.flush();
+            while (System.in.read() >= 0) {
+                // ждём закрытия stdin
+            }
+        }
+    }
+
+    private static void accept(LibraryGodObject library, ServerSocket server) {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                return;
+            }
+            Thread connection = new Thread(() -> serve(library, socket), "shard-" + socket.getPort());
+            connection.setDaemon(true);
+            connection.start();
+        }
+    }
+
+    private static void serve(LibraryGodObject library, Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8), IO_BUFFER_CHARS);
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), IO_BUFFER_CHARS)) {
+            s.setTcpNoDelay(true);
+            new BatchCommandRunner(library).run(in, out);
+        } catch (IOException e) {
+            // координатор оборвал соединение: его команды уже выполнены или отвергнуты
+        }
+    }
+}
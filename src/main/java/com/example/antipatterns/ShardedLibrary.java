@@ -0,0 +1,642 @@
+package com.example.antipatterns;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Одна логическая библиотека на N секциях (ShardServer, каждая в своём процессе со своим каталогом данных),
+// связь - команды пакетного режима по loopback-сокету.
+// Книги и пользователи раскладываются по секциям хэшем id (shardOf), id раздаёт координатор, поэтому
+// операции по id (GETBOOK, UPDATEBOOK, REMOVEUSER и т.п.) идут прямо в секцию-владельца одним запросом.
+// Поиск и статистика рассылаются во все секции параллельно и сливаются: найденные - в том же порядке, что
+// у одной библиотеки (книги по названию, читатели по id), счётчики - суммой.
+// Выдача живёт в секции книги (доступность, срок, штрафы), а место в лимите читателя - в его списке в его секции.
+// Координатор - единственный, кто пишет в секции, поэтому выдачи и возвраты одной книги и одного читателя идут
+// через него по очереди (полосы блокировок, книга раньше читателя): секция читателя проверяет лимит и активность
+// и занимает место (RESERVE), затем секция книги выдаёт её (LEND); отказ секции книги снимает место (RELEASE).
+// Отметка "Есть просрочка" в строке читателя учитывает только книги его же секции.
+// Ошибка секции (ERR) - IllegalArgumentException с её текстом, обрыв связи - UncheckedIOException.
+final class ShardedLibrary implements AutoCloseable {
+    private static final String PORT_LINE = "SHARD ";
+    private static final int IO_BUFFER_CHARS = 1 << 16;
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+    // число полос блокировок выдач по id книги и читателя
+    private static final int LOCK_STRIPES = 64;
+    // Порядок FINDBOOK одной библиотеки (LibraryEngine.searchBookSlots): название, при равенстве - id
+    private static final Comparator<String> BOOK_ORDER =
+            Comparator.comparing(ShardedLibrary::bookTitle).thenComparingInt(ShardedLibrary::rowId);
+    // Порядок FINDUSER одной библиотеки (LibraryEngine.searchUserPositions): id
+    private static final Comparator<String> USER_ORDER = Comparator.comparingInt(ShardedLibrary::rowId);
+
+    // Соединение с одной секцией; запросы по нему идут строго по одному
+    static final class Shard implements AutoCloseable {
+        private final Process process;
+        private final Socket socket;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+
+        // process - секция, запущенная координатором (null - запущена отдельно)
+        Shard(Process process, int port) throws IOException {
+            this.process = process;
+            this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), IO_BUFFER_CHARS);
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), IO_BUFFER_CHARS);
+        }
+
+        // Первый элемент - значение после OK (может быть пустым); rows - за ответом идут столько строк, сколько в нём указано
+        synchronized List<String> call(String command, boolean rows) {
+            try {
+                out.write(command);
+                out.newLine();
+                out.flush();
+                String status = in.readLine();
+                if (status == null) {
+                    throw new IOException("Секция закрыла соединение");
+                }
+                if (status.startsWith("ERR ")) {
+                    throw new IllegalArgumentException(status.substring(4));
+                }
+                if (!status.startsWith("OK")) {
+                    throw new IOException("Неожиданный ответ секции: " + status);
+                }
+                List<String> response = new ArrayList<>();
+                response.add(status.length() > 3 ? status.substring(3) : "");
+                int count = rows ? Integer.parseInt(response.get(0)) : 0;
+                for (int i = 0; i < count; i++) {
+                    response.add(in.readLine());
+                }
+                return response;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Запущенной координатором секции закрывается stdin: она сохраняет снимок и завершается
+        @Override
+        public void close() throws IOException {
+            try {
+                socket.close();
+            } finally {
+                if (process != null) {
+                    process.getOutputStream().close();
+                    try {
+                        if (!process.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                            process.destroyForcibly();
+                        }
+                    } catch (InterruptedException e) {
+                        process.destroyForcibly();
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    private final List<Shard> shards;
+    private final ExecutorService scatter;
+    private final AtomicInteger lastBookId = new AtomicInteger();
+    private final AtomicInteger lastUserId = new AtomicInteger();
+    private final ReentrantLock[] bookLocks = newStripes();
+    private final ReentrantLock[] userLocks = newStripes();
+    private volatile boolean authenticated;
+
+    ShardedLibrary(List<Shard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Нужна хотя бы одна секция");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.scatter = Executors.newFixedThreadPool(shards.size(), task -> {
+            Thread thread = new Thread(task, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // count процессов-секций с каталогами directory/shard-<i>; параметры JVM секций - library.shard.jvmOptions
+    static ShardedLibrary launch(int count, Path directory) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String options = System.getProperty("library.shard.jvmOptions", "").trim();
+        List<Process> processes = new ArrayList<>();
+        List<Shard> shards = new ArrayList<>();
+        try {
+            // все JVM стартуют одновременно, порты читаются потом
+            for (int i = 0; i < count; i++) {
+                Path home = directory.resolve("shard-" + i);
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                if (!options.isEmpty()) {
+                    command.addAll(Arrays.asList(options.split("\\s+")));
+                }
+                command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+                        "-Dfile.encoding=UTF-8",
+                        "-Dlibrary.data.dir=" + home.resolve("data"),
+                        "-Dlibrary.history.dir=" + home.resolve("history"),
+                        "-Dlibrary.audit.file=" + home.resolve("audit.journal"),
+                        "-Dlibrary.metrics.file=" + home.resolve("metrics.txt"),
+                        LibraryAntiPatterns.class.getName(), "--shard", "0"));
+                processes.add(new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start());
+            }
+            for (int i = 0; i < count; i++) {
+                shards.add(new Shard(processes.get(i), readPort(processes.get(i), i)));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Shard shard : shards) {
+                shard.socket.close();
+            }
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+            throw e;
+        }
+        return new ShardedLibrary(shards);
+    }
+
+    // Секции, уже запущенные (--shard <порт>) на этой машине
+    static ShardedLibrary connect(int... ports) throws IOException {
+        List<Shard> shards = new ArrayList<>();
+        try {
+            for (int port : ports) {
+                shards.add(new Shard(null, port));
+            }
+        } catch (IOException e) {
+            for (Shard shard : shards) {
+                shard.close();
+            }
+            throw e;
+        }
+        return new ShardedLibrary(shards);
+    }
+
+    int shardCount() {
+        return shards.size();
+    }
+
+    // Секция-владелец id: перемешивание битов (финал MurmurHash3), чтобы подряд идущие id расходились по секциям
+    int shardOf(int id) {
+        int h = id;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, shards.size());
+    }
+
+    // Вход во все секции; счётчики id продолжаются с наибольших выданных в секциях
+    void login(String password) {
+        scatter(shard -> shard.call("LOGIN " + password, false));
+        for (List<String> ids : scatter(shard -> shard.call("IDS", false))) {
+            String[] last = ids.get(0).split(" ");
+            lastBookId.accumulateAndGet(Integer.parseInt(last[0]), Math::max);
+            lastUserId.accumulateAndGet(Integer.parseInt(last[1]), Math::max);
+        }
+        authenticated = true;
+    }
+
+    int addBook(String title, String author, int year, String isbn, String genre) {
+        return put("PUTBOOK", lastBookId, join(title, author, String.valueOf(year), isbn, genre));
+    }
+
+    int addUser(String name, String surname, int year, String phone, String email) {
+        return put("PUTUSER", lastUserId, join(name, surname, String.valueOf(year), phone, email));
+    }
+
+    // Строка книги как в BOOKS; null, если её нет
+    String book(int bookId) {
+        return get("GETBOOK", bookId);
+    }
+
+    String user(int userId) {
+        return get("GETUSER", userId);
+    }
+
+    boolean removeBook(int bookId) {
+        try {
+            dropBook(bookId);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    boolean removeUser(int userId) {
+        return remove("REMOVEUSER", userId);
+    }
+
+    // Книга проверяется первой, как у одной библиотеки (пока держим её полосу, ответ не устареет), затем секция
+    // читателя занимает место в его лимите и секция книги выдаёт её; её отказ снимает место. При обрыве связи
+    // с секцией книги неизвестно, выдана ли книга, и место остаётся: лимит строже, но не обойдён
+    void borrow(int bookId, int userId) {
+        ReentrantLock bookLock = bookLocks[stripe(bookId)];
+        bookLock.lock();
+        try {
+            Shard books = shards.get(shardOf(bookId));
+            if (Integer.parseInt(books.call("BORROWER " + bookId, false).get(0)) != BookStore.NO_USER) {
+                throw new IllegalArgumentException("Книга уже забронирована");
+            }
+            ReentrantLock userLock = userLocks[stripe(userId)];
+            userLock.lock();
+            try {
+                Shard owner = shards.get(shardOf(userId));
+                owner.call("RESERVE " + userId + " " + bookId, false);
+                try {
+                    books.call("LEND " + bookId + " " + userId, false);
+                } catch (IllegalArgumentException e) {
+                    owner.call("RELEASE " + userId + " " + bookId, false);
+                    throw e;
+                }
+            } finally {
+                userLock.unlock();
+            }
+        } finally {
+            bookLock.unlock();
+        }
+    }
+
+    // Возврат в секции книги, затем место снимается в секции читателя
+    LibraryEngine.Receipt returnBook(int bookId) {
+        ReentrantLock bookLock = bookLocks[stripe(bookId)];
+        bookLock.lock();
+        try {
+            String[] receipt = shards.get(shardOf(bookId)).call("UNLEND " + bookId, false).get(0).split(" ");
+            int userId = Integer.parseInt(receipt[1]);
+            release(userId, bookId);
+            return new LibraryEngine.Receipt(userId, Double.parseDouble(receipt[0]));
+        } finally {
+            bookLock.unlock();
+        }
+    }
+
+    List<String> findBooks(String query) {
+        return gather("FINDBOOK " + query, BOOK_ORDER);
+    }
+
+    List<String> findUsers(String query) {
+        return gather("FINDUSER " + query, USER_ORDER);
+    }
+
+    // Сумма счётчиков всех секций
+    LibraryStatistics statistics() {
+        long[] totals = new long[5];
+        double fines = 0;
+        for (List<String> line : scatter(shard -> shard.call("STATS", false))) {
+            for (String pair : line.get(0).split(" ")) {
+                int eq = pair.indexOf('=');
+                String key = pair.substring(0, eq);
+                String value = pair.substring(eq + 1);
+                switch (key) {
+                    case "books": totals[0] += Long.parseLong(value); break;
+                    case "available": totals[1] += Long.parseLong(value); break;
+                    case "loans": totals[2] += Long.parseLong(value); break;
+                    case "users": totals[3] += Long.parseLong(value); break;
+                    case "fines": fines += Double.parseDouble(value); break;
+                    default: break;
+                }
+            }
+        }
+        LibraryStatistics statistics = new LibraryStatistics();
+        statistics.restore((int) totals[0], (int) totals[1], (int) totals[2], (int) totals[3], fines);
+        return statistics;
+    }
+
+    // Команды пакетного режима (BatchCommandRunner) поверх секций; ответы в том же формате.
+    // Недоступные в этом режиме команды отвечают ERR
+    void run(BufferedReader in, BufferedWriter out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            try {
+                execute(line, out);
+            } catch (IllegalArgumentException e) {
+                out.write("ERR ");
+                out.write(e.getMessage());
+                out.newLine();
+            } catch (UncheckedIOException e) {
+                out.write("ERR Секция недоступна: ");
+                out.write(String.valueOf(e.getCause().getMessage()));
+                out.newLine();
+            }
+            if (!in.ready()) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scatter.shutdownNow();
+        // секции останавливаются параллельно: каждая пишет свой снимок
+        List<Thread> stopping = new ArrayList<>();
+        for (Shard shard : shards) {
+            Thread thread = new Thread(() -> {
+                try {
+                    shard.close();
+                } catch (IOException e) {
+                    System.err.println("Секция не закрылась: " + e.getMessage());
+                }
+            });
+            thread.start();
+            stopping.add(thread);
+        }
+        for (Thread thread : stopping) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Остановка секций прервана");
+            }
+        }
+    }
+
+    private void execute(String line, BufferedWriter out) throws IOException {
+        int space = line.indexOf(' ');
+        String command = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+        String args = space < 0 ? "" : line.substring(space + 1).trim();
+        if (!command.equals("LOGIN") && !authenticated) {
+            // до входа счётчики id не прочитаны из секций, а сами секции всё равно отвергнут команду
+            throw new IllegalArgumentException("Требуется LOGIN <пароль>");
+        }
+        switch (command) {
+            case "LOGIN":
+                login(args);
+                ok(out, null);
+                break;
+            case "ADDBOOK":
+                ok(out, String.valueOf(put("PUTBOOK", lastBookId, args)));
+                break;
+            case "ADDUSER":
+                ok(out, String.valueOf(put("PUTUSER", lastUserId, args)));
+                break;
+            case "REMOVEBOOK":
+                dropBook(parseId(args));
+                ok(out, null);
+                break;
+            case "BORROW":
+                borrow(parseId(head(args)), parseId(tail(args)));
+                ok(out, null);
+                break;
+            case "RETURN":
+                ok(out, String.format(Locale.ROOT, "%.2f", returnBook(parseId(args)).fine()));
+                break;
+            case "GETBOOK":
+            case "GETUSER":
+            case "UPDATEBOOK":
+            case "UPDATEUSER":
+            case "REMOVEUSER": {
+                // id - первое слово аргументов, команда уходит владельцу как есть
+                int idEnd = args.indexOf(' ');
+                int id = parseId(idEnd < 0 ? args : args.substring(0, idEnd));
+                List<String> response = shards.get(shardOf(id)).call(command + " " + args, command.startsWith("GET"));
+                ok(out, response.get(0).isEmpty() ? null : response.get(0));
+                for (int i = 1; i < response.size(); i++) {
+                    line(out, response.get(i));
+                }
+                break;
+            }
+            case "FINDBOOK":
+            case "FINDUSER": {
+                List<String> found = command.equals("FINDBOOK") ? findBooks(args) : findUsers(args);
+                ok(out, String.valueOf(found.size()));
+                for (String row : found) {
+                    line(out, row);
+                }
+                break;
+            }
+            case "STATS": {
+                LibraryStatistics stats = statistics();
+                ok(out, String.format(Locale.ROOT, "books=%d available=%d borrowed=%d loans=%d users=%d fines=%.2f",
+                        stats.totalBooks(), stats.availableBooks(), stats.borrowedBooks(), stats.activeLoans(),
+                        stats.totalUsers(), stats.totalFines()));
+                break;
+            }
+            case "IDS":
+                ok(out, lastBookId.get() + " " + lastUserId.get());
+                break;
+            default:
+                throw new IllegalArgumentException("Команда недоступна в секционированном режиме: " + command);
+        }
+    }
+
+    // Удаление выданной книги, как у одной библиотеки, убирает её и из списка читателя
+    private void dropBook(int bookId) {
+        ReentrantLock bookLock = bookLocks[stripe(bookId)];
+        bookLock.lock();
+        try {
+            Shard owner = shards.get(shardOf(bookId));
+            int borrower = Integer.parseInt(owner.call("BORROWER " + bookId, false).get(0));
+            owner.call("REMOVEBOOK " + bookId, false);
+            if (borrower != BookStore.NO_USER) {
+                release(borrower, bookId);
+            }
+        } finally {
+            bookLock.unlock();
+        }
+    }
+
+    // Вызывается под полосой книги
+    private void release(int userId, int bookId) {
+        ReentrantLock userLock = userLocks[stripe(userId)];
+        userLock.lock();
+        try {
+            shards.get(shardOf(userId)).call("RELEASE " + userId + " " + bookId, false);
+        } finally {
+            userLock.unlock();
+        }
+    }
+
+    private int put(String command, AtomicInteger counter, String fields) {
+        // id занят, даже если секция отвергла запись: так id не выдаётся дважды при одновременных добавлениях
+        int id = counter.incrementAndGet();
+        shards.get(shardOf(id)).call(command + " " + id + " " + fields, false);
+        return id;
+    }
+
+    private String get(String command, int id) {
+        try {
+            return shards.get(shardOf(id)).call(command + " " + id, true).get(1);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean remove(String command, int id) {
+        try {
+            shards.get(shardOf(id)).call(command + " " + id, false);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Строки всех секций в порядке order: k-путевое слияние списков секций через кучу их первых строк, O(n log k).
+    // Секция уже отдаёт строки в порядке order (книги по названию, читателей по id)
+    private List<String> gather(String command, Comparator<String> order) {
+        List<List<String>> responses = scatter(shard -> shard.call(command, true));
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, responses.size()),
+                (a, b) -> order.compare(responses.get(a[0]).get(a[1]), responses.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < responses.size(); i++) {
+            // первый элемент ответа - число строк после OK
+            List<String> rows = responses.get(i);
+            total += rows.size() - 1;
+            if (rows.size() > 1) {
+                heads.add(new int[] {i, 1});
+            }
+        }
+        List<String> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<String> rows = responses.get(head[0]);
+            merged.add(rows.get(head[1]++));
+            if (head[1] < rows.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    // Вызов во всех секциях параллельно; ответы в порядке секций. Ошибка бросается после ответов всех секций,
+    // чтобы ни одно соединение не осталось посреди ответа
+    private <T> List<T> scatter(Function<Shard, T> call) {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            futures.add(scatter.submit(() -> call.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        RuntimeException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Опрос секций прерван");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private static int readPort(Process process, int index) throws IOException {
+        BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = stdout.readLine()) != null) {
+            if (line.startsWith(PORT_LINE)) {
+                // дальнейший вывод секции (предупреждения) - в наш stderr, чтобы её stdout не переполнился
+                Thread drain = new Thread(() -> forward(stdout, index), "shard-" + index + "-out");
+                drain.setDaemon(true);
+                drain.start();
+                return Integer.parseInt(line.substring(PORT_LINE.length()).trim());
+            }
+        }
+        throw new IOException("Секция " + index + " завершилась, не открыв порт");
+    }
+
+    private static void forward(BufferedReader stdout, int index) {
+        try {
+            String line;
+            while ((line = stdout.readLine()) != null) {
+                System.err.println("[секция " + index + "] " + line);
+            }
+        } catch (IOException e) {
+            // секция завершилась
+        }
+    }
+
+    private static String join(String... fields) {
+        for (String field : fields) {
+            if (field.indexOf('|') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Поле не может содержать '|' или перевод строки: " + field);
+            }
+        }
+        return String.join("|", fields);
+    }
+
+    // Название из строки LibraryGodObject.formatBook "[id] название - автор (год) - статус | Рейтинг: r":
+    // хвост разбирается с конца, поэтому " - " и скобки в названии не мешают (мешал бы только " - " в имени автора)
+    private static String bookTitle(String row) {
+        int yearEnd = row.lastIndexOf(") - ");
+        int yearStart = yearEnd < 0 ? -1 : row.lastIndexOf(" (", yearEnd);
+        int authorStart = yearStart < 0 ? -1 : row.lastIndexOf(" - ", yearStart);
+        int titleStart = row.indexOf("] ") + 2;
+        return authorStart < titleStart ? row : row.substring(titleStart, authorStart);
+    }
+
+    private static int rowId(String row) {
+        int end = row.indexOf(']');
+        return row.startsWith("[") && end > 1 ? Integer.parseInt(row.substring(1, end)) : Integer.MAX_VALUE;
+    }
+
+    private static ReentrantLock[] newStripes() {
+        ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+
+    private static int stripe(int id) {
+        return Math.floorMod(id, LOCK_STRIPES);
+    }
+
+    private static String head(String args) {
+        int space = args.indexOf(' ');
+        return space < 0 ? args : args.substring(0, space);
+    }
+
+    private static String tail(String args) {
+        int space = args.indexOf(' ');
+        return space < 0 ? "" : args.substring(space + 1).trim();
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверный ID: " + text);
+        }
+    }
+
+    private static void ok(BufferedWriter out, String value) throws IOException {
+        out.write(value == null ? "OK" : "OK " + value);
+        out.newLine();
+    }
+
+    private static void line(BufferedWriter out, String text) throws IOException {
+        out.write(text);
+        out.newLine();
+    }
+}
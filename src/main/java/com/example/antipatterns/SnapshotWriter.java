@@ -0,0 +1,135 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+
+// Запись снимка в формате MappedSnapshot: именованные колонки подряд, в конце каталог колонок.
+// Пишется последовательно одним проходом, данные колонок выровнены по 8 байт,
+// чтобы при чтении их можно было смотреть через IntBuffer/LongBuffer прямо из отображения.
+final class SnapshotWriter {
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<long[]> extents = new ArrayList<>();
+    private long position;
+
+    SnapshotWriter(FileChannel channel, long lsn) throws IOException {
+        this.channel = channel;
+        buffer.put(MappedSnapshot.MAGIC).putInt(MappedSnapshot.VERSION).putInt(0).putLong(lsn);
+        position = MappedSnapshot.HEADER_BYTES;
+    }
+
+    void intColumn(String name, int count, IntUnaryOperator value) throws IOException {
+        long start = beginColumn();
+        for (int i = 0; i < count; i++) {
+            ensure(Integer.BYTES);
+            buffer.putInt(value.applyAsInt(i));
+            position += Integer.BYTES;
+        }
+        endColumn(name, start);
+    }
+
+    void longColumn(String name, int count, IntToLongFunction value) throws IOException {
+        long start = beginColumn();
+        for (int i = 0; i < count; i++) {
+            ensure(Long.BYTES);
+            buffer.putLong(value.applyAsLong(i));
+            position += Long.BYTES;
+        }
+        endColumn(name, start);
+    }
+
+    void doubleColumn(String name, int count, IntToDoubleFunction value) throws IOException {
+        long start = beginColumn();
+        for (int i = 0; i < count; i++) {
+            ensure(Double.BYTES);
+            buffer.putDouble(value.applyAsDouble(i));
+            position += Double.BYTES;
+        }
+        endColumn(name, start);
+    }
+
+    // Строки в UTF-8 одной кучей (name.utf8) и таблица смещений на count + 1 элементов (name.offsets)
+    void stringColumn(String name, int count, IntFunction<String> value) throws IOException {
+        int[] offsets = new int[count + 1];
+        long start = beginColumn();
+        long heapBytes = 0;
+        for (int i = 0; i < count; i++) {
+            String text = value.apply(i);
+            byte[] bytes = (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+            offsets[i] = (int) heapBytes;
+            heapBytes += bytes.length;
+            if (heapBytes > Integer.MAX_VALUE) {
+                throw new IOException("Колонка " + name + " больше 2 ГБ");
+            }
+            int written = 0;
+            while (written < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - written);
+                buffer.put(bytes, written, chunk);
+                written += chunk;
+            }
+            position += bytes.length;
+        }
+        offsets[count] = (int) heapBytes;
+        endColumn(name + ".utf8", start);
+        intColumn(name + ".offsets", count + 1, i -> offsets[i]);
+    }
+
+    // Каталог колонок и завершающая запись: смещение каталога + MAGIC
+    void finish() throws IOException {
+        long directory = beginColumn();
+        ensure(Integer.BYTES);
+        buffer.putInt(names.size());
+        position += Integer.BYTES;
+        for (int i = 0; i < names.size(); i++) {
+            byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+            ensure(Short.BYTES + name.length + 2 * Long.BYTES);
+            buffer.putShort((short) name.length).put(name).putLong(extents.get(i)[0]).putLong(extents.get(i)[1]);
+            position += Short.BYTES + name.length + 2 * Long.BYTES;
+        }
+        ensure(MappedSnapshot.FOOTER_BYTES);
+        buffer.putLong(directory).put(MappedSnapshot.MAGIC);
+        position += MappedSnapshot.FOOTER_BYTES;
+        flush();
+    }
+
+    private long beginColumn() throws IOException {
+        int padding = (int) (-position & 7);
+        ensure(padding);
+        for (int i = 0; i < padding; i++) {
+            buffer.put((byte) 0);
+        }
+        position += padding;
+        return position;
+    }
+
+    private void endColumn(String name, long start) {
+        names.add(name);
+        extents.add(new long[]{start, position - start});
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
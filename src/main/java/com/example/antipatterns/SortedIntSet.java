@@ -0,0 +1,71 @@
+package com.example.antipatterns;
+
+import java.util.Arrays;
+
+// Отсортированное множество int на массиве: id с одинаковым ключом в OrderedIdIndex (списки n-грамм - PostingList).
+// Id выдаются по возрастанию, поэтому типичная вставка - дописывание в конец.
+final class SortedIntSet {
+    private int[] data;
+    private int size;
+
+    SortedIntSet() {
+        this(4);
+    }
+
+    SortedIntSet(int capacity) {
+        data = new int[Math.max(1, capacity)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return data[index];
+    }
+
+    boolean contains(int value) {
+        return Arrays.binarySearch(data, 0, size, value) >= 0;
+    }
+
+    boolean add(int value) {
+        int pos;
+        if (size == 0 || data[size - 1] < value) {
+            pos = size;
+        } else {
+            pos = Arrays.binarySearch(data, 0, size, value);
+            if (pos >= 0) {
+                return false;
+            }
+            pos = -pos - 1;
+        }
+        if (size == data.length) {
+            data = Arrays.copyOf(data, size + (size >> 1) + 1);
+        }
+        System.arraycopy(data, pos, data, pos + 1, size - pos);
+        data[pos] = value;
+        size++;
+        return true;
+    }
+
+    boolean remove(int value) {
+        int pos = Arrays.binarySearch(data, 0, size, value);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(data, pos + 1, data, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.antipatterns;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Словарь строк для полей с малым числом различных значений (автор, жанр): строка -> код и код -> строка.
+// Книга хранит только int-код, каждая строка лежит в памяти один раз на весь каталог,
+// а сравнение на равенство сводится к сравнению кодов.
+// Коды выдаются подряд с 0 и не переиспользуются: значение, которое больше ни у кого не встречается,
+// остаётся в словаре до перезапуска (различных значений единицы тысяч, это дешевле учёта ссылок).
+// Потокобезопасности нет: кодирование идёт из BookStore.add/set* под исключительным доступом, см. LibraryEngine.
+final class StringDictionary {
+    // код для null
+    static final int NO_CODE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final HashMap<String, Integer> codes = new HashMap<>();
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    // Код строки; новой строке выдаётся следующий код
+    int encode(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    // Код без добавления, NO_CODE - такой строки в словаре нет (значит, и ни у одной книги)
+    int codeOf(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? NO_CODE : code;
+    }
+
+    String value(int code) {
+        return code == NO_CODE ? null : values[code];
+    }
+
+    void clear() {
+        codes.clear();
+        values = new String[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    void writeTo(SnapshotWriter out, String name) throws IOException {
+        out.stringColumn(name, size, i -> values[i]);
+    }
+
+    // Словарь читается целиком: он мал, а декодирование должно быть обращением к массиву
+    void readFrom(MappedSnapshot in, String name) throws IOException {
+        MappedSnapshot.StringColumn loaded = in.strings(name);
+        clear();
+        for (int i = 0; i < loaded.size(); i++) {
+            if (encode(loaded.get(i)) != i) {
+                throw new IOException("Снимок повреждён: повтор в словаре " + name);
+            }
+        }
+    }
+}
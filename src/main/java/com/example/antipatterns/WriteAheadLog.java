@@ -0,0 +1,140 @@
+package com.example.antipatterns;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Журнал предзаписи изменений библиотеки.
+// Кадр: длина тела (int), тело = LSN (long) + операция (byte) + данные, CRC32 тела (int).
+// При чтении оборванный или повреждённый хвост (падение посреди записи) отрезается.
+final class WriteAheadLog implements AutoCloseable {
+    enum Op { ADD_BOOK, UPDATE_BOOK, REMOVE_BOOK, ADD_USER, UPDATE_USER, REMOVE_USER, BORROW, RETURN, FINE_ACCRUED,
+        // место под выдачу книги другой секции в списке читателя (LibraryEngine.reserve/release); новые операции - только в конец
+        RESERVE, RELEASE }
+
+    interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    interface Handler {
+        void apply(Op op, DataInputStream in) throws IOException;
+    }
+
+    private static final int HEADER_BYTES = 4;
+    private static final int TRAILER_BYTES = 4;
+    private static final int MAX_BODY_BYTES = 1 << 24;
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    // сообщение об отрезанном хвосте уходит туда же, куда остальные предупреждения движка
+    private final Consumer<String> warnings;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+    private final DataOutputStream bodyOut = new DataOutputStream(body);
+    private final CRC32 crc = new CRC32();
+    private long nextLsn = 1;
+
+    WriteAheadLog(Path file, boolean fsync, Consumer<String> warnings) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.fsync = fsync;
+        this.warnings = warnings;
+    }
+
+    long nextLsn() {
+        return nextLsn;
+    }
+
+    // Проигрывает записи с LSN больше afterLsn и встаёт в конец журнала для дозаписи
+    int replay(long afterLsn, Handler handler) throws IOException {
+        nextLsn = Math.max(nextLsn, afterLsn + 1);
+        long position = 0;
+        long size = channel.size();
+        int applied = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES + TRAILER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            if (length < 9 || length > MAX_BODY_BYTES || position + HEADER_BYTES + length + TRAILER_BYTES > size) {
+                break;
+            }
+            ByteBuffer frame = ByteBuffer.allocate(length + TRAILER_BYTES);
+            readFully(frame, position + HEADER_BYTES);
+            crc.reset();
+            crc.update(frame.array(), 0, length);
+            if ((int) crc.getValue() != frame.getInt(length)) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame.array(), 0, length));
+            long lsn = in.readLong();
+            Op op = Op.values()[in.readByte()];
+            if (lsn > afterLsn) {
+                handler.apply(op, in);
+                applied++;
+            }
+            nextLsn = Math.max(nextLsn, lsn + 1);
+            position += HEADER_BYTES + length + TRAILER_BYTES;
+        }
+        if (position < size) {
+            warnings.accept("Журнал изменений: отброшен неполный хвост " + (size - position) + " байт");
+            channel.truncate(position);
+        }
+        channel.position(position);
+        return applied;
+    }
+
+    long append(Op op, Payload payload) throws IOException {
+        long lsn = nextLsn++;
+        body.reset();
+        bodyOut.writeLong(lsn);
+        bodyOut.writeByte(op.ordinal());
+        payload.write(bodyOut);
+        bodyOut.flush();
+        byte[] bytes = body.toByteArray();
+        crc.reset();
+        crc.update(bytes);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + bytes.length + TRAILER_BYTES);
+        frame.putInt(bytes.length).put(bytes).putInt((int) crc.getValue()).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        return lsn;
+    }
+
+    // Очищает журнал после снимка: всё до текущего LSN уже в снимке
+    void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    long sizeBytes() throws IOException {
+        return channel.size();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Неожиданный конец журнала");
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Недописанный хвост журнала аудита (падение посреди записи) отрезается при открытии: нумерация продолжается
+// с последней целой записи, а новые записи ложатся ровно на границы RECORD_BYTES
+class AuditJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornTailIsTruncatedOnReopen() throws IOException {
+        Path file = directory.resolve("audit.journal");
+        try (AuditJournal journal = new AuditJournal(file, AuditJournal.Durability.BATCHED)) {
+            journal.append(AuditJournal.Op.ADD_BOOK, 1, 0);
+            journal.append(AuditJournal.Op.ADD_USER, 2, 0);
+            journal.append(AuditJournal.Op.BORROW, 1, 2);
+        }
+        assertEquals(AuditJournal.MAGIC.length + 3L * AuditJournal.RECORD_BYTES, Files.size(file));
+        // половина четвёртой записи
+        Files.write(file, new byte[AuditJournal.RECORD_BYTES / 2], StandardOpenOption.APPEND);
+
+        try (AuditJournal journal = new AuditJournal(file, AuditJournal.Durability.PER_OP)) {
+            assertEquals(AuditJournal.MAGIC.length + 3L * AuditJournal.RECORD_BYTES, Files.size(file));
+            journal.append(AuditJournal.Op.RETURN, 1, 0);
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        assertArrayEquals(AuditJournal.MAGIC, Arrays.copyOf(bytes, AuditJournal.MAGIC.length));
+        assertEquals(AuditJournal.MAGIC.length + 4 * AuditJournal.RECORD_BYTES, bytes.length);
+        AuditJournal.Op[] expected = {AuditJournal.Op.ADD_BOOK, AuditJournal.Op.ADD_USER, AuditJournal.Op.BORROW,
+                AuditJournal.Op.RETURN};
+        ByteBuffer records = ByteBuffer.wrap(bytes, AuditJournal.MAGIC.length, bytes.length - AuditJournal.MAGIC.length);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < expected.length; i++) {
+            int start = records.position();
+            assertEquals(i, records.getLong());
+            records.getLong();
+            assertEquals(expected[i].ordinal(), records.get());
+            records.getInt();
+            records.getInt();
+            crc.reset();
+            crc.update(bytes, start, AuditJournal.RECORD_BYTES - 4);
+            assertEquals((int) crc.getValue(), records.getInt(), "CRC записи " + i);
+        }
+    }
+
+    @Test
+    void truncatedHeaderStartsNewJournal() throws IOException {
+        Path file = directory.resolve("audit.journal");
+        Files.write(file, Arrays.copyOf(AuditJournal.MAGIC, 3));
+        try (AuditJournal journal = new AuditJournal(file, AuditJournal.Durability.NONE)) {
+            journal.append(AuditJournal.Op.LOGIN, 0, 0);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        assertEquals(AuditJournal.MAGIC.length + AuditJournal.RECORD_BYTES, bytes.length);
+        assertArrayEquals(AuditJournal.MAGIC, Arrays.copyOf(bytes, AuditJournal.MAGIC.length));
+        assertEquals(0, ByteBuffer.wrap(bytes, AuditJournal.MAGIC.length, 8).getLong());
+    }
+}
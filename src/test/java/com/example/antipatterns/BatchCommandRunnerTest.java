@@ -0,0 +1,150 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Протокол пакетного режима: на каждую команду ровно одна строка OK или ERR, за OK <n> у списков - ровно n строк;
+// ошибка команды не прерывает выполнение, пустые строки и комментарии ответа не получают
+class BatchCommandRunnerTest {
+    private static final String[] PROPERTIES = {"library.data.dir", "library.history.dir", "library.audit.file",
+            "library.metrics.file", "library.metrics.dumpSeconds", "library.fines.accrualSeconds"};
+    // команды, за строкой OK <n> которых идут n строк
+    private static final List<String> LISTINGS = List.of("FINDBOOK", "FINDUSER", "BOOKS", "USERS", "GETBOOK", "GETUSER");
+
+    @TempDir
+    Path directory;
+
+    private LibraryGodObject library;
+
+    @BeforeEach
+    void openLibrary() {
+        System.setProperty("library.data.dir", directory.resolve("data").toString());
+        System.setProperty("library.history.dir", directory.resolve("history").toString());
+        System.setProperty("library.audit.file", directory.resolve("audit.journal").toString());
+        System.setProperty("library.metrics.file", directory.resolve("metrics.txt").toString());
+        System.setProperty("library.metrics.dumpSeconds", "0");
+        System.setProperty("library.fines.accrualSeconds", "0");
+        library = new LibraryGodObject(new PrintStream(PrintStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void closeLibrary() {
+        library.shutdown();
+        for (String property : PROPERTIES) {
+            System.clearProperty(property);
+        }
+    }
+
+    @Test
+    void everyCommandGetsOneStatusLineAndCountedRows() throws IOException {
+        List<Response> responses = run(
+                "STATS",
+                "LOGIN неверный",
+                "LOGIN aboba",
+                "",
+                "# комментарий",
+                "ADDBOOK Война и мир|Толстой|1869|978-1|Роман",
+                "ADDBOOK Анна Каренина|Толстой|1877|978-2|Роман",
+                "ADDBOOK Без полей",
+                "ADDUSER Иван|Петров|1990|+7|ivan@mail",
+                "FINDBOOK толст",
+                "FINDBOOK нет такой",
+                "BORROW 1 1",
+                "BORROW 1 1",
+                "BOOKS",
+                "FINDUSER петров",
+                "USERS",
+                "RETURN 1",
+                "UPDATEBOOK 2 |Лев Толстой|",
+                "GETBOOK 2",
+                "GETUSER 99",
+                "REMOVEBOOK x",
+                "IDS",
+                "STATS",
+                "нечто");
+
+        assertEquals(List.of("ERR", "ERR", "OK", "OK 1", "OK 2", "ERR", "OK 1", "OK 2", "OK 0", "OK", "ERR",
+                        "OK 2", "OK 1", "OK 1", "OK 0.00", "OK", "OK 1", "ERR", "ERR", "OK 2 1",
+                        "OK books=2 available=2 borrowed=0 loans=0 users=1 fines=0.00", "ERR"),
+                statuses(responses));
+        assertEquals("ERR Требуется LOGIN <пароль>", responses.get(0).status);
+        assertEquals("ERR Неверный пароль", responses.get(1).status);
+        assertEquals("ERR Ожидается полей: 5", responses.get(5).status);
+        assertEquals("ERR Неверный ID: x", responses.get(18).status);
+        assertEquals("ERR Неизвестная команда: НЕЧТО", responses.get(21).status);
+        // строки поиска и списков - как в интерактивном режиме
+        assertTrue(responses.get(7).rows.get(0).startsWith("[2] Анна Каренина - Толстой (1877) - Доступна"));
+        assertTrue(responses.get(7).rows.get(1).startsWith("[1] Война и мир - Толстой (1869) - Доступна"));
+        assertTrue(responses.get(11).rows.get(1).startsWith("[1] Война и мир - Толстой (1869) - Забронирована"));
+        assertTrue(responses.get(12).rows.get(0).startsWith("[1] Иван Петров | Тел: +7 | Email: ivan@mail"));
+        assertEquals(responses.get(12).rows, responses.get(13).rows);
+        assertTrue(responses.get(16).rows.get(0).startsWith("[2] Анна Каренина - Лев Толстой (1877) - Доступна"));
+    }
+
+    @Test
+    void emptyInputGivesEmptyOutput() throws IOException {
+        assertEquals(List.of(), run("", "# только комментарий", "   "));
+    }
+
+    private static final class Response {
+        final String status;
+        final List<String> rows = new ArrayList<>();
+
+        Response(String status) {
+            this.status = status;
+        }
+    }
+
+    // Разбор как у клиента, который знает свои команды: строка статуса, за OK <n> у списков - n строк,
+    // и ни одной лишней строки в конце
+    private List<Response> run(String... commands) throws IOException {
+        StringWriter buffer = new StringWriter();
+        try (BufferedWriter out = new BufferedWriter(buffer)) {
+            new BatchCommandRunner(library).run(new BufferedReader(new StringReader(String.join("\n", commands))), out);
+        }
+        BufferedReader output = new BufferedReader(new StringReader(buffer.toString()));
+        List<Response> responses = new ArrayList<>();
+        for (String command : commands) {
+            command = command.trim();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            Response response = new Response(output.readLine());
+            assertTrue(response.status.equals("OK") || response.status.startsWith("OK ") || response.status.startsWith("ERR "),
+                    command + " -> " + response.status);
+            String keyword = command.split(" ")[0];
+            if (response.status.startsWith("OK ") && LISTINGS.contains(keyword)) {
+                int count = Integer.parseInt(response.status.substring(3));
+                for (int r = 0; r < count; r++) {
+                    response.rows.add(output.readLine());
+                }
+            }
+            responses.add(response);
+        }
+        assertNull(output.readLine());
+        return responses;
+    }
+
+    private static List<String> statuses(List<Response> responses) {
+        List<String> statuses = new ArrayList<>();
+        for (Response response : responses) {
+            statuses.add(response.status.startsWith("ERR") ? "ERR" : response.status);
+        }
+        return statuses;
+    }
+}
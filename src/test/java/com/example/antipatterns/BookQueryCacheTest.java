@@ -0,0 +1,134 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Кэш результатов поиска книг: добавление, изменение и удаление книги сбрасывают ровно те запросы,
+// что входят в её поля до или после изменения; выдача и возврат кэш не трогают, но результат из кэша
+// показывает новую доступность; массовая загрузка и открытие каталога кэш очищают.
+// Что запрос взят из кэша, видно по счётчику попаданий в метриках движка
+class BookQueryCacheTest {
+    private static final String[] QUERIES = {"толст", "пушк", "мир", "поэз"};
+
+    @TempDir
+    Path directory;
+
+    private final long[] now = {1_700_000_000_000L};
+    private final List<String> warnings = new ArrayList<>();
+    private final LibraryEngine engine = new LibraryEngine("TEST", 0.5, warnings::add, () -> now[0]);
+
+    @Test
+    void catalogChangesDropOnlyMatchingQueries() {
+        int war = engine.addBook("Война и мир", "Толстой", 1869, "978-1", "Роман");
+        int onegin = engine.addBook("Евгений Онегин", "Пушкин", 1833, "978-2", "Поэзия");
+        warm();
+
+        int daughter = engine.addBook("Капитанская дочка", "Пушкин", 1836, "978-3", "Роман");
+        assertEquals(List.of(true, false, true, true), cached());
+        assertEquals(List.of(onegin + "+", daughter + "+"), search("пушк"));
+
+        // старое название совпадало с "мир", автор - с "толст"
+        engine.updateBook(war, "Анна Каренина", null, null);
+        assertEquals(List.of(false, true, false, true), cached());
+        assertEquals(List.of(), search("мир"));
+
+        engine.removeBook(onegin);
+        assertEquals(List.of(true, false, true, false), cached());
+        assertEquals(List.of(daughter + "+"), search("пушк"));
+        assertEquals(List.of(), warnings);
+    }
+
+    @Test
+    void circulationKeepsEntriesAndShowsAvailability() {
+        int war = engine.addBook("Война и мир", "Толстой", 1869, "978-1", "Роман");
+        int user = (Integer) engine.addUser("Имя", "Фамилия", 1990, "+7", "u@mail").get("id");
+        assertEquals(List.of(war + "+"), search("мир"));
+
+        engine.borrow(war, user);
+        long hits = hits();
+        assertEquals(List.of(war + "-"), search("мир"));
+        assertEquals(hits + 1, hits());
+
+        engine.returnBook(war);
+        assertEquals(List.of(war + "+"), search("мир"));
+        assertEquals(hits + 2, hits());
+    }
+
+    @Test
+    void bulkLoadAndOpenClearCache() throws IOException {
+        engine.addBook("Война и мир", "Толстой", 1869, "978-1", "Роман");
+        warm();
+        engine.beginBulkLoad();
+        assertEquals(List.of(false, false, false, false), cached());
+
+        engine.open(directory, false, Integer.MAX_VALUE);
+        try {
+            assertEquals(List.of(false, false, false, false), cached());
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    void lruEvictionAndLimits() {
+        BookQueryCache cache = new BookQueryCache(2, new OperationMetrics(1));
+        cache.put("а", new int[] {1});
+        cache.put("б", new int[] {2});
+        cache.get("а");
+        cache.put("в", new int[] {3});
+        // "б" - давно не использованная
+        assertNull(cache.get("б"));
+        assertArrayEquals(new int[] {1}, cache.get("а"));
+        cache.put("г", new int[BookQueryCache.MAX_RESULT_IDS + 1]);
+        assertNull(cache.get("г"));
+
+        cache.invalidate("Ёж", null, "Поэзия");
+        assertEquals(2, cache.size());
+        cache.invalidate("Ёж", null, "Драма");
+        assertNull(cache.get("а"));
+        assertEquals(1, cache.size());
+
+        cache.setCapacity(0);
+        assertEquals(0, cache.size());
+        cache.put("д", new int[] {4});
+        assertNull(cache.get("д"));
+        assertThrows(IllegalArgumentException.class, () -> cache.setCapacity(-1));
+    }
+
+    private void warm() {
+        for (String query : QUERIES) {
+            search(query);
+        }
+    }
+
+    // Для каждого из QUERIES: был ли он в кэше. Проверка сама кладёт запрос в кэш
+    private List<Boolean> cached() {
+        List<Boolean> cached = new ArrayList<>();
+        for (String query : QUERIES) {
+            long before = hits();
+            search(query);
+            cached.add(hits() > before);
+        }
+        return cached;
+    }
+
+    // id найденных книг с отметкой доступности: + на полке, - выдана
+    private List<String> search(String query) {
+        List<String> found = new ArrayList<>();
+        engine.searchBooks(query, (books, slot) -> found.add(books.id(slot) + (books.isAvailable(slot) ? "+" : "-")));
+        return found;
+    }
+
+    private long hits() {
+        return engine.metrics().getCacheHits().get("bookSearch");
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+// Смена корзин в CirculationWindows: событие уходит из окна ровно через его длину, занятая новым интервалом
+// корзина обнуляется, а событие старше кольца не портит новые счётчики
+class CirculationWindowsTest {
+    // начало суток, чтобы номера корзин всех окон были предсказуемы
+    private static final long START = 1_700_006_400_000L;
+    private static final long SECOND = 1000L;
+    private static final long MINUTE = 60 * SECOND;
+
+    @Test
+    void eventsLeaveEachWindowAfterItsLength() {
+        CirculationWindows windows = new CirculationWindows();
+        windows.record(CirculationWindows.Kind.CHECKOUT, START);
+        windows.record(CirculationWindows.Kind.CHECKOUT, START + 500);
+        windows.record(CirculationWindows.Kind.RETURN, START + 30 * SECOND);
+
+        assertEquals(2, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.MINUTE, START + 30 * SECOND));
+        assertEquals(1, windows.count(CirculationWindows.Kind.RETURN, CirculationWindows.Window.MINUTE, START + 30 * SECOND));
+        // последняя секунда минутного окна ещё включает корзину START
+        assertEquals(2, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.MINUTE,
+                START + MINUTE - 1));
+        assertEquals(0, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.MINUTE, START + MINUTE));
+        assertEquals(1, windows.count(CirculationWindows.Kind.RETURN, CirculationWindows.Window.MINUTE, START + MINUTE));
+        assertEquals(2, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.HOUR, START + 59 * MINUTE));
+        assertEquals(0, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.HOUR, START + 60 * MINUTE));
+        assertEquals(2, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.DAY,
+                START + LibraryEngine.DAY_MILLIS - 1));
+        assertEquals(0, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.DAY,
+                START + LibraryEngine.DAY_MILLIS));
+    }
+
+    @Test
+    void reusedBucketStartsFromZero() {
+        CirculationWindows windows = new CirculationWindows();
+        windows.record(CirculationWindows.Kind.CHECKOUT, START);
+        windows.fine(1.25, START);
+        // та же корзина минутного кольца через круг
+        long lap = START + MINUTE;
+        windows.record(CirculationWindows.Kind.CHECKOUT, lap);
+        windows.fine(0.5, lap);
+
+        assertEquals(1, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.MINUTE, lap));
+        assertEquals(1, windows.count(CirculationWindows.Kind.FINE, CirculationWindows.Window.MINUTE, lap));
+        assertEquals(0.5, windows.fineAmount(CirculationWindows.Window.MINUTE, lap));
+        // часовое кольцо видит обе минуты
+        assertEquals(2, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.HOUR, lap));
+        assertEquals(1.75, windows.fineAmount(CirculationWindows.Window.HOUR, lap));
+
+        // запоздавшее событие старше кольца (например, при проигрывании журнала) пропускается
+        windows.record(CirculationWindows.Kind.CHECKOUT, START);
+        assertEquals(1, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.MINUTE, lap));
+        assertEquals(3, windows.count(CirculationWindows.Kind.CHECKOUT, CirculationWindows.Window.HOUR, lap));
+    }
+
+    @Test
+    void seriesGoesFromOldestToCurrentBucket() {
+        CirculationWindows windows = new CirculationWindows();
+        windows.record(CirculationWindows.Kind.NEW_USER, START);
+        windows.record(CirculationWindows.Kind.NEW_USER, START + 2 * SECOND);
+        windows.record(CirculationWindows.Kind.NEW_USER, START + 2 * SECOND + 999);
+
+        long[] expected = new long[60];
+        expected[57] = 1;
+        expected[59] = 2;
+        assertArrayEquals(expected, windows.series(CirculationWindows.Kind.NEW_USER, CirculationWindows.Window.MINUTE,
+                START + 2 * SECOND));
+        // через минуту корзина START выпала из окна, а корзина +2 с стала самой старой
+        long[] later = new long[60];
+        later[0] = 2;
+        assertArrayEquals(later, windows.series(CirculationWindows.Kind.NEW_USER, CirculationWindows.Window.MINUTE,
+                START + 61 * SECOND));
+    }
+}
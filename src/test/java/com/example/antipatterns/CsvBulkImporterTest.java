@@ -0,0 +1,117 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Разбор строк CSV, отклонение строк (в том числе повторов ISBN из каталога и из самого файла)
+// и снимок после импорта, даже оборвавшегося
+class CsvBulkImporterTest {
+    private static final String[] PROPERTIES = {"library.data.dir", "library.history.dir", "library.audit.file",
+            "library.metrics.file", "library.metrics.dumpSeconds", "library.fines.accrualSeconds"};
+
+    @TempDir
+    Path directory;
+
+    private LibraryGodObject library;
+
+    @BeforeEach
+    void openLibrary() {
+        System.setProperty("library.data.dir", directory.resolve("data").toString());
+        System.setProperty("library.history.dir", directory.resolve("history").toString());
+        System.setProperty("library.audit.file", directory.resolve("audit.journal").toString());
+        System.setProperty("library.metrics.file", directory.resolve("metrics.txt").toString());
+        System.setProperty("library.metrics.dumpSeconds", "0");
+        System.setProperty("library.fines.accrualSeconds", "0");
+        library = new LibraryGodObject(new PrintStream(PrintStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void closeLibrary() {
+        library.shutdown();
+        for (String property : PROPERTIES) {
+            System.clearProperty(property);
+        }
+    }
+
+    @Test
+    void parseLineHandlesQuotesAndRejectsBrokenFields() {
+        assertArrayEquals(new String[] {"a", "b", "c"}, CsvBulkImporter.parseLine("a,b,c"));
+        assertArrayEquals(new String[] {"a", "", ""}, CsvBulkImporter.parseLine(" a ,,"));
+        assertArrayEquals(new String[] {"Книга, том 1", "Автор"}, CsvBulkImporter.parseLine("\"Книга, том 1\",Автор"));
+        assertArrayEquals(new String[] {"Он сказал \"да\"", ""}, CsvBulkImporter.parseLine("\"Он сказал \"\"да\"\"\",\"\""));
+        assertArrayEquals(new String[] {"\""}, CsvBulkImporter.parseLine("\"\"\"\""));
+        // кавычка не в начале поля - обычный символ
+        assertArrayEquals(new String[] {"5\" дискета"}, CsvBulkImporter.parseLine("5\" дискета"));
+        assertEquals("незакрытая кавычка",
+                assertThrows(IllegalArgumentException.class, () -> CsvBulkImporter.parseLine("\"без конца,x")).getMessage());
+        assertEquals("символ после закрывающей кавычки",
+                assertThrows(IllegalArgumentException.class, () -> CsvBulkImporter.parseLine("\"a\"b,c")).getMessage());
+    }
+
+    @Test
+    void duplicateIsbnsAndBrokenRowsAreRejected() throws IOException {
+        library.engine().addBook("Уже в каталоге", "Автор", 2000, "978-0", "Роман");
+        Path csv = directory.resolve("books.csv");
+        Files.write(csv, List.of(
+                "title,author,year,isbn,genre",
+                "Война и мир,Толстой,1869,978-1,Роман",
+                "\"Книга, том 2\",Автор,1900,978-2,Поэзия",
+                "Повтор каталога,Автор,1900,978-0,Роман",
+                "",
+                "Повтор файла,Автор,1900,978-1,Роман",
+                "Без ISBN,Автор,1900,,Роман",
+                "Тоже без ISBN,Автор,1900,,Роман",
+                "Год,Автор,тысяча,978-3,Роман",
+                "Мало полей,Автор",
+                ",Без названия,1900,978-4,Роман",
+                "\"Незакрытая,Автор,1900,978-5,Роман"), StandardCharsets.UTF_8);
+        Path rejectedFile = directory.resolve("rejected.csv");
+
+        CsvBulkImporter.Report report = new CsvBulkImporter(library, 2)
+                .importFile(CsvBulkImporter.Kind.BOOKS, csv, rejectedFile);
+
+        assertEquals(4, report.imported());
+        assertEquals(6, report.rejected());
+        assertEquals(List.of(
+                "line,reason,row",
+                "4,\"дубликат ISBN 978-0\",\"Повтор каталога,Автор,1900,978-0,Роман\"",
+                "6,\"дубликат ISBN 978-1\",\"Повтор файла,Автор,1900,978-1,Роман\"",
+                "9,\"неверный год: тысяча\",\"Год,Автор,тысяча,978-3,Роман\"",
+                "10,\"ожидается полей: 5, найдено: 2\",\"Мало полей,Автор\"",
+                "11,\"пустое поле title\",\",Без названия,1900,978-4,Роман\"",
+                "12,\"незакрытая кавычка\",\"\"\"Незакрытая,Автор,1900,978-5,Роман\""),
+                Files.readAllLines(rejectedFile, StandardCharsets.UTF_8));
+        List<String> titles = new ArrayList<>();
+        library.engine().forEachBookByTitle(0, Integer.MAX_VALUE, (books, slot) -> titles.add(books.title(slot) + "/" + books.isbn(slot)));
+        assertEquals(List.of("Без ISBN/", "Война и мир/978-1", "Книга, том 2/978-2", "Тоже без ISBN/", "Уже в каталоге/978-0"),
+                titles);
+        assertEquals(List.of(), library.engine().verifyInvariants());
+    }
+
+    @Test
+    void interruptedImportStillWritesSnapshot() throws IOException {
+        Path csv = directory.resolve("books.csv");
+        Files.write(csv, List.of("Книга,Автор,1900,978-1,Роман"), StandardCharsets.UTF_8);
+        Path snapshot = directory.resolve("data").resolve("snapshot.bin");
+        assertFalse(Files.exists(snapshot));
+
+        assertThrows(IOException.class, () -> new CsvBulkImporter(library, 1)
+                .importFile(CsvBulkImporter.Kind.BOOKS, csv, directory.resolve("missing").resolve("rejected.csv")));
+        assertTrue(Files.exists(snapshot));
+    }
+}
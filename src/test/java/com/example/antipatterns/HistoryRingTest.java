@@ -0,0 +1,79 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Постраничный просмотр HistoryRing от новых событий к старым и вытеснение: в памяти остаются последние
+// capacity событий, вытесненные по порядку дописываются в сегмент на диске
+class HistoryRingTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(8, new HistoryRing(5, null).capacity());
+        assertEquals(8, new HistoryRing(8, null).capacity());
+        assertEquals(16, new HistoryRing(9, null).capacity());
+    }
+
+    @Test
+    void pagesFromNewestWithinCapacity() {
+        HistoryRing ring = new HistoryRing(8, null);
+        assertEquals(List.of(), ring.recent(0, 5));
+        for (int i = 0; i < 3; i++) {
+            ring.record(HistoryEvent.Kind.OPERATION, "событие " + i);
+        }
+        assertEquals(3, ring.available());
+        assertEquals(List.of(2L, 1L), sequences(ring.recent(0, 2)));
+        assertEquals(List.of(0L), sequences(ring.recent(2, 2)));
+        assertEquals(List.of(), sequences(ring.recent(3, 2)));
+
+        for (int i = 3; i < 20; i++) {
+            ring.record(HistoryEvent.Kind.OPERATION, "событие " + i);
+        }
+        assertEquals(20, ring.totalRecorded());
+        assertEquals(8, ring.available());
+        assertEquals(List.of(19L, 18L, 17L), sequences(ring.recent(0, 3)));
+        // старше head - capacity событий в памяти нет: страница обрывается на 12-м
+        assertEquals(List.of(14L, 13L, 12L), sequences(ring.recent(5, 10)));
+        assertEquals(List.of(), sequences(ring.recent(8, 10)));
+        assertEquals("событие 19", ring.recent(0, 1).get(0).message());
+    }
+
+    @Test
+    void evictedEventsSpillToSegmentInOrder() throws IOException {
+        HistoryRing ring = new HistoryRing(4, directory);
+        for (int i = 0; i < 10; i++) {
+            ring.record(HistoryEvent.Kind.SYSTEM, "строка\t" + i);
+        }
+        ring.close();
+
+        List<String> lines = Files.readAllLines(directory.resolve("history-000001.log"), StandardCharsets.UTF_8);
+        assertEquals(6, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String[] parts = lines.get(i).split("\t");
+            assertEquals(String.valueOf(i), parts[0]);
+            assertEquals("SYSTEM", parts[2]);
+            // табуляция в тексте заменяется пробелом, чтобы не ломать разбор строки
+            assertEquals("строка " + i, parts[3]);
+        }
+        assertEquals(0, ring.droppedSpills());
+        assertEquals(List.of(9L, 8L, 7L, 6L), sequences(ring.recent(0, 10)));
+    }
+
+    private static List<Long> sequences(List<HistoryEvent> events) {
+        List<Long> result = new ArrayList<>();
+        for (HistoryEvent event : events) {
+            result.add(event.sequence());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Многопоточная проверка LibraryEngine: рабочие потоки выдают и возвращают случайные книги случайным читателям,
+// отдельный поток параллельно добавляет, переименовывает и удаляет книги (удаление переставляет слоты)
+// и добавляет пользователей, а также сверяет инварианты на ходу (verifyInvariants).
+// В конце: инварианты целы, ни одна книга не выдана дважды (удачных выдач книги ровно на 1 больше возвратов,
+// если она сейчас выдана, иначе столько же) и выданные + доступные книги дают весь каталог.
+class LibraryEngineConcurrencyTest {
+    private static final int BOOKS = 20_000;
+    private static final int USERS = 3_000;
+    private static final long RUN_MILLIS = 1_500;
+    private static final long CHECK_EVERY_MILLIS = 250;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void invariantsHoldUnderConcurrentCirculationAndCatalogChanges(int threadCount) throws InterruptedException {
+        List<String> warnings = Collections.synchronizedList(new ArrayList<>());
+        LibraryEngine engine = new LibraryEngine("STRESS", 0.5, warnings::add);
+        for (int i = 0; i < BOOKS; i++) {
+            engine.addBook("Книга " + i, "Автор " + (i % 500), 1900 + i % 125, "978-" + i, "Роман");
+        }
+        for (int i = 0; i < USERS; i++) {
+            engine.addUser("Имя" + i, "Фамилия" + i, 1980, "+7" + i, "u" + i + "@mail");
+        }
+        AtomicIntegerArray borrows = new AtomicIntegerArray(BOOKS + 1);
+        AtomicIntegerArray returns = new AtomicIntegerArray(BOOKS + 1);
+        List<String> violations = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + RUN_MILLIS * 1_000_000L;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int bookId = 1 + random.nextInt(BOOKS);
+                    try {
+                        if (random.nextBoolean()) {
+                            engine.borrow(bookId, 1 + random.nextInt(USERS));
+                            borrows.incrementAndGet(bookId);
+                        } else {
+                            engine.returnBook(bookId);
+                            returns.incrementAndGet(bookId);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // книга занята или не выдана, читатель упёрся в лимит: отказ - нормальный исход
+                    }
+                }
+            }, "stress-" + t));
+        }
+        // книги сверх BOOKS только добавляются и удаляются, рабочие потоки их не выдают
+        threads.add(new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long nextCheck = System.nanoTime();
+            int round = 0;
+            while (System.nanoTime() < deadline) {
+                int extra = engine.addBook("Новая " + round, "Автор", 2024, "isbn-" + round, "Наука");
+                engine.updateBook(1 + random.nextInt(BOOKS), "Книга (изд. " + round + ")", null, null);
+                engine.removeBook(extra);
+                if (round % 16 == 0) {
+                    engine.addUser("Новый" + round, "Читатель", 2000, "+7", "new@mail");
+                }
+                if (System.nanoTime() >= nextCheck) {
+                    violations.addAll(engine.verifyInvariants());
+                    nextCheck = System.nanoTime() + CHECK_EVERY_MILLIS * 1_000_000L;
+                }
+                round++;
+            }
+        }, "stress-structure"));
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        violations.addAll(engine.verifyInvariants());
+        int borrowed = 0;
+        for (int bookId = 1; bookId <= BOOKS; bookId++) {
+            boolean out = engine.borrowerOf(bookId) != BookStore.NO_USER;
+            if (borrows.get(bookId) - returns.get(bookId) != (out ? 1 : 0)) {
+                violations.add("книга " + bookId + ": выдач " + borrows.get(bookId) + ", возвратов " + returns.get(bookId)
+                        + ", сейчас " + (out ? "выдана" : "на полке"));
+            }
+            borrowed += out ? 1 : 0;
+        }
+        assertEquals(List.of(), violations.subList(0, Math.min(violations.size(), 10)));
+        LibraryStatistics stats = engine.statistics();
+        assertEquals(BOOKS, stats.totalBooks());
+        assertEquals(borrowed, stats.activeLoans());
+        assertEquals(stats.totalBooks(), stats.activeLoans() + stats.availableBooks());
+        assertEquals(List.of(), warnings);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+// Обходы бронирований (forEachOverdue, forEachLoanOf) вызывают посетителя после снятия ledgerLock: пока консоль
+// печатает строки, выдачи и возвраты из других потоков не ждут. Посетитель здесь сам выдаёт или возвращает книгу
+// из другого потока и ждёт её
+class LibraryEngineLoanVisitorTest {
+    private static final long WAIT_SECONDS = 5;
+
+    private final ExecutorService other = Executors.newSingleThreadExecutor();
+    private final long[] now = {1_700_000_000_000L};
+    private final List<String> warnings = new ArrayList<>();
+    private final LibraryEngine engine = new LibraryEngine("TEST", 0.5, warnings::add, () -> now[0]);
+
+    @AfterEach
+    void stopOther() {
+        other.shutdownNow();
+    }
+
+    @Test
+    void overdueVisitorDoesNotBlockCirculation() throws Exception {
+        int user = (Integer) engine.addUser("Имя", "Фамилия", 1990, "+7", "u@mail").get("id");
+        int late = engine.addBook("Просроченная", "Автор", 2000, "978-1", "Роман");
+        int early = engine.addBook("Вторая", "Автор", 2000, "978-2", "Роман");
+        int fresh = engine.addBook("Свежая", "Автор", 2000, "978-3", "Роман");
+        engine.borrow(late, user);
+        now[0] += LibraryEngine.DAY_MILLIS;
+        engine.borrow(early, user);
+        now[0] += (LibraryEngine.LOAN_DAYS + 2) * LibraryEngine.DAY_MILLIS;
+
+        List<Integer> visited = new ArrayList<>();
+        int found = engine.forEachOverdue((books, slot, userId, dueDate) -> {
+            visited.add(books.id(slot));
+            assertEquals(user, userId);
+            // при удержанной ledgerLock выдача в другом потоке ждала бы до конца обхода
+            Future<?> borrow = other.submit(() -> {
+                if (engine.borrowerOf(fresh) == BookStore.NO_USER) {
+                    engine.borrow(fresh, user);
+                }
+            });
+            try {
+                borrow.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new AssertionError("выдача ждёт обхода просроченных", e);
+            }
+        });
+
+        assertEquals(2, found);
+        assertEquals(List.of(late, early), visited);
+        assertEquals(user, engine.borrowerOf(fresh));
+        assertEquals(List.of(), warnings);
+    }
+
+    @Test
+    void loansOfUserVisitorDoesNotBlockCirculation() throws Exception {
+        int user = (Integer) engine.addUser("Имя", "Фамилия", 1990, "+7", "u@mail").get("id");
+        int first = engine.addBook("Первая", "Автор", 2000, "978-1", "Роман");
+        int second = engine.addBook("Вторая", "Автор", 2000, "978-2", "Роман");
+        engine.borrow(first, user);
+        now[0] += LibraryEngine.DAY_MILLIS;
+        engine.borrow(second, user);
+
+        List<Integer> visited = new ArrayList<>();
+        List<Long> dueDates = new ArrayList<>();
+        int found = engine.forEachLoanOf(user, (books, slot, userId, dueDate) -> {
+            int bookId = books.id(slot);
+            visited.add(bookId);
+            dueDates.add(dueDate);
+            Future<?> giveBack = other.submit(() -> engine.returnBook(bookId));
+            try {
+                giveBack.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new AssertionError("возврат ждёт обхода книг читателя", e);
+            }
+        });
+
+        assertEquals(2, found);
+        // от последней выдачи к первой, срок - дата выдачи + LOAN_DAYS
+        assertEquals(List.of(second, first), visited);
+        assertEquals(now[0] + LibraryEngine.LOAN_DAYS * LibraryEngine.DAY_MILLIS, dueDates.get(0));
+        assertEquals(0, engine.forEachLoanOf(user, (books, slot, userId, dueDate) -> { }));
+        assertEquals(List.of(), warnings);
+    }
+}
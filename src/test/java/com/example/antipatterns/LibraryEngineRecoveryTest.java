@@ -0,0 +1,100 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Восстановление из журнала предзаписи после падения (движок не закрыт, снимка нет): проигранное состояние
+// совпадает с тем, что было до падения, хотя часы при восстановлении ушли вперёд
+class LibraryEngineRecoveryTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayKeepsRemovalTimeAndReportsTornTail() throws IOException {
+        long[] now = {1_700_000_000_000L};
+        List<String> warnings = new ArrayList<>();
+        LibraryEngine crashed = new LibraryEngine("TEST", 0.5, warnings::add, () -> now[0]);
+        crashed.open(directory, false, Integer.MAX_VALUE);
+        int removed = crashed.addBook("Книга", "Автор", 1999, "978-1", "Роман");
+        int returned = crashed.addBook("Другая", "Автор", 2001, "978-2", "Роман");
+        int user = (Integer) crashed.addUser("Имя", "Фамилия", 1990, "+7", "u@mail").get("id");
+        crashed.borrow(removed, user);
+        crashed.borrow(returned, user);
+        now[0] += 3 * LibraryEngine.DAY_MILLIS;
+        assertTrue(crashed.removeBook(removed));
+        now[0] += 2 * LibraryEngine.DAY_MILLIS;
+        crashed.returnBook(returned);
+        List<String> before = userRows(crashed, "before");
+
+        // обрыв посреди следующей записи
+        Files.write(directory.resolve("wal.log"), new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+        now[0] += 40 * LibraryEngine.DAY_MILLIS;
+        LibraryEngine recovered = new LibraryEngine("TEST", 0.5, warnings::add, () -> now[0]);
+        try {
+            assertEquals(7, recovered.open(directory, false, Integer.MAX_VALUE));
+            assertEquals(before, userRows(recovered, "after"));
+            assertEquals(List.of("Журнал изменений: отброшен неполный хвост 6 байт"), warnings);
+        } finally {
+            recovered.close();
+        }
+    }
+
+    // Места под выдачу книг других секций (reserve, ShardedLibrary) занимают лимит читателя и переживают падение;
+    // выдача своей книги после reserve не дублирует её в списке
+    @Test
+    void replayKeepsReservationsForOtherShards() throws IOException {
+        long[] now = {1_700_000_000_000L};
+        List<String> warnings = new ArrayList<>();
+        LibraryEngine crashed = new LibraryEngine("TEST", 0.5, warnings::add, () -> now[0]);
+        crashed.open(directory, false, Integer.MAX_VALUE);
+        int book = crashed.addBook("Книга", "Автор", 1999, "978-1", "Роман");
+        int user = (Integer) crashed.addUser("Имя", "Фамилия", 1990, "+7", "u@mail").get("id");
+        crashed.reserve(user, book);
+        crashed.lend(book, user);
+        for (int remote = 1; remote < LibraryEngine.DEFAULT_BORROW_LIMIT; remote++) {
+            crashed.reserve(user, 1000 + remote);
+        }
+        assertEquals("Превышен лимит книг (макс: 7)",
+                assertThrows(IllegalArgumentException.class, () -> crashed.reserve(user, 2000)).getMessage());
+        assertTrue(crashed.release(user, 1001));
+        assertEquals(List.of(), crashed.verifyInvariants());
+
+        LibraryEngine recovered = new LibraryEngine("TEST", 0.5, warnings::add, () -> now[0]);
+        try {
+            recovered.open(directory, false, Integer.MAX_VALUE);
+            assertEquals(List.of(book, 1002, 1003, 1004, 1005, 1006), recovered.findUser(user).get("borrowedBooks"));
+            assertEquals(List.of(), recovered.verifyInvariants());
+            assertEquals("Книга уже забронирована",
+                    assertThrows(IllegalArgumentException.class, () -> recovered.reserve(user, 1002)).getMessage());
+            recovered.returnBook(book);
+            // возврат в той же секции уже убрал книгу из списка
+            assertFalse(recovered.release(user, book));
+            assertEquals(1, recovered.statistics().totalBooks() - recovered.statistics().activeLoans());
+            assertEquals(List.of(), warnings);
+        } finally {
+            recovered.close();
+        }
+    }
+
+    // Строки читателей из CSV отчёта: выдачи и суммарная длительность закрытых бронирований
+    private List<String> userRows(LibraryEngine engine, String name) throws IOException {
+        Path users = null;
+        for (Path file : engine.report(1).writeCsv(directory.resolve(name))) {
+            if (file.getFileName().toString().endsWith("-users.csv")) {
+                users = file;
+            }
+        }
+        return Files.readAllLines(users);
+    }
+}
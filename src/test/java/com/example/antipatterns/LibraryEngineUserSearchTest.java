@@ -0,0 +1,168 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+// Поиск пользователей через n-граммный индекс против прежнего перебора с двенадцатью попытками (findUser до индекса):
+// случайные имена и фамилии из кириллицы и латиницы в обоих регистрах, запросы - куски имени, фамилии и полного
+// имени в обоих порядках со случайным регистром. Прежний перебор опирался на String.toLowerCase() в локали
+// по умолчанию, а индекс приводит регистр посимвольно (NgramIndex.fold); в Locale.ROOT на таких именах
+// результаты совпадают, а различия вне её закреплены отдельно
+class LibraryEngineUserSearchTest {
+    private static final String LETTERS = "абвгдеёжзийклмнопрстуфхцчшщъыьэюяabcdefghijklmnopqrstuvwxyz";
+
+    private final Locale defaultLocale = Locale.getDefault();
+    private final List<String> warnings = new ArrayList<>();
+    private final LibraryEngine engine = new LibraryEngine("TEST", 0.5, warnings::add, () -> 1_700_000_000_000L);
+
+    @AfterEach
+    void restoreLocale() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    void indexMatchesBaselineOnMixedCaseNames() {
+        Locale.setDefault(Locale.ROOT);
+        Random random = new Random(19);
+        List<HashMap<String, Object>> users = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            users.add(engine.addUser(randomName(random), randomName(random), 1990, "+7", "u@mail"));
+        }
+        // удаление переставляет позиции в списке пользователей и убирает id из индекса
+        for (int i = 0; i < 60; i++) {
+            HashMap<String, Object> removed = users.remove(random.nextInt(users.size()));
+            assertTrue(engine.removeUser((Integer) removed.get("id")));
+        }
+
+        for (int round = 0; round < 2_000; round++) {
+            HashMap<String, Object> user = users.get(random.nextInt(users.size()));
+            String name = (String) user.get("name");
+            String surname = (String) user.get("surname");
+            String source;
+            switch (random.nextInt(5)) {
+                case 0: source = name; break;
+                case 1: source = surname; break;
+                case 2: source = name + " " + surname; break;
+                case 3: source = surname + " " + name; break;
+                default: source = randomName(random);
+            }
+            int from = random.nextInt(source.length());
+            int to = from + 1 + random.nextInt(source.length() - from);
+            String query = flipCase(source.substring(from, to), random);
+            assertEquals(baseline(users, query), indexed(query), "запрос '" + query + "'");
+        }
+        assertEquals(baseline(users, ""), indexed(""));
+        assertEquals(List.of(), warnings);
+    }
+
+    @Test
+    void indexFoldsCaseIndependentlyOfLocale() {
+        HashMap<String, Object> oleg = engine.addUser("Oleg", "IVANOV", 1990, "+7", "o@mail");
+        HashMap<String, Object> ilya = engine.addUser("İlya", "Petrov", 1990, "+7", "i@mail");
+        List<HashMap<String, Object>> users = List.of(oleg, ilya);
+
+        // в турецкой локали "I".toLowerCase() - это 'ı' без точки, и полное имя "oleg ıvanov" не содержит "g i"
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        assertEquals(List.of(), baseline(users, "g i"));
+        assertEquals(List.of(oleg.get("id")), indexed("g i"));
+        Locale.setDefault(Locale.ROOT);
+        assertEquals(List.of(oleg.get("id")), baseline(users, "g i"));
+
+        // String.toLowerCase() превращает 'İ' в два символа "i̇", Character.toLowerCase - в 'i'
+        assertFalse(baseline(users, "il").contains(ilya.get("id")));
+        assertEquals(List.of(ilya.get("id")), indexed("il"));
+        assertEquals(List.of(ilya.get("id")), indexed("İL"));
+    }
+
+    private List<Object> indexed(String query) {
+        List<Object> ids = new ArrayList<>();
+        // без сортировки: движок сам отдаёт найденных по id, в том числе после удалений
+        engine.searchUsers(query, user -> ids.add(user.get("id")));
+        return ids;
+    }
+
+    private static List<Object> baseline(List<HashMap<String, Object>> users, String query) {
+        List<Object> ids = new ArrayList<>();
+        for (HashMap<String, Object> user : users) {
+            if (baselineMatches(user, query)) {
+                ids.add(user.get("id"));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    // Двенадцать попыток findUser до n-граммного индекса, логика та же
+    private static boolean baselineMatches(HashMap<String, Object> user, String query) {
+        String name = (String) user.get("name");
+        String surname = (String) user.get("surname");
+        boolean match = false;
+        if (name != null && name.equals(query)) match = true;
+        if (!match && surname != null && surname.equals(query)) match = true;
+        if (!match && name != null && name.equalsIgnoreCase(query)) match = true;
+        if (!match && surname != null && surname.equalsIgnoreCase(query)) match = true;
+        if (!match && name != null && name.contains(query)) match = true;
+        if (!match && surname != null && surname.contains(query)) match = true;
+        if (!match && name != null && name.toLowerCase().contains(query.toLowerCase())) match = true;
+        if (!match && surname != null && surname.toLowerCase().contains(query.toLowerCase())) match = true;
+        if (!match && name != null && surname != null) {
+            String fullName = name + " " + surname;
+            if (fullName.toLowerCase().contains(query.toLowerCase())) match = true;
+        }
+        if (!match && name != null && surname != null) {
+            String fullName = surname + " " + name;
+            if (fullName.toLowerCase().contains(query.toLowerCase())) match = true;
+        }
+        if (!match && name != null && myOwnContains(name, query)) match = true;
+        if (!match && surname != null && myOwnContains(surname, query)) match = true;
+        return match;
+    }
+
+    private static boolean myOwnContains(String haystack, String needle) {
+        if (needle.length() > haystack.length()) {
+            return false;
+        }
+        for (int i = 0; i <= haystack.length() - needle.length(); i++) {
+            boolean found = true;
+            for (int j = 0; j < needle.length() && found; j++) {
+                char h = haystack.charAt(i + j);
+                char n = needle.charAt(j);
+                if (h >= 'A' && h <= 'Z') h = (char) (h + 32);
+                if (n >= 'A' && n <= 'Z') n = (char) (n + 32);
+                found = h == n;
+            }
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Короткий алфавит даёт много общих n-грамм между пользователями
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int length = 2 + random.nextInt(8);
+        for (int i = 0; i < length; i++) {
+            name.append(LETTERS.charAt(random.nextInt(random.nextBoolean() ? 8 : LETTERS.length())));
+        }
+        return flipCase(name.toString(), random);
+    }
+
+    private static String flipCase(String text, Random random) {
+        StringBuilder flipped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            flipped.append(random.nextBoolean() ? Character.toUpperCase(c) : Character.toLowerCase(c));
+        }
+        return flipped.toString();
+    }
+}
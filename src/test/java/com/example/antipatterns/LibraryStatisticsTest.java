@@ -0,0 +1,87 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// Счётчики LibraryStatistics против полного пересчёта (verifyStatistics) после выдач, возвратов со штрафами,
+// начисления по расписанию и удалений
+class LibraryStatisticsTest {
+    private static final double FINE_PER_DAY = 0.5;
+
+    @Test
+    void countersMatchFullScanAfterMixedOperations() {
+        long[] now = {1_700_000_000_000L};
+        List<String> warnings = new ArrayList<>();
+        LibraryEngine engine = new LibraryEngine("TEST", FINE_PER_DAY, warnings::add, () -> now[0]);
+        int[] books = new int[40];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = engine.addBook("Книга " + i, "Автор " + i % 7, 1900 + i, "978-" + i, "Роман");
+        }
+        int[] users = new int[10];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = (Integer) engine.addUser("Имя" + i, "Фамилия" + i, 1990, "+7" + i, "u" + i + "@mail").get("id");
+        }
+        for (int i = 0; i < 30; i++) {
+            engine.borrow(books[i], users[i % users.length]);
+        }
+        engine.verifyStatistics();
+
+        // часть выдач возвращается с просрочкой, по остальным штраф начисляет планировщик
+        now[0] += (LibraryEngine.LOAN_DAYS + 13) * LibraryEngine.DAY_MILLIS;
+        double returnedFines = 0;
+        for (int i = 0; i < 10; i++) {
+            returnedFines += engine.returnBook(books[i]).fine();
+        }
+        assertTrue(returnedFines > 0);
+        assertTrue(engine.accrueOverdueFines() > 0);
+        now[0] += 3 * LibraryEngine.DAY_MILLIS;
+        engine.accrueOverdueFines();
+        for (int i = 10; i < 15; i++) {
+            engine.returnBook(books[i]);
+        }
+        assertTrue(engine.removeBook(books[20]));
+        assertTrue(engine.removeBook(books[35]));
+        int idle = (Integer) engine.addUser("Имя", "Без выдач", 2000, "+70", "idle@mail").get("id");
+        assertTrue(engine.removeUser(idle));
+        engine.verifyStatistics();
+
+        LibraryStatistics stats = engine.statistics();
+        assertEquals(38, stats.totalBooks());
+        assertEquals(users.length, stats.totalUsers());
+        assertEquals(14, stats.activeLoans());
+        assertEquals(stats.activeLoans(), stats.borrowedBooks());
+        assertTrue(stats.totalFines() > returnedFines);
+        assertEquals(List.of(), warnings);
+    }
+
+    // Сумма double зависит от порядка сложения; в копейках счётчик и пересчёт совпадают точно при любых суммах
+    @Test
+    void fineTotalsStayExactForLargeSums() {
+        LibraryStatistics stats = new LibraryStatistics();
+        long kopecks = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            double amount = 1_000_000.07 + i % 1000 * 0.01;
+            stats.fineAdded(amount);
+            kopecks += LibraryStatistics.kopecks(amount);
+        }
+        stats.verify(0, 0, 0, kopecks, 0);
+        assertEquals(kopecks / 100.0, stats.totalFines());
+    }
+
+    @Test
+    void verifyReportsEveryMismatch() {
+        LibraryStatistics stats = new LibraryStatistics();
+        stats.bookAdded();
+        stats.userAdded();
+        stats.fineAdded(10.5);
+        stats.verify(1, 1, 0, 1050, 1);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> stats.verify(2, 1, 0, 1049, 1));
+        assertTrue(e.getMessage().contains("книг 1 != 2"), e.getMessage());
+        assertTrue(e.getMessage().contains("штрафов 10.50 != 10.49"), e.getMessage());
+    }
+}
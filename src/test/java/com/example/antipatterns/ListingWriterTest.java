@@ -0,0 +1,92 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// Байты ListingWriter против String.getBytes(UTF_8) на самом маленьком буфере: строки с кириллицей,
+// символами вне BMP и одиночными суррогатами сдвигаются по всем смещениям, так что пары суррогатов
+// попадают на границу пачки и сброса буфера. Числа - против Long.toString и String.format
+class ListingWriterTest {
+    private static final int BUFFER_BYTES = 64;
+
+    @Test
+    void textMatchesStringEncodingAcrossBufferBoundaries() throws IOException {
+        String sample = "Война и мир 📚 — Толстой 𝄞𝄞 €" + "😀".repeat(30) + "x\uD800y\uDC00z" + "\uD83D\uD83D\uDE00".repeat(20) + "\uD83D";
+        for (int shift = 0; shift < BUFFER_BYTES; shift++) {
+            String text = "a".repeat(shift) + sample;
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), write(text), "сдвиг " + shift);
+        }
+    }
+
+    @Test
+    void randomTextMatchesStringEncoding() throws IOException {
+        Random random = new Random(22);
+        char[] alphabet = "aЯ€😀𐀀".toCharArray();
+        for (int round = 0; round < 500; round++) {
+            char[] chars = new char[random.nextInt(300)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String text = new String(chars);
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), write(text), "строка " + round);
+        }
+    }
+
+    @Test
+    void numbersMatchJdkFormatting() throws IOException {
+        long[] values = {0, 7, -7, 9, 10, 99, 100, Integer.MAX_VALUE, Integer.MAX_VALUE + 1L, -Integer.MAX_VALUE - 1L,
+                Long.MAX_VALUE, Long.MIN_VALUE};
+        StringBuilder expected = new StringBuilder();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ListingWriter out = new ListingWriter(bytes, BUFFER_BYTES, true)) {
+            for (long value : values) {
+                out.number(value).ascii(' ');
+                expected.append(value).append(' ');
+            }
+            for (double value : new double[] {0, 0.04, 0.05, 2.25, -3.96, 1234.5, 1e20, Double.NaN}) {
+                out.oneDecimal(value).ascii(' ').decimal(value, 2).ascii(' ').decimal(value, 0).ascii(' ');
+                expected.append(String.format("%.1f", value)).append(' ')
+                        .append(String.format(Locale.ROOT, "%.2f", value)).append(' ')
+                        .append(String.format(Locale.ROOT, "%.0f", value)).append(' ');
+            }
+            assertEquals(expected.toString().getBytes(StandardCharsets.UTF_8).length, out.bytesWritten());
+        }
+        assertEquals(expected.toString(), bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void negativeValueRoundedToZeroHasNoSign() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ListingWriter out = new ListingWriter(bytes, BUFFER_BYTES, true)) {
+            // в отличие от String.format, который пишет "-0.0"
+            out.decimal(-0.04, 1).ascii(' ').decimal(-0.04, 0).ascii(' ').decimal(-0.04, 2);
+        }
+        assertEquals("0.0 0 -0.04", bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void csvAndJsonEscaping() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ListingWriter out = new ListingWriter(bytes, BUFFER_BYTES, true)) {
+            out.csvField("просто").ascii(',').csvField("a,\"b\"").ascii(',').csvField(null).newLine();
+            out.jsonString("Кавычка \" и \\ \n\t\u0001").ascii(' ').jsonString(null);
+        }
+        assertEquals("просто,\"a,\"\"b\"\"\",\n\"Кавычка \\\" и \\\\ \\n\\t\\u0001\" null",
+                bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] write(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ListingWriter out = new ListingWriter(bytes, BUFFER_BYTES, true)) {
+            out.text(text);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Снимок: запись SnapshotWriter, отображение MappedSnapshot и загрузка BookStore и LibraryEngine.
+// Отдельно - снимок книг до словарей (автор и жанр строками у каждой книги) и изменение слотов,
+// строки которых ещё лежат в отображении
+class MappedSnapshotTest {
+    @TempDir
+    Path directory;
+
+    private interface Columns {
+        void write(SnapshotWriter out) throws IOException;
+    }
+
+    @Test
+    void columnsRoundTrip() throws IOException {
+        Path file = write("columns.bin", 42, out -> {
+            out.intColumn("ints", 3, i -> i * 10 - 5);
+            out.stringColumn("strings", 4, i -> new String[] {"Война и мир", null, "", "ёж 📚"}[i]);
+            out.longColumn("longs", 2, i -> Long.MIN_VALUE + i);
+            out.doubleColumn("doubles", 1, i -> 4.5);
+        });
+        MappedSnapshot in = new MappedSnapshot(file);
+        try {
+            assertEquals(42, in.lsn());
+            assertArrayEquals(new int[] {-5, 5, 15}, in.ints("ints"));
+            assertArrayEquals(new long[] {Long.MIN_VALUE, Long.MIN_VALUE + 1}, in.longs("longs"));
+            assertArrayEquals(new double[] {4.5}, in.doubles("doubles"));
+            MappedSnapshot.StringColumn strings = in.strings("strings");
+            assertEquals(4, strings.size());
+            // null записывается пустой строкой
+            assertEquals(List.of("Война и мир", "", "", "ёж 📚"),
+                    List.of(strings.get(0), strings.get(1), strings.get(2), strings.get(3)));
+            assertTrue(in.has("ints"));
+            assertFalse(in.has("missing"));
+            assertThrows(IOException.class, () -> in.ints("missing"));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    void unfinishedSnapshotIsRejected() throws IOException {
+        Path file = write("full.bin", 1, out -> out.intColumn("ints", 100, i -> i));
+        byte[] bytes = Files.readAllBytes(file);
+        Path cut = directory.resolve("cut.bin");
+        Files.write(cut, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> new MappedSnapshot(cut));
+    }
+
+    @Test
+    void bookStoreRoundTripAndMutationOfMappedSlots() throws IOException {
+        BookStore books = new BookStore();
+        for (int i = 0; i < 40; i++) {
+            books.add(100 + i, "Книга " + i, "Автор " + i % 3, 1900 + i, "978-" + i, i % 2 == 0 ? "Роман" : null, i / 10.0);
+        }
+        books.markBorrowed(books.indexOf(105), 7, 1_700_000_000_000L);
+        Path file = write("books.bin", 0, books::writeTo);
+
+        BookStore loaded = new BookStore();
+        MappedSnapshot in = new MappedSnapshot(file);
+        loaded.readFrom(in);
+        in.close();
+        assertSameBooks(books, loaded);
+
+        // изменение и переезд слотов переносят строки из отображения в массивы
+        loaded.setTitle(loaded.indexOf(110), "Новое название");
+        loaded.removeAt(loaded.indexOf(101));
+        assertEquals("Новое название", loaded.title(loaded.indexOf(110)));
+        assertEquals("Книга 39", loaded.title(loaded.indexOf(139)));
+        assertEquals("978-39", loaded.isbn(loaded.indexOf(139)));
+        assertEquals(-1, loaded.indexOf(101));
+        assertEquals(39, loaded.size());
+        assertEquals(38, loaded.countAvailable());
+    }
+
+    @Test
+    void legacySnapshotWithoutDictionariesIsEncodedOnLoad() throws IOException {
+        String[] authors = {"Толстой", "Пушкин", "Толстой", null};
+        String[] genres = {"Роман", "Поэзия", "Роман", "Роман"};
+        IntSlotIndex index = new IntSlotIndex();
+        for (int i = 0; i < authors.length; i++) {
+            index.put(i + 1, i);
+        }
+        Path file = write("legacy.bin", 0, out -> {
+            out.intColumn("book.id", 4, i -> i + 1);
+            out.intColumn("book.year", 4, i -> 1800 + i);
+            out.doubleColumn("book.rating", 4, i -> 0);
+            out.intColumn("book.borrowedBy", 4, i -> BookStore.NO_USER);
+            out.longColumn("book.borrowDate", 4, i -> BookStore.NO_DATE);
+            out.longColumn("book.available", 1, w -> 0b1111);
+            out.stringColumn("book.title", 4, i -> "Книга " + i);
+            out.stringColumn("book.isbn", 4, i -> "isbn-" + i);
+            out.stringColumn("book.author", 4, i -> authors[i]);
+            out.stringColumn("book.genre", 4, i -> genres[i]);
+            index.writeTo(out, "book.index");
+        });
+
+        BookStore loaded = new BookStore();
+        MappedSnapshot in = new MappedSnapshot(file);
+        loaded.readFrom(in);
+        in.close();
+        assertEquals(4, loaded.size());
+        assertEquals("Толстой", loaded.author(loaded.indexOf(3)));
+        assertEquals(loaded.authorCode(0), loaded.authorCode(2));
+        // в старом формате null не отличить от пустой строки
+        assertEquals("", loaded.author(3));
+        assertEquals(2, loaded.genreCount());
+        assertEquals(loaded.codeOfGenre("Роман"), loaded.genreCode(3));
+        assertEquals("Книга 1", loaded.title(loaded.indexOf(2)));
+        assertEquals(4, loaded.countAvailable());
+    }
+
+    @Test
+    void engineReopensFromSnapshot() throws IOException {
+        long[] now = {1_700_000_000_000L};
+        List<String> warnings = new ArrayList<>();
+        LibraryEngine engine = new LibraryEngine("TEST", 0.5, warnings::add, () -> now[0]);
+        engine.open(directory, false, Integer.MAX_VALUE);
+        int kept = engine.addBook("Анна Каренина", "Толстой", 1877, "978-1", "Роман");
+        int removed = engine.addBook("Евгений Онегин", "Пушкин", 1833, "978-2", "Поэзия");
+        int user = (Integer) engine.addUser("Имя", "Фамилия", 1990, "+7", "u@mail").get("id");
+        engine.borrow(kept, user);
+        engine.removeBook(removed);
+        engine.snapshot();
+        LibraryStatistics before = engine.statistics();
+        List<String> found = titles(engine, "карен");
+        engine.close();
+
+        LibraryEngine reopened = new LibraryEngine("TEST", 0.5, warnings::add, () -> now[0]);
+        try {
+            reopened.open(directory, false, Integer.MAX_VALUE);
+            assertEquals(user, reopened.borrowerOf(kept));
+            assertEquals(found, titles(reopened, "карен"));
+            assertEquals(List.of(), titles(reopened, "онегин"));
+            LibraryStatistics after = reopened.statistics();
+            assertEquals(before.totalBooks(), after.totalBooks());
+            assertEquals(before.activeLoans(), after.activeLoans());
+            assertEquals(List.of(), reopened.verifyInvariants());
+            // новые id продолжают нумерацию, а не переиспользуют удалённый
+            assertTrue(reopened.addBook("Новая", "Автор", 2024, "978-3", "Роман") > removed);
+        } finally {
+            reopened.close();
+        }
+        assertEquals(List.of(), warnings);
+    }
+
+    private Path write(String name, long lsn, Columns columns) throws IOException {
+        Path file = directory.resolve(name);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            SnapshotWriter out = new SnapshotWriter(channel, lsn);
+            columns.write(out);
+            out.finish();
+        }
+        return file;
+    }
+
+    private static List<String> titles(LibraryEngine engine, String query) {
+        List<String> titles = new ArrayList<>();
+        engine.searchBooks(query, (books, slot) -> titles.add(books.title(slot)));
+        return titles;
+    }
+
+    private static void assertSameBooks(BookStore expected, BookStore actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int slot = 0; slot < expected.size(); slot++) {
+            assertEquals(expected.id(slot), actual.id(slot));
+            assertEquals(slot, actual.indexOf(expected.id(slot)));
+            assertEquals(expected.title(slot), actual.title(slot));
+            assertEquals(expected.author(slot), actual.author(slot));
+            assertEquals(expected.year(slot), actual.year(slot));
+            assertEquals(expected.isbn(slot), actual.isbn(slot));
+            assertEquals(expected.genre(slot), actual.genre(slot));
+            assertEquals(expected.rating(slot), actual.rating(slot));
+            assertEquals(expected.borrowedBy(slot), actual.borrowedBy(slot));
+            assertEquals(expected.borrowDate(slot), actual.borrowDate(slot));
+            assertEquals(expected.isAvailable(slot), actual.isAvailable(slot));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// Поиск через NgramIndex (candidates + проверка containsFolded для длинных запросов) против полного перебора
+// полей после случайных add/remove/update. Алфавит маленький и смешанный (латиница и кириллица в обоих регистрах),
+// чтобы частые n-граммы набирали списки длиннее DIRECT_REMOVE_MAX и регистр складывался на кириллице
+class NgramIndexTest {
+    private static final String ALPHABET = "aAbBcCаАбБвВёЁ ";
+    private static final int DOCUMENTS = 300;
+
+    @Test
+    void foldLowersLatinAndCyrillic() {
+        assertEquals("война и мир, war", NgramIndex.fold("ВОЙНА и Мир, WaR"));
+        assertEquals("ёж", NgramIndex.fold("ЁЖ"));
+        assertEquals("", NgramIndex.fold(null));
+        assertTrue(NgramIndex.containsFolded("Сказка о ЦАРЕ", "царе"));
+        assertTrue(NgramIndex.containsFolded("Лев", ' ', "ТОЛСТОЙ", "в т"));
+    }
+
+    @Test
+    void candidatesMatchBruteForceAfterMixedUpdates() {
+        Random random = new Random(7);
+        NgramIndex index = new NgramIndex();
+        Map<Integer, String[]> documents = new HashMap<>();
+        for (int step = 0; step < 6_000; step++) {
+            int id = random.nextInt(DOCUMENTS);
+            String[] old = documents.get(id);
+            int action = random.nextInt(3);
+            if (old == null) {
+                String[] fields = randomFields(random);
+                index.add(id, fields);
+                documents.put(id, fields);
+            } else if (action == 0) {
+                index.remove(id, old);
+                documents.remove(id);
+            } else {
+                String[] fields = action == 1 ? randomFields(random) : new String[] {old[0], randomText(random)};
+                index.update(id, old, fields);
+                documents.put(id, fields);
+            }
+            if (step % 50 == 0) {
+                for (int q = 0; q < 10; q++) {
+                    String query = randomText(random, 1 + random.nextInt(5));
+                    assertEquals(bruteForce(documents, query), search(index, documents, query), "запрос '" + query + "'");
+                }
+            }
+        }
+        assertNull(index.candidates(""));
+        index.clear();
+        assertArrayEquals(new int[0], index.candidates("а"));
+    }
+
+    private static List<Integer> search(NgramIndex index, Map<Integer, String[]> documents, String query) {
+        String folded = NgramIndex.fold(query);
+        List<Integer> found = new ArrayList<>();
+        for (int id : index.candidates(folded)) {
+            if (!NgramIndex.needsVerification(folded) || matches(documents.get(id), folded)) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    private static List<Integer> bruteForce(Map<Integer, String[]> documents, String query) {
+        String folded = NgramIndex.fold(query);
+        List<Integer> found = new ArrayList<>();
+        for (int id = 0; id < DOCUMENTS; id++) {
+            String[] fields = documents.get(id);
+            if (fields != null && matches(fields, folded)) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    private static boolean matches(String[] fields, String folded) {
+        for (String field : fields) {
+            if (NgramIndex.containsFolded(field, folded)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] randomFields(Random random) {
+        return new String[] {randomText(random), randomText(random)};
+    }
+
+    private static String randomText(Random random) {
+        return randomText(random, random.nextInt(12));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+}
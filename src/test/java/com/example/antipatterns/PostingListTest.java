@@ -0,0 +1,39 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+// PostingList против TreeSet: случайные добавления и удаления на списках длиннее DIRECT_REMOVE_MAX,
+// где удаления идут через буфер и уплотнение, и повторное добавление отложенно удалённых id
+class PostingListTest {
+    private static final int ID_RANGE = 500;
+
+    @Test
+    void matchesSortedSetUnderMixedAddAndRemove() {
+        Random random = new Random(3);
+        PostingList list = new PostingList();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int step = 0; step < 20_000; step++) {
+            int id = random.nextInt(ID_RANGE);
+            // перекос к добавлению держит список в сотнях id, затем к удалению - опускает его ниже порога
+            boolean add = random.nextInt(100) < (step / 5_000 % 2 == 0 ? 70 : 30);
+            if (add) {
+                assertEquals(expected.add(id), list.add(id), "add " + id);
+            } else {
+                assertEquals(expected.remove(id), list.remove(id), "remove " + id);
+            }
+            assertEquals(expected.size(), list.size());
+            assertEquals(expected.isEmpty(), list.isEmpty());
+            if (step % 97 == 0) {
+                assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), list.toArray());
+                for (int probe = 0; probe < ID_RANGE; probe += 7) {
+                    assertEquals(expected.contains(probe), list.contains(probe), "contains " + probe);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Секционированная библиотека на трёх процессах-секциях (ShardedLibrary.launch) против одной библиотеки в пакетном
+// режиме на том же сценарии: ответы совпадают строка в строку - операции по id, найденные в том же порядке
+// (в том числе после удалений, которые переставляют читателей одной библиотеки), отказы выдачи по лимиту читателя
+// из другой секции и STATS с суммой выдач. После остановки каталог каждой секции открывается напрямую:
+// книга и читатель лежат только в секции-владельце, бронирование - в секции книги, место в лимите - в секции читателя
+class ShardedLibraryTest {
+    private static final int SHARDS = 3;
+    private static final int BOOKS = 30;
+    private static final int USERS = 20;
+    private static final String[] PROPERTIES = {"library.data.dir", "library.history.dir", "library.audit.file",
+            "library.metrics.file", "library.metrics.dumpSeconds", "library.fines.accrualSeconds", "library.shard.jvmOptions"};
+
+    @TempDir
+    Path directory;
+
+    private LibraryGodObject library;
+
+    @BeforeEach
+    void openLibrary() {
+        Path single = directory.resolve("single");
+        System.setProperty("library.data.dir", single.resolve("data").toString());
+        System.setProperty("library.history.dir", single.resolve("history").toString());
+        System.setProperty("library.audit.file", single.resolve("audit.journal").toString());
+        System.setProperty("library.metrics.file", single.resolve("metrics.txt").toString());
+        System.setProperty("library.metrics.dumpSeconds", "0");
+        System.setProperty("library.fines.accrualSeconds", "0");
+        System.setProperty("library.shard.jvmOptions",
+                "-Xmx128m -Dlibrary.metrics.dumpSeconds=0 -Dlibrary.fines.accrualSeconds=0");
+        library = new LibraryGodObject(new PrintStream(PrintStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void closeLibrary() {
+        library.shutdown();
+        for (String property : PROPERTIES) {
+            System.clearProperty(property);
+        }
+    }
+
+    @Test
+    void shardsAnswerLikeOneLibrary() throws IOException {
+        String script = script();
+        StringWriter expected = new StringWriter();
+        try (BufferedWriter out = new BufferedWriter(expected)) {
+            new BatchCommandRunner(library).run(new BufferedReader(new StringReader(script)), out);
+        }
+        StringWriter actual = new StringWriter();
+        ShardedLibrary sharded = ShardedLibrary.launch(SHARDS, directory.resolve("shards"));
+        try (sharded; BufferedWriter out = new BufferedWriter(actual)) {
+            sharded.run(new BufferedReader(new StringReader(script)), out);
+        }
+
+        assertEquals(expected.toString(), actual.toString());
+        // без опечаток в сценарии ответы совпали бы и на одних ERR
+        assertEquals(4, count(actual.toString(), "ERR Превышен лимит книг"));
+        assertEquals(1, count(actual.toString(), "OK books=29 available=22 borrowed=7 loans=7 users=18 fines=0.00"));
+
+        List<Integer> held = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            List<String> warnings = new ArrayList<>();
+            LibraryEngine engine = new LibraryEngine("TEST", 0.5, warnings::add);
+            engine.open(directory.resolve("shards").resolve("shard-" + shard).resolve("data"), false, Integer.MAX_VALUE);
+            try {
+                for (int id = 1; id <= BOOKS; id++) {
+                    boolean owner = sharded.shardOf(id) == shard;
+                    assertEquals(owner && id != 4, engine.hasBook(id), "книга " + id + " в секции " + shard);
+                    if (owner && engine.borrowerOf(id) > 0) {
+                        assertEquals(1, engine.borrowerOf(id));
+                        held.add(id);
+                    }
+                }
+                for (int id = 1; id <= USERS; id++) {
+                    boolean owner = sharded.shardOf(id) == shard;
+                    assertEquals(owner && id != 3 && id != 7, engine.findUser(id) != null, "читатель " + id + " в секции " + shard);
+                }
+                if (sharded.shardOf(1) == shard) {
+                    // порядок выдач; 2 возвращена, 4 удалена
+                    assertEquals(List.of(1, 3, 5, 6, 7, 9, 20), engine.findUser(1).get("borrowedBooks"));
+                }
+                assertEquals(List.of(), engine.verifyInvariants());
+                assertEquals(List.of(), warnings);
+            } finally {
+                engine.close();
+            }
+        }
+        held.sort(null);
+        assertEquals(List.of(1, 3, 5, 6, 7, 9, 20), held);
+    }
+
+    // Книги с повторяющимися названиями (порядок по id при равных) и читатели, часть которых удаляется
+    private static String script() {
+        List<String> lines = new ArrayList<>();
+        lines.add("LOGIN aboba");
+        for (int i = 1; i <= BOOKS; i++) {
+            lines.add("ADDBOOK Книга " + (i % 7) + "|Автор " + (i % 4) + "|" + (1900 + i) + "|978-" + i + "|Роман");
+        }
+        for (int i = 1; i <= USERS; i++) {
+            lines.add("ADDUSER Имя" + (i % 5) + "|Фамилия" + i + "|1990|+7" + i + "|u" + i + "@mail");
+        }
+        lines.add("REMOVEUSER 3");
+        lines.add("REMOVEUSER 7");
+        // лимит читателя - 7 книг: восьмая выдача отклоняется
+        for (int book = 1; book <= 8; book++) {
+            lines.add("BORROW " + book + " 1");
+        }
+        lines.add("BORROW 2 1");
+        lines.add("BORROW 2 5");
+        lines.add("BORROW 99 5");
+        lines.add("BORROW 10 99");
+        lines.add("BORROW 10 3");
+        lines.add("BORROW x 1");
+        lines.add("RETURN 2");
+        lines.add("RETURN 2");
+        lines.add("RETURN 99");
+        lines.add("BORROW 9 1");
+        // удаление выданной книги освобождает место в лимите читателя
+        lines.add("REMOVEBOOK 4");
+        lines.add("BORROW 20 1");
+        lines.add("BORROW 21 1");
+        lines.add("BORROW 22 1");
+        lines.add("BORROW 23 1");
+        lines.add("GETBOOK 1");
+        lines.add("GETBOOK 4");
+        lines.add("GETUSER 1");
+        lines.add("GETUSER 3");
+        lines.add("UPDATEBOOK 5 Книга 0||");
+        lines.add("UPDATEUSER 2 +79|new@mail");
+        lines.add("FINDBOOK книга 0");
+        lines.add("FINDBOOK автор 1");
+        lines.add("FINDUSER имя2");
+        lines.add("FINDUSER фамилия1");
+        lines.add("FINDUSER");
+        lines.add("IDS");
+        lines.add("STATS");
+        return String.join("\n", lines) + "\n";
+    }
+
+    private static int count(String text, String prefix) {
+        int found = 0;
+        for (String line : text.split("\\R")) {
+            found += line.startsWith(prefix) ? 1 : 0;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.antipatterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Коды StringDictionary: выдаются подряд с 0, повтор строки возвращает тот же код, null - NO_CODE,
+// codeOf словарь не пополняет; после записи в снимок и чтения коды те же
+class StringDictionaryTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void codesAreDenseAndStable() {
+        StringDictionary dictionary = new StringDictionary();
+        assertEquals(StringDictionary.NO_CODE, dictionary.encode(null));
+        assertNull(dictionary.value(StringDictionary.NO_CODE));
+        assertEquals(0, dictionary.encode("Роман"));
+        assertEquals(1, dictionary.encode("Поэзия"));
+        assertEquals(0, dictionary.encode(new String("Роман")));
+        assertEquals(StringDictionary.NO_CODE, dictionary.codeOf("Драма"));
+        assertEquals(StringDictionary.NO_CODE, dictionary.codeOf(null));
+        assertEquals(2, dictionary.size());
+
+        // больше начальной ёмкости
+        for (int i = 0; i < 100; i++) {
+            assertEquals(2 + i, dictionary.encode("Автор " + i));
+        }
+        assertEquals(102, dictionary.size());
+        assertEquals("Автор 57", dictionary.value(59));
+        assertEquals(59, dictionary.codeOf("Автор 57"));
+
+        dictionary.clear();
+        assertEquals(0, dictionary.size());
+        assertEquals(StringDictionary.NO_CODE, dictionary.codeOf("Роман"));
+        assertEquals(0, dictionary.encode("Поэзия"));
+    }
+
+    @Test
+    void snapshotKeepsCodes() throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        for (String genre : new String[] {"Роман", "Поэзия", "", "Фантастика"}) {
+            dictionary.encode(genre);
+        }
+        Path file = directory.resolve("dictionary.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            SnapshotWriter out = new SnapshotWriter(channel, 0);
+            dictionary.writeTo(out, "genres");
+            out.stringColumn("duplicates", 2, i -> "Роман");
+            out.finish();
+        }
+
+        MappedSnapshot in = new MappedSnapshot(file);
+        try {
+            StringDictionary loaded = new StringDictionary();
+            loaded.encode("мусор до загрузки");
+            loaded.readFrom(in, "genres");
+            assertEquals(4, loaded.size());
+            for (int code = 0; code < dictionary.size(); code++) {
+                assertEquals(dictionary.value(code), loaded.value(code));
+                assertEquals(code, loaded.codeOf(dictionary.value(code)));
+            }
+            assertEquals(StringDictionary.NO_CODE, loaded.codeOf("мусор до загрузки"));
+            // повтор строки означал бы два кода для одного значения
+            assertThrows(IOException.class, () -> loaded.readFrom(in, "duplicates"));
+        } finally {
+            in.close();
+        }
+    }
+}